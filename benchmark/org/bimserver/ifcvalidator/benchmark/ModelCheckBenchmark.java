@@ -0,0 +1,127 @@
+package org.bimserver.ifcvalidator.benchmark;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.emf.IfcModelInterfaceException;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.PluginResources;
+import org.bimserver.ifcvalidator.Translations;
+import org.bimserver.ifcvalidator.checks.FullModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.tests.ModelGenerator;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Runs a single ModelCheck from the FullModelCheckerRegistry on a generated model. Run all checks with
+ * "mvn -Pbenchmark -DskipTests verify", which adds the GC profiler for allocation rates, or pass other JMH options
+ * with -Dbenchmark.args, for example "-p check=UNITS___LENGTH -p storeys=20 -prof gc". Compare the geometry engines
+ * with "-p geometryEngine=AWT,POLYGON", every parameter combination runs in its own fork.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelCheckBenchmark {
+
+	@Param({
+		"FIRERATING___FIRERATING_DOORS_SAME_AS_WALLS",
+		"PROJECT___ONLY_ONE_IFC_PROJECT",
+		"BUILDING___AT_LEAST_ONE_BUILDING",
+		"BUILDING_STOREY___AT_LEAST_ONE_BUILDING_STOREY",
+		"UNITS___LENGTH",
+		"UNITS___AREA",
+		"UNITS___VOLUME",
+		"REPRESENTATION___HAS_TRUE_NORTH_SET",
+		"SITE___ONLY_ONE_SITE",
+		"SITE___KADASTRALE_AANDUIDING",
+		"SITE___LATITUDE",
+		"SITE___LONGITUDE",
+		"SITE___ELEVATION",
+		"ACCESSIBILITY___CARPARKS",
+		"GEOMETRY___RATIOS",
+		"SPACES___UNIDENTIFIED",
+		"UNCLASSIFIED_SPACES___UNCLASSIFIED",
+		"BUILDINGSTOREYS___ALL_OBJECTS_IN_BUILDING_STOREY",
+		"BUILDINGSTOREYS___BUILDING_STOREY_NAMES_AND_Z_ORDER"
+	})
+	private String check;
+
+	@Param({"1", "10"})
+	private int storeys;
+
+	@Param({"4"})
+	private int rows;
+
+	@Param({"4"})
+	private int columns;
+
+	@Param({"2"})
+	private int windowsPerExternalWall;
+
+	@Param({"20"})
+	private int parkingSpacesPerStorey;
+
+	@Param({"AWT"})
+	private String geometryEngine;
+
+	private IfcModelInterface model;
+	private ModelCheck modelCheck;
+	private CheckerContext checkerContext;
+
+	@Setup
+	public void setup() throws IfcModelInterfaceException, IOException {
+		// Read once by GeometryEngine.get()
+		System.setProperty("ifcvalidator.geometryEngine", geometryEngine);
+		model = new ModelGenerator()
+			.setStoreys(storeys)
+			.setGrid(rows, columns)
+			.setWindowsPerExternalWall(windowsPerExternalWall)
+			.setParkingSpacesPerStorey(parkingSpacesPerStorey)
+			.generate();
+		String[] split = check.split("___");
+		modelCheck = new FullModelCheckerRegistry().getModelCheck(split[0], split[1]);
+		checkerContext = new CheckerContext(Translations.load(Paths.get("en.properties")), PluginResources.get(Paths.get(".")), "benchmark", CancellationToken.NONE);
+	}
+
+	@Benchmark
+	public IssueContainer runCheck() throws IssueException {
+		IssueContainer issueContainer = new IssueContainer();
+		modelCheck.check(model, issueContainer, checkerContext);
+		return issueContainer;
+	}
+}
@@ -17,17 +17,30 @@ package org.bimserver.ifcvalidator;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
@@ -40,15 +53,26 @@ import org.bimserver.bimbots.BimBotsInput;
 import org.bimserver.bimbots.BimBotsOutput;
 import org.bimserver.bimbots.BimBotsServiceInterface;
 import org.bimserver.database.queries.om.Query;
+import org.bimserver.database.queries.om.QueryException;
 import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.emf.PackageMetaData;
+import org.bimserver.ifcvalidator.AdmissionController.Admission;
+import org.bimserver.ifcvalidator.CappedIssueContainer.ErrorLimit;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.IncrementalValidationMetaData.CheckResultOrigin;
+import org.bimserver.ifcvalidator.ValidationHistory.ValidatedRevision;
 import org.bimserver.ifcvalidator.checks.ModelCheck;
 import org.bimserver.ifcvalidator.checks.ModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.SampledModelCheck;
+import org.bimserver.ifcvalidator.checks.VisitingModelCheck;
 import org.bimserver.interfaces.objects.SObjectType;
 import org.bimserver.interfaces.objects.SProject;
+import org.bimserver.interfaces.objects.SRevision;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.store.BooleanType;
 import org.bimserver.models.store.IfcHeader;
+import org.bimserver.models.store.LongType;
 import org.bimserver.models.store.ObjectDefinition;
 import org.bimserver.models.store.ParameterDefinition;
 import org.bimserver.models.store.PrimitiveDefinition;
@@ -72,9 +96,21 @@ import org.slf4j.LoggerFactory;
 public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedDataService implements BimBotsServiceInterface {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractIfcValidatorPlugin.class);
+	private static final long DEFAULT_TIMEOUT = 1800;
+	private static final long DEFAULT_MAX_ISSUES_PER_TYPE = 0;
+	private static final long DEFAULT_SUMMARY_EXAMPLES = 3;
 	private final ModelCheckerRegistry modelCheckerRegistry;
 	private boolean generateExtendedDataPerCheck = false;
 	private SchemaName outputSchema;
+	private CheckScheduler checkScheduler;
+	private ExecutorService geometryExecutor;
+	private PluginResources pluginResources;
+	private ObjectDefinition settingsDefinition;
+	private Translations settingsDefinitionTranslations;
+	private final ValidationHistory validationHistory = new ValidationHistory();
+	private ValidationResultCache validationResultCache;
+	private AdmissionController admissionController;
+	private String pluginVersion;
 
 	public AbstractIfcValidatorPlugin(SchemaName outputSchema, boolean generateExtendedDataPerCheck, ModelCheckerRegistry modelCheckerRegistry) {
 		super(outputSchema.name());
@@ -86,6 +122,15 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 	@Override
 	public void init(PluginContext pluginContext) throws PluginException {
 		super.init(pluginContext);
+		ExecutionMode executionMode = ExecutionMode.fromSystemProperties();
+		LOGGER.info("Running validations on " + executionMode.name().toLowerCase() + " threads");
+		checkScheduler = new CheckScheduler(executionMode, Runtime.getRuntime().availableProcessors());
+		geometryExecutor = Executors.newCachedThreadPool(executionMode.createThreadFactory("IfcValidator-geometry"));
+		pluginResources = PluginResources.get(pluginContext.getRootPath());
+		pluginResources.preloadTranslations();
+		pluginVersion = readPluginVersion(pluginContext.getRootPath());
+		validationResultCache = ValidationResultCache.fromSystemProperties(getClass().getSimpleName());
+		admissionController = AdmissionController.get();
 	}
 
 	protected abstract IssueContainerSerializer createIssueInterface(CheckerContext translator);
@@ -94,7 +139,21 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 		try {
 			IfcModelInterface model = input.getIfcModel();
 
-			BimBotsOutput bimBotsOutput = new BimBotsOutput(SchemaName.valueOf(getName()), process(model, pluginConfiguration, bimBotContext.getCurrentUser()));
+			String cacheKey = input.getData() == null ? null : ValidationResultCache.createKey(input.getData(), getEffectiveConfiguration(pluginConfiguration, bimBotContext.getCurrentUser()));
+			byte[] report = cacheKey == null ? null : validationResultCache.get(cacheKey);
+			if (report == null) {
+				try (Admission admission = admit(admissionController.estimate(model, getEnabledChecks(pluginConfiguration)))) {
+					CheckerContext checkerContext = createCheckerContext(pluginConfiguration, bimBotContext.getCurrentUser());
+					IssueContainerSerializer issueContainerSerializer = createIssueInterface(checkerContext);
+					Validation validation = validate(model, pluginConfiguration, checkerContext, -1, -1, null, CompletableFuture.completedFuture(null));
+					report = issueContainerSerializer.getBytes(validation.getIssueContainer());
+					if (cacheKey != null && validation.isComplete()) {
+						validationResultCache.put(cacheKey, report);
+					}
+				}
+			}
+
+			BimBotsOutput bimBotsOutput = new BimBotsOutput(SchemaName.valueOf(getName()), report);
 			bimBotsOutput.setContentType(getContentType());
 			bimBotsOutput.setContentDisposition(getFileName());
 			bimBotsOutput.setTitle("IFC Validator");
@@ -107,38 +166,219 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 	}
 
 	public byte[] process(IfcModelInterface model, PluginConfiguration pluginConfiguration, String currentUser) throws IssueException, IOException {
-		String language = pluginConfiguration.getString("LANGUAGE");
+		CheckerContext checkerContext = createCheckerContext(pluginConfiguration, currentUser);
+		IssueContainerSerializer issueContainerSerializer = createIssueInterface(checkerContext);
+		return issueContainerSerializer.getBytes(validate(model, pluginConfiguration, checkerContext, -1, -1, null, CompletableFuture.completedFuture(null)).getIssueContainer());
+	}
 
-		String filename = language.toLowerCase() + ".properties";
-		Path propertiesFile = getPluginContext().getRootPath().resolve(filename);
-		Properties properties = new Properties();
-		try (InputStream newInputStream = Files.newInputStream(propertiesFile)) {
-			properties.load(newInputStream);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+	/**
+	 * Validates the model and writes the report to the given stream, serializers implementing {@link StreamingIssueContainerSerializer} do so without materializing the report in memory.
+	 * When incremental validation is enabled, the issues of checks whose input did not change since the last validated revision of the given project are reused.
+	 */
+	public void process(IfcModelInterface model, PluginConfiguration pluginConfiguration, String currentUser, long poid, long roid, OutputStream outputStream) throws IssueException, IOException {
+		process(model, pluginConfiguration, currentUser, poid, roid, outputStream, null, CompletableFuture.completedFuture(null));
+	}
 
-		CheckerContext checkerContext = new CheckerContext(filename, properties, getPluginContext().getRootPath(), currentUser);
+	private void process(IfcModelInterface model, PluginConfiguration pluginConfiguration, String currentUser, long poid, long roid, OutputStream outputStream, RevisionFingerprint fingerprint, CompletableFuture<Void> geometry) throws IssueException, IOException {
+		CheckerContext checkerContext = createCheckerContext(pluginConfiguration, currentUser);
 		IssueContainerSerializer issueContainerSerializer = createIssueInterface(checkerContext);
-		
-		ValidationMetaData validationMetaData = new ValidationMetaData();
+		RootIssueContainer issueContainer = validate(model, pluginConfiguration, checkerContext, poid, roid, fingerprint, geometry).getIssueContainer();
+		if (issueContainerSerializer instanceof StreamingIssueContainerSerializer) {
+			((StreamingIssueContainerSerializer) issueContainerSerializer).write(issueContainer, outputStream);
+		} else {
+			outputStream.write(issueContainerSerializer.getBytes(issueContainer));
+		}
+	}
+
+	/**
+	 * Waits until the estimated memory of validating the given model fits in the heap budget, see {@link AdmissionController}
+	 */
+	private Admission admit(long bytes) throws BimBotsException {
+		try {
+			return admissionController.admit(bytes);
+		} catch (AdmissionException e) {
+			LOGGER.warn(e.getMessage());
+			throw new BimBotsException(e.getMessage(), IfcValidatorErrorCodes.INSUFFICIENT_MEMORY);
+		}
+	}
+
+	private void extend(Admission admission, long bytes) throws BimBotsException {
+		try {
+			admission.extend(bytes);
+		} catch (AdmissionException e) {
+			LOGGER.warn(e.getMessage());
+			throw new BimBotsException(e.getMessage(), IfcValidatorErrorCodes.INSUFFICIENT_MEMORY);
+		}
+	}
+
+	/**
+	 * The implementation version and build date of this plugin, cached reports of another build of the checks are not reused
+	 */
+	private static String readPluginVersion(Path rootPath) {
+		Package plugin = AbstractIfcValidatorPlugin.class.getPackage();
+		StringBuilder version = new StringBuilder(String.valueOf(plugin == null ? null : plugin.getImplementationVersion()));
+		Path versionFile = rootPath.resolve("plugin").resolve("version.properties");
+		if (Files.exists(versionFile)) {
+			Properties properties = new Properties();
+			try (InputStream inputStream = Files.newInputStream(versionFile)) {
+				properties.load(inputStream);
+				version.append(" ").append(properties.getProperty("build.date"));
+			} catch (IOException e) {
+				LOGGER.warn("Could not read " + versionFile, e);
+			}
+		}
+		return version.toString();
+	}
+
+	/**
+	 * Everything besides the model that determines the content of a complete report, including the version of the
+	 * plugin, the translations and the implementations of the enabled checks
+	 */
+	private String getEffectiveConfiguration(PluginConfiguration pluginConfiguration, String currentUser) {
+		StringBuilder configuration = new StringBuilder();
+		String language = pluginConfiguration.getString("LANGUAGE");
+		configuration.append(pluginVersion).append("\n").append(pluginResources.getTranslations(language).getFingerprint()).append("\n");
+		configuration.append(language).append("\n").append(currentUser).append("\n");
+		configuration.append(getLong(pluginConfiguration, "MAX_ISSUES_PER_TYPE", DEFAULT_MAX_ISSUES_PER_TYPE)).append("\n").append(getLong(pluginConfiguration, "FAIL_FAST_ERRORS", 0)).append("\n");
+		configuration.append(getLong(pluginConfiguration, "SAMPLE_SIZE", 0)).append("\n").append(getLong(pluginConfiguration, "SAMPLE_SEED", 0)).append("\n");
+		configuration.append(isSummaryOnly(pluginConfiguration)).append("\n").append(getLong(pluginConfiguration, "SUMMARY_EXAMPLES", DEFAULT_SUMMARY_EXAMPLES)).append("\n");
+		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
+			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
+				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
+				String fullIdentifier = modelCheck.getFullIdentifier();
+				if (pluginConfiguration.has(fullIdentifier) && pluginConfiguration.getBoolean(fullIdentifier)) {
+					configuration.append(fullIdentifier).append(" ").append(modelCheck.getClass().getName()).append(" ").append(getTimeoutMillis(pluginConfiguration, fullIdentifier + "___TIMEOUT", modelCheck.getDefaultTimeout())).append("\n");
+				}
+			}
+		}
+		return configuration.toString();
+	}
+
+	private CheckerContext createCheckerContext(PluginConfiguration pluginConfiguration, String currentUser) {
+		String language = pluginConfiguration.getString("LANGUAGE");
+		CancellationToken cancellationToken = CancellationToken.create(getTimeoutMillis(pluginConfiguration, "TIMEOUT", DEFAULT_TIMEOUT));
+		return new CheckerContext(pluginResources.getTranslations(language), pluginResources, currentUser, cancellationToken).withSummaryOnly(isSummaryOnly(pluginConfiguration));
+	}
+
+	private boolean isSummaryOnly(PluginConfiguration pluginConfiguration) {
+		return pluginConfiguration.has("SUMMARY_ONLY") && pluginConfiguration.getBoolean("SUMMARY_ONLY");
+	}
+
+	private boolean isIncremental(PluginConfiguration pluginConfiguration, long poid) {
+		// Summaries can not stand in for the issues of a full report, so they are not kept in the validation history
+		return poid != -1 && !isSummaryOnly(pluginConfiguration) && pluginConfiguration.has("INCREMENTAL") && pluginConfiguration.getBoolean("INCREMENTAL");
+	}
+
+	/**
+	 * @param fingerprint The fingerprint of the model, taken before its geometry started loading, or null to take it here
+	 * @param geometry Completes when the geometry of the model has been loaded, see {@link CheckScheduler#run(IfcModelInterface, List, CheckerContext, CompletableFuture)}
+	 */
+	private Validation validate(IfcModelInterface model, PluginConfiguration pluginConfiguration, CheckerContext checkerContext, long poid, long roid, RevisionFingerprint fingerprint, CompletableFuture<Void> geometry) throws IssueException {
+		boolean incremental = isIncremental(pluginConfiguration, poid);
+		ValidatedRevision previousRevision = null;
+		String configuration = null;
+		ValidationMetaData validationMetaData;
+		if (incremental) {
+			if (fingerprint == null) {
+				fingerprint = RevisionFingerprint.create(model);
+			}
+			configuration = getEffectiveConfiguration(pluginConfiguration, checkerContext.getAuthor());
+			previousRevision = validationHistory.get(poid);
+			validationMetaData = new IncrementalValidationMetaData(previousRevision == null ? -1 : previousRevision.getRoid());
+		} else {
+			validationMetaData = new ValidationMetaData();
+		}
 		RootIssueContainer issueContainer = new RootIssueContainer();
+		int maxIssuesPerType = (int) getLong(pluginConfiguration, "MAX_ISSUES_PER_TYPE", DEFAULT_MAX_ISSUES_PER_TYPE);
+		int maxErrors = (int) getLong(pluginConfiguration, "FAIL_FAST_ERRORS", 0);
+		ErrorLimit errorLimit = maxErrors > 0 ? new ErrorLimit(maxErrors, checkerContext.getCancellationToken()) : null;
+		int sampleSize = (int) getLong(pluginConfiguration, "SAMPLE_SIZE", 0);
+		long sampleSeed = getLong(pluginConfiguration, "SAMPLE_SEED", 0);
+		int summaryExamples = (int) getLong(pluginConfiguration, "SUMMARY_EXAMPLES", DEFAULT_SUMMARY_EXAMPLES);
+		List<ScheduledCheck> allChecks = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
 		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
 			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
-				String fullIdentifier = groupIdentifier + "___" + identifier;
-				IssueContainer issueContainerGroup = new IssueContainer();
+				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
+				String fullIdentifier = modelCheck.getFullIdentifier();
+				ModelCheck checkToRun = modelCheck;
+				if (sampleSize > 0 && modelCheck instanceof VisitingModelCheck && ((VisitingModelCheck) modelCheck).supportsSampling()) {
+					checkToRun = new SampledModelCheck((VisitingModelCheck) modelCheck, sampleSize, sampleSeed);
+				}
+				CappedIssueContainer checkIssueContainer = checkerContext.isSummaryOnly() ? new SummaryIssueContainer(summaryExamples, errorLimit) : new CappedIssueContainer(maxIssuesPerType, errorLimit);
+				ScheduledCheck scheduledCheck = new ScheduledCheck(checkToRun, getTimeoutMillis(pluginConfiguration, fullIdentifier + "___TIMEOUT", modelCheck.getDefaultTimeout()), checkIssueContainer);
 				if (pluginConfiguration.has(fullIdentifier)) {
 					if (pluginConfiguration.getBoolean(fullIdentifier)) {
-						ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
-						modelCheck.check(model, issueContainerGroup, checkerContext);
+						scheduledChecks.add(scheduledCheck);
 					}
 				}
-				issueContainer.add(issueContainerGroup);
+				allChecks.add(scheduledCheck);
+			}
+		}
+		if (incremental) {
+			Set<String> reusableChecks = previousRevision == null ? Collections.<String>emptySet() : previousRevision.getReusableChecks(scheduledChecks, fingerprint, configuration);
+			List<ScheduledCheck> checksToRun = new ArrayList<>();
+			for (ScheduledCheck scheduledCheck : scheduledChecks) {
+				String fullIdentifier = scheduledCheck.getModelCheck().getFullIdentifier();
+				if (reusableChecks.contains(fullIdentifier)) {
+					scheduledCheck.setIssueContainer(previousRevision.createIssueContainer(scheduledCheck.getModelCheck(), model));
+					((IncrementalValidationMetaData) validationMetaData).setCheckResultOrigin(fullIdentifier, CheckResultOrigin.REUSED);
+				} else {
+					checksToRun.add(scheduledCheck);
+					((IncrementalValidationMetaData) validationMetaData).setCheckResultOrigin(fullIdentifier, CheckResultOrigin.RECOMPUTED);
+				}
 			}
+			checkScheduler.run(model, checksToRun, checkerContext, geometry);
+
+			Map<String, IssueContainer> issueContainers = new HashMap<>();
+			for (ScheduledCheck scheduledCheck : scheduledChecks) {
+				// Checks that did not complete are rerun next time
+				if (scheduledCheck.isComplete()) {
+					issueContainers.put(scheduledCheck.getModelCheck().getFullIdentifier(), scheduledCheck.getIssueContainer());
+				}
+			}
+			validationHistory.put(poid, new ValidatedRevision(roid, configuration, fingerprint, issueContainers));
+		} else {
+			checkScheduler.run(model, scheduledChecks, checkerContext, geometry);
+		}
+		for (ScheduledCheck scheduledCheck : allChecks) {
+			issueContainer.add(scheduledCheck.getIssueContainer());
 		}
 
 //		issueContainer.dumpSummary();
 		
+		setModelMetaData(validationMetaData, model);
+		validationMetaData.setRemoteReference(getPluginContext().getBasicServerInfo().getSiteAddress());
+
+		issueContainer.setValidationMetaData(validationMetaData);
+		return new Validation(issueContainer, CheckScheduler.isComplete(scheduledChecks));
+	}
+
+	private static class Validation {
+		private final RootIssueContainer issueContainer;
+		private final boolean complete;
+
+		public Validation(RootIssueContainer issueContainer, boolean complete) {
+			this.issueContainer = issueContainer;
+			this.complete = complete;
+		}
+
+		public RootIssueContainer getIssueContainer() {
+			return issueContainer;
+		}
+
+		/**
+		 * Whether all enabled checks ran to completion, only then the report can be cached
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+	}
+
+	/**
+	 * Copies the file name and date from the IFC header and the IfcProject of the model to the report
+	 */
+	static void setModelMetaData(ValidationMetaData validationMetaData, IfcModelInterface model) {
 		IfcHeader ifcHeader = model.getModelMetaData().getIfcHeader();
 		if (ifcHeader != null) {
 			if (ifcHeader.getTimeStamp() != null) {
@@ -146,7 +386,6 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 			}
 			validationMetaData.setFileName(ifcHeader.getFilename());
 		}
-		validationMetaData.setRemoteReference(getPluginContext().getBasicServerInfo().getSiteAddress());
 
 		List<IdEObject> projects = model.getAll(model.getPackageMetaData().getEClass("IfcProject"));
 		if (projects.size() == 1) {
@@ -157,11 +396,22 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 		} else {
 			LOGGER.info("Too many IfcProjects");
 		}
-
-		issueContainer.setValidationMetaData(validationMetaData);
-		return issueContainerSerializer.getBytes(issueContainer);
 	}
 	
+	private long getTimeoutMillis(PluginConfiguration pluginConfiguration, String key, long defaultSeconds) {
+		return TimeUnit.SECONDS.toMillis(getLong(pluginConfiguration, key, defaultSeconds));
+	}
+
+	private long getLong(PluginConfiguration pluginConfiguration, String key, long defaultValue) {
+		if (pluginConfiguration.has(key)) {
+			Long value = pluginConfiguration.getLong(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		return defaultValue;
+	}
+
 	public static XMLGregorianCalendar dateToXMLGregorianCalendar(Date date, TimeZone zone) {
 		XMLGregorianCalendar xmlGregorianCalendar = null;
 		GregorianCalendar gregorianCalendar = new GregorianCalendar();
@@ -182,21 +432,141 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 		runningService.updateProgress(0);
 
 		SProject project = bimServerClientInterface.getServiceInterface().getProjectByPoid(poid);
-		IfcModelInterface model = bimServerClientInterface.getModel(project, roid, true, false, true);
-
-		if (!generateExtendedDataPerCheck) {
-			addExtendedData(process(model, new PluginConfiguration(settings), runningService.getCurrentUser()), getFileName(), "IFC Validator", getContentType(), bimServerClientInterface, roid);
+		PluginConfiguration pluginConfiguration = new PluginConfiguration(settings);
+		List<ModelCheck> enabledChecks = getEnabledChecks(pluginConfiguration);
+		PackageMetaData packageMetaData = bimServerClientInterface.getMetaDataManager().getPackageMetaData(project.getSchema());
+
+		// The model is the largest allocation of a validation, so it is admitted on the size of the revision before it is
+		// loaded. Once it has been loaded, the admission is extended with the geometry and the checks.
+		SRevision revision = bimServerClientInterface.getServiceInterface().getRevision(roid);
+		try (Admission admission = admit(admissionController.estimate(revision.getSize() == null ? 0 : revision.getSize()))) {
+			// Two phases: the checks that do not read geometry start as soon as the model has been loaded without geometry,
+			// the others wait for the geometry of the products they read, which is loaded in the background
+			Query query = ModelQueryBuilder.build(packageMetaData, enabledChecks);
+			IfcModelInterface model;
+			if (query == null) {
+				model = bimServerClientInterface.getModel(project, roid, true, false, false);
+			} else {
+				model = bimServerClientInterface.getModel(project, roid, query, false, false);
+			}
+			extend(admission, admissionController.estimate(model, enabledChecks));
+
+			if (!generateExtendedDataPerCheck) {
+				// The fingerprint is taken before the geometry is attached to the model in the background
+				RevisionFingerprint fingerprint = isIncremental(pluginConfiguration, poid) ? RevisionFingerprint.create(model) : null;
+				GeometryLoad geometryLoad = null;
+				Query geometryQuery = ModelQueryBuilder.buildGeometryQuery(packageMetaData, enabledChecks);
+				if (geometryQuery != null) {
+					geometryLoad = new GeometryLoad(geometryExecutor, () -> loadGeometry(bimServerClientInterface, project, roid, geometryQuery, model));
+				}
+				Path spillFile = Files.createTempFile("ifcvalidator", ".tmp");
+				try {
+					try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(spillFile))) {
+						process(model, pluginConfiguration, runningService.getCurrentUser(), poid, roid, outputStream, fingerprint, geometryLoad == null ? CompletableFuture.completedFuture(null) : geometryLoad.getLoaded());
+					}
+					addExtendedData(Files.readAllBytes(spillFile), getFileName(), "IFC Validator", getContentType(), bimServerClientInterface, roid);
+				} finally {
+					// The geometry is part of the admitted memory, it must not be loaded into the model after the admission closes
+					if (geometryLoad != null) {
+						geometryLoad.cancel();
+					}
+					Files.deleteIfExists(spillFile);
+				}
+			}
 		}
 
 		runningService.updateProgress(100);
 	}
 
+	/**
+	 * A geometry load that runs in the background, and can be cancelled and waited for
+	 */
+	private static class GeometryLoad {
+		private final CompletableFuture<Void> loaded = new CompletableFuture<>();
+		private final AtomicBoolean started = new AtomicBoolean();
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private final Future<?> future;
+
+		GeometryLoad(ExecutorService executorService, Runnable load) {
+			future = executorService.submit(() -> {
+				if (!started.compareAndSet(false, true)) {
+					return;
+				}
+				try {
+					load.run();
+					loaded.complete(null);
+				} catch (Throwable e) {
+					loaded.completeExceptionally(e);
+				} finally {
+					finished.countDown();
+				}
+			});
+		}
+
+		/**
+		 * Completes when the geometry has been loaded into the model
+		 */
+		CompletableFuture<Void> getLoaded() {
+			return loaded;
+		}
+
+		/**
+		 * Cancels the load if it did not complete yet, and waits until it no longer runs
+		 */
+		void cancel() throws InterruptedException {
+			loaded.cancel(false);
+			if (started.compareAndSet(false, true)) {
+				future.cancel(false);
+			} else {
+				future.cancel(true);
+				finished.await();
+			}
+		}
+	}
+
+	private void loadGeometry(BimServerClientInterface bimServerClientInterface, SProject project, long roid, Query geometryQuery, IfcModelInterface model) {
+		try {
+			long start = System.nanoTime();
+			IfcModelInterface geometryModel = bimServerClientInterface.getModel(project, roid, geometryQuery, false, true);
+			if (Thread.currentThread().isInterrupted()) {
+				LOGGER.debug("Loading geometry cancelled");
+				return;
+			}
+			copyGeometry(geometryModel, model);
+			LOGGER.debug("Geometry of " + geometryModel.size() + " objects loaded in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		} catch (Exception e) {
+			LOGGER.error("Loading geometry failed", e);
+			throw new CompletionException(e);
+		}
+	}
+
+	/**
+	 * Attaches the geometry of the products in the first model to the products with the same oid in the second model
+	 */
+	private static void copyGeometry(IfcModelInterface from, IfcModelInterface to) {
+		for (IfcProduct ifcProduct : from.getAllWithSubTypes(IfcProduct.class)) {
+			IdEObject target = to.get(ifcProduct.getOid());
+			if (target instanceof IfcProduct) {
+				((IfcProduct) target).setGeometry(ifcProduct.getGeometry());
+			}
+		}
+	}
+
 	public abstract String getContentType();
 
 	public abstract String getFileName();
 
 	@Override
-	public ObjectDefinition getSettingsDefinition() {
+	public synchronized ObjectDefinition getSettingsDefinition() {
+		Translations translations = pluginResources.getTranslations("EN");
+		if (settingsDefinition == null || settingsDefinitionTranslations != translations) {
+			settingsDefinition = createSettingsDefinition(new CheckerContext(translations, pluginResources, null));
+			settingsDefinitionTranslations = translations;
+		}
+		return settingsDefinition;
+	}
+
+	private ObjectDefinition createSettingsDefinition(CheckerContext checkerContext) {
 		ObjectDefinition objectDefinition = StoreFactory.eINSTANCE.createObjectDefinition();
 
 		PrimitiveDefinition booleanType = StoreFactory.eINSTANCE.createPrimitiveDefinition();
@@ -223,36 +593,113 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 
 		objectDefinition.getParameters().add(languageParameter);
 
-		String filename = "en.properties";
-		Path propertiesFile = getPluginContext().getRootPath().resolve(filename);
-		Properties properties = new Properties();
-		try {
-			try (InputStream newInputStream = Files.newInputStream(propertiesFile)) {
-				properties.load(newInputStream);
-			}
-		} catch (IOException e) {
-			LOGGER.error("", e);
-		}
-		CheckerContext checkerContext = new CheckerContext(filename, properties, getPluginContext().getRootPath(), null);
+		PrimitiveDefinition longType = StoreFactory.eINSTANCE.createPrimitiveDefinition();
+		longType.setType(PrimitiveEnum.LONG);
+
+		ParameterDefinition timeoutParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		timeoutParameter.setIdentifier("TIMEOUT");
+		timeoutParameter.setDescription("Maximum number of seconds for the whole validation, 0 for no limit");
+		timeoutParameter.setName("Time budget (s)");
+		timeoutParameter.setType(longType);
+		timeoutParameter.setDefaultValue(createLongType(DEFAULT_TIMEOUT));
+
+		objectDefinition.getParameters().add(timeoutParameter);
+
+		ParameterDefinition incrementalParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		incrementalParameter.setIdentifier("INCREMENTAL");
+		incrementalParameter.setDescription("Only rerun the checks whose input changed since the last validated revision of the project");
+		incrementalParameter.setName("Incremental validation");
+		incrementalParameter.setType(booleanType);
+		incrementalParameter.setDefaultValue(falseValue);
+
+		objectDefinition.getParameters().add(incrementalParameter);
+
+		ParameterDefinition maxIssuesParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		maxIssuesParameter.setIdentifier("MAX_ISSUES_PER_TYPE");
+		maxIssuesParameter.setDescription("Maximum number of issues of each type a check lists, beyond it only the total is reported. 0 for no limit");
+		maxIssuesParameter.setName("Maximum issues per type");
+		maxIssuesParameter.setType(longType);
+		maxIssuesParameter.setDefaultValue(createLongType(DEFAULT_MAX_ISSUES_PER_TYPE));
+
+		objectDefinition.getParameters().add(maxIssuesParameter);
+
+		ParameterDefinition failFastParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		failFastParameter.setIdentifier("FAIL_FAST_ERRORS");
+		failFastParameter.setDescription("Stop the validation once the checks together found this many errors, 0 to always run all checks");
+		failFastParameter.setName("Stop after errors");
+		failFastParameter.setType(longType);
+		failFastParameter.setDefaultValue(createLongType(0));
+
+		objectDefinition.getParameters().add(failFastParameter);
+
+		ParameterDefinition sampleSizeParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		sampleSizeParameter.setIdentifier("SAMPLE_SIZE");
+		sampleSizeParameter.setDescription("Run the per-object checks that support it on a random sample of this many objects, and report the estimated share of objects with errors. 0 to check all objects");
+		sampleSizeParameter.setName("Sample size");
+		sampleSizeParameter.setType(longType);
+		sampleSizeParameter.setDefaultValue(createLongType(0));
+
+		objectDefinition.getParameters().add(sampleSizeParameter);
+
+		ParameterDefinition sampleSeedParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		sampleSeedParameter.setIdentifier("SAMPLE_SEED");
+		sampleSeedParameter.setDescription("Seed of the random sample, the same seed gives the same sample of the same model");
+		sampleSeedParameter.setName("Sample seed");
+		sampleSeedParameter.setType(longType);
+		sampleSeedParameter.setDefaultValue(createLongType(0));
+
+		objectDefinition.getParameters().add(sampleSeedParameter);
+
+		ParameterDefinition summaryOnlyParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		summaryOnlyParameter.setIdentifier("SUMMARY_ONLY");
+		summaryOnlyParameter.setDescription("Only report the number of issues of each check by type and by building storey, with a few example issues and without images");
+		summaryOnlyParameter.setName("Summary only");
+		summaryOnlyParameter.setType(booleanType);
+		summaryOnlyParameter.setDefaultValue(falseValue);
+
+		objectDefinition.getParameters().add(summaryOnlyParameter);
+
+		ParameterDefinition summaryExamplesParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+		summaryExamplesParameter.setIdentifier("SUMMARY_EXAMPLES");
+		summaryExamplesParameter.setDescription("Number of example issues of each type a check lists in a summary report");
+		summaryExamplesParameter.setName("Summary examples");
+		summaryExamplesParameter.setType(longType);
+		summaryExamplesParameter.setDefaultValue(createLongType(DEFAULT_SUMMARY_EXAMPLES));
+
+		objectDefinition.getParameters().add(summaryExamplesParameter);
 
 		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
 			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
 				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
 
 				ParameterDefinition parameter = StoreFactory.eINSTANCE.createParameterDefinition();
-				parameter.setIdentifier(groupIdentifier + "___" + identifier);
+				parameter.setIdentifier(modelCheck.getFullIdentifier());
 				parameter.setName(modelCheck.getName(checkerContext));
 				parameter.setType(booleanType);
 				parameter.setRequired(true);
 				parameter.setDefaultValue(modelCheck.isEnabledByDefault() ? trueValue : falseValue);
 				parameter.setDescription(modelCheck.getDescription(checkerContext));
 				objectDefinition.getParameters().add(parameter);
+
+				ParameterDefinition checkTimeoutParameter = StoreFactory.eINSTANCE.createParameterDefinition();
+				checkTimeoutParameter.setIdentifier(modelCheck.getFullIdentifier() + "___TIMEOUT");
+				checkTimeoutParameter.setName(modelCheck.getName(checkerContext) + " - time budget (s)");
+				checkTimeoutParameter.setType(longType);
+				checkTimeoutParameter.setDefaultValue(createLongType(modelCheck.getDefaultTimeout()));
+				checkTimeoutParameter.setDescription("Maximum number of seconds for this check, 0 for no limit");
+				objectDefinition.getParameters().add(checkTimeoutParameter);
 			}
 		}
 
 		return objectDefinition;
 	}
 
+	private LongType createLongType(long value) {
+		LongType longType = StoreFactory.eINSTANCE.createLongType();
+		longType.setValue(value);
+		return longType;
+	}
+
 	@Override
 	public Set<String> getAvailableOutputs() {
 		return Collections.singleton(outputSchema.name());
@@ -265,7 +712,7 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 
 	@Override
 	public boolean requiresGeometry() {
-		return true;
+		return ModelQueryBuilder.needsGeometry(getDefaultChecks());
 	}
 
 	@Override
@@ -273,13 +720,47 @@ public abstract class AbstractIfcValidatorPlugin extends AbstractAddExtendedData
 		return false;
 	}
 	
+	/**
+	 * BimBots does not pass the configuration when preloading, so the query covers the checks that are enabled by default
+	 */
 	@Override
 	public Query getPreloadQuery(PackageMetaData packageMetaData) {
-		return null;
+		try {
+			return ModelQueryBuilder.build(packageMetaData, getDefaultChecks());
+		} catch (QueryException e) {
+			LOGGER.error("", e);
+			return null;
+		}
 	}
 
 	@Override
 	public boolean preloadCompleteModel() {
-		return false;
+		return ModelQueryBuilder.needsCompleteModel(getDefaultChecks());
+	}
+
+	private List<ModelCheck> getDefaultChecks() {
+		List<ModelCheck> modelChecks = new ArrayList<>();
+		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
+			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
+				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
+				if (modelCheck.isEnabledByDefault()) {
+					modelChecks.add(modelCheck);
+				}
+			}
+		}
+		return modelChecks;
+	}
+
+	private List<ModelCheck> getEnabledChecks(PluginConfiguration pluginConfiguration) {
+		List<ModelCheck> modelChecks = new ArrayList<>();
+		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
+			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
+				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
+				if (pluginConfiguration.has(modelCheck.getFullIdentifier()) && pluginConfiguration.getBoolean(modelCheck.getFullIdentifier())) {
+					modelChecks.add(modelCheck);
+				}
+			}
+		}
+		return modelChecks;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,194 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * Keeps the validations that run at the same time within a heap budget. The memory a validation needs is estimated
+ * from the number of objects in its model, the products whose geometry is loaded and the estimates of the enabled
+ * checks (see {@link ModelCheck#getEstimatedMemory(IfcModelInterface)}). A validation waits in line until its estimate
+ * fits next to the running ones, and is rejected when it does not fit within the maximum waiting time, or never fits.
+ * Validations are admitted in the order in which they arrive. A validation that still has to load its model is first
+ * admitted for the model alone (see {@link #estimate(long)}), and extended once the model has been loaded.
+ */
+public class AdmissionController {
+
+	private static class Holder {
+		private static final AdmissionController INSTANCE = fromSystemProperties();
+	}
+
+	private static final long MB = 1024 * 1024;
+
+	/**
+	 * Rough size of an object of a model in memory, including its attributes and references
+	 */
+	static final long BYTES_PER_OBJECT = 1024;
+
+	/**
+	 * Rough size of the triangulated geometry of a product
+	 */
+	static final long BYTES_PER_GEOMETRY = 16 * 1024;
+
+	private final int budgetMb;
+	private final long maxWaitMillis;
+	private final Semaphore memory;
+	private final ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("AdmissionController");
+
+	/**
+	 * @param budgetBytes Heap available to validations that run at the same time
+	 * @param maxWaitMillis Time a validation may wait for its turn before it is rejected
+	 */
+	public AdmissionController(long budgetBytes, long maxWaitMillis) {
+		this.budgetMb = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetBytes / MB));
+		this.maxWaitMillis = maxWaitMillis;
+		this.memory = new Semaphore(budgetMb, true);
+	}
+
+	/**
+	 * The controller shared by all validations in this process, so all plugins together stay within one budget
+	 */
+	public static AdmissionController get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a controller configured by the system properties ifcvalidator.admission.heapBytes (default half of the
+	 * maximum heap) and ifcvalidator.admission.waitSeconds (default 300).
+	 */
+	private static AdmissionController fromSystemProperties() {
+		long budgetBytes = Long.getLong("ifcvalidator.admission.heapBytes", Runtime.getRuntime().maxMemory() / 2);
+		long waitSeconds = Long.getLong("ifcvalidator.admission.waitSeconds", 300);
+		return new AdmissionController(budgetBytes, TimeUnit.SECONDS.toMillis(waitSeconds));
+	}
+
+	/**
+	 * Estimates the memory a model with the given number of objects needs once loaded, before it is loaded
+	 */
+	public long estimate(long nrObjects) {
+		return nrObjects * BYTES_PER_OBJECT;
+	}
+
+	/**
+	 * Estimates the memory a validation of the given model with the given checks needs, including the geometry the
+	 * checks read when it has not been loaded yet
+	 */
+	public long estimate(IfcModelInterface model, Collection<ModelCheck> modelChecks) {
+		long bytes = model.size() * BYTES_PER_OBJECT;
+		Set<EClass> geometryClasses = new LinkedHashSet<>();
+		for (ModelCheck modelCheck : modelChecks) {
+			geometryClasses.addAll(modelCheck.getGeometryClasses());
+			bytes += modelCheck.getEstimatedMemory(model);
+		}
+		for (EClass geometryClass : geometryClasses) {
+			bytes += model.getAllWithSubTypes(geometryClass).size() * BYTES_PER_GEOMETRY;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Waits until a validation that needs the given amount of memory fits in the budget. The returned admission has to
+	 * be closed when the validation is done.
+	 */
+	public Admission admit(long bytes) throws AdmissionException {
+		int permits = toPermits(bytes);
+		acquire(permits, permits);
+		return new Admission(permits);
+	}
+
+	private int toPermits(long bytes) throws AdmissionException {
+		long mb = Math.max(1, (bytes + MB - 1) / MB);
+		if (mb > budgetMb) {
+			componentMetrics.increment("rejected");
+			throw new AdmissionException("Validation needs an estimated " + mb + " MB, which exceeds the memory budget of " + budgetMb + " MB");
+		}
+		return (int) mb;
+	}
+
+	/**
+	 * @param mb The total estimate of the validation, for the messages
+	 */
+	private void acquire(int permits, int mb) throws AdmissionException {
+		long start = System.nanoTime();
+		try {
+			// The untimed tryAcquire would go ahead of the validations that are waiting, the timed one honours the fair order
+			if (!memory.tryAcquire(permits, 0, TimeUnit.MILLISECONDS)) {
+				componentMetrics.increment("queued");
+				if (!memory.tryAcquire(permits, maxWaitMillis, TimeUnit.MILLISECONDS)) {
+					componentMetrics.increment("rejected");
+					throw new AdmissionException("Validation needs an estimated " + mb + " MB, which did not become available within " + TimeUnit.MILLISECONDS.toSeconds(maxWaitMillis) + " s");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			componentMetrics.increment("rejected");
+			throw new AdmissionException("Interrupted while waiting for memory");
+		}
+		componentMetrics.increment("admitted");
+		componentMetrics.recordLatency("wait", System.nanoTime() - start);
+	}
+
+	/**
+	 * Memory in MB that is not reserved by running validations
+	 */
+	public int getAvailableMb() {
+		return memory.availablePermits();
+	}
+
+	public class Admission implements AutoCloseable {
+		private int permits;
+		private boolean closed;
+
+		private Admission(int permits) {
+			this.permits = permits;
+		}
+
+		/**
+		 * Grows the admission to a new estimate of the whole validation, waiting in line for the difference like
+		 * {@link AdmissionController#admit(long)}. Nothing changes when the admission already covers the estimate.
+		 */
+		public synchronized void extend(long bytes) throws AdmissionException {
+			if (closed) {
+				throw new IllegalStateException("Admission is closed");
+			}
+			int total = toPermits(bytes);
+			if (total > permits) {
+				acquire(total - permits, total);
+				permits = total;
+			}
+		}
+
+		@Override
+		public synchronized void close() {
+			if (!closed) {
+				closed = true;
+				memory.release(permits);
+			}
+		}
+	}
+}
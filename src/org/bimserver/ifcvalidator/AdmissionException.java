@@ -0,0 +1,31 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+/**
+ * Thrown when a validation is not admitted because its estimated memory use does not fit in the heap budget, see
+ * {@link AdmissionController}
+ */
+public class AdmissionException extends Exception {
+
+	private static final long serialVersionUID = -6251785519040817493L;
+
+	public AdmissionException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,363 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.emf.PackageMetaData;
+import org.bimserver.emf.Schema;
+import org.bimserver.ifc.step.deserializer.Ifc2x3tc1StepDeserializer;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.checks.FullModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.IlsModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.LimitedModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.checks.ModelCheckerRegistry;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.bimserver.plugins.deserializers.DeserializeException;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueContainerSerializer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.RootIssueContainer;
+import org.bimserver.validationreport.Type;
+import org.bimserver.validationreport.ValidationMetaData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates IFC files without a BIMserver. Files are deserialized in-process and validated by a configurable number
+ * of workers, which together never hold more models than fit in the memory budget. Every file gets its own report in
+ * the output directory. Checks that need geometry are reported as {@link Type#CANNOT_CHECK}, because there is no
+ * render engine.
+ *
+ * <pre>
+ * java org.bimserver.ifcvalidator.BatchValidator [options] &lt;file or directory&gt;...
+ *   -registry FULL|LIMITED|ILS   checks to run (FULL)
+ *   -format JSON|XLSX|BCF        report format (JSON)
+ *   -output &lt;directory&gt;          where to write the reports, in the layout of the inputs (next to the IFC files)
+ *   -workers &lt;n&gt;                 files validated in parallel (half of the processors)
+ *   -memory &lt;MB&gt;                 memory budget for models in memory (three quarters of the heap)
+ *   -timeout &lt;s&gt;                 time budget per file, 0 for no limit (1800)
+ *   -language &lt;code&gt;             language of the reports (EN)
+ *   -resources &lt;directory&gt;       directory with the translations and input files (.)
+ * </pre>
+ */
+public class BatchValidator {
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchValidator.class);
+
+	/**
+	 * An Ifc2x3tc1 model in memory takes about this many times the size of its STEP file
+	 */
+	private static final int MEMORY_PER_FILE_BYTE = 10;
+	private static final long MB = 1024 * 1024;
+
+	public enum ReportFormat {
+		JSON("json"),
+		XLSX("xlsx"),
+		BCF("bcfzip");
+
+		private final String extension;
+
+		ReportFormat(String extension) {
+			this.extension = extension;
+		}
+
+		public String getExtension() {
+			return extension;
+		}
+
+		public IssueContainerSerializer createSerializer(CheckerContext checkerContext) {
+			switch (this) {
+			case XLSX:
+				return new ExcelIssueInterface(checkerContext);
+			case BCF:
+				return new BcfInterface(checkerContext);
+			default:
+				return new StreamingJsonValidationReport();
+			}
+		}
+	}
+
+	private final ModelCheckerRegistry modelCheckerRegistry;
+	private final ReportFormat reportFormat;
+	private final PluginResources pluginResources;
+	private final String language;
+	private final long timeoutMillis;
+	private final int workers;
+	private final int memoryBudgetMb;
+	private final Semaphore memory;
+	private final PackageMetaData packageMetaData;
+	private final CheckScheduler checkScheduler;
+
+	public BatchValidator(ModelCheckerRegistry modelCheckerRegistry, ReportFormat reportFormat, PluginResources pluginResources, String language, long timeoutMillis, int workers, int memoryBudgetMb) {
+		this.modelCheckerRegistry = modelCheckerRegistry;
+		this.reportFormat = reportFormat;
+		this.pluginResources = pluginResources;
+		this.language = language;
+		this.timeoutMillis = timeoutMillis;
+		this.workers = workers;
+		this.memoryBudgetMb = memoryBudgetMb;
+		this.memory = new Semaphore(memoryBudgetMb, true);
+		this.packageMetaData = new PackageMetaData(Ifc2x3tc1Package.eINSTANCE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+		this.checkScheduler = new CheckScheduler(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Validates all files and writes their reports to the output directory, or next to the files when it is null.
+	 * 
+	 * @return The number of files that could not be validated
+	 */
+	public int validate(List<Path> files, Path outputDirectory) throws InterruptedException {
+		Map<Path, Path> relativePaths = new LinkedHashMap<>();
+		for (Path file : files) {
+			relativePaths.put(file, file.getFileName());
+		}
+		return validate(relativePaths, outputDirectory);
+	}
+
+	/**
+	 * Validates all files and writes their reports to the output directory, at the same relative path as the file, or
+	 * next to the files when it is null. A file of which the report would overwrite the report of another file is not
+	 * validated.
+	 * 
+	 * @param files The files to validate, with their path relative to the input directory they were found in
+	 * @return The number of files that could not be validated
+	 */
+	public int validate(Map<Path, Path> files, Path outputDirectory) throws InterruptedException {
+		ExecutorService executorService = Executors.newFixedThreadPool(workers);
+		try {
+			int failures = 0;
+			Set<Path> reports = new HashSet<>();
+			Map<Path, Future<?>> futures = new LinkedHashMap<>();
+			for (Map.Entry<Path, Path> entry : files.entrySet()) {
+				Path file = entry.getKey();
+				Path report;
+				if (outputDirectory == null) {
+					report = file.toAbsolutePath().resolveSibling(file.getFileName().toString() + "." + reportFormat.getExtension());
+				} else {
+					report = outputDirectory.resolve(entry.getValue().toString() + "." + reportFormat.getExtension());
+				}
+				if (!reports.add(report.toAbsolutePath().normalize())) {
+					LOGGER.error("Not validating " + file + ", its report " + report + " would overwrite the report of another file");
+					failures++;
+					continue;
+				}
+				futures.put(file, executorService.submit(() -> {
+					Files.createDirectories(report.toAbsolutePath().getParent());
+					validate(file, report);
+					return null;
+				}));
+			}
+			for (Map.Entry<Path, Future<?>> entry : futures.entrySet()) {
+				try {
+					entry.getValue().get();
+				} catch (ExecutionException e) {
+					LOGGER.error("Could not validate " + entry.getKey(), e.getCause());
+					failures++;
+				}
+			}
+			return failures;
+		} finally {
+			executorService.shutdownNow();
+			executorService.awaitTermination(1, TimeUnit.MINUTES);
+		}
+	}
+
+	/**
+	 * Validates a single file. Blocks until its estimated model size fits in the memory budget.
+	 */
+	public void validate(Path file, Path report) throws IOException, DeserializeException, IssueException, InterruptedException {
+		int permits = (int) Math.max(1, Math.min(memoryBudgetMb, Files.size(file) * MEMORY_PER_FILE_BYTE / MB));
+		memory.acquire(permits);
+		try {
+			long start = System.nanoTime();
+			IfcModelInterface model = read(file);
+			CheckerContext checkerContext = new CheckerContext(pluginResources.getTranslations(language), pluginResources, "BatchValidator", CancellationToken.create(timeoutMillis));
+			RootIssueContainer issueContainer = validate(model, checkerContext);
+			IssueContainerSerializer issueContainerSerializer = reportFormat.createSerializer(checkerContext);
+			try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(report))) {
+				if (issueContainerSerializer instanceof StreamingIssueContainerSerializer) {
+					((StreamingIssueContainerSerializer) issueContainerSerializer).write(issueContainer, outputStream);
+				} else {
+					outputStream.write(issueContainerSerializer.getBytes(issueContainer));
+				}
+			}
+			LOGGER.info("Validated " + file + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+		} finally {
+			memory.release(permits);
+		}
+	}
+
+	private IfcModelInterface read(Path file) throws IOException, DeserializeException {
+		Ifc2x3tc1StepDeserializer deserializer = new Ifc2x3tc1StepDeserializer();
+		deserializer.init(packageMetaData);
+		try (InputStream inputStream = Files.newInputStream(file)) {
+			return deserializer.read(inputStream, file.getFileName().toString(), Files.size(file), null);
+		}
+	}
+
+	private RootIssueContainer validate(IfcModelInterface model, CheckerContext checkerContext) throws IssueException {
+		List<ScheduledCheck> allChecks = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		for (String groupIdentifier : modelCheckerRegistry.getGroupIdentifiers()) {
+			for (String identifier : modelCheckerRegistry.getIdentifiers(groupIdentifier)) {
+				ModelCheck modelCheck = modelCheckerRegistry.getModelCheck(groupIdentifier, identifier);
+				ScheduledCheck scheduledCheck = new ScheduledCheck(modelCheck, TimeUnit.SECONDS.toMillis(modelCheck.getDefaultTimeout()));
+				if (!modelCheck.isEnabledByDefault()) {
+					// Not reported at all
+				} else if (modelCheck.requiresGeometry()) {
+					scheduledCheck.getIssueContainer().builder().originatingCheck(modelCheck.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message("Check needs geometry, which is not available in batch validation").add();
+				} else {
+					scheduledChecks.add(scheduledCheck);
+				}
+				allChecks.add(scheduledCheck);
+			}
+		}
+		checkScheduler.run(model, scheduledChecks, checkerContext);
+
+		RootIssueContainer issueContainer = new RootIssueContainer();
+		for (ScheduledCheck scheduledCheck : allChecks) {
+			issueContainer.add(scheduledCheck.getIssueContainer());
+		}
+		ValidationMetaData validationMetaData = new ValidationMetaData();
+		AbstractIfcValidatorPlugin.setModelMetaData(validationMetaData, model);
+		issueContainer.setValidationMetaData(validationMetaData);
+		return issueContainer;
+	}
+
+	public void shutdown() {
+		checkScheduler.shutdown();
+	}
+
+	private static List<Path> findIfcFiles(Path path) throws IOException {
+		if (!Files.isDirectory(path)) {
+			return Collections.singletonList(path);
+		}
+		try (Stream<Path> stream = Files.walk(path)) {
+			return stream.filter(p -> Files.isRegularFile(p) && p.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".ifc")).sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static ModelCheckerRegistry createRegistry(String name) {
+		switch (name.toUpperCase(Locale.ROOT)) {
+		case "FULL":
+			return new FullModelCheckerRegistry();
+		case "LIMITED":
+			return new LimitedModelCheckerRegistry();
+		case "ILS":
+			return new IlsModelCheckerRegistry();
+		default:
+			throw new IllegalArgumentException("Unknown registry " + name);
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		ModelCheckerRegistry modelCheckerRegistry = new FullModelCheckerRegistry();
+		ReportFormat reportFormat = ReportFormat.JSON;
+		Path outputDirectory = null;
+		int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		int memoryBudgetMb = (int) (Runtime.getRuntime().maxMemory() / MB * 3 / 4);
+		long timeoutSeconds = 1800;
+		String language = "EN";
+		Path resources = Paths.get(".");
+		Set<Path> files = new HashSet<>();
+		List<Path> inputs = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (!arg.startsWith("-")) {
+					inputs.add(Paths.get(arg));
+				} else if (i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing value for " + arg);
+				} else if (arg.equals("-registry")) {
+					modelCheckerRegistry = createRegistry(args[++i]);
+				} else if (arg.equals("-format")) {
+					reportFormat = ReportFormat.valueOf(args[++i].toUpperCase(Locale.ROOT));
+				} else if (arg.equals("-output")) {
+					outputDirectory = Paths.get(args[++i]);
+				} else if (arg.equals("-workers")) {
+					workers = Integer.parseInt(args[++i]);
+				} else if (arg.equals("-memory")) {
+					memoryBudgetMb = Integer.parseInt(args[++i]);
+				} else if (arg.equals("-timeout")) {
+					timeoutSeconds = Long.parseLong(args[++i]);
+				} else if (arg.equals("-language")) {
+					language = args[++i];
+				} else if (arg.equals("-resources")) {
+					resources = Paths.get(args[++i]);
+				} else {
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			}
+			if (inputs.isEmpty()) {
+				throw new IllegalArgumentException("No files or directories given");
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("Usage: BatchValidator [-registry FULL|LIMITED|ILS] [-format JSON|XLSX|BCF] [-output <directory>] [-workers <n>] [-memory <MB>] [-timeout <s>] [-language <code>] [-resources <directory>] <file or directory>...");
+			System.exit(2);
+			return;
+		}
+
+		// Reports are written in the layout of the inputs, so files with the same name in different directories do not share a report
+		Map<Path, Path> ifcFiles = new LinkedHashMap<>();
+		for (Path input : inputs) {
+			for (Path file : findIfcFiles(input)) {
+				if (files.add(file.toAbsolutePath().normalize())) {
+					ifcFiles.put(file, Files.isDirectory(input) ? input.relativize(file) : file.getFileName());
+				}
+			}
+		}
+		if (outputDirectory != null) {
+			Files.createDirectories(outputDirectory);
+		}
+
+		BatchValidator batchValidator = new BatchValidator(modelCheckerRegistry, reportFormat, PluginResources.get(resources), language, TimeUnit.SECONDS.toMillis(timeoutSeconds), workers, memoryBudgetMb);
+		int failures;
+		try {
+			failures = batchValidator.validate(ifcFiles, outputDirectory);
+		} finally {
+			batchValidator.shutdown();
+		}
+		LOGGER.info("Validated " + (ifcFiles.size() - failures) + " of " + ifcFiles.size() + " files");
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
@@ -0,0 +1,121 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cooperative cancellation for checks. A token is cancelled when {@link #cancel()} is called, when its deadline has
+ * passed or when its parent is cancelled. Long running checks should poll {@link #throwIfCancelled()} regularly.
+ */
+public class CancellationToken {
+
+	public static final CancellationToken NONE = new CancellationToken(null, Long.MAX_VALUE);
+
+	private final CancellationToken parent;
+	private final long deadline;
+	private volatile boolean cancelled;
+	private volatile String reason;
+
+	private CancellationToken(CancellationToken parent, long deadline) {
+		this.parent = parent;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * @param timeoutMillis Budget in milliseconds, 0 or less for no budget
+	 */
+	public static CancellationToken create(long timeoutMillis) {
+		return new CancellationToken(null, deadline(timeoutMillis));
+	}
+
+	/**
+	 * Creates a token that is cancelled when this token is cancelled, or when its own budget has been used up
+	 */
+	public CancellationToken child(long timeoutMillis) {
+		return new CancellationToken(this, Math.min(deadline, deadline(timeoutMillis)));
+	}
+
+	private static long deadline(long timeoutMillis) {
+		if (timeoutMillis <= 0) {
+			return Long.MAX_VALUE;
+		}
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+	}
+
+	public void cancel() {
+		cancel(null);
+	}
+
+	/**
+	 * @param reason Why the work is cancelled, reported for the checks that could not finish, null for none
+	 */
+	public void cancel(String reason) {
+		if (this == NONE) {
+			throw new UnsupportedOperationException("The NONE token cannot be cancelled");
+		}
+		this.reason = reason;
+		cancelled = true;
+	}
+
+	/**
+	 * The reason given when this token or one of its parents was cancelled, null when there is none or the token was
+	 * cancelled because its budget has been used up
+	 */
+	public String getCancellationReason() {
+		if (reason != null) {
+			return reason;
+		}
+		return parent == null ? null : parent.getCancellationReason();
+	}
+
+	public boolean isCancelled() {
+		if (cancelled) {
+			return true;
+		}
+		if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+			cancelled = true;
+			return true;
+		}
+		if (parent != null && parent.isCancelled()) {
+			cancelled = true;
+			return true;
+		}
+		return false;
+	}
+
+	public void throwIfCancelled() throws CheckCancelledException {
+		if (isCancelled()) {
+			throw new CheckCancelledException();
+		}
+	}
+
+	public boolean hasDeadline() {
+		return deadline != Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return The remaining time in milliseconds, Long.MAX_VALUE when there is no deadline
+	 */
+	public long getRemainingMillis() {
+		if (deadline == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+	}
+}
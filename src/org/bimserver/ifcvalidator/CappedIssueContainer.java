@@ -0,0 +1,123 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.Type;
+
+/**
+ * Issue container of one check that keeps at most a fixed number of issues of each {@link Type}. Issues beyond that
+ * are only counted, {@link #addSummaries(String, String)} adds one issue per type with the total. Errors are also
+ * counted towards the {@link ErrorLimit} of the validation, if any.
+ */
+public class CappedIssueContainer extends IssueContainer {
+
+	/**
+	 * Stops a validation once its checks together have reported a number of errors, by cancelling its token
+	 */
+	public static class ErrorLimit {
+		private final int maxErrors;
+		private final CancellationToken cancellationToken;
+		private final AtomicInteger errors = new AtomicInteger();
+
+		public ErrorLimit(int maxErrors, CancellationToken cancellationToken) {
+			this.maxErrors = maxErrors;
+			this.cancellationToken = cancellationToken;
+		}
+
+		void recordError() {
+			if (errors.incrementAndGet() == maxErrors) {
+				cancellationToken.cancel("the validation stopped after " + maxErrors + " errors");
+			}
+		}
+
+		public boolean isReached() {
+			return errors.get() >= maxErrors;
+		}
+	}
+
+	private final int maxIssuesPerType;
+	private final ErrorLimit errorLimit;
+	private final Map<Type, Integer> counts = new EnumMap<>(Type.class);
+	private boolean summarized;
+
+	/**
+	 * @param maxIssuesPerType 0 for no limit
+	 * @param errorLimit Null for no limit
+	 */
+	public CappedIssueContainer(int maxIssuesPerType, ErrorLimit errorLimit) {
+		this.maxIssuesPerType = maxIssuesPerType;
+		this.errorLimit = errorLimit;
+	}
+
+	@Override
+	public synchronized void add(Issue issue) {
+		Type type = issue.getType();
+		if (summarized || type == null || issue instanceof IssueContainer) {
+			super.add(issue);
+			return;
+		}
+		int count = counts.merge(type, 1, Integer::sum);
+		if (type == Type.ERROR && errorLimit != null) {
+			errorLimit.recordError();
+		}
+		if (maxIssuesPerType <= 0 || count <= maxIssuesPerType) {
+			super.add(issue);
+		}
+	}
+
+	/**
+	 * Number of issues of the given type the check reported, including the ones that were left out
+	 */
+	public synchronized int getCount(Type type) {
+		Integer count = counts.get(type);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Adds one issue for every type of which issues were left out, with the total number. Called once the check is done,
+	 * later issues are added without limit.
+	 */
+	public synchronized void addSummaries(String originatingCheck, String author) {
+		if (summarized) {
+			return;
+		}
+		summarized = true;
+		addSummaryIssues(originatingCheck, author);
+	}
+
+	protected synchronized boolean isSummarized() {
+		return summarized;
+	}
+
+	/**
+	 * Adds the summary issues, issues added here are not counted or capped
+	 */
+	protected void addSummaryIssues(String originatingCheck, String author) {
+		for (Map.Entry<Type, Integer> entry : counts.entrySet()) {
+			if (maxIssuesPerType > 0 && entry.getValue() > maxIssuesPerType) {
+				builder().originatingCheck(originatingCheck).author(author).type(entry.getKey()).message(entry.getValue() + " issues of type " + entry.getKey() + " in total, only the first " + maxIssuesPerType + " are listed").add();
+			}
+		}
+	}
+}
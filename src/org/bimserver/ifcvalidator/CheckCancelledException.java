@@ -0,0 +1,31 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+/**
+ * Thrown from within a check when its {@link CancellationToken} has been cancelled. The issues a check added before
+ * this point are kept, the check itself is reported as {@link org.bimserver.validationreport.Type#CANNOT_CHECK}.
+ */
+public class CheckCancelledException extends RuntimeException {
+
+	private static final long serialVersionUID = 3405738204581395417L;
+
+	public CheckCancelledException() {
+		super("Check has been cancelled");
+	}
+}
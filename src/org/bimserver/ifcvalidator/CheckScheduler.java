@@ -0,0 +1,417 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.checks.ModelTraversal;
+import org.bimserver.ifcvalidator.checks.ModelVisitor;
+import org.bimserver.ifcvalidator.checks.VisitingModelCheck;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.bimserver.ifcvalidator.metrics.CheckMetrics;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the enabled checks of one validation concurrently on a bounded pool. A check only starts when all of its
+ * dependencies (see {@link ModelCheck#getDependencies()}) have finished. Every check writes to its own
+ * {@link IssueContainer}, so the caller can merge the results in registry order afterwards. Visiting checks without
+ * dependencies share one traversal of the model, after which their visitors are completed concurrently.
+ */
+public class CheckScheduler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(CheckScheduler.class);
+	private static final long ABANDON_GRACE_MILLIS = 10000;
+	private final ThreadPoolExecutor threadPoolExecutor;
+
+	public CheckScheduler(int nrThreads) {
+		this(ExecutionMode.PLATFORM, nrThreads);
+	}
+
+	/**
+	 * @param nrThreads Number of threads for {@link ExecutionMode#PLATFORM}, with {@link ExecutionMode#VIRTUAL} every check gets its own thread
+	 */
+	public CheckScheduler(ExecutionMode executionMode, int nrThreads) {
+		if (executionMode == ExecutionMode.VIRTUAL) {
+			threadPoolExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>(), executionMode.createThreadFactory("IfcValidator-check"));
+		} else {
+			threadPoolExecutor = new ThreadPoolExecutor(nrThreads, nrThreads, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), executionMode.createThreadFactory("IfcValidator-check"));
+			threadPoolExecutor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	public static class ScheduledCheck {
+		private final ModelCheck modelCheck;
+		private final long timeoutMillis;
+		private volatile IssueContainer issueContainer;
+		private volatile boolean complete = true;
+
+		/**
+		 * @param timeoutMillis Time budget of this check, 0 for no budget
+		 */
+		public ScheduledCheck(ModelCheck modelCheck, long timeoutMillis) {
+			this(modelCheck, timeoutMillis, new IssueContainer());
+		}
+
+		/**
+		 * @param issueContainer Container the check writes to, a {@link CappedIssueContainer} is summarized when the check is done
+		 */
+		public ScheduledCheck(ModelCheck modelCheck, long timeoutMillis, IssueContainer issueContainer) {
+			this.modelCheck = modelCheck;
+			this.timeoutMillis = timeoutMillis;
+			this.issueContainer = issueContainer;
+		}
+
+		public ModelCheck getModelCheck() {
+			return modelCheck;
+		}
+
+		public long getTimeoutMillis() {
+			return timeoutMillis;
+		}
+
+		public IssueContainer getIssueContainer() {
+			return issueContainer;
+		}
+
+		void setIssueContainer(IssueContainer issueContainer) {
+			this.issueContainer = issueContainer;
+		}
+
+		/**
+		 * Whether the check ran to completion, false when it was cancelled, abandoned or could not start. A
+		 * {@link Type#CANNOT_CHECK} issue in its container is not enough to tell, checks also use it as a verdict.
+		 */
+		public boolean isComplete() {
+			return complete;
+		}
+
+		void setIncomplete() {
+			complete = false;
+		}
+	}
+
+	/**
+	 * Runs the given checks. The budget of every check starts when the check starts, and is bounded by the budget of
+	 * the run (the cancellation token of the given {@link CheckerContext}). A check that is cancelled keeps the issues
+	 * it found so far, followed by a {@link Type#CANNOT_CHECK} issue. A check that does not respond to its token within
+	 * the grace period after the run budget has been used up is abandoned and only reported as {@link Type#CANNOT_CHECK}.
+	 */
+	public void run(IfcModelInterface model, List<ScheduledCheck> scheduledChecks, CheckerContext checkerContext) throws IssueException {
+		run(model, scheduledChecks, checkerContext, CompletableFuture.completedFuture(null));
+	}
+
+	/**
+	 * Like {@link #run(IfcModelInterface, List, CheckerContext)}, for a model of which the geometry is still being
+	 * loaded. Checks that read geometry (see {@link ModelCheck#requiresGeometry()}) do not start before the given
+	 * future has completed, the other checks start right away. When loading the geometry failed, the checks that read
+	 * it are reported as {@link Type#CANNOT_CHECK}. The footprints the checks read (see
+	 * {@link ModelCheck#getFootprintClasses()}) are computed once for all of them after the geometry has been loaded, in
+	 * a {@link FootprintStore} that is released at the end of the run.
+	 */
+	public void run(IfcModelInterface model, List<ScheduledCheck> scheduledChecks, CheckerContext checkerContext, CompletableFuture<Void> geometry) throws IssueException {
+		Set<EClass> footprintClasses = new HashSet<>();
+		for (ScheduledCheck scheduledCheck : scheduledChecks) {
+			footprintClasses.addAll(scheduledCheck.getModelCheck().getFootprintClasses());
+		}
+		if (footprintClasses.isEmpty()) {
+			run(model, scheduledChecks, checkerContext, geometry, CompletableFuture.completedFuture(null));
+			return;
+		}
+		FootprintStore footprintStore = new FootprintStore(model);
+		CheckerContext runContext = checkerContext.withFootprintStore(footprintStore);
+		// Not fatal when this fails or is cancelled, the checks then compute the footprints they need themselves
+		CompletableFuture<Void> footprints = geometry.thenRunAsync(() -> footprintStore.computeAll(footprintClasses, runContext.getWorkQueue(), runContext.getCancellationToken()), threadPoolExecutor).exceptionally(e -> null);
+		try {
+			run(model, scheduledChecks, runContext, geometry, footprints);
+		} finally {
+			footprintStore.release();
+		}
+	}
+
+	private void run(IfcModelInterface model, List<ScheduledCheck> scheduledChecks, CheckerContext checkerContext, CompletableFuture<Void> geometry, CompletableFuture<Void> footprints) throws IssueException {
+		Map<String, ScheduledCheck> byIdentifier = new LinkedHashMap<>();
+		for (ScheduledCheck scheduledCheck : scheduledChecks) {
+			byIdentifier.put(scheduledCheck.getModelCheck().getFullIdentifier(), scheduledCheck);
+		}
+
+		CancellationToken runToken = checkerContext.getCancellationToken();
+		Map<String, CompletableFuture<Void>> futures = new LinkedHashMap<>();
+
+		List<ScheduledCheck> fusedChecks = new ArrayList<>();
+		for (ScheduledCheck scheduledCheck : scheduledChecks) {
+			ModelCheck modelCheck = scheduledCheck.getModelCheck();
+			if (modelCheck instanceof VisitingModelCheck && modelCheck.getDependencies().isEmpty() && (!modelCheck.requiresGeometry() || isLoaded(geometry))) {
+				fusedChecks.add(scheduledCheck);
+			}
+		}
+		if (!fusedChecks.isEmpty()) {
+			CompletableFuture<Map<ScheduledCheck, ModelVisitor>> traversal = CompletableFuture.supplyAsync(() -> traverse(model, fusedChecks, checkerContext, runToken), threadPoolExecutor);
+			for (ScheduledCheck scheduledCheck : fusedChecks) {
+				CompletableFuture<Map<ScheduledCheck, ModelVisitor>> input = scheduledCheck.getModelCheck().getFootprintClasses().isEmpty() ? traversal : traversal.thenCombine(footprints, (modelVisitors, ignored) -> modelVisitors);
+				futures.put(scheduledCheck.getModelCheck().getFullIdentifier(), input.thenAcceptAsync(modelVisitors -> {
+					ModelVisitor modelVisitor = modelVisitors.get(scheduledCheck);
+					if (modelVisitor != null) {
+						runGuarded(model, scheduledCheck, checkerContext, () -> modelVisitor.done());
+					}
+				}, threadPoolExecutor));
+			}
+		}
+
+		for (ScheduledCheck scheduledCheck : sort(byIdentifier)) {
+			if (futures.containsKey(scheduledCheck.getModelCheck().getFullIdentifier())) {
+				continue;
+			}
+			List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+			for (String dependency : scheduledCheck.getModelCheck().getDependencies()) {
+				CompletableFuture<Void> future = futures.get(dependency);
+				if (future != null) {
+					dependencies.add(future);
+				}
+			}
+			boolean requiresGeometry = scheduledCheck.getModelCheck().requiresGeometry();
+			if (requiresGeometry) {
+				dependencies.add(geometry.exceptionally(e -> null));
+			}
+			if (!scheduledCheck.getModelCheck().getFootprintClasses().isEmpty()) {
+				dependencies.add(footprints);
+			}
+			CompletableFuture<Void> future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[dependencies.size()])).thenRunAsync(() -> {
+				if (requiresGeometry && !isLoaded(geometry)) {
+					scheduledCheck.setIncomplete();
+					addCannotCheck(scheduledCheck.getIssueContainer(), scheduledCheck.getModelCheck(), checkerContext, "Check not started, the geometry of the model could not be loaded");
+				} else {
+					runCheck(model, scheduledCheck, checkerContext, runToken);
+				}
+			}, threadPoolExecutor);
+			futures.put(scheduledCheck.getModelCheck().getFullIdentifier(), future);
+		}
+
+		// Wait for everything before reporting the first failure (in registry order), so no check is still writing to its container
+		Throwable firstFailure = null;
+		for (String identifier : byIdentifier.keySet()) {
+			CompletableFuture<Void> future = futures.get(identifier);
+			try {
+				if (runToken.hasDeadline()) {
+					future.get(runToken.getRemainingMillis() + ABANDON_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+				} else {
+					future.get();
+				}
+			} catch (TimeoutException e) {
+				ScheduledCheck scheduledCheck = byIdentifier.get(identifier);
+				LOGGER.warn("Abandoning check " + identifier + ", it did not respond to cancellation");
+				IssueContainer replacement = new IssueContainer();
+				addCannotCheck(replacement, scheduledCheck.getModelCheck(), checkerContext, "Check did not finish within the time budget of the validation, no results available");
+				scheduledCheck.issueContainer = replacement;
+				scheduledCheck.setIncomplete();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CheckCancelledException();
+			} catch (ExecutionException e) {
+				if (firstFailure == null) {
+					firstFailure = e.getCause();
+				}
+			}
+		}
+		if (firstFailure instanceof CompletionException && firstFailure.getCause() != null) {
+			firstFailure = firstFailure.getCause();
+		}
+		if (firstFailure instanceof IssueException) {
+			throw (IssueException) firstFailure;
+		} else if (firstFailure instanceof RuntimeException) {
+			throw (RuntimeException) firstFailure;
+		} else if (firstFailure instanceof Error) {
+			throw (Error) firstFailure;
+		} else if (firstFailure != null) {
+			throw new CompletionException(firstFailure);
+		}
+	}
+
+	private static boolean isLoaded(CompletableFuture<Void> geometry) {
+		return geometry.isDone() && !geometry.isCompletedExceptionally();
+	}
+
+	private void runCheck(IfcModelInterface model, ScheduledCheck scheduledCheck, CheckerContext checkerContext, CancellationToken runToken) {
+		if (runToken.isCancelled()) {
+			scheduledCheck.setIncomplete();
+			addCannotCheck(scheduledCheck.getIssueContainer(), scheduledCheck.getModelCheck(), checkerContext, notStartedMessage(runToken));
+			return;
+		}
+		CheckerContext checkContext = checkerContext.withCancellationToken(runToken.child(scheduledCheck.getTimeoutMillis()));
+		runGuarded(model, scheduledCheck, checkerContext, () -> scheduledCheck.getModelCheck().check(model, scheduledCheck.getIssueContainer(), checkContext));
+	}
+
+	/**
+	 * Creates the visitors of all fused checks and feeds them the model in one pass. The returned map only contains the
+	 * visitors that still have to be completed.
+	 */
+	private Map<ScheduledCheck, ModelVisitor> traverse(IfcModelInterface model, List<ScheduledCheck> fusedChecks, CheckerContext checkerContext, CancellationToken runToken) {
+		Map<ScheduledCheck, ModelVisitor> modelVisitors = new HashMap<>();
+		if (runToken.isCancelled()) {
+			for (ScheduledCheck scheduledCheck : fusedChecks) {
+				scheduledCheck.setIncomplete();
+				addCannotCheck(scheduledCheck.getIssueContainer(), scheduledCheck.getModelCheck(), checkerContext, notStartedMessage(runToken));
+			}
+			return modelVisitors;
+		}
+		ModelTraversal modelTraversal = new ModelTraversal();
+		try {
+			for (ScheduledCheck scheduledCheck : fusedChecks) {
+				VisitingModelCheck visitingModelCheck = (VisitingModelCheck) scheduledCheck.getModelCheck();
+				CancellationToken checkToken = runToken.child(scheduledCheck.getTimeoutMillis());
+				ModelVisitor modelVisitor = visitingModelCheck.createVisitor(model, scheduledCheck.getIssueContainer(), checkerContext.withCancellationToken(checkToken));
+				modelTraversal.add(visitingModelCheck.getInterests(), modelVisitor, checkToken);
+				modelVisitors.put(scheduledCheck, modelVisitor);
+			}
+			long start = System.nanoTime();
+			modelTraversal.traverse(model);
+			ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("ModelTraversal");
+			componentMetrics.recordLatency("traverse", System.nanoTime() - start);
+			componentMetrics.add("objects", model.size());
+			componentMetrics.add("visitors", fusedChecks.size());
+		} catch (IssueException e) {
+			throw new CompletionException(e);
+		}
+		for (ScheduledCheck scheduledCheck : fusedChecks) {
+			if (modelTraversal.isCancelled(modelVisitors.get(scheduledCheck))) {
+				LOGGER.info("Check " + scheduledCheck.getModelCheck().getFullIdentifier() + " cancelled");
+				addSummaries(scheduledCheck, checkerContext);
+				scheduledCheck.setIncomplete();
+				addCannotCheck(scheduledCheck.getIssueContainer(), scheduledCheck.getModelCheck(), checkerContext, notFinishedMessage(runToken));
+				modelVisitors.remove(scheduledCheck);
+				CheckMetrics checkMetrics = MetricsRegistry.get().getCheckMetrics(scheduledCheck.getModelCheck().getFullIdentifier());
+				checkMetrics.recordCancellation();
+				checkMetrics.recordIssues(scheduledCheck.getIssueContainer());
+			}
+		}
+		return modelVisitors;
+	}
+
+	private void runGuarded(IfcModelInterface model, ScheduledCheck scheduledCheck, CheckerContext checkerContext, CheckBody checkBody) {
+		CheckMetrics checkMetrics = MetricsRegistry.get().getCheckMetrics(scheduledCheck.getModelCheck().getFullIdentifier());
+		long start = System.nanoTime();
+		try {
+			checkBody.run();
+		} catch (CheckCancelledException e) {
+			LOGGER.info("Check " + scheduledCheck.getModelCheck().getFullIdentifier() + " cancelled");
+			checkMetrics.recordCancellation();
+			scheduledCheck.setIncomplete();
+			addCannotCheck(scheduledCheck.getIssueContainer(), scheduledCheck.getModelCheck(), checkerContext, notFinishedMessage(checkerContext.getCancellationToken()));
+		} catch (IssueException e) {
+			checkMetrics.recordException();
+			throw new CompletionException(e);
+		} catch (RuntimeException | Error e) {
+			checkMetrics.recordException();
+			throw e;
+		} finally {
+			addSummaries(scheduledCheck, checkerContext);
+			checkMetrics.record(System.nanoTime() - start, model == null ? 0 : model.size());
+			checkMetrics.recordIssues(scheduledCheck.getIssueContainer());
+		}
+	}
+
+	private interface CheckBody {
+		void run() throws IssueException;
+	}
+
+	private void addSummaries(ScheduledCheck scheduledCheck, CheckerContext checkerContext) {
+		if (scheduledCheck.getIssueContainer() instanceof CappedIssueContainer) {
+			((CappedIssueContainer) scheduledCheck.getIssueContainer()).addSummaries(scheduledCheck.getModelCheck().getClass().getSimpleName(), checkerContext.getAuthor());
+		}
+	}
+
+	private static String notStartedMessage(CancellationToken runToken) {
+		String reason = runToken.getCancellationReason();
+		return reason == null ? "Check not started, the time budget of the validation has been used up" : "Check not started, " + reason;
+	}
+
+	private static String notFinishedMessage(CancellationToken cancellationToken) {
+		String reason = cancellationToken.getCancellationReason();
+		return reason == null ? "Check did not finish within its time budget, results are incomplete" : "Check did not finish, " + reason + ", results are incomplete";
+	}
+
+	private void addCannotCheck(IssueContainer issueContainer, ModelCheck modelCheck, CheckerContext checkerContext, String message) {
+		issueContainer.builder().originatingCheck(modelCheck.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message(message).add();
+	}
+
+	private List<ScheduledCheck> sort(Map<String, ScheduledCheck> byIdentifier) {
+		List<ScheduledCheck> result = new ArrayList<>();
+		Set<String> done = new HashSet<>();
+		Set<String> visiting = new HashSet<>();
+		for (String identifier : byIdentifier.keySet()) {
+			visit(identifier, byIdentifier, done, visiting, result);
+		}
+		return result;
+	}
+
+	private void visit(String identifier, Map<String, ScheduledCheck> byIdentifier, Set<String> done, Set<String> visiting, List<ScheduledCheck> result) {
+		if (done.contains(identifier)) {
+			return;
+		}
+		if (!visiting.add(identifier)) {
+			throw new IllegalStateException("Cyclic dependency between checks involving " + identifier);
+		}
+		ScheduledCheck scheduledCheck = byIdentifier.get(identifier);
+		for (String dependency : scheduledCheck.getModelCheck().getDependencies()) {
+			if (byIdentifier.containsKey(dependency)) {
+				visit(dependency, byIdentifier, done, visiting, result);
+			}
+		}
+		visiting.remove(identifier);
+		done.add(identifier);
+		result.add(scheduledCheck);
+	}
+
+	/**
+	 * Whether all given checks ran to completion, see {@link ScheduledCheck#isComplete()}
+	 */
+	public static boolean isComplete(List<ScheduledCheck> scheduledChecks) {
+		for (ScheduledCheck scheduledCheck : scheduledChecks) {
+			if (!scheduledCheck.isComplete()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void shutdown() {
+		threadPoolExecutor.shutdown();
+	}
+}
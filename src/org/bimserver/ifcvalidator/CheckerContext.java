@@ -17,44 +17,94 @@ package org.bimserver.ifcvalidator;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.util.Properties;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
 
 public class CheckerContext {
-	private static final Logger LOGGER = LoggerFactory.getLogger(CheckerContext.class);
-	private Properties properties;
-	private String filename;
-	private Path rootPath;
+	private Translations translations;
+	private PluginResources pluginResources;
 	private String author;
+	private CancellationToken cancellationToken;
+	private WorkQueue workQueue;
+	private boolean summaryOnly;
+	private FootprintStore footprintStore;
+
+	public CheckerContext(Translations translations, PluginResources pluginResources, String author) {
+		this(translations, pluginResources, author, CancellationToken.NONE);
+	}
+
+	/**
+	 * Context of a new validation run, which gets its own queue on the shared {@link WorkScheduler}
+	 */
+	public CheckerContext(Translations translations, PluginResources pluginResources, String author, CancellationToken cancellationToken) {
+		this(translations, pluginResources, author, cancellationToken, WorkScheduler.get().createQueue(), false, null);
+	}
 
-	public CheckerContext(String filename, Properties properties, Path rootPath, String author) {
-		this.filename = filename;
-		this.properties = properties;
-		this.rootPath = rootPath;
+	private CheckerContext(Translations translations, PluginResources pluginResources, String author, CancellationToken cancellationToken, WorkQueue workQueue, boolean summaryOnly, FootprintStore footprintStore) {
+		this.translations = translations;
+		this.pluginResources = pluginResources;
 		this.author = author;
+		this.cancellationToken = cancellationToken;
+		this.workQueue = workQueue;
+		this.summaryOnly = summaryOnly;
+		this.footprintStore = footprintStore;
+	}
+
+	public CheckerContext withCancellationToken(CancellationToken cancellationToken) {
+		return new CheckerContext(translations, pluginResources, author, cancellationToken, workQueue, summaryOnly, footprintStore);
+	}
+
+	public CheckerContext withSummaryOnly(boolean summaryOnly) {
+		return new CheckerContext(translations, pluginResources, author, cancellationToken, workQueue, summaryOnly, footprintStore);
+	}
+
+	public CheckerContext withFootprintStore(FootprintStore footprintStore) {
+		return new CheckerContext(translations, pluginResources, author, cancellationToken, workQueue, summaryOnly, footprintStore);
 	}
 	
 	public String translate(String key) {
-		String value = (String) properties.get(key);
-		if (value == null) {
-			LOGGER.info("Missing translations for key " + key + " in " + filename);
-			return key;
-		}
-		return value;
+		return translations.translate(key);
 	}
 	
 	public InputStream getResource(String name) throws IOException {
-		Path resolve = rootPath.resolve("input").resolve(name);
-		return Files.newInputStream(resolve);
+		return new ByteArrayInputStream(pluginResources.getResource(name));
 	}
 
 	public String getAuthor() {
 		return author;
 	}
+
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+
+	/**
+	 * Queue for the parallel work of the checks of this validation run
+	 */
+	public WorkQueue getWorkQueue() {
+		return workQueue;
+	}
+
+	/**
+	 * Whether only a summary of the issues is reported, checks should then skip work that only serves the full report, like rendering images
+	 */
+	public boolean isSummaryOnly() {
+		return summaryOnly;
+	}
+
+	/**
+	 * The footprints of the products of the given model, shared with the other checks of this run. Outside of a run of
+	 * the {@link CheckScheduler} (or for another model) this is a new store, private to the caller.
+	 */
+	public FootprintStore getFootprintStore(IfcModelInterface model) {
+		if (footprintStore != null && footprintStore.getModel() == model) {
+			return footprintStore;
+		}
+		return new FootprintStore(model);
+	}
 }
\ No newline at end of file
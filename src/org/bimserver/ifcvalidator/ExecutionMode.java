@@ -0,0 +1,105 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The kind of threads validations run on. With {@link #VIRTUAL}, every check and every background load gets its own
+ * virtual thread, so a node can keep many validations open while they wait for dependencies, geometry or I/O. The CPU
+ * heavy work within checks always goes to the bounded {@link WorkScheduler}. Virtual threads are only available from
+ * Java 21 on, they are created through reflection so the plugin still runs on Java 8.
+ */
+public enum ExecutionMode {
+	/**
+	 * A bounded pool of platform threads
+	 */
+	PLATFORM,
+
+	/**
+	 * A virtual thread per task
+	 */
+	VIRTUAL;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutionMode.class);
+
+	/**
+	 * Reads the system property ifcvalidator.executionMode (default PLATFORM). Falls back to PLATFORM when VIRTUAL is
+	 * requested on a JVM without virtual threads.
+	 */
+	public static ExecutionMode fromSystemProperties() {
+		String value = System.getProperty("ifcvalidator.executionMode", PLATFORM.name());
+		ExecutionMode executionMode;
+		try {
+			executionMode = valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			LOGGER.warn("Unknown execution mode " + value + ", using " + PLATFORM);
+			return PLATFORM;
+		}
+		if (executionMode == VIRTUAL && !isVirtualThreadsAvailable()) {
+			LOGGER.warn("Virtual threads are not available on Java " + System.getProperty("java.version") + ", using " + PLATFORM);
+			return PLATFORM;
+		}
+		return executionMode;
+	}
+
+	/**
+	 * Whether virtual threads can be created on this JVM. This is probed by building a factory, on Java 19 and 20
+	 * Thread.ofVirtual() exists but throws without --enable-preview.
+	 */
+	public static boolean isVirtualThreadsAvailable() {
+		try {
+			createVirtualThreadFactory("probe");
+			return true;
+		} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a factory for daemon threads named after the given prefix. The factory of {@link #VIRTUAL} falls back to
+	 * platform threads when virtual threads cannot be created, see {@link #isVirtualThreadsAvailable()}.
+	 */
+	public ThreadFactory createThreadFactory(String name) {
+		if (this == VIRTUAL) {
+			try {
+				return createVirtualThreadFactory(name);
+			} catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+				LOGGER.warn("Virtual threads are not available on Java " + System.getProperty("java.version") + ", using " + PLATFORM, e);
+			}
+		}
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static ThreadFactory createVirtualThreadFactory(String name) throws ReflectiveOperationException {
+		// Thread.ofVirtual().name(name + "-", 1).factory()
+		Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+		Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+		builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+		return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+	}
+}
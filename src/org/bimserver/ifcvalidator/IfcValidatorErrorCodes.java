@@ -3,7 +3,7 @@ package org.bimserver.ifcvalidator;
 import org.bimserver.bimbots.BimBotErrorCode;
 
 public enum IfcValidatorErrorCodes implements BimBotErrorCode {
-	ISSUE_EXCEPTION(1), IO_EXCEPTION(2);
+	ISSUE_EXCEPTION(1), IO_EXCEPTION(2), INSUFFICIENT_MEMORY(3);
 
 	private int code;
 
@@ -0,0 +1,55 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bimserver.validationreport.ValidationMetaData;
+
+/**
+ * Validation metadata of an incremental run, records per check whether its issues were carried forward from the base revision or recomputed
+ */
+public class IncrementalValidationMetaData extends ValidationMetaData {
+	public enum CheckResultOrigin {
+		REUSED, RECOMPUTED
+	}
+
+	private final long baseRoid;
+	private final Map<String, CheckResultOrigin> checkResultOrigins = new LinkedHashMap<>();
+
+	/**
+	 * @param baseRoid Revision the reused issues were computed for, -1 when there is no previously validated revision
+	 */
+	public IncrementalValidationMetaData(long baseRoid) {
+		this.baseRoid = baseRoid;
+	}
+
+	public long getBaseRoid() {
+		return baseRoid;
+	}
+
+	public void setCheckResultOrigin(String fullIdentifier, CheckResultOrigin checkResultOrigin) {
+		checkResultOrigins.put(fullIdentifier, checkResultOrigin);
+	}
+
+	public Map<String, CheckResultOrigin> getCheckResultOrigins() {
+		return Collections.unmodifiableMap(checkResultOrigins);
+	}
+}
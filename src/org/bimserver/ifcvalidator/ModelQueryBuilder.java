@@ -0,0 +1,152 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bimserver.database.queries.om.Include;
+import org.bimserver.database.queries.om.Query;
+import org.bimserver.database.queries.om.QueryException;
+import org.bimserver.database.queries.om.QueryPart;
+import org.bimserver.emf.PackageMetaData;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+
+/**
+ * Builds the query that loads only the part of a model the given checks read, from their declared input classes (see
+ * {@link ModelCheck#getInputClasses()}) and references (see {@link ModelCheck#getInputReferences()}). Every input
+ * class that a check reads completely (see {@link ModelCheck#getCompleteInputClasses()}) or that is not reached through
+ * a reference of the same check becomes a query part, from which the references are followed with includes.
+ */
+public class ModelQueryBuilder {
+
+	/**
+	 * Whether one of the checks may read anything in the model
+	 */
+	public static boolean needsCompleteModel(Collection<ModelCheck> modelChecks) {
+		for (ModelCheck modelCheck : modelChecks) {
+			if (modelCheck.getInputClasses() == null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static boolean needsGeometry(Collection<ModelCheck> modelChecks) {
+		for (ModelCheck modelCheck : modelChecks) {
+			if (modelCheck.requiresGeometry()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The query, or null when the complete model is needed
+	 */
+	public static Query build(PackageMetaData packageMetaData, Collection<ModelCheck> modelChecks) throws QueryException {
+		if (needsCompleteModel(modelChecks)) {
+			return null;
+		}
+		// The report always refers to the IfcProject
+		Set<EClass> roots = new LinkedHashSet<>();
+		roots.add(packageMetaData.getEClass("IfcProject"));
+		Set<EReference> references = new LinkedHashSet<>();
+		for (ModelCheck modelCheck : modelChecks) {
+			roots.addAll(modelCheck.getCompleteInputClasses());
+			for (EClass inputClass : modelCheck.getInputClasses()) {
+				if (!isReachable(inputClass, modelCheck.getInputReferences())) {
+					roots.add(inputClass);
+				}
+			}
+			references.addAll(modelCheck.getInputReferences());
+		}
+
+		Query query = new Query("IfcValidator", packageMetaData);
+		for (EClass root : roots) {
+			QueryPart queryPart = query.createQueryPart();
+			queryPart.addType(root, true);
+			for (EReference reference : getReferences(root, references)) {
+				Include include = queryPart.createInclude();
+				addInclude(include, reference, references, new ArrayList<>());
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Builds the query for the second phase of a two-phase load, which only selects the products whose geometry the
+	 * given checks read (see {@link ModelCheck#getGeometryClasses()}). The model it loads is only used to take the
+	 * geometry from, the other data has already been loaded without geometry.
+	 * 
+	 * @return The query, or null when none of the checks reads geometry
+	 */
+	public static Query buildGeometryQuery(PackageMetaData packageMetaData, Collection<ModelCheck> modelChecks) throws QueryException {
+		Set<EClass> geometryClasses = new LinkedHashSet<>();
+		for (ModelCheck modelCheck : modelChecks) {
+			geometryClasses.addAll(modelCheck.getGeometryClasses());
+		}
+		if (geometryClasses.isEmpty()) {
+			return null;
+		}
+		Query query = new Query("IfcValidatorGeometry", packageMetaData);
+		for (EClass geometryClass : geometryClasses) {
+			query.createQueryPart().addType(geometryClass, true);
+		}
+		return query;
+	}
+
+	private static void addInclude(Include include, EReference reference, Set<EReference> references, List<EReference> path) throws QueryException {
+		include.addType(reference.getEContainingClass(), true);
+		include.addField(reference.getName());
+		path.add(reference);
+		for (EReference next : getReferences(reference.getEReferenceType(), references)) {
+			if (!path.contains(next)) {
+				addInclude(include.createInclude(), next, references, path);
+			}
+		}
+		path.remove(path.size() - 1);
+	}
+
+	/**
+	 * The references that can be followed from objects of the given class, including references of its subtypes
+	 */
+	private static List<EReference> getReferences(EClass eClass, Set<EReference> references) {
+		List<EReference> result = new ArrayList<>();
+		for (EReference reference : references) {
+			if (reference.getEContainingClass().isSuperTypeOf(eClass) || eClass.isSuperTypeOf(reference.getEContainingClass())) {
+				result.add(reference);
+			}
+		}
+		return result;
+	}
+
+	private static boolean isReachable(EClass eClass, Set<EReference> references) {
+		for (EReference reference : references) {
+			if (reference.getEReferenceType().isSuperTypeOf(eClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,102 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Translations and input resources of a plugin root path, shared by all plugins loaded from that path. Files are read
+ * once and read again when their modification time changes.
+ */
+public class PluginResources {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PluginResources.class);
+	private static final Map<Path, PluginResources> INSTANCES = new ConcurrentHashMap<>();
+	private final Path rootPath;
+	private final Map<Path, CachedFile<Translations>> translations = new ConcurrentHashMap<>();
+	private final Map<Path, CachedFile<byte[]>> resources = new ConcurrentHashMap<>();
+
+	private PluginResources(Path rootPath) {
+		this.rootPath = rootPath;
+	}
+
+	public static PluginResources get(Path rootPath) {
+		return INSTANCES.computeIfAbsent(rootPath.toAbsolutePath().normalize(), PluginResources::new);
+	}
+
+	public void preloadTranslations() {
+		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(rootPath, "*.properties")) {
+			for (Path path : directoryStream) {
+				getTranslations(path);
+			}
+		} catch (IOException e) {
+			LOGGER.error("", e);
+		}
+	}
+
+	public Translations getTranslations(String language) {
+		return getTranslations(rootPath.resolve(language.toLowerCase() + ".properties"));
+	}
+
+	private Translations getTranslations(Path path) {
+		try {
+			return translations.computeIfAbsent(path, p -> new CachedFile<>(p, Translations::load)).get();
+		} catch (IOException e) {
+			LOGGER.error("", e);
+			return new Translations(path.getFileName().toString(), Collections.<String, String>emptyMap());
+		}
+	}
+
+	public byte[] getResource(String name) throws IOException {
+		return resources.computeIfAbsent(rootPath.resolve("input").resolve(name), p -> new CachedFile<>(p, Files::readAllBytes)).get();
+	}
+
+	private interface Loader<T> {
+		T load(Path path) throws IOException;
+	}
+
+	private static class CachedFile<T> {
+		private final Path path;
+		private final Loader<T> loader;
+		private FileTime lastModified;
+		private T value;
+
+		public CachedFile(Path path, Loader<T> loader) {
+			this.path = path;
+			this.loader = loader;
+		}
+
+		public synchronized T get() throws IOException {
+			FileTime currentLastModified = Files.getLastModifiedTime(path);
+			if (value == null || !currentLastModified.equals(lastModified)) {
+				value = loader.load(path);
+				lastModified = currentLastModified;
+			}
+			return value;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+/**
+ * Content hash of a model per entity type, two fingerprints can be compared to find the types of which at least one
+ * object was added, removed or changed. Oids are not used, BIMserver renumbers the objects of every checked in file.
+ * Objects with a GlobalId are identified by it, so a change to such an object only affects the hash of its own type.
+ * Other objects are identified by their content, including the objects they reference. References to objects
+ * outside of the IFC schema, like the geometry BIMserver adds to products, are left out.
+ */
+public class RevisionFingerprint {
+	private final Map<EClass, Long> hashes;
+
+	private RevisionFingerprint(Map<EClass, Long> hashes) {
+		this.hashes = hashes;
+	}
+
+	public static RevisionFingerprint create(IfcModelInterface model) {
+		Hasher hasher = new Hasher();
+		Map<EClass, Long> hashes = new HashMap<>();
+		for (IdEObject object : model.getValues()) {
+			EClass eClass = object.eClass();
+			Long hash = hashes.get(eClass);
+			// Summing keeps the hash independent of the iteration order of the model
+			hashes.put(eClass, (hash == null ? 0 : hash) + mix(hasher.hash(object)));
+		}
+		return new RevisionFingerprint(hashes);
+	}
+
+	public Set<EClass> getChangedClasses(RevisionFingerprint previous) {
+		Set<EClass> changed = new HashSet<>();
+		for (Map.Entry<EClass, Long> entry : hashes.entrySet()) {
+			if (!entry.getValue().equals(previous.hashes.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (EClass eClass : previous.hashes.keySet()) {
+			if (!hashes.containsKey(eClass)) {
+				changed.add(eClass);
+			}
+		}
+		return Collections.unmodifiableSet(changed);
+	}
+
+	static String getGuid(IdEObject object) {
+		EStructuralFeature globalId = object.eClass().getEStructuralFeature("GlobalId");
+		return globalId == null ? null : (String) object.eGet(globalId);
+	}
+
+	/**
+	 * Hashes the objects of one model, the identities of objects without a GlobalId are computed once
+	 */
+	static class Hasher {
+		private static final long IN_PROGRESS = Long.MIN_VALUE;
+
+		private final Map<IdEObject, Long> identities = new IdentityHashMap<>();
+
+		/**
+		 * The hash of the object, its GlobalId and its attributes, with referenced objects by their identity
+		 */
+		long hash(IdEObject object) {
+			String guid = getGuid(object);
+			return hashFeatures(object, guid == null ? object.eClass().getName().hashCode() : guid.hashCode());
+		}
+
+		/**
+		 * The GlobalId of the object when it has one, otherwise its content. A cycle of objects without a GlobalId is
+		 * cut at the object where it was entered, so their identities may differ between revisions of which the
+		 * objects come in a different order, which only makes the checks that read them rerun.
+		 */
+		long identify(IdEObject object) {
+			String guid = getGuid(object);
+			if (guid != null) {
+				return guid.hashCode();
+			}
+			Long identity = identities.get(object);
+			if (identity != null) {
+				return identity == IN_PROGRESS ? object.eClass().getName().hashCode() : identity;
+			}
+			identities.put(object, IN_PROGRESS);
+			long hash = hash(object);
+			identities.put(object, hash);
+			return hash;
+		}
+
+		private long hashFeatures(IdEObject object, long hash) {
+			for (EStructuralFeature feature : object.eClass().getEAllStructuralFeatures()) {
+				if (feature instanceof EReference && !isIfc((EReference) feature, object.eClass())) {
+					continue;
+				}
+				Object value = object.eGet(feature);
+				if (feature.isMany()) {
+					for (Object item : (List<?>) value) {
+						hash = hash * 31 + hashValue(item);
+					}
+					hash = hash * 31 + ((List<?>) value).size();
+				} else {
+					hash = hash * 31 + hashValue(value);
+				}
+			}
+			return hash;
+		}
+
+		private long hashValue(Object value) {
+			if (value == null) {
+				return 0;
+			} else if (value instanceof IdEObject) {
+				return identify((IdEObject) value);
+			} else if (value.getClass().isArray()) {
+				return Arrays.deepHashCode(new Object[] { value });
+			}
+			// Enum literals do not have a stable hashCode, their string representation does
+			return String.valueOf(value).hashCode();
+		}
+
+		private static boolean isIfc(EReference reference, EClass eClass) {
+			EClass referenceType = reference.getEReferenceType();
+			return referenceType == null || referenceType.getEPackage() == eClass.getEPackage();
+		}
+	}
+
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb93fe53b4cb5L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
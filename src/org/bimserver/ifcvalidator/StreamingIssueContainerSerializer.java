@@ -0,0 +1,39 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.bimserver.validationreport.IssueContainerSerializer;
+import org.bimserver.validationreport.RootIssueContainer;
+
+/**
+ * Serializer that writes the report directly to a stream, the stream is not closed
+ */
+public interface StreamingIssueContainerSerializer extends IssueContainerSerializer {
+	void write(RootIssueContainer rootIssueContainer, OutputStream outputStream) throws IOException;
+
+	@Override
+	default byte[] getBytes(RootIssueContainer rootIssueContainer) throws IOException {
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		write(rootIssueContainer, byteArrayOutputStream);
+		return byteArrayOutputStream.toByteArray();
+	}
+}
@@ -0,0 +1,99 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.bimserver.ifcvalidator.IncrementalValidationMetaData.CheckResultOrigin;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.RootIssueContainer;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Writes the same JSON as {@link org.bimserver.validationreport.JsonValidationReport} while walking the issue tree, so
+ * at most the JSON of one issue is in memory at a time. The fields of a container itself are taken from an empty
+ * container of the same kind, the issues of the container are written in place of its empty issue array.
+ */
+public class StreamingJsonValidationReport implements StreamingIssueContainerSerializer {
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	@Override
+	public void write(RootIssueContainer rootIssueContainer, OutputStream outputStream) throws IOException {
+		try (JsonGenerator jsonGenerator = OBJECT_MAPPER.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+			jsonGenerator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			RootIssueContainer emptyRoot = new RootIssueContainer();
+			emptyRoot.setValidationMetaData(rootIssueContainer.getValidationMetaData());
+			ObjectNode rootNode = emptyRoot.toJson(OBJECT_MAPPER);
+			if (rootIssueContainer.getValidationMetaData() instanceof IncrementalValidationMetaData) {
+				addIncrementalValidation(rootNode, (IncrementalValidationMetaData) rootIssueContainer.getValidationMetaData());
+			}
+			writeContainer(jsonGenerator, rootNode, rootIssueContainer);
+		} catch (IssueException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @param containerNode The JSON of an empty container, its first empty array is where the issues go
+	 */
+	private void writeContainer(JsonGenerator jsonGenerator, ObjectNode containerNode, IssueContainer issueContainer) throws IOException, IssueException {
+		jsonGenerator.writeStartObject();
+		boolean issuesWritten = false;
+		Iterator<Map.Entry<String, JsonNode>> fields = containerNode.fields();
+		while (fields.hasNext()) {
+			Map.Entry<String, JsonNode> field = fields.next();
+			jsonGenerator.writeFieldName(field.getKey());
+			if (!issuesWritten && field.getValue().isArray() && field.getValue().size() == 0) {
+				issuesWritten = true;
+				jsonGenerator.writeStartArray();
+				for (Issue issue : issueContainer.list()) {
+					if (issue instanceof IssueContainer) {
+						writeContainer(jsonGenerator, new IssueContainer().toJson(OBJECT_MAPPER), (IssueContainer) issue);
+					} else {
+						OBJECT_MAPPER.writeTree(jsonGenerator, issue.toJson(OBJECT_MAPPER));
+					}
+				}
+				jsonGenerator.writeEndArray();
+			} else {
+				OBJECT_MAPPER.writeTree(jsonGenerator, field.getValue());
+			}
+		}
+		jsonGenerator.writeEndObject();
+		// Flushing per container keeps the buffer of the generator small
+		jsonGenerator.flush();
+	}
+
+	private void addIncrementalValidation(ObjectNode rootNode, IncrementalValidationMetaData incrementalValidationMetaData) {
+		ObjectNode incrementalNode = rootNode.putObject("incrementalValidation");
+		incrementalNode.put("baseRoid", incrementalValidationMetaData.getBaseRoid());
+		ObjectNode checksNode = incrementalNode.putObject("checks");
+		for (Map.Entry<String, CheckResultOrigin> entry : incrementalValidationMetaData.getCheckResultOrigins().entrySet()) {
+			checksNode.put(entry.getKey(), entry.getValue().name());
+		}
+	}
+}
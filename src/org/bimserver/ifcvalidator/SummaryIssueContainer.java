@@ -0,0 +1,99 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+import org.bimserver.utils.IfcUtils;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.Type;
+
+/**
+ * Issue container of one check for a summary report. Only the first issues of each {@link Type} are kept as examples,
+ * all issues are counted by type and by building storey, see {@link #addSummaries(String, String)}.
+ */
+public class SummaryIssueContainer extends CappedIssueContainer {
+	private final int examples;
+	private final Map<IfcBuildingStorey, Map<Type, Integer>> storeyCounts = new LinkedHashMap<>();
+
+	/**
+	 * @param examples Number of issues of each type that are kept, at least 1
+	 * @param errorLimit Null for no limit
+	 */
+	public SummaryIssueContainer(int examples, ErrorLimit errorLimit) {
+		super(Math.max(1, examples), errorLimit);
+		this.examples = Math.max(1, examples);
+	}
+
+	@Override
+	public synchronized void add(Issue issue) {
+		if (!isSummarized() && issue.getType() != null && !(issue instanceof IssueContainer)) {
+			IfcBuildingStorey ifcBuildingStorey = getBuildingStorey(issue);
+			if (ifcBuildingStorey != null) {
+				storeyCounts.computeIfAbsent(ifcBuildingStorey, k -> new EnumMap<>(Type.class)).merge(issue.getType(), 1, Integer::sum);
+			}
+		}
+		super.add(issue);
+	}
+
+	/**
+	 * Number of issues of the given type the check reported on the given building storey
+	 */
+	public synchronized int getCount(IfcBuildingStorey ifcBuildingStorey, Type type) {
+		Map<Type, Integer> counts = storeyCounts.get(ifcBuildingStorey);
+		Integer count = counts == null ? null : counts.get(type);
+		return count == null ? 0 : count;
+	}
+
+	@Override
+	protected void addSummaryIssues(String originatingCheck, String author) {
+		for (Type type : Type.values()) {
+			int count = getCount(type);
+			if (count > 0) {
+				builder().originatingCheck(originatingCheck).author(author).type(type).message(count + " issues of type " + type + " in total" + (count > examples ? ", only the first " + examples + " are listed" : "")).is(count).add();
+			}
+		}
+		for (Map.Entry<IfcBuildingStorey, Map<Type, Integer>> entry : storeyCounts.entrySet()) {
+			for (Map.Entry<Type, Integer> count : entry.getValue().entrySet()) {
+				builder().originatingCheck(originatingCheck).author(author).type(count.getKey()).object(entry.getKey()).buildingStorey(entry.getKey()).message(count.getValue() + " issues of type " + count.getKey() + " on building storey \"" + entry.getKey().getName() + "\"").is(count.getValue()).add();
+			}
+		}
+	}
+
+	/**
+	 * The building storey the issue was reported for, or the storey that contains the object of the issue
+	 */
+	private IfcBuildingStorey getBuildingStorey(Issue issue) {
+		if (issue.getBuildingStorey() != null) {
+			return issue.getBuildingStorey();
+		}
+		IdEObject object = issue.getObject();
+		if (object instanceof IfcBuildingStorey) {
+			return (IfcBuildingStorey) object;
+		} else if (object instanceof IfcProduct) {
+			return IfcUtils.getIfcBuildingStorey((IfcProduct) object);
+		}
+		return null;
+	}
+}
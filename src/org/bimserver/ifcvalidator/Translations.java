@@ -0,0 +1,107 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable translation table of one language file. Missing keys are logged once per key.
+ */
+public class Translations {
+	private static final Logger LOGGER = LoggerFactory.getLogger(Translations.class);
+	private final String filename;
+	private final Map<String, String> table;
+	private final String fingerprint;
+	private final Set<String> reportedMissingKeys = ConcurrentHashMap.newKeySet();
+
+	public Translations(String filename, Map<String, String> table) {
+		this.filename = filename;
+		this.table = Collections.unmodifiableMap(new HashMap<>(table));
+		this.fingerprint = createFingerprint(new TreeMap<>(table));
+	}
+
+	private static String createFingerprint(SortedMap<String, String> table) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			for (Map.Entry<String, String> entry : table.entrySet()) {
+				messageDigest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+				messageDigest.update((byte) 0);
+				messageDigest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+				messageDigest.update((byte) 0);
+			}
+			StringBuilder fingerprint = new StringBuilder();
+			for (byte b : messageDigest.digest()) {
+				fingerprint.append(String.format("%02x", b));
+			}
+			return fingerprint.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static Translations load(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream inputStream = Files.newInputStream(path)) {
+			properties.load(inputStream);
+		}
+		Map<String, String> table = new HashMap<>();
+		for (String key : properties.stringPropertyNames()) {
+			table.put(key, properties.getProperty(key));
+		}
+		return new Translations(path.getFileName().toString(), table);
+	}
+
+	public String translate(String key) {
+		String value = table.get(key);
+		if (value == null) {
+			if (reportedMissingKeys.add(key)) {
+				LOGGER.info("Missing translations for key " + key + " in " + filename);
+			}
+			return key;
+		}
+		return value;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	/**
+	 * Digest of the content of the table, changes when any translation changes
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+}
@@ -0,0 +1,267 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.checks.SampledModelCheck;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueBuilder;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * Remembers the last validated revision of every project, so the checks of which the input did not change can
+ * carry their issues forward to the next revision. Issues are kept detached from their model, so the models of
+ * earlier revisions can be garbage collected.
+ */
+public class ValidationHistory {
+	private static final int MAX_PROJECTS = 16;
+
+	private final Map<Long, ValidatedRevision> revisions = new LinkedHashMap<Long, ValidatedRevision>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, ValidatedRevision> eldest) {
+			return size() > MAX_PROJECTS;
+		}
+	};
+
+	public synchronized ValidatedRevision get(long poid) {
+		return revisions.get(poid);
+	}
+
+	public synchronized void put(long poid, ValidatedRevision validatedRevision) {
+		revisions.put(poid, validatedRevision);
+	}
+
+	public static class ValidatedRevision {
+		private final long roid;
+		private final String configuration;
+		private final RevisionFingerprint fingerprint;
+		private final Map<String, List<DetachedIssue>> issues = new HashMap<>();
+
+		/**
+		 * @param configuration The effective configuration of the validation, everything besides the model that determines the issues
+		 */
+		public ValidatedRevision(long roid, String configuration, RevisionFingerprint fingerprint, Map<String, IssueContainer> issueContainers) {
+			this.roid = roid;
+			this.configuration = configuration;
+			this.fingerprint = fingerprint;
+			for (Map.Entry<String, IssueContainer> entry : issueContainers.entrySet()) {
+				issues.put(entry.getKey(), DetachedIssue.detach(entry.getValue()));
+			}
+		}
+
+		public long getRoid() {
+			return roid;
+		}
+
+		/**
+		 * Recreates the issues of the given check for the given model, null when the check was not recorded. The
+		 * objects of the issues are looked up by GlobalId, or by content when they have none, oids change with every
+		 * check-in. For a reusable check the objects it reads did not change.
+		 */
+		public IssueContainer createIssueContainer(ModelCheck modelCheck, IfcModelInterface model) {
+			List<DetachedIssue> detachedIssues = issues.get(modelCheck.getFullIdentifier());
+			if (detachedIssues == null) {
+				return null;
+			}
+			ModelCheck originatingCheck = modelCheck instanceof SampledModelCheck ? ((SampledModelCheck) modelCheck).getModelCheck() : modelCheck;
+			return DetachedIssue.attach(detachedIssues, originatingCheck.getClass().getSimpleName(), new ObjectResolver(model));
+		}
+
+		/**
+		 * Returns the full identifiers of the given checks whose issues of this revision are still valid for a revision with the given fingerprint.
+		 * A check is rerun when one of its input classes changed, when one of its dependencies is rerun, or when it did not complete last time
+		 * (checks that did not complete are not recorded). Nothing is reused when the effective configuration changed, for
+		 * example from a sampled to a full validation.
+		 */
+		public Set<String> getReusableChecks(List<ScheduledCheck> scheduledChecks, RevisionFingerprint newFingerprint, String newConfiguration) {
+			if (configuration == null ? newConfiguration != null : !configuration.equals(newConfiguration)) {
+				return Collections.emptySet();
+			}
+			Set<EClass> changedClasses = newFingerprint.getChangedClasses(fingerprint);
+			Map<String, ModelCheck> modelChecks = new HashMap<>();
+			Set<String> reusable = new HashSet<>();
+			for (ScheduledCheck scheduledCheck : scheduledChecks) {
+				ModelCheck modelCheck = scheduledCheck.getModelCheck();
+				modelChecks.put(modelCheck.getFullIdentifier(), modelCheck);
+				if (issues.containsKey(modelCheck.getFullIdentifier()) && !isAffected(modelCheck.getInputClasses(), changedClasses)) {
+					reusable.add(modelCheck.getFullIdentifier());
+				}
+			}
+			boolean removed = true;
+			while (removed) {
+				removed = false;
+				for (String fullIdentifier : new HashSet<>(reusable)) {
+					for (String dependency : modelChecks.get(fullIdentifier).getDependencies()) {
+						if (modelChecks.containsKey(dependency) && !reusable.contains(dependency)) {
+							reusable.remove(fullIdentifier);
+							removed = true;
+							break;
+						}
+					}
+				}
+			}
+			return reusable;
+		}
+
+		private static boolean isAffected(Set<EClass> inputClasses, Set<EClass> changedClasses) {
+			if (inputClasses == null) {
+				return !changedClasses.isEmpty();
+			}
+			for (EClass changedClass : changedClasses) {
+				for (EClass inputClass : inputClasses) {
+					if (inputClass.isSuperTypeOf(changedClass)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A reference to an object that survives a check-in: its GlobalId, or its type and content when it has none
+	 */
+	private static class DetachedObject {
+		private final String guid;
+		private final EClass eClass;
+		private final long identity;
+
+		private DetachedObject(IdEObject object, RevisionFingerprint.Hasher hasher) {
+			guid = RevisionFingerprint.getGuid(object);
+			eClass = object.eClass();
+			identity = guid == null ? hasher.identify(object) : 0;
+		}
+	}
+
+	/**
+	 * Finds the objects of detached issues in a new model
+	 */
+	private static class ObjectResolver {
+		private final IfcModelInterface model;
+		private final RevisionFingerprint.Hasher hasher = new RevisionFingerprint.Hasher();
+		private final Map<EClass, Map<Long, IdEObject>> identities = new HashMap<>();
+
+		ObjectResolver(IfcModelInterface model) {
+			this.model = model;
+		}
+
+		IdEObject resolve(DetachedObject detachedObject) {
+			if (detachedObject == null) {
+				return null;
+			} else if (detachedObject.guid != null) {
+				return model.getByGuid(detachedObject.guid);
+			}
+			return identities.computeIfAbsent(detachedObject.eClass, eClass -> {
+				Map<Long, IdEObject> objects = new HashMap<>();
+				for (IdEObject object : model.getAll(eClass)) {
+					objects.putIfAbsent(hasher.identify(object), object);
+				}
+				return objects;
+			}).get(detachedObject.identity);
+		}
+	}
+
+	/**
+	 * The fields of an issue that are reported, with the object and building storey only referenced by GlobalId or content
+	 */
+	private static class DetachedIssue {
+		private final Type type;
+		private final String author;
+		private final String message;
+		private final Object is;
+		private final Object shouldBe;
+		private final DetachedObject object;
+		private final DetachedObject buildingStorey;
+		private final List<DetachedIssue> issues;
+
+		private DetachedIssue(Issue issue, RevisionFingerprint.Hasher hasher) {
+			type = issue.getType();
+			author = issue.getAuthor();
+			message = issue.getMessage();
+			is = detach(issue.getIs());
+			shouldBe = detach(issue.getShouldBe());
+			object = issue.getObject() == null ? null : new DetachedObject(issue.getObject(), hasher);
+			buildingStorey = issue.getBuildingStorey() == null ? null : new DetachedObject(issue.getBuildingStorey(), hasher);
+			issues = issue instanceof IssueContainer ? detach((IssueContainer) issue, hasher) : null;
+		}
+
+		static List<DetachedIssue> detach(IssueContainer issueContainer) {
+			return detach(issueContainer, new RevisionFingerprint.Hasher());
+		}
+
+		private static List<DetachedIssue> detach(IssueContainer issueContainer, RevisionFingerprint.Hasher hasher) {
+			List<DetachedIssue> detachedIssues = new ArrayList<>(issueContainer.list().size());
+			for (Issue issue : issueContainer.list()) {
+				detachedIssues.add(new DetachedIssue(issue, hasher));
+			}
+			return detachedIssues;
+		}
+
+		static IssueContainer attach(List<DetachedIssue> detachedIssues, String originatingCheck, ObjectResolver objectResolver) {
+			IssueContainer issueContainer = new IssueContainer();
+			for (DetachedIssue detachedIssue : detachedIssues) {
+				detachedIssue.addTo(issueContainer, originatingCheck, objectResolver);
+			}
+			return issueContainer;
+		}
+
+		private void addTo(IssueContainer issueContainer, String originatingCheck, ObjectResolver objectResolver) {
+			if (issues != null) {
+				issueContainer.add(attach(issues, originatingCheck, objectResolver));
+				return;
+			}
+			IssueBuilder issueBuilder = issueContainer.builder().originatingCheck(originatingCheck).author(author).type(type).message(message).is(is).shouldBe(shouldBe);
+			IdEObject resolvedObject = objectResolver.resolve(object);
+			if (resolvedObject != null) {
+				issueBuilder.object(resolvedObject);
+			}
+			IdEObject resolvedBuildingStorey = objectResolver.resolve(buildingStorey);
+			if (resolvedBuildingStorey instanceof IfcBuildingStorey) {
+				issueBuilder.buildingStorey((IfcBuildingStorey) resolvedBuildingStorey);
+			}
+			issueBuilder.add();
+		}
+
+		/**
+		 * Values that might reference the model are kept as their string representation
+		 */
+		private static Object detach(Object value) {
+			if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+				return value;
+			}
+			return String.valueOf(value);
+		}
+	}
+}
@@ -39,7 +39,6 @@ import org.bimserver.plugins.SchemaName;
  *****************************************************************************/
 
 import org.bimserver.validationreport.IssueContainerSerializer;
-import org.bimserver.validationreport.JsonValidationReport;
 
 public class ValidationReportIfcValidatorPlugin extends AbstractIfcValidatorPlugin implements BimBotsServiceInterface {
 
@@ -49,7 +48,7 @@ public class ValidationReportIfcValidatorPlugin extends AbstractIfcValidatorPlug
 
 	@Override
 	protected IssueContainerSerializer createIssueInterface(CheckerContext translator) {
-		return new JsonValidationReport();
+		return new StreamingJsonValidationReport();
 	}
 
 	@Override
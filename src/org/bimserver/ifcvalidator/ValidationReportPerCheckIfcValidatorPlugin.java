@@ -38,7 +38,6 @@ import org.bimserver.plugins.SchemaName;
  *****************************************************************************/
 
 import org.bimserver.validationreport.IssueContainerSerializer;
-import org.bimserver.validationreport.JsonValidationReport;
 
 public class ValidationReportPerCheckIfcValidatorPlugin extends AbstractIfcValidatorPlugin {
 
@@ -48,7 +47,7 @@ public class ValidationReportPerCheckIfcValidatorPlugin extends AbstractIfcValid
 
 	@Override
 	protected IssueContainerSerializer createIssueInterface(CheckerContext translator) {
-		return new JsonValidationReport();
+		return new StreamingJsonValidationReport();
 	}
 
 	@Override
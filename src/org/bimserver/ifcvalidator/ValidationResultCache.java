@@ -0,0 +1,221 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of serialized validation reports keyed by the content of the validated file and the effective configuration.
+ * Reports are kept in memory and on disk, both tiers are bounded in bytes and evict the least recently used report
+ * first. The disk tier is indexed again at startup, so cached reports survive a restart of the plugin.
+ */
+public class ValidationResultCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ValidationResultCache.class);
+	private static final String EXTENSION = ".report";
+	private static final String TEMP_EXTENSION = ".tmp";
+	// Younger temporary files may still be written by another cache on the same directory
+	private static final long STALE_TEMP_FILE_MILLIS = 60 * 60 * 1000;
+
+	private final long maxMemoryBytes;
+	private final long maxDiskBytes;
+	private final Path directory;
+	private final boolean diskEnabled;
+	private final Map<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Long> disk = new LinkedHashMap<>(16, 0.75f, true);
+	private long memoryBytes;
+	private long diskBytes;
+
+	/**
+	 * @param maxMemoryBytes Maximum size of the reports kept in memory, 0 disables the memory tier
+	 * @param maxDiskBytes Maximum size of the reports kept on disk, 0 disables the disk tier
+	 * @param directory Directory of the disk tier
+	 */
+	public ValidationResultCache(long maxMemoryBytes, long maxDiskBytes, Path directory) {
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.maxDiskBytes = maxDiskBytes;
+		this.directory = directory;
+		this.diskEnabled = maxDiskBytes > 0 && loadIndex();
+	}
+
+	/**
+	 * Creates a cache configured by the system properties ifcvalidator.cache.memoryBytes (default 64 MB),
+	 * ifcvalidator.cache.diskBytes (default 1 GB) and ifcvalidator.cache.directory (default a directory in java.io.tmpdir).
+	 */
+	public static ValidationResultCache fromSystemProperties(String name) {
+		long maxMemoryBytes = Long.getLong("ifcvalidator.cache.memoryBytes", 64L * 1024 * 1024);
+		long maxDiskBytes = Long.getLong("ifcvalidator.cache.diskBytes", 1024L * 1024 * 1024);
+		Path baseDirectory = Paths.get(System.getProperty("ifcvalidator.cache.directory", System.getProperty("java.io.tmpdir") + "/ifcvalidator-cache"));
+		return new ValidationResultCache(maxMemoryBytes, maxDiskBytes, baseDirectory.resolve(name));
+	}
+
+	public static String createKey(byte[] data, String configuration) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			messageDigest.update(data);
+			messageDigest.update((byte) 0);
+			messageDigest.update(configuration.getBytes(StandardCharsets.UTF_8));
+			StringBuilder key = new StringBuilder();
+			for (byte b : messageDigest.digest()) {
+				key.append(String.format("%02x", b));
+			}
+			return key.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public byte[] get(String key) {
+		synchronized (this) {
+			byte[] report = memory.get(key);
+			if (report != null) {
+				return report;
+			}
+			if (disk.get(key) == null) {
+				return null;
+			}
+		}
+		Path file = directory.resolve(key + EXTENSION);
+		try {
+			byte[] report = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			putInMemory(key, report);
+			return report;
+		} catch (NoSuchFileException e) {
+			// Evicted in the meantime
+			return null;
+		} catch (IOException e) {
+			LOGGER.warn("Could not read cached report " + file, e);
+			return null;
+		}
+	}
+
+	public void put(String key, byte[] report) {
+		putInMemory(key, report);
+		if (!diskEnabled || report.length > maxDiskBytes) {
+			return;
+		}
+		Path tempFile = null;
+		try {
+			tempFile = Files.createTempFile(directory, key, TEMP_EXTENSION);
+			Files.write(tempFile, report);
+			synchronized (this) {
+				Files.move(tempFile, directory.resolve(key + EXTENSION), StandardCopyOption.REPLACE_EXISTING);
+				tempFile = null;
+				Long previous = disk.put(key, (long) report.length);
+				diskBytes += report.length - (previous == null ? 0 : previous);
+				evictFromDisk();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not store report in " + directory, e);
+		} finally {
+			if (tempFile != null) {
+				deleteTempFile(tempFile);
+			}
+		}
+	}
+
+	private void deleteTempFile(Path tempFile) {
+		try {
+			Files.deleteIfExists(tempFile);
+		} catch (IOException e) {
+			LOGGER.warn("Could not delete " + tempFile, e);
+		}
+	}
+
+	private synchronized void putInMemory(String key, byte[] report) {
+		if (report.length > maxMemoryBytes) {
+			return;
+		}
+		byte[] previous = memory.put(key, report);
+		memoryBytes += report.length - (previous == null ? 0 : previous.length);
+		Iterator<byte[]> iterator = memory.values().iterator();
+		while (memoryBytes > maxMemoryBytes) {
+			memoryBytes -= iterator.next().length;
+			iterator.remove();
+		}
+	}
+
+	private void evictFromDisk() {
+		Iterator<Map.Entry<String, Long>> iterator = disk.entrySet().iterator();
+		while (diskBytes > maxDiskBytes) {
+			Map.Entry<String, Long> entry = iterator.next();
+			try {
+				Files.deleteIfExists(directory.resolve(entry.getKey() + EXTENSION));
+			} catch (IOException e) {
+				LOGGER.warn("Could not delete cached report " + entry.getKey(), e);
+			}
+			diskBytes -= entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	private synchronized boolean loadIndex() {
+		try {
+			Files.createDirectories(directory);
+			// Left behind by a process that stopped while storing a report
+			long staleBefore = System.currentTimeMillis() - STALE_TEMP_FILE_MILLIS;
+			try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*" + TEMP_EXTENSION)) {
+				for (Path file : directoryStream) {
+					if (Files.getLastModifiedTime(file).toMillis() < staleBefore) {
+						deleteTempFile(file);
+					}
+				}
+			}
+			List<Path> files = new ArrayList<>();
+			try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+				for (Path file : directoryStream) {
+					files.add(file);
+				}
+			}
+			Map<Path, FileTime> lastModified = new LinkedHashMap<>();
+			for (Path file : files) {
+				lastModified.put(file, Files.getLastModifiedTime(file));
+			}
+			files.sort((a, b) -> lastModified.get(a).compareTo(lastModified.get(b)));
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				long size = Files.size(file);
+				disk.put(fileName.substring(0, fileName.length() - EXTENSION.length()), size);
+				diskBytes += size;
+			}
+			evictFromDisk();
+			return true;
+		} catch (IOException e) {
+			LOGGER.warn("Could not use " + directory + " for cached reports, only caching in memory", e);
+			return false;
+		}
+	}
+}
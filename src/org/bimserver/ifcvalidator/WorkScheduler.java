@@ -0,0 +1,217 @@
+package org.bimserver.ifcvalidator;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.ifcvalidator.metrics.WorkSchedulerMXBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded pool of worker threads for the parallel work within checks, shared by all validations that run in this
+ * process. Every validation submits its work to its own {@link WorkQueue}. The workers take one task at a time from
+ * the queues that have work, in turn, so concurrent validations get an equal share of the threads regardless of how
+ * many tasks each of them submits.
+ */
+public class WorkScheduler implements WorkSchedulerMXBean {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(WorkScheduler.class);
+
+	private static class Holder {
+		private static final WorkScheduler INSTANCE = new WorkScheduler("IfcValidator-work", Runtime.getRuntime().availableProcessors());
+
+		static {
+			MetricsRegistry.get().registerWorkScheduler("IfcValidator", INSTANCE);
+		}
+	}
+
+	private final BlockingQueue<WorkQueue> readyQueues = new LinkedBlockingQueue<>();
+	private final Thread[] threads;
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicInteger busyThreads = new AtomicInteger();
+	private final LongAdder busyNanos = new LongAdder();
+	private final LongAdder completedTasks = new LongAdder();
+	private volatile long since = System.nanoTime();
+	private volatile boolean shutdown;
+
+	public WorkScheduler(String name, int nrThreads) {
+		threads = new Thread[nrThreads];
+		for (int i = 0; i < nrThreads; i++) {
+			threads[i] = new Thread(this::work, name + "-" + (i + 1));
+			threads[i].setDaemon(true);
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * The scheduler shared by all validations in this process, sized to the number of processors
+	 */
+	public static WorkScheduler get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Queue for the work of one validation
+	 */
+	public WorkQueue createQueue() {
+		return new WorkQueue();
+	}
+
+	public class WorkQueue implements Executor {
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private final AtomicBoolean ready = new AtomicBoolean();
+
+		private WorkQueue() {
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			if (shutdown) {
+				throw new IllegalStateException("Work scheduler has been shut down");
+			}
+			tasks.add(runnable);
+			queueDepth.incrementAndGet();
+			makeReady(this);
+		}
+
+		/**
+		 * Runs one waiting task of this queue on the calling thread, so a thread that waits for the work of its
+		 * validation can help instead of blocking
+		 * 
+		 * @return Whether a task was run
+		 */
+		public boolean runPending() {
+			Runnable runnable = poll();
+			if (runnable == null) {
+				return false;
+			}
+			runRunnable(runnable, false);
+			return true;
+		}
+
+		private Runnable poll() {
+			Runnable runnable = tasks.poll();
+			if (runnable != null) {
+				queueDepth.decrementAndGet();
+			}
+			return runnable;
+		}
+	}
+
+	private void makeReady(WorkQueue workQueue) {
+		if (!workQueue.tasks.isEmpty() && workQueue.ready.compareAndSet(false, true)) {
+			readyQueues.add(workQueue);
+		}
+	}
+
+	private void work() {
+		while (!shutdown) {
+			WorkQueue workQueue;
+			try {
+				workQueue = readyQueues.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			Runnable runnable = workQueue.poll();
+			// Back to the end of the line, so the other queues get their turn first
+			workQueue.ready.set(false);
+			makeReady(workQueue);
+			if (runnable != null) {
+				runRunnable(runnable, true);
+			}
+		}
+	}
+
+	/**
+	 * @param worker Whether the calling thread is one of the workers, only their time counts for the utilization
+	 */
+	private void runRunnable(Runnable runnable, boolean worker) {
+		if (worker) {
+			busyThreads.incrementAndGet();
+		}
+		long start = System.nanoTime();
+		try {
+			runnable.run();
+		} catch (RuntimeException | Error e) {
+			LOGGER.error("", e);
+		} finally {
+			if (worker) {
+				busyNanos.add(System.nanoTime() - start);
+				busyThreads.decrementAndGet();
+			}
+			completedTasks.increment();
+		}
+	}
+
+	public void shutdown() {
+		shutdown = true;
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+	}
+
+	@Override
+	public int getThreads() {
+		return threads.length;
+	}
+
+	@Override
+	public int getBusyThreads() {
+		return busyThreads.get();
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	@Override
+	public int getActiveQueues() {
+		return readyQueues.size();
+	}
+
+	@Override
+	public long getCompletedTasks() {
+		return completedTasks.sum();
+	}
+
+	@Override
+	public double getUtilization() {
+		long elapsed = System.nanoTime() - since;
+		if (elapsed <= 0) {
+			return 0;
+		}
+		return (double) busyNanos.sum() / ((double) elapsed * threads.length);
+	}
+
+	@Override
+	public void reset() {
+		busyNanos.reset();
+		completedTasks.reset();
+		since = System.nanoTime();
+	}
+}
@@ -17,10 +17,12 @@ package org.bimserver.ifcvalidator.checks;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
-import java.util.List;
+import java.util.Set;
 
+import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcAnnotation;
 import org.bimserver.models.ifc2x3tc1.IfcBuilding;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
@@ -29,32 +31,71 @@ import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.ifc2x3tc1.IfcSite;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueContainer;
-import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
-public class AllObjectsInBuildingStorey extends ModelCheck {
+public class AllObjectsInBuildingStorey extends VisitingModelCheck {
 
 	public AllObjectsInBuildingStorey() {
 		super("BUILDINGSTOREYS", "ALL_OBJECTS_IN_BUILDING_STOREY");
 	}
 
 	@Override
-	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
-		boolean ok = true;
-		List<IfcProduct> products = model.getAllWithSubTypes(IfcProduct.class);
-		for (IfcProduct ifcProduct : products) {
-			if (ifcProduct instanceof IfcSite || ifcProduct instanceof IfcBuilding || ifcProduct instanceof IfcOpeningElement || ifcProduct instanceof IfcAnnotation) {
-				continue;
-				// Skip
+	public Set<EClass> getInterests() {
+		return interests(Ifc2x3tc1Package.eINSTANCE.getIfcProduct());
+	}
+
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcProduct(), Ifc2x3tc1Package.eINSTANCE.getIfcRelContainedInSpatialStructure(), Ifc2x3tc1Package.eINSTANCE.getIfcSpatialStructureElement(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes());
+	}
+
+	/**
+	 * The storey of a product is found through its spatial containment or its decomposition
+	 */
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcElement_ContainedInStructure(), Ifc2x3tc1Package.eINSTANCE.getIfcRelContainedInSpatialStructure_RelatingStructure(), Ifc2x3tc1Package.eINSTANCE.getIfcObjectDefinition_Decomposes(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes_RelatingObject());
+	}
+
+	@Override
+	public boolean supportsSampling() {
+		return true;
+	}
+
+	@Override
+	public boolean isSampleTarget(IdEObject object) {
+		return !(object instanceof IfcSite || object instanceof IfcBuilding || object instanceof IfcOpeningElement || object instanceof IfcAnnotation);
+	}
+
+	@Override
+	public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+		return new ModelVisitor() {
+			private boolean ok = true;
+			private int nrProducts = 0;
+
+			@Override
+			public void visit(IdEObject object) {
+				IfcProduct ifcProduct = (IfcProduct) object;
+				nrProducts++;
+				if (!isSampleTarget(ifcProduct)) {
+					return;
+					// Skip
+				}
+				IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcProduct);
+				if (ifcBuildingStorey == null) {
+					issueContainer.builder().originatingCheck(AllObjectsInBuildingStorey.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcProduct).message("Object " + getObjectIdentifier(ifcProduct) + " must be linked to a building storey").add();
+					ok = false;
+				}
 			}
-			IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcProduct);
-			if (ifcBuildingStorey == null) {
-				issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcProduct).message("Object " + getObjectIdentifier(ifcProduct) + " must be linked to a building storey").add();
-				ok = false;
+
+			@Override
+			public void done() {
+				if (ok) {
+					issueContainer.builder().originatingCheck(AllObjectsInBuildingStorey.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).message(checkerContext.translate("ALL_OBJECTS_MUST_BE_LINKED_TO_A_BUILDING_STOREY")).is(checkerContext.translate("ALL_OBJECTS_LINKED_TO_BUILDING_STOREY")).shouldBe(checkerContext.translate("ALL_OBJECT_LINKED1") + " "+ nrProducts + " " + checkerContext.translate("ALL_OBJECTS_LINKED2")).add();
+				}
 			}
-		}
-		if (ok) {
-			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).message(checkerContext.translate("ALL_OBJECTS_MUST_BE_LINKED_TO_A_BUILDING_STOREY")).is(checkerContext.translate("ALL_OBJECTS_LINKED_TO_BUILDING_STOREY")).shouldBe(checkerContext.translate("ALL_OBJECT_LINKED1") + " "+ products.size() + " " + checkerContext.translate("ALL_OBJECTS_LINKED2")).add();
-		}
+		};
 	}
 }
\ No newline at end of file
@@ -18,13 +18,16 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.util.List;
+import java.util.Set;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
 
 public class AtLeastOneBuildingStorey extends ModelCheck {
 
@@ -32,6 +35,11 @@ public class AtLeastOneBuildingStorey extends ModelCheck {
 		super("BUILDING_STOREY", "AT_LEAST_ONE_BUILDING_STOREY");
 	}
 
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcBuildingStorey());
+	}
+
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
 		List<IfcBuildingStorey> buildingStories = model.getAll(IfcBuildingStorey.class);
@@ -18,24 +18,54 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
 import org.bimserver.models.geometry.GeometryInfo;
 import org.bimserver.models.geometry.Vector3f;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
 public class BuildingStoreyNamesAndZOrder extends ModelCheck {
 
 	public BuildingStoreyNamesAndZOrder() {
 		super("BUILDINGSTOREYS", "BUILDING_STOREY_NAMES_AND_Z_ORDER");
 	}
+
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcBuildingStorey(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes(), Ifc2x3tc1Package.eINSTANCE.getIfcRelContainedInSpatialStructure(), Ifc2x3tc1Package.eINSTANCE.getIfcProduct());
+	}
+
+	@Override
+	public Set<EClass> getCompleteInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcBuildingStorey());
+	}
+
+	/**
+	 * The products a storey is decomposed into or contains (see {@link IfcUtils#getDecomposition})
+	 */
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcObjectDefinition_IsDecomposedBy(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes_RelatedObjects(), Ifc2x3tc1Package.eINSTANCE.getIfcSpatialStructureElement_ContainsElements(), Ifc2x3tc1Package.eINSTANCE.getIfcRelContainedInSpatialStructure_RelatedElements());
+	}
+
+	/**
+	 * Storeys are decomposed into spaces, the bounds of which determine the elevation of a storey
+	 */
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+	}
 	
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
@@ -17,34 +17,45 @@ package org.bimserver.ifcvalidator.checks;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
-import java.awt.geom.Area;
 import java.awt.geom.Rectangle2D;
 import java.util.Map;
+import java.util.Set;
 
+import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.bimserver.models.ifc2x3tc1.Tristate;
-import org.bimserver.utils.IfcTools2D;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueContainer;
-import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
 
 /*
  * http://www.buildingsmart-tech.org/ifc/IFC2x3/TC1/html/psd/IfcProductExtension/Pset_SpaceParking.xml
  * 
  */
-public class CarparkAccessability extends ModelCheck {
+public class CarparkAccessability extends VisitingModelCheck {
 
 	private CarparkAccessibilityConfiguration conf;
-	private float scaleToMm;
 
 	public CarparkAccessability(CarparkAccessibilityConfiguration carparkAccessibilityConfiguration) {
 		super("ACCESSIBILITY", "CARPARKS");
 		this.conf = carparkAccessibilityConfiguration;
 	}
 
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+	}
+
+	@Override
+	public Set<EClass> getFootprintClasses() {
+		return getGeometryClasses();
+	}
+
 	private enum CarparkVoteType {
 		UNIDENTIFIED_SPACE,
 		UNIDENTIFIED_CARPARK,
@@ -121,79 +132,90 @@ public class CarparkAccessability extends ModelCheck {
 	}
 	
 	@Override
-	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
-		IfcTools2D ifcTools2D = new IfcTools2D();
-		scaleToMm = IfcUtils.getLengthUnitPrefix(model);
-		int regularSpaces = 0;
-		int handicappedSpaces = 0;
-		int unidentifiedCarparks = 0;
-		int unidentifiedSpaces = 0;
-		int totalCarparks = 0;
-		for (IfcSpace ifcSpace : model.getAll(IfcSpace.class)) {
-			if ((ifcSpace.getObjectType() != null && ifcSpace.getObjectType().equalsIgnoreCase("parking"))) {
-				totalCarparks++;
-				CarparkVote psetVote = checkPset(ifcSpace);
-				CarparkVote geometryVote = checkGeometry(ifcTools2D, ifcSpace);
-				if (psetVote.equals(geometryVote)) {
-					if (psetVote.carparkVoteType == CarparkVoteType.REGULAR_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).object(ifcSpace).message("Both pset and geometry agree that this is a regular carpark").add();
-						regularSpaces++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.HANDICAPPED_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).object(ifcSpace).message("Both pset and geometry agree that this is a handicapped carpark").add();
-						handicappedSpaces++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.NOT_A_CARPARK) {
-						// Both agree this is not a carpark, so do nothing
-					} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this carpark").add();
-						unidentifiedCarparks++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_SPACE) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this space").add();
-						unidentifiedSpaces++;
-					}
-				} else {
-					// Both checks do not agree
-					if (psetVote.carparkVoteType == CarparkVoteType.REGULAR_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).object(ifcSpace).message("This is a regular carpark according to " + psetVote.getType() + ", the geometry does not agree").add();
-//						regularSpaces++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.HANDICAPPED_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).object(ifcSpace).message("This is a handicapped carpark according to " + psetVote.getType() + ", the geometry does not agree").add();
-//						handicappedSpaces++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.NOT_A_CARPARK) {
-//					issueContainer.add(Type.SUCCESS, ifcSpace.eClass().getName(), ifcSpace.getGlobalId(), ifcSpace.getOid(), "This is not a carpark according to " + mostCertain.getType(), "", "");
-					} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_CARPARK) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("The nature of this carpark could not be identified semantically").add();
-						unidentifiedCarparks++;
-					} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_SPACE) {
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this space").add();
-						unidentifiedSpaces++;
+	public Set<EClass> getInterests() {
+		return interests(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+	}
+
+	@Override
+	public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+		FootprintStore footprints = checkerContext.getFootprintStore(model);
+		return new ModelVisitor() {
+			private int regularSpaces = 0;
+			private int handicappedSpaces = 0;
+			private int unidentifiedCarparks = 0;
+			private int unidentifiedSpaces = 0;
+			private int totalCarparks = 0;
+
+			@Override
+			public void visit(IdEObject object) {
+				IfcSpace ifcSpace = (IfcSpace) object;
+				if ((ifcSpace.getObjectType() != null && ifcSpace.getObjectType().equalsIgnoreCase("parking"))) {
+					totalCarparks++;
+					CarparkVote psetVote = checkPset(ifcSpace);
+					CarparkVote geometryVote = checkGeometry(footprints, ifcSpace);
+					if (psetVote.equals(geometryVote)) {
+						if (psetVote.carparkVoteType == CarparkVoteType.REGULAR_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).object(ifcSpace).message("Both pset and geometry agree that this is a regular carpark").add();
+							regularSpaces++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.HANDICAPPED_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).object(ifcSpace).message("Both pset and geometry agree that this is a handicapped carpark").add();
+							handicappedSpaces++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.NOT_A_CARPARK) {
+							// Both agree this is not a carpark, so do nothing
+						} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this carpark").add();
+							unidentifiedCarparks++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_SPACE) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this space").add();
+							unidentifiedSpaces++;
+						}
+					} else {
+						// Both checks do not agree
+						if (psetVote.carparkVoteType == CarparkVoteType.REGULAR_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).object(ifcSpace).message("This is a regular carpark according to " + psetVote.getType() + ", the geometry does not agree").add();
+//							regularSpaces++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.HANDICAPPED_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).object(ifcSpace).message("This is a handicapped carpark according to " + psetVote.getType() + ", the geometry does not agree").add();
+//							handicappedSpaces++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.NOT_A_CARPARK) {
+//						issueContainer.add(Type.SUCCESS, ifcSpace.eClass().getName(), ifcSpace.getGlobalId(), ifcSpace.getOid(), "This is not a carpark according to " + mostCertain.getType(), "", "");
+						} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_CARPARK) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("The nature of this carpark could not be identified semantically").add();
+							unidentifiedCarparks++;
+						} else if (psetVote.carparkVoteType == CarparkVoteType.UNIDENTIFIED_SPACE) {
+							issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcSpace).message("Both pset and geometry check did not lead to identifying the nature of this space").add();
+							unidentifiedSpaces++;
+						}
 					}
 				}
 			}
-		}
-		if (unidentifiedSpaces > 0) {
-//			issueContainer.add(Type.ERROR, "The amount of unidentified spaces is too high", "" + unidentifiedSpaces, "" + 0);
-			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of unidentified spaces is too high").is(unidentifiedSpaces).shouldBe(0).add();
-		}
-		if (unidentifiedCarparks > 0) {
-			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of unidentified carparks is too high").is(unidentifiedCarparks).shouldBe(0).add();
-//			issueContainer.add(Type.ERROR, "The amount of unidentified carparks is too high", "" + unidentifiedCarparks, "" + 0);
-		}
-		if (regularSpaces > handicappedSpaces * conf.getRatioHandicappedToRegularParking()) {
-			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of handicapped carparks should be higher").is(handicappedSpaces).shouldBe(Math.ceil((double)regularSpaces / conf.getRatioHandicappedToRegularParking())).add();
-//			issueContainer.add(Type.ERROR, "The amount of handicapped carparks should be higher", "" + handicappedSpaces, "" + (regularSpaces / conf.getRatioHandicappedToRegularParking()));
-		}
-		if (totalCarparks == 0) {
-			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message("No carparks found, not checking").is(0).shouldBe("not 0").add();
-//			issueContainer.add(Type.CANNOT_CHECK, "No carparks found, not checking", "0", "> 0");
-		}
-		ifcTools2D.dumpStatistics();
+
+			@Override
+			public void done() {
+				if (unidentifiedSpaces > 0) {
+//					issueContainer.add(Type.ERROR, "The amount of unidentified spaces is too high", "" + unidentifiedSpaces, "" + 0);
+					issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of unidentified spaces is too high").is(unidentifiedSpaces).shouldBe(0).add();
+				}
+				if (unidentifiedCarparks > 0) {
+					issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of unidentified carparks is too high").is(unidentifiedCarparks).shouldBe(0).add();
+//					issueContainer.add(Type.ERROR, "The amount of unidentified carparks is too high", "" + unidentifiedCarparks, "" + 0);
+				}
+				if (regularSpaces > handicappedSpaces * conf.getRatioHandicappedToRegularParking()) {
+					issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).message("The amount of handicapped carparks should be higher").is(handicappedSpaces).shouldBe(Math.ceil((double)regularSpaces / conf.getRatioHandicappedToRegularParking())).add();
+//					issueContainer.add(Type.ERROR, "The amount of handicapped carparks should be higher", "" + handicappedSpaces, "" + (regularSpaces / conf.getRatioHandicappedToRegularParking()));
+				}
+				if (totalCarparks == 0) {
+					issueContainer.builder().originatingCheck(CarparkAccessability.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message("No carparks found, not checking").is(0).shouldBe("not 0").add();
+//					issueContainer.add(Type.CANNOT_CHECK, "No carparks found, not checking", "0", "> 0");
+				}
+			}
+		};
 	}
 	
-	private CarparkVote checkGeometry(IfcTools2D ifcTools2D, IfcSpace ifcSpace) {
+	private CarparkVote checkGeometry(FootprintStore footprints, IfcSpace ifcSpace) {
 		CarparkVote carparkVote = new CarparkVote(CheckType.GEOMETRY);
 
-		Area area = ifcTools2D.get2D(ifcSpace, scaleToMm);
-		Rectangle2D bounds2d = area.getBounds2D();
+		Rectangle2D bounds2d = footprints.get(ifcSpace).getBounds2D();
 		
 		float xDim = (float) bounds2d.getWidth();
 		float yDim = (float) bounds2d.getHeight();
@@ -17,8 +17,11 @@ package org.bimserver.ifcvalidator.checks;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
+import java.util.Set;
+
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcProject;
 import org.bimserver.models.ifc2x3tc1.IfcSIPrefix;
 import org.bimserver.models.ifc2x3tc1.IfcSIUnit;
@@ -29,6 +32,8 @@ import org.bimserver.models.ifc2x3tc1.IfcUnitEnum;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
 public class CheckVolumeUnit extends ModelCheck {
 
@@ -36,6 +41,16 @@ public class CheckVolumeUnit extends ModelCheck {
 		super("UNITS", "VOLUME");
 	}
 
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcProject(), Ifc2x3tc1Package.eINSTANCE.getIfcUnitAssignment(), Ifc2x3tc1Package.eINSTANCE.getIfcSIUnit());
+	}
+
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcProject_UnitsInContext(), Ifc2x3tc1Package.eINSTANCE.getIfcUnitAssignment_Units());
+	}
+
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
 		for (IfcProject ifcProject : model.getAll(IfcProject.class)) {
@@ -17,31 +17,88 @@ package org.bimserver.ifcvalidator.checks;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckCancelledException;
+import org.bimserver.ifcvalidator.WorkScheduler;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+
+/**
+ * A batch of tasks submitted to the {@link WorkQueue} of a validation, {@link #await()} returns when all of them are
+ * done. While waiting, the calling thread runs waiting tasks of the same queue itself. When a task fails, the tasks
+ * that have not started yet are skipped and {@link #await()} rethrows the first failure. Waiting does not hold a monitor,
+ * so it does not pin the carrier of a virtual thread (see {@link org.bimserver.ifcvalidator.ExecutionMode}).
+ */
 public class Concurrent {
-	private ThreadPoolExecutor threadPoolExecutor;
+	private final WorkQueue workQueue;
+	private final CancellationToken cancellationToken;
+	private final AtomicInteger pending = new AtomicInteger();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private final Lock lock = new ReentrantLock();
+	private final Condition done = lock.newCondition();
 
-	public Concurrent(int capacity) {
-		if (capacity > 0) {
-			threadPoolExecutor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 1, TimeUnit.HOURS, new ArrayBlockingQueue<>(capacity));
-		}
+	public Concurrent() {
+		this(WorkScheduler.get().createQueue(), CancellationToken.NONE);
+	}
+
+	public Concurrent(WorkQueue workQueue, CancellationToken cancellationToken) {
+		this.workQueue = workQueue;
+		this.cancellationToken = cancellationToken;
 	}
 
 	public void run(Runnable runnable) {
-		threadPoolExecutor.submit(runnable);
+		pending.incrementAndGet();
+		workQueue.execute(() -> {
+			try {
+				// Tasks that have not started when the batch is cancelled or has failed are skipped
+				if (!cancellationToken.isCancelled() && failure.get() == null) {
+					runnable.run();
+				}
+			} catch (RuntimeException | Error e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				if (pending.decrementAndGet() == 0) {
+					lock.lock();
+					try {
+						done.signalAll();
+					} finally {
+						lock.unlock();
+					}
+				}
+			}
+		});
 	}
 	
-	public void await() {
-		if (threadPoolExecutor != null) {
-			threadPoolExecutor.shutdown();
-			try {
-				threadPoolExecutor.awaitTermination(1, TimeUnit.HOURS);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
+	public void await() throws CheckCancelledException {
+		while (pending.get() > 0) {
+			cancellationToken.throwIfCancelled();
+			if (!workQueue.runPending()) {
+				lock.lock();
+				try {
+					if (pending.get() > 0) {
+						done.await(100, TimeUnit.MILLISECONDS);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CheckCancelledException();
+				} finally {
+					lock.unlock();
+				}
 			}
 		}
+		Throwable throwable = failure.get();
+		if (throwable instanceof RuntimeException) {
+			throw (RuntimeException) throwable;
+		} else if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+		// Tasks that see the cancellation return early, so the batch can finish without being complete
+		cancellationToken.throwIfCancelled();
 	}
 }
\ No newline at end of file
@@ -17,11 +17,15 @@ package org.bimserver.ifcvalidator.checks;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
+import java.util.Set;
+
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.models.ifc2x3tc1.IfcSlab;
 import org.bimserver.validationreport.IssueContainer;
+import org.eclipse.emf.ecore.EClass;
 
 // TODO
 public class CorrectUseOfIfcEntitities extends ModelCheck {
@@ -32,6 +36,11 @@ public class CorrectUseOfIfcEntitities extends ModelCheck {
 		super("IFC_ENTITIES", "CORRECT_USE_OF_IFC_ENTITIES");
 	}
 
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSlab());
+	}
+
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
 		for (IfcSlab ifcSlab : model.getAll(IfcSlab.class)) {
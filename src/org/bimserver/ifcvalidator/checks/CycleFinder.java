@@ -21,6 +21,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.Stack;
 
+import org.bimserver.ifcvalidator.CancellationToken;
 import org.jgrapht.graph.Pseudograph;
 
 public class CycleFinder<V extends Comparable<V>, E> implements Runnable {
@@ -28,11 +29,17 @@ public class CycleFinder<V extends Comparable<V>, E> implements Runnable {
 	private Pseudograph<V, E> graph;
 	private V v;
 	private Set<Cycle<V>> cycles;
+	private CancellationToken cancellationToken;
 
 	public CycleFinder(Pseudograph<V, E> graph, V v, Set<Cycle<V>> cycles) {
+		this(graph, v, cycles, CancellationToken.NONE);
+	}
+
+	public CycleFinder(Pseudograph<V, E> graph, V v, Set<Cycle<V>> cycles, CancellationToken cancellationToken) {
 		this.graph = graph;
 		this.v = v;
 		this.cycles = cycles;
+		this.cancellationToken = cancellationToken;
 	}
 
 	@Override
@@ -41,6 +48,9 @@ public class CycleFinder<V extends Comparable<V>, E> implements Runnable {
 	}
 	
 	private void branchOut(V start, V current, E previousEdge, Set<V> done, Stack<V> path) {
+		if (cancellationToken.isCancelled()) {
+			return;
+		}
 		path.push(current);
 		done.add(current);
 		for (E e : graph.edgesOf(current)) {
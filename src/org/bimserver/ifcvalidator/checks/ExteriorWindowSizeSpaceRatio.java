@@ -18,9 +18,12 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /******************************************************************************
@@ -40,10 +43,15 @@ import java.util.Set;
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
 
+import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.bimserver.ifcvalidator.geometry.Region;
+import org.bimserver.ifcvalidator.geometry.SpatialIndex;
 import org.bimserver.models.geometry.GeometryInfo;
 import org.bimserver.models.geometry.Vector3f;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
 import org.bimserver.models.ifc2x3tc1.IfcElement;
 import org.bimserver.models.ifc2x3tc1.IfcFeatureElementSubtraction;
@@ -55,26 +63,71 @@ import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.bimserver.models.ifc2x3tc1.IfcWall;
 import org.bimserver.models.ifc2x3tc1.IfcWindow;
 import org.bimserver.models.ifc2x3tc1.Tristate;
-import org.bimserver.utils.IfcTools2D;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueContainer;
-import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
 
-public class ExteriorWindowSizeSpaceRatio extends ModelCheck {
+public class ExteriorWindowSizeSpaceRatio extends VisitingModelCheck {
 
 	private WindowSpaceRatioConfiguration conf;
 
 	public ExteriorWindowSizeSpaceRatio(WindowSpaceRatioConfiguration conf) {
 		super("GEOMETRY", "RATIOS");
 		this.conf = conf;
+	}
+
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSpace(), Ifc2x3tc1Package.eINSTANCE.getIfcWindow());
+	}
+
+	@Override
+	public Set<EClass> getFootprintClasses() {
+		return getGeometryClasses();
 	}
 
 	@Override
-	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
-		IfcTools2D ifcTools2D = new IfcTools2D();
-		List<IfcSpace> spaces = model.getAll(IfcSpace.class);
-		for (IfcSpace ifcSpace : model.getAll(IfcSpace.class)) {
+	public Set<EClass> getInterests() {
+		return interests(Ifc2x3tc1Package.eINSTANCE.getIfcSpace(), Ifc2x3tc1Package.eINSTANCE.getIfcWindow());
+	}
+
+	@Override
+	public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+		return new ModelVisitor() {
+			private final List<IfcSpace> spaces = new ArrayList<>();
+			private final List<IfcWindow> windows = new ArrayList<>();
+
+			@Override
+			public void visit(IdEObject object) {
+				if (object instanceof IfcSpace) {
+					spaces.add((IfcSpace) object);
+				} else {
+					windows.add((IfcWindow) object);
+				}
+			}
+
+			@Override
+			public void done() {
+				check(model, spaces, windows, issueContainer, checkerContext);
+			}
+		};
+	}
+
+	private void check(IfcModelInterface model, List<IfcSpace> spaces, List<IfcWindow> windows, IssueContainer issueContainer, CheckerContext checkerContext) {
+		FootprintStore footprints = checkerContext.getFootprintStore(model);
+		float lengthUnitPrefix = IfcUtils.getLengthUnitPrefix(model);
+		Map<IfcBuildingStorey, Map<IfcWindow, Rectangle2D>> storeyWindowBounds = new HashMap<>();
+		for (IfcWindow ifcWindow : windows) {
+			Region window2D = footprints.get(ifcWindow);
+			storeyWindowBounds.computeIfAbsent(IfcUtils.getIfcBuildingStorey(ifcWindow), k -> new HashMap<>()).put(ifcWindow, window2D == null ? null : window2D.getBounds2D());
+		}
+		Map<IfcBuildingStorey, SpatialIndex<IfcWindow>> windowIndexes = new HashMap<>();
+		for (Map.Entry<IfcBuildingStorey, Map<IfcWindow, Rectangle2D>> entry : storeyWindowBounds.entrySet()) {
+			windowIndexes.put(entry.getKey(), new SpatialIndex<>(entry.getValue()));
+		}
+		for (IfcSpace ifcSpace : spaces) {
+			checkerContext.getCancellationToken().throwIfCancelled();
 			if (ifcSpace.getObjectType() != null && ifcSpace.getObjectType().equalsIgnoreCase("parking")) {
 				continue;
 			}
@@ -82,9 +135,7 @@ public class ExteriorWindowSizeSpaceRatio extends ModelCheck {
 			double totalWindowArea = 0;
 			int nrWindowsUsed = 0;
 			
-			float lengthUnitPrefix = IfcUtils.getLengthUnitPrefix(model);
-			
-			Area space2D = ifcTools2D.get2D(ifcSpace, lengthUnitPrefix);
+			Region space2D = footprints.get(ifcSpace);
 			
 			// Commented out and written below because we don't want to upgrade BIMserver at this point
 			//IfcTools2D.enlargeSlightlyInPlace(space2D, 1.1f);
@@ -96,18 +147,19 @@ public class ExteriorWindowSizeSpaceRatio extends ModelCheck {
 			aLittleLarger.scale(1.1f, 1.1f);
 			aLittleLarger.translate(-centerX, -centerY);
 			
-			space2D.transform(aLittleLarger);
+			space2D = space2D.transform(aLittleLarger);
 			
 			Set<IfcWindow> semanticallyLinkedWalls = getSemanticallyLinkedWindows(ifcSpace);
-			Set<IfcWindow> geometricallyLinkedWalls = getGeometricallyLinkedWindows(ifcTools2D, model, ifcSpace, lengthUnitPrefix);
+			SpatialIndex<IfcWindow> windowIndex = windowIndexes.get(ifcBuildingStorey);
+			Set<IfcWindow> geometricallyLinkedWalls = windowIndex == null ? new HashSet<>() : getGeometricallyLinkedWindows(footprints, windowIndex, space2D);
 			
 			Set<IfcWindow> combined = new HashSet<>();
 			combined.addAll(semanticallyLinkedWalls);
 			combined.addAll(geometricallyLinkedWalls);
 			
 			for (IfcWindow ifcWindow : combined) {
-				Area window2D = ifcTools2D.get2D(ifcWindow, lengthUnitPrefix);
-				if (IfcTools2D.containsAllPoints(space2D, window2D)) {
+				Region window2D = footprints.get(ifcWindow);
+				if (window2D != null && space2D.containsAllPoints(window2D)) {
 					boolean windowExternal = IfcUtils.getBooleanProperty(ifcWindow, "IsExternal") == Tristate.TRUE;
 					if (windowExternal) {
 						double semanticArea = ifcWindow.getOverallWidth() * ifcWindow.getOverallHeight() * Math.pow(lengthUnitPrefix, 2);
@@ -138,7 +190,6 @@ public class ExteriorWindowSizeSpaceRatio extends ModelCheck {
 				}
 			}
 		}
-		ifcTools2D.dumpStatistics();
 		
 		if (spaces.isEmpty()) {
 			issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message("No IfcSpace objects found in model").add();
@@ -170,27 +221,16 @@ public class ExteriorWindowSizeSpaceRatio extends ModelCheck {
 		return result;
 	}
 	
-	public Set<IfcWindow> getGeometricallyLinkedWindows(IfcTools2D ifcTools2D, IfcModelInterface ifcModel, IfcSpace ifcSpace, float lengthUnitPrefix) {
+	/**
+	 * Returns the windows of which the footprint lies within the given, slightly enlarged, footprint of a space. Only the
+	 * windows of which the bounding box in the index overlaps the space are tested.
+	 */
+	public Set<IfcWindow> getGeometricallyLinkedWindows(FootprintStore footprints, SpatialIndex<IfcWindow> windowIndex, Region enlargedSpace2D) {
 		// TODO The windows returned here are not necessarily linked to _external_ walls, because no semantic checking is done on walls
 		
 		Set<IfcWindow> result = new HashSet<>();
-		Area space2D = ifcTools2D.get2D(ifcSpace, lengthUnitPrefix);
-		
-		// Commented out and written below because we don't want to upgrade BIMserver at this point
-		//IfcTools2D.enlargeSlightlyInPlace(space2D, 1.1f);
-		
-		AffineTransform aLittleLarger = new AffineTransform();
-		double centerX = space2D.getBounds2D().getCenterX();
-		double centerY = space2D.getBounds2D().getCenterY();
-		aLittleLarger.translate(centerX, centerY);
-		aLittleLarger.scale(1.1f, 1.1f);
-		aLittleLarger.translate(-centerX, -centerY);
-		
-		space2D.transform(aLittleLarger);
-		
-		for (IfcWindow ifcWindow : ifcModel.getAllWithSubTypes(IfcWindow.class)) {
-			Area window2D = ifcTools2D.get2D(ifcWindow, lengthUnitPrefix);
-			if (IfcTools2D.containsAllPoints(space2D, window2D)) {
+		for (IfcWindow ifcWindow : windowIndex.query(enlargedSpace2D.getBounds2D())) {
+			if (enlargedSpace2D.containsAllPoints(footprints.get(ifcWindow))) {
 				result.add(ifcWindow);
 			}
 		}
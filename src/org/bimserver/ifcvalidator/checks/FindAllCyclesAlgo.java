@@ -18,47 +18,58 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckCancelledException;
+import org.bimserver.ifcvalidator.WorkScheduler;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
 import org.jgrapht.graph.Pseudograph;
 
 public class FindAllCyclesAlgo<V extends Comparable<V>, E> {
 
 	private Pseudograph<V, E> graph;
-	private Set<Cycle<V>> cycles = new HashSet<>();
-	private ThreadPoolExecutor threadPoolExecutor;
+	private Set<Cycle<V>> cycles = ConcurrentHashMap.newKeySet();
+	private WorkQueue workQueue;
+	private CancellationToken cancellationToken;
 	
 	public FindAllCyclesAlgo(Pseudograph<V, E> graph) {
+		this(graph, WorkScheduler.get().createQueue(), CancellationToken.NONE);
+	}
+
+	/**
+	 * @param workQueue Queue of the validation this search is part of, the search from every vertex is a separate task
+	 */
+	public FindAllCyclesAlgo(Pseudograph<V, E> graph, WorkQueue workQueue, CancellationToken cancellationToken) {
 		this.graph = graph;
+		this.workQueue = workQueue;
+		this.cancellationToken = cancellationToken;
 	}
 	
-	public List<Set<V>> findAllCycles() {
+	public List<Set<V>> findAllCycles() throws CheckCancelledException {
 		if (graph.vertexSet().size() == 0) {
 			return new ArrayList<>();
 		}
 		List<Set<V>> result = new ArrayList<>();
 		
-		threadPoolExecutor = new ThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors(), 1, TimeUnit.HOURS, new ArrayBlockingQueue<>(graph.vertexSet().size()));
-		
-		System.out.println("Looking for cycles in " + graph.vertexSet().size() + " vertices" + ", " + graph.edgeSet().size() + " edges");
+		long start = System.nanoTime();
+		ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("FindAllCyclesAlgo");
+		componentMetrics.increment("runs");
+		componentMetrics.add("vertices", graph.vertexSet().size());
+		componentMetrics.add("edges", graph.edgeSet().size());
 		
+		Concurrent concurrent = new Concurrent(workQueue, cancellationToken);
 		for (V v : graph.vertexSet()) {
-			threadPoolExecutor.submit(new CycleFinder<>(graph, v, cycles));
-		}
-		
-		threadPoolExecutor.shutdown();
-		try {
-			threadPoolExecutor.awaitTermination(1, TimeUnit.HOURS);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			concurrent.run(new CycleFinder<>(graph, v, cycles, cancellationToken));
 		}
+		concurrent.await();
 		
-		System.out.println("Found " + cycles.size() + " cycles");
+		componentMetrics.add("cycles", cycles.size());
+		componentMetrics.recordLatency("findAllCycles", System.nanoTime() - start);
 		
 //		for (Cycle<V> cycle : cycles) {
 //			System.out.println(cycle);
@@ -1,9 +1,11 @@
 package org.bimserver.ifcvalidator.checks;
 
-import java.util.List;
+import java.util.Set;
 
+import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcDoor;
 import org.bimserver.models.ifc2x3tc1.IfcElement;
 import org.bimserver.models.ifc2x3tc1.IfcFeatureElementSubtraction;
@@ -14,34 +16,65 @@ import org.bimserver.models.ifc2x3tc1.IfcWall;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.Issue;
 import org.bimserver.validationreport.IssueContainer;
-import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
 import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
-public class FireratingDoorsSameAsWalls extends ModelCheck {
+public class FireratingDoorsSameAsWalls extends VisitingModelCheck {
 
 	public FireratingDoorsSameAsWalls() {
 		super("FIRERATING", "FIRERATING_DOORS_SAME_AS_WALLS");
 	}
 
 	@Override
-	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
-		List<IfcWall> walls = model.getAllWithSubTypes(IfcWall.class);
-		for (IfcWall ifcWall : walls) {
-			String wallFireRating = IfcUtils.getStringProperty(ifcWall, "FireRating");
-			EList<IfcRelVoidsElement> openings = ifcWall.getHasOpenings();
-			for (IfcRelVoidsElement ifcRelVoidsElement : openings) {
-				IfcFeatureElementSubtraction relatedOpeningElement = ifcRelVoidsElement.getRelatedOpeningElement();
-				if (relatedOpeningElement instanceof IfcOpeningElement) {
-					IfcOpeningElement ifcOpeningElement = (IfcOpeningElement)relatedOpeningElement;
-					EList<IfcRelFillsElement> hasFillings = ifcOpeningElement.getHasFillings();
-					for (IfcRelFillsElement ifcRelFillsElement : hasFillings) {
-						IfcElement relatedBuildingElement = ifcRelFillsElement.getRelatedBuildingElement();
-						check(issueContainer, ifcWall, relatedBuildingElement, wallFireRating, checkerContext);
+	public Set<EClass> getInterests() {
+		return interests(Ifc2x3tc1Package.eINSTANCE.getIfcWall());
+	}
+
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcWall(), Ifc2x3tc1Package.eINSTANCE.getIfcRelVoidsElement(), Ifc2x3tc1Package.eINSTANCE.getIfcFeatureElementSubtraction(), Ifc2x3tc1Package.eINSTANCE.getIfcRelFillsElement(), Ifc2x3tc1Package.eINSTANCE.getIfcElement(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDefines(), Ifc2x3tc1Package.eINSTANCE.getIfcPropertySetDefinition(), Ifc2x3tc1Package.eINSTANCE.getIfcProperty(), Ifc2x3tc1Package.eINSTANCE.getIfcValue());
+	}
+
+	/**
+	 * From a wall to the doors and windows filling its openings, and from both to the FireRating property
+	 */
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcElement_HasOpenings(), Ifc2x3tc1Package.eINSTANCE.getIfcRelVoidsElement_RelatedOpeningElement(), Ifc2x3tc1Package.eINSTANCE.getIfcOpeningElement_HasFillings(), Ifc2x3tc1Package.eINSTANCE.getIfcRelFillsElement_RelatedBuildingElement(), Ifc2x3tc1Package.eINSTANCE.getIfcObject_IsDefinedBy(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDefinesByProperties_RelatingPropertyDefinition(), Ifc2x3tc1Package.eINSTANCE.getIfcPropertySet_HasProperties(), Ifc2x3tc1Package.eINSTANCE.getIfcPropertySingleValue_NominalValue());
+	}
+
+	@Override
+	public boolean supportsSampling() {
+		return true;
+	}
+
+	@Override
+	public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+		return new ModelVisitor() {
+			@Override
+			public void visit(IdEObject object) {
+				IfcWall ifcWall = (IfcWall) object;
+				String wallFireRating = IfcUtils.getStringProperty(ifcWall, "FireRating");
+				EList<IfcRelVoidsElement> openings = ifcWall.getHasOpenings();
+				for (IfcRelVoidsElement ifcRelVoidsElement : openings) {
+					IfcFeatureElementSubtraction relatedOpeningElement = ifcRelVoidsElement.getRelatedOpeningElement();
+					if (relatedOpeningElement instanceof IfcOpeningElement) {
+						IfcOpeningElement ifcOpeningElement = (IfcOpeningElement)relatedOpeningElement;
+						EList<IfcRelFillsElement> hasFillings = ifcOpeningElement.getHasFillings();
+						for (IfcRelFillsElement ifcRelFillsElement : hasFillings) {
+							IfcElement relatedBuildingElement = ifcRelFillsElement.getRelatedBuildingElement();
+							check(issueContainer, ifcWall, relatedBuildingElement, wallFireRating, checkerContext);
+						}
 					}
 				}
 			}
-		}
+
+			@Override
+			public void done() {
+			}
+		};
 	}
 
 	private void check(IssueContainer issueContainer, IfcWall ifcWall, IfcElement ifcElement, String wallFireRating, CheckerContext checkerContext) {
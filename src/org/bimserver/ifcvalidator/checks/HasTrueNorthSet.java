@@ -18,9 +18,11 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.util.List;
+import java.util.Set;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcDirection;
 import org.bimserver.models.ifc2x3tc1.IfcGeometricRepresentationContext;
 import org.bimserver.models.ifc2x3tc1.IfcProject;
@@ -29,6 +31,8 @@ import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
 import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
 import com.google.common.base.Joiner;
 
@@ -38,6 +42,16 @@ public class HasTrueNorthSet extends ModelCheck {
 		super("REPRESENTATION", "HAS_TRUE_NORTH_SET");
 	}
 	
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcProject(), Ifc2x3tc1Package.eINSTANCE.getIfcRepresentationContext(), Ifc2x3tc1Package.eINSTANCE.getIfcDirection());
+	}
+
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcProject_RepresentationContexts(), Ifc2x3tc1Package.eINSTANCE.getIfcGeometricRepresentationContext_TrueNorth());
+	}
+
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
 		List<IfcProject> projects = model.getAll(IfcProject.class);
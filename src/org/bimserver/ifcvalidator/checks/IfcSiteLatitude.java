@@ -18,6 +18,7 @@ package org.bimserver.ifcvalidator.checks;
  *****************************************************************************/
 
 import java.util.List;
+import java.util.Set;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
@@ -26,6 +27,7 @@ import org.bimserver.models.ifc2x3tc1.IfcSite;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
 
 public class IfcSiteLatitude extends ModelCheck {
 
@@ -33,6 +35,11 @@ public class IfcSiteLatitude extends ModelCheck {
 		super("SITE", "LATITUDE");
 	}
 
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSite());
+	}
+
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
 		List<IfcSite> sites = model.getAll(IfcSite.class);
@@ -16,12 +16,19 @@ package org.bimserver.ifcvalidator.checks;
  * You should have received a copy of the GNU Affero General Public License
  * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
  *****************************************************************************/
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
 import org.bimserver.models.ifc2x3tc1.IfcProduct;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
 public abstract class ModelCheck {
 
@@ -42,6 +49,52 @@ public abstract class ModelCheck {
 	public String getGroupIdentifier() {
 		return groupIdentifier;
 	}
+
+	public String getFullIdentifier() {
+		return groupIdentifier + "___" + identifier;
+	}
+
+	/**
+	 * Full identifiers (see {@link #getFullIdentifier()}) of the checks that have to be finished before this check can start.
+	 * Dependencies on checks that are not enabled are ignored.
+	 */
+	public Set<String> getDependencies() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Entity types this check reads, including the types it navigates to. Used by incremental validation to decide
+	 * whether the issues of a previous revision are still valid. Returns null when the check may read anything in the
+	 * model, in which case it is rerun whenever the model changed.
+	 */
+	public Set<EClass> getInputClasses() {
+		return null;
+	}
+
+	/**
+	 * Input classes of which this check reads every object (for example through {@link IfcModelInterface#getAll(EClass)}),
+	 * as opposed to only the objects it reaches through its input references. These are always loaded completely.
+	 */
+	public Set<EClass> getCompleteInputClasses() {
+		return Collections.emptySet();
+	}
+
+	protected static Set<EClass> inputClasses(EClass... eClasses) {
+		return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eClasses)));
+	}
+
+	/**
+	 * References this check follows from objects of its input classes. Input classes that are only reached through
+	 * these references do not have to be loaded completely, so together with {@link #getInputClasses()} they determine
+	 * the part of the model this check needs.
+	 */
+	public Set<EReference> getInputReferences() {
+		return Collections.emptySet();
+	}
+
+	protected static Set<EReference> inputReferences(EReference... eReferences) {
+		return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eReferences)));
+	}
 	
 	public String getObjectIdentifier(IfcProduct ifcProduct) {
 		if (ifcProduct == null) {
@@ -62,6 +115,42 @@ public abstract class ModelCheck {
 		return translator.translate(identifier + "_DESCRIPTION");
 	}
 
+	/**
+	 * Default time budget of this check in seconds, 0 for no limit. Checks that can run for a long time should poll
+	 * {@link CheckerContext#getCancellationToken()}.
+	 */
+	public long getDefaultTimeout() {
+		return 0;
+	}
+
+	/**
+	 * Classes of the products whose geometry this check reads, including subtypes. Geometry is only available for
+	 * models that have been processed by a render engine, and is only loaded for products of these classes.
+	 */
+	public Set<EClass> getGeometryClasses() {
+		return Collections.emptySet();
+	}
+
+	public final boolean requiresGeometry() {
+		return !getGeometryClasses().isEmpty();
+	}
+
+	/**
+	 * Classes of the products whose 2D footprint this check reads through {@link CheckerContext#getFootprintStore}, a
+	 * subset of {@link #getGeometryClasses()}. The footprints of these products are computed before the check starts.
+	 */
+	public Set<EClass> getFootprintClasses() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Estimate in bytes of the memory this check needs for the given model on top of the model itself and its geometry,
+	 * used to decide whether a validation can be admitted (see {@link org.bimserver.ifcvalidator.AdmissionController})
+	 */
+	public long getEstimatedMemory(IfcModelInterface model) {
+		return 0;
+	}
+
 	public boolean isEnabledByDefault() {
 		return true;
 	}
@@ -0,0 +1,124 @@
+package org.bimserver.ifcvalidator.checks;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckCancelledException;
+import org.bimserver.validationreport.IssueException;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * Walks over all objects of a model once, and hands every object to the visitors that are interested in its class.
+ * Which visitors are interested in an EClass is only determined once per EClass.
+ */
+public class ModelTraversal {
+	private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+	private final List<Registration> registrations = new ArrayList<>();
+	private final Map<ModelVisitor, Registration> byVisitor = new IdentityHashMap<>();
+	private final Map<EClass, List<Registration>> dispatch = new HashMap<>();
+
+	private static class Registration {
+		private final Set<EClass> interests;
+		private final ModelVisitor modelVisitor;
+		private final CancellationToken cancellationToken;
+		private boolean cancelled;
+
+		public Registration(Set<EClass> interests, ModelVisitor modelVisitor, CancellationToken cancellationToken) {
+			this.interests = interests;
+			this.modelVisitor = modelVisitor;
+			this.cancellationToken = cancellationToken;
+		}
+
+		public boolean isInterestedIn(EClass eClass) {
+			for (EClass interest : interests) {
+				if (interest == eClass || interest.isSuperTypeOf(eClass)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	public void add(Set<EClass> interests, ModelVisitor modelVisitor, CancellationToken cancellationToken) {
+		Registration registration = new Registration(interests, modelVisitor, cancellationToken);
+		registrations.add(registration);
+		byVisitor.put(modelVisitor, registration);
+		dispatch.clear();
+	}
+
+	public void traverse(IfcModelInterface model) throws IssueException {
+		int counter = 0;
+		int active = registrations.size();
+		for (IdEObject object : model.getValues()) {
+			if (++counter == CANCELLATION_CHECK_INTERVAL) {
+				counter = 0;
+				for (Registration registration : registrations) {
+					if (!registration.cancelled && registration.cancellationToken.isCancelled()) {
+						registration.cancelled = true;
+						active--;
+					}
+				}
+				if (active == 0) {
+					return;
+				}
+			}
+			List<Registration> interested = dispatch.get(object.eClass());
+			if (interested == null) {
+				interested = new ArrayList<>();
+				for (Registration registration : registrations) {
+					if (registration.isInterestedIn(object.eClass())) {
+						interested.add(registration);
+					}
+				}
+				dispatch.put(object.eClass(), interested.isEmpty() ? Collections.<Registration>emptyList() : interested);
+			}
+			for (Registration registration : interested) {
+				if (!registration.cancelled) {
+					try {
+						registration.modelVisitor.visit(object);
+					} catch (CheckCancelledException e) {
+						registration.cancelled = true;
+						active--;
+					}
+				}
+			}
+		}
+		for (Registration registration : registrations) {
+			if (!registration.cancelled && registration.cancellationToken.isCancelled()) {
+				registration.cancelled = true;
+			}
+		}
+	}
+
+	/**
+	 * @return Whether the given visitor has been cancelled during the traversal, in which case it has not seen all objects
+	 */
+	public boolean isCancelled(ModelVisitor modelVisitor) {
+		return byVisitor.get(modelVisitor).cancelled;
+	}
+}
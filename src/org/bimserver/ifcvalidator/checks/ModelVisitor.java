@@ -0,0 +1,34 @@
+package org.bimserver.ifcvalidator.checks;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.validationreport.IssueException;
+
+public interface ModelVisitor {
+
+	/**
+	 * Called once for every object in the model that is an instance of one of the interests of the check
+	 */
+	void visit(IdEObject object) throws IssueException;
+
+	/**
+	 * Called after all objects have been visited
+	 */
+	void done() throws IssueException;
+}
@@ -0,0 +1,183 @@
+package org.bimserver.ifcvalidator.checks;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CappedIssueContainer;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+
+/**
+ * Runs a per-object check (see {@link VisitingModelCheck#supportsSampling()}) on a seeded random sample of the objects
+ * it is interested in and judges (see {@link VisitingModelCheck#isSampleTarget(IdEObject)}), and reports the estimated share of objects with errors with a 95% Wilson score interval. The
+ * issues of the sampled objects are reported as well, the summary of a full run is not.
+ */
+public class SampledModelCheck extends ModelCheck {
+
+	private static final double Z_95 = 1.959964;
+
+	private final VisitingModelCheck modelCheck;
+	private final int sampleSize;
+	private final long seed;
+
+	public SampledModelCheck(VisitingModelCheck modelCheck, int sampleSize, long seed) {
+		super(modelCheck.getGroupIdentifier(), modelCheck.getIdentifier());
+		this.modelCheck = modelCheck;
+		this.sampleSize = sampleSize;
+		this.seed = seed;
+	}
+
+	/**
+	 * The check that is run on the sample
+	 */
+	public VisitingModelCheck getModelCheck() {
+		return modelCheck;
+	}
+
+	@Override
+	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+		Set<IdEObject> population = new LinkedHashSet<>();
+		for (EClass eClass : modelCheck.getInterests()) {
+			for (IdEObject object : model.getAllWithSubTypes(eClass)) {
+				if (modelCheck.isSampleTarget(object)) {
+					population.add(object);
+				}
+			}
+		}
+		if (population.isEmpty()) {
+			issueContainer.builder().originatingCheck(modelCheck.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.CANNOT_CHECK).message("No objects to sample").add();
+			return;
+		}
+		List<IdEObject> objects = new ArrayList<>(population);
+		int[] sample = sample(objects.size(), sampleSize, new Random(seed));
+
+		CappedIssueContainer sampleContainer = new CappedIssueContainer(0, null);
+		ModelVisitor modelVisitor = modelCheck.createVisitor(model, sampleContainer, checkerContext);
+		CancellationToken cancellationToken = checkerContext.getCancellationToken();
+		int violations = 0;
+		try {
+			for (int index : sample) {
+				cancellationToken.throwIfCancelled();
+				int errors = sampleContainer.getCount(Type.ERROR);
+				modelVisitor.visit(objects.get(index));
+				if (sampleContainer.getCount(Type.ERROR) > errors) {
+					violations++;
+				}
+			}
+		} finally {
+			for (Issue issue : sampleContainer.list()) {
+				issueContainer.add(issue);
+			}
+		}
+
+		double[] interval = wilsonInterval(violations, sample.length);
+		String estimate = String.format("%.1f%%", 100.0 * violations / sample.length);
+		issueContainer.builder().originatingCheck(modelCheck.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(violations == 0 ? Type.SUCCESS : Type.ERROR)
+			.message(String.format("Estimated share of objects with errors %s (95%% confidence interval %.1f%% - %.1f%%), %d of %d sampled objects out of %d (seed %d)", estimate, 100 * interval[0], 100 * interval[1], violations, sample.length, objects.size(), seed))
+			.is(estimate).shouldBe("0%").add();
+	}
+
+	/**
+	 * Draws a sample of distinct indices in [0, populationSize) with Floyd's algorithm, in ascending order
+	 */
+	public static int[] sample(int populationSize, int sampleSize, Random random) {
+		int size = Math.min(populationSize, sampleSize);
+		Set<Integer> selected = new HashSet<>();
+		for (int i = populationSize - size; i < populationSize; i++) {
+			int candidate = random.nextInt(i + 1);
+			if (!selected.add(candidate)) {
+				selected.add(i);
+			}
+		}
+		int[] result = new int[size];
+		int i = 0;
+		for (int index : selected) {
+			result[i++] = index;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * 95% Wilson score interval of a proportion, which unlike the normal approximation stays within [0, 1] and behaves
+	 * well for proportions close to 0 or 1
+	 * 
+	 * @return The lower and upper bound
+	 */
+	public static double[] wilsonInterval(int successes, int trials) {
+		if (trials == 0) {
+			return new double[] { 0, 1 };
+		}
+		double p = (double) successes / trials;
+		double z2 = Z_95 * Z_95;
+		double denominator = 1 + z2 / trials;
+		double center = (p + z2 / (2 * trials)) / denominator;
+		double margin = Z_95 * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+		return new double[] { Math.max(0, center - margin), Math.min(1, center + margin) };
+	}
+
+	@Override
+	public Set<String> getDependencies() {
+		return modelCheck.getDependencies();
+	}
+
+	@Override
+	public Set<EClass> getInputClasses() {
+		return modelCheck.getInputClasses();
+	}
+
+	@Override
+	public Set<EClass> getCompleteInputClasses() {
+		return modelCheck.getCompleteInputClasses();
+	}
+
+	@Override
+	public Set<EReference> getInputReferences() {
+		return modelCheck.getInputReferences();
+	}
+
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return modelCheck.getGeometryClasses();
+	}
+
+	@Override
+	public long getEstimatedMemory(IfcModelInterface model) {
+		return modelCheck.getEstimatedMemory(model);
+	}
+
+	@Override
+	public long getDefaultTimeout() {
+		return modelCheck.getDefaultTimeout();
+	}
+}
@@ -23,8 +23,10 @@ import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
+import org.bimserver.emf.IdEObject;
 import org.bimserver.emf.IfcModelInterface;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
 import org.bimserver.models.ifc2x3tc1.IfcClassificationNotationSelect;
 import org.bimserver.models.ifc2x3tc1.IfcClassificationReference;
@@ -32,17 +34,41 @@ import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueBuilder;
 import org.bimserver.validationreport.IssueContainer;
-import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
 
-public class UnclassifiedSpaces extends ModelCheck {
+public class UnclassifiedSpaces extends VisitingModelCheck {
 
 	public UnclassifiedSpaces() {
 		super("UNCLASSIFIED_SPACES", "UNCLASSIFIED");
 	}
+
+	@Override
+	public Set<EClass> getInterests() {
+		return interests(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+	}
+
+	@Override
+	public Set<EClass> getInputClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSpace(), Ifc2x3tc1Package.eINSTANCE.getIfcRelAssociatesClassification(), Ifc2x3tc1Package.eINSTANCE.getIfcClassificationNotationSelect(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes(), Ifc2x3tc1Package.eINSTANCE.getIfcBuildingStorey());
+	}
+
+	/**
+	 * From a space to its classifications, and to the storey it decomposes for the report
+	 */
+	@Override
+	public Set<EReference> getInputReferences() {
+		return inputReferences(Ifc2x3tc1Package.eINSTANCE.getIfcObjectDefinition_HasAssociations(), Ifc2x3tc1Package.eINSTANCE.getIfcRelAssociatesClassification_RelatingClassification(), Ifc2x3tc1Package.eINSTANCE.getIfcObjectDefinition_Decomposes(), Ifc2x3tc1Package.eINSTANCE.getIfcRelDecomposes_RelatingObject());
+	}
+
+	@Override
+	public boolean supportsSampling() {
+		return true;
+	}
 	
 	@Override
-	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+	public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
 		Set<String> availableClasses = new HashSet<>();
 		try (Scanner scanner = new Scanner(checkerContext.getResource("omniclass13.txt"))) {
 			while (scanner.hasNext()) {
@@ -52,36 +78,46 @@ public class UnclassifiedSpaces extends ModelCheck {
 			e.printStackTrace();
 		}
 		
-		List<IfcSpace> spaces = model.getAll(IfcSpace.class);
-		for (IfcSpace ifcSpace : spaces) {
-			boolean valid = false;
-			List<IfcClassificationNotationSelect> classifications = IfcUtils.getClassifications(ifcSpace, model);
-			for (IfcClassificationNotationSelect ifcClassificationNotationSelect : classifications) {
-				if (ifcClassificationNotationSelect instanceof IfcClassificationReference) {
-					IfcClassificationReference ifcClassificationReference = (IfcClassificationReference)ifcClassificationNotationSelect;
-					if (availableClasses.contains(((IfcClassificationReference) ifcClassificationNotationSelect).getItemReference())) {
-						valid = true;
-						IssueBuilder builder = issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).object(ifcSpace).message("IfcSpace classified with valid OmniClass table 13").type(Type.SUCCESS).is(ifcClassificationReference.getItemReference()).shouldBe("OmniClass Table 13");
-						IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcSpace);
-						if (ifcBuildingStorey != null) {
-							builder.buildingStorey(ifcBuildingStorey);
+		return new ModelVisitor() {
+			private int nrSpaces = 0;
+
+			@Override
+			public void visit(IdEObject object) {
+				IfcSpace ifcSpace = (IfcSpace) object;
+				nrSpaces++;
+				boolean valid = false;
+				List<IfcClassificationNotationSelect> classifications = IfcUtils.getClassifications(ifcSpace, model);
+				for (IfcClassificationNotationSelect ifcClassificationNotationSelect : classifications) {
+					if (ifcClassificationNotationSelect instanceof IfcClassificationReference) {
+						IfcClassificationReference ifcClassificationReference = (IfcClassificationReference)ifcClassificationNotationSelect;
+						if (availableClasses.contains(((IfcClassificationReference) ifcClassificationNotationSelect).getItemReference())) {
+							valid = true;
+							IssueBuilder builder = issueContainer.builder().originatingCheck(UnclassifiedSpaces.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).object(ifcSpace).message("IfcSpace classified with valid OmniClass table 13").type(Type.SUCCESS).is(ifcClassificationReference.getItemReference()).shouldBe("OmniClass Table 13");
+							IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcSpace);
+							if (ifcBuildingStorey != null) {
+								builder.buildingStorey(ifcBuildingStorey);
+							}
+							builder.add();
 						}
-						builder.add();
 					}
 				}
+				if (!valid) {
+					IssueBuilder builder = issueContainer.builder().originatingCheck(UnclassifiedSpaces.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).object(ifcSpace).message("IfcSpace not classified with valid OmniClass table 13").type(Type.ERROR).shouldBe("OmniClass Table 13");
+					IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcSpace);
+					if (ifcBuildingStorey != null) {
+						builder.buildingStorey(ifcBuildingStorey);
+					}
+					builder.add();
+				}
 			}
-			if (!valid) {
-				IssueBuilder builder = issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).object(ifcSpace).message("IfcSpace not classified with valid OmniClass table 13").type(Type.ERROR).shouldBe("OmniClass Table 13");
-				IfcBuildingStorey ifcBuildingStorey = IfcUtils.getIfcBuildingStorey(ifcSpace);
-				if (ifcBuildingStorey != null) {
-					builder.buildingStorey(ifcBuildingStorey);
+
+			@Override
+			public void done() {
+				if (nrSpaces == 0) {
+					IssueBuilder builder = issueContainer.builder().originatingCheck(UnclassifiedSpaces.this.getClass().getSimpleName()).author(checkerContext.getAuthor()).message("No IfcSpace objects found").type(Type.CANNOT_CHECK);
+					builder.add();
 				}
-				builder.add();
 			}
-		}
-		if (spaces.isEmpty()) {
-			IssueBuilder builder = issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).message("No IfcSpace objects found").type(Type.CANNOT_CHECK);
-			builder.add();
-		}
+		};
 	}
 }
\ No newline at end of file
@@ -24,17 +24,27 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Path2D;
 import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
 import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.bimserver.ifcvalidator.geometry.GeometryEngine;
+import org.bimserver.ifcvalidator.geometry.Region;
+import org.bimserver.ifcvalidator.geometry.SpatialIndex;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingElement;
 import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
 import org.bimserver.models.ifc2x3tc1.IfcCurtainWall;
@@ -45,14 +55,16 @@ import org.bimserver.models.ifc2x3tc1.IfcRelConnectsPathElements;
 import org.bimserver.models.ifc2x3tc1.IfcSpace;
 import org.bimserver.models.ifc2x3tc1.IfcWall;
 import org.bimserver.utils.Display;
-import org.bimserver.utils.IfcTools2D;
 import org.bimserver.utils.IfcUtils;
 import org.bimserver.validationreport.IssueContainer;
 import org.bimserver.validationreport.IssueException;
 import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
 import org.jgrapht.EdgeFactory;
 import org.jgrapht.graph.ClassBasedEdgeFactory;
 import org.jgrapht.graph.Pseudograph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonGenerationException;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -61,13 +73,40 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class UnidentifiedSpaces extends ModelCheck {
-	private final Map<IfcProduct, Area> generatedAreas = new HashMap<>();
-	private float lengthUnitPrefix;
+	private static final Logger LOGGER = LoggerFactory.getLogger(UnidentifiedSpaces.class);
+	private static final long BYTES_PER_AREA = 4096;
+	private final ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("UnidentifiedSpaces");
 
 	public UnidentifiedSpaces() {
 		super("SPACES", "UNIDENTIFIED");
 	}
 
+	@Override
+	public Set<EClass> getGeometryClasses() {
+		return inputClasses(Ifc2x3tc1Package.eINSTANCE.getIfcSpace(), Ifc2x3tc1Package.eINSTANCE.getIfcWall(), Ifc2x3tc1Package.eINSTANCE.getIfcCurtainWall());
+	}
+
+	@Override
+	public Set<EClass> getFootprintClasses() {
+		return getGeometryClasses();
+	}
+
+	@Override
+	public long getDefaultTimeout() {
+		return 600;
+	}
+
+	/**
+	 * The 2000x2000 image of the storey that is being checked, an 800x600 image in the report per storey and the
+	 * footprints of all spaces and walls
+	 */
+	@Override
+	public long getEstimatedMemory(IfcModelInterface model) {
+		long storeys = model.getAll(IfcBuildingStorey.class).size();
+		long products = model.getAllWithSubTypes(IfcSpace.class).size() + model.getAllWithSubTypes(IfcWall.class).size() + model.getAllWithSubTypes(IfcCurtainWall.class).size();
+		return 2000L * 2000 * 4 + storeys * 800 * 600 * 4 + products * BYTES_PER_AREA;
+	}
+
 	private IfcBuildingElementWrapper getOrCreateWrapper(Map<IfcBuildingElement, IfcBuildingElementWrapper> mapping, IfcBuildingElement ifcBuildingElement) {
 		IfcBuildingElementWrapper ifcBuildingElementWrapper = mapping.get(ifcBuildingElement);
 		if (ifcBuildingElementWrapper == null) {
@@ -77,46 +116,40 @@ public class UnidentifiedSpaces extends ModelCheck {
 		return ifcBuildingElementWrapper;
 	}
 	
-	private Area getOrCreateArea(IfcProduct ifcProduct, IfcTools2D ifcTools2D, float multiplierMillimeters) {
-		Area area = generatedAreas.get(ifcProduct);
-		if (area == null) {
-			area = ifcTools2D.get2D(ifcProduct, multiplierMillimeters);
-			generatedAreas.put(ifcProduct, area);
-		}
-		if (area != null) {
-			return new Area(area);
-		}
-		return null;
-	}
-	
 	@Override
 	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
 		boolean debug = false;
 		boolean removeAllWalls = true;
-		lengthUnitPrefix = IfcUtils.getLengthUnitPrefix(model);
 
-		IfcTools2D ifcTools2D = new IfcTools2D();
+		FootprintStore footprints = checkerContext.getFootprintStore(model);
+		GeometryEngine geometryEngine = footprints.getGeometryEngine();
 		
-		System.out.println(model.getAll(IfcRelConnectsPathElements.class).size() + " IfcRelConnectsPathElements found");
+		int nrRelConnectsPathElements = model.getAll(IfcRelConnectsPathElements.class).size();
+		componentMetrics.add("relConnectsPathElements", nrRelConnectsPathElements);
+		LOGGER.debug(nrRelConnectsPathElements + " IfcRelConnectsPathElements found");
 
+		CancellationToken cancellationToken = checkerContext.getCancellationToken();
+		boolean renderImages = !checkerContext.isSummaryOnly();
 		for (IfcBuildingStorey ifcBuildingStorey : model.getAll(IfcBuildingStorey.class)) {
-			BufferedImage image = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_ARGB);
-			Graphics2D graphics = (Graphics2D) image.getGraphics();
-			
-			AffineTransform flip = AffineTransform.getScaleInstance(-1, 1);
-			flip.translate(-image.getWidth(), 0);
-			graphics.transform(flip);
+			cancellationToken.throwIfCancelled();
+			BufferedImage image = null;
+			Graphics2D graphics = null;
+			if (renderImages) {
+				image = new BufferedImage(2000, 2000, BufferedImage.TYPE_INT_ARGB);
+				graphics = (Graphics2D) image.getGraphics();
+				
+				AffineTransform flip = AffineTransform.getScaleInstance(-1, 1);
+				flip.translate(-image.getWidth(), 0);
+				graphics.transform(flip);
 
-			graphics.setColor(Color.BLACK);
-			graphics.fillRect(0, 0, 2000, 2000);
+				graphics.setColor(Color.BLACK);
+				graphics.fillRect(0, 0, 2000, 2000);
+			}
 			
-			Area totalArea = new Area();
+			List<Region> spaceRegions = new ArrayList<>();
 			for (IfcProduct ifcProduct : IfcUtils.getDecomposition(ifcBuildingStorey)) {
 				if (ifcProduct instanceof IfcSpace) {
-					Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						totalArea.add(area);
-					}
+					spaceRegions.add(footprints.get(ifcProduct));
 				}
 			}
 			EdgeFactory<IfcBuildingElementWrapper, IfcRelConnectsPathElements> factory = new ClassBasedEdgeFactory<>(IfcRelConnectsPathElements.class);
@@ -124,16 +157,17 @@ public class UnidentifiedSpaces extends ModelCheck {
 
 			Map<IfcBuildingElement, IfcBuildingElementWrapper> mapping = new HashMap<>();
 			
+			List<Region> wallRegions = new ArrayList<>();
 			for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
 				if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
 					IfcBuildingElement ifcBuildingElement = (IfcBuildingElement)ifcProduct;
 					graph.addVertex(getOrCreateWrapper(mapping, ifcBuildingElement));
-					Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						totalArea.add(area);
-					}
+					wallRegions.add(footprints.get(ifcProduct));
 				}
 			}
+			List<Region> spaceAndWallRegions = new ArrayList<>(spaceRegions);
+			spaceAndWallRegions.addAll(wallRegions);
+			Region totalRegion = geometryEngine.unionAll(spaceAndWallRegions, checkerContext.getWorkQueue(), cancellationToken);
 			
 			for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
 				if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
@@ -150,7 +184,7 @@ public class UnidentifiedSpaces extends ModelCheck {
 								graph.addVertex(wall2);
 							}
 							if (!graph.addEdge(wall1, wall2, ifcRelConnectsPathElements)) {
-								System.out.println("Redundant edge not added");
+								componentMetrics.increment("redundantEdges");
 							}
 						}
 					}
@@ -170,33 +204,45 @@ public class UnidentifiedSpaces extends ModelCheck {
 				}
 			}
 			
-			FindAllCyclesAlgo<IfcBuildingElementWrapper, IfcRelConnectsPathElements> algorighm = new FindAllCyclesAlgo<>(graph);
+			FindAllCyclesAlgo<IfcBuildingElementWrapper, IfcRelConnectsPathElements> algorighm = new FindAllCyclesAlgo<>(graph, checkerContext.getWorkQueue(), cancellationToken);
 			List<Set<IfcBuildingElementWrapper>> findSimpleCycles = algorighm.findAllCycles();
 			
-			double scaleX = 1600 / totalArea.getBounds().getWidth();
-			double scaleY = 1600 / totalArea.getBounds().getHeight();
+			double scaleX = 1600 / totalRegion.getBounds2D().getWidth();
+			double scaleY = 1600 / totalRegion.getBounds2D().getHeight();
 			double scale = Math.min(scaleX, scaleY);
 			
 			AffineTransform affineTransform = new AffineTransform();
 			affineTransform.translate(1000, 1000);
 			affineTransform.scale(scale, scale);
-			affineTransform.translate(-totalArea.getBounds2D().getCenterX(), -totalArea.getBounds2D().getCenterY());
+			affineTransform.translate(-totalRegion.getBounds2D().getCenterX(), -totalRegion.getBounds2D().getCenterY());
 
-			List<Set<IfcBuildingElementWrapper>> finalList = new ArrayList<>();
+			List<Set<IfcBuildingElementWrapper>> finalList = Collections.synchronizedList(new ArrayList<>());
+
+			// The walls of all cycles, a cycle is dropped when one of them lies within its smallest area
+			Map<IfcBuildingElementWrapper, Region> cycleWallRegions = new HashMap<>();
+			Map<IfcBuildingElementWrapper, Rectangle2D> cycleWallBounds = new HashMap<>();
+			for (Set<IfcBuildingElementWrapper> list : findSimpleCycles) {
+				for (IfcBuildingElementWrapper ifcWall : list) {
+					if (!cycleWallRegions.containsKey(ifcWall)) {
+						Region region = footprints.get(ifcWall.get());
+						cycleWallRegions.put(ifcWall, region);
+						cycleWallBounds.put(ifcWall, region == null ? null : region.getBounds2D());
+					}
+				}
+			}
+			SpatialIndex<IfcBuildingElementWrapper> cycleWallIndex = new SpatialIndex<>(cycleWallBounds);
 
-			Concurrent concurrent = new Concurrent(findSimpleCycles.size());
+			Concurrent concurrent = new Concurrent(checkerContext.getWorkQueue(), cancellationToken);
 			for (Set<IfcBuildingElementWrapper> list : findSimpleCycles) {
 				concurrent.run(new Runnable(){
 					public void run() {
-						Area cycleArea = new Area();
+						List<Region> regionsOutside = new ArrayList<>();
 						for (IfcBuildingElementWrapper ifcWallOutside : list) {
-							Area areaOutside = getOrCreateArea(ifcWallOutside.get(), ifcTools2D, lengthUnitPrefix);
-							if (areaOutside != null) {
-								cycleArea.add(areaOutside);
-							}
+							regionsOutside.add(cycleWallRegions.get(ifcWallOutside));
 						}
+						Region cycleRegion = geometryEngine.unionAll(regionsOutside);
 						
-						Area smallest = IfcTools2D.findSmallest(cycleArea);
+						Region smallest = cycleRegion.getSmallestRing();
 						
 //				if (smallest != null) {
 //					graphics.setColor(new Color(random.nextInt(255), random.nextInt(255), random.nextInt(255)));
@@ -206,14 +252,10 @@ public class UnidentifiedSpaces extends ModelCheck {
 						
 						if (smallest != null) {
 							boolean foundCompleteFitting = false;
-							for (Set<IfcBuildingElementWrapper> insideList : findSimpleCycles) {
-								for (IfcBuildingElementWrapper ifcWallInside : insideList) {
-									Area areaInside = getOrCreateArea(ifcWallInside.get(), ifcTools2D, lengthUnitPrefix);
-									if (areaInside != null) {
-										if (IfcTools2D.containsAllPoints(smallest, areaInside)) {
-											foundCompleteFitting = true;
-										}
-									}
+							for (IfcBuildingElementWrapper ifcWallInside : cycleWallIndex.query(smallest.getBounds2D())) {
+								if (smallest.containsAllPoints(cycleWallRegions.get(ifcWallInside))) {
+									foundCompleteFitting = true;
+									break;
 								}
 							}
 							if (!foundCompleteFitting) {
@@ -224,9 +266,10 @@ public class UnidentifiedSpaces extends ModelCheck {
 				});
 			}
 			concurrent.await();
-			System.out.println("Final list: " + finalList.size());
+			componentMetrics.add("enclosures", finalList.size());
+			LOGGER.debug("Final list: " + finalList.size());
 
-			Area checkArea = new Area();
+			List<Region> innerCurves = new ArrayList<>();
 			for (Set<IfcBuildingElementWrapper> list : finalList) {
 //				boolean allExternal = true;
 //				for (IfcBuildingElementWrapper ifcBuildingElement : list) {
@@ -238,13 +281,11 @@ public class UnidentifiedSpaces extends ModelCheck {
 //				if (allExternal) {
 //					continue;
 //				}
-				Area cycleArea = new Area();
+				List<Region> regions = new ArrayList<>();
 				for (IfcBuildingElementWrapper ifcWall : list) {
-					Area area = getOrCreateArea(ifcWall.get(), ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						cycleArea.add(area);
-					}
+					regions.add(footprints.get(ifcWall.get()));
 				}
+				Region cycleRegion = geometryEngine.unionAll(regions);
 				
 //				graphics.setColor(Color.ORANGE);
 //				cycleArea.transform(affineTransform);
@@ -265,9 +306,9 @@ public class UnidentifiedSpaces extends ModelCheck {
 //					graphics.draw(innerCurve);
 //				}
 
-				Area innerCurve = getInnerCurve(cycleArea);
+				Region innerCurve = getInnerCurve(cycleRegion);
 				if (innerCurve != null) {
-					checkArea.add(innerCurve);
+					innerCurves.add(innerCurve);
 					
 //					graphics.setColor(new Color(random.nextInt(255), random.nextInt(255), random.nextInt(255)));
 //					innerCurve.transform(affineTransform);
@@ -319,24 +360,11 @@ public class UnidentifiedSpaces extends ModelCheck {
 //				}
 			}
 			
-			for (IfcProduct ifcProduct : IfcUtils.getDecomposition(ifcBuildingStorey)) {
-				if (ifcProduct instanceof IfcSpace) {
-					Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						checkArea.subtract(area);
-					}
-				}
-			}
-			if (removeAllWalls) {
-				for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
-					if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
-						Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-						if (area != null) {
-							checkArea.subtract(area);
-						}
-					}
-				}
-			}
+			Region checkRegion = geometryEngine.unionAll(innerCurves, checkerContext.getWorkQueue(), cancellationToken);
+			
+			// One difference with everything that covers the storey instead of subtracting the spaces and walls one by one
+			Region coveredRegion = removeAllWalls ? totalRegion : geometryEngine.unionAll(spaceRegions, checkerContext.getWorkQueue(), cancellationToken);
+			checkRegion = geometryEngine.difference(checkRegion, coveredRegion);
 			
 //			for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
 //				if (ifcProduct instanceof IfcWall) {
@@ -347,65 +375,55 @@ public class UnidentifiedSpaces extends ModelCheck {
 //				}
 //			}
 			
-			graphics.setColor(Color.decode("#919DFF"));
-			for (IfcProduct ifcProduct : IfcUtils.getDecomposition(ifcBuildingStorey)) {
-				if (ifcProduct instanceof IfcSpace) {
-					Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						area.transform(affineTransform);
-						graphics.fill(area);
+			if (renderImages) {
+				graphics.setColor(Color.decode("#919DFF"));
+				for (IfcProduct ifcProduct : IfcUtils.getDecomposition(ifcBuildingStorey)) {
+					if (ifcProduct instanceof IfcSpace) {
+						Region region = footprints.get(ifcProduct);
+						if (region != null) {
+							Area area = region.toArea();
+							area.transform(affineTransform);
+							graphics.fill(area);
+						}
 					}
 				}
-			}
-			graphics.setColor(Color.decode("#A4FF9B"));
-			for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
-				if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
-					IfcElement ifcWall = ((IfcElement)ifcProduct);
-					Area area = getOrCreateArea(ifcWall, ifcTools2D, lengthUnitPrefix);
-					if (area != null) {
-						area.transform(affineTransform);
-						graphics.fill(area);
+				graphics.setColor(Color.decode("#A4FF9B"));
+				for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
+					if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
+						IfcElement ifcWall = ((IfcElement)ifcProduct);
+						Region region = footprints.get(ifcWall);
+						if (region != null) {
+							Area area = region.toArea();
+							area.transform(affineTransform);
+							graphics.fill(area);
+						}
 					}
 				}
 			}
 
-			PathIterator pathIterator = checkArea.getPathIterator(null);
 			int nrErrors = 0;
-			Path2D.Float newPath = new Path2D.Float();
-			while (!pathIterator.isDone()) {
-				float[] coords = new float[6];
-				int currentSegment = pathIterator.currentSegment(coords);
-				if (currentSegment == PathIterator.SEG_CLOSE) {
-					newPath.closePath();
-					float area = Math.abs(IfcTools2D.getArea(new Area(newPath)));
-					if (area > 0.001) {
-						BufferedImage errorImage = renderImage(ifcBuildingStorey, ifcTools2D, totalArea, newPath);
-						issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcBuildingStorey).message("Missing IfcSpace of " + String.format("%.2f", area) + " m2 on \"" + ifcBuildingStorey.getName() + "\"").image(errorImage).add();
-						nrErrors++;
-					}
-					newPath = new Path2D.Float();
-				} else if (currentSegment == PathIterator.SEG_LINETO) {
-					newPath.lineTo(coords[0], coords[1]);
-				} else if (currentSegment == PathIterator.SEG_MOVETO) {
-					newPath.moveTo(coords[0], coords[1]);
-				} else {
-					System.out.println("Unimplemented segment" + currentSegment);
+			for (Region ring : checkRegion.getRings()) {
+				double area = ring.getArea();
+				if (area > 0.001) {
+					BufferedImage errorImage = renderImages ? renderImage(ifcBuildingStorey, footprints, totalRegion, ring) : null;
+					issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.ERROR).object(ifcBuildingStorey).message("Missing IfcSpace of " + String.format("%.2f", area) + " m2 on \"" + ifcBuildingStorey.getName() + "\"").image(errorImage).add();
+					nrErrors++;
 				}
-				pathIterator.next();
 			}
 
 			if (nrErrors == 0) {
-				BufferedImage errorImage = renderImage(ifcBuildingStorey, ifcTools2D, totalArea, null);
+				BufferedImage errorImage = renderImages ? renderImage(ifcBuildingStorey, footprints, totalRegion, null) : null;
 				issueContainer.builder().originatingCheck(this.getClass().getSimpleName()).author(checkerContext.getAuthor()).type(Type.SUCCESS).object(ifcBuildingStorey).buildingStorey(ifcBuildingStorey).message("No unidentified spaces found in building storey \"" + ifcBuildingStorey.getName() + "\"").image(errorImage).add();
 			}
 			
-			graphics.setColor(Color.RED);
-			checkArea.transform(affineTransform);
-			graphics.fill(checkArea);
-			
-			ifcTools2D.dumpStatistics();
+			if (renderImages) {
+				graphics.setColor(Color.RED);
+				Area checkArea = checkRegion.toArea();
+				checkArea.transform(affineTransform);
+				graphics.fill(checkArea);
+			}
 			
-			if (debug) {
+			if (debug && renderImages) {
 				Display display = new Display(ifcBuildingStorey.getName(), 2000, 2000);
 				display.setImage(image);
 			}
@@ -444,7 +462,7 @@ public class UnidentifiedSpaces extends ModelCheck {
 		}
 	}
 
-	private BufferedImage renderImage(IfcBuildingStorey ifcBuildingStorey, IfcTools2D ifcTools2D, Area totalArea, Path2D.Float newPath) {
+	private BufferedImage renderImage(IfcBuildingStorey ifcBuildingStorey, FootprintStore footprints, Region totalRegion, Region newRegion) {
 		BufferedImage bufferedImage = new BufferedImage(800, 600, BufferedImage.TYPE_INT_ARGB);
 		Graphics2D graphics = (Graphics2D) bufferedImage.getGraphics();
 		
@@ -458,20 +476,21 @@ public class UnidentifiedSpaces extends ModelCheck {
 		graphics.setColor(Color.WHITE);
 		graphics.fillRect(0, 0, width, height);
 		
-		double scaleX = (width * 0.9) / totalArea.getBounds().getWidth();
-		double scaleY = (height * 0.9) / totalArea.getBounds().getHeight();
+		double scaleX = (width * 0.9) / totalRegion.getBounds2D().getWidth();
+		double scaleY = (height * 0.9) / totalRegion.getBounds2D().getHeight();
 		double scale = Math.min(scaleX, scaleY);
 		
 		AffineTransform affineTransform = new AffineTransform();
 		affineTransform.translate(width / 2f, height / 2f);
 		affineTransform.scale(scale, scale);
-		affineTransform.translate(-totalArea.getBounds2D().getCenterX(), -totalArea.getBounds2D().getCenterY());
+		affineTransform.translate(-totalRegion.getBounds2D().getCenterX(), -totalRegion.getBounds2D().getCenterY());
 		
 		graphics.setColor(Color.decode("#919DFF"));
 		for (IfcProduct ifcProduct : IfcUtils.getDecomposition(ifcBuildingStorey)) {
 			if (ifcProduct instanceof IfcSpace) {
-				Area area = getOrCreateArea(ifcProduct, ifcTools2D, lengthUnitPrefix);
-				if (area != null) {
+				Region region = footprints.get(ifcProduct);
+				if (region != null) {
+					Area area = region.toArea();
 					area.transform(affineTransform);
 					graphics.fill(area);
 				}
@@ -481,17 +500,18 @@ public class UnidentifiedSpaces extends ModelCheck {
 		for (IfcProduct ifcProduct : IfcUtils.getContains(ifcBuildingStorey)) {
 			if (ifcProduct instanceof IfcWall || ifcProduct instanceof IfcCurtainWall) {
 				IfcElement ifcWall = ((IfcElement)ifcProduct);
-				Area area = getOrCreateArea(ifcWall, ifcTools2D, lengthUnitPrefix);
-				if (area != null) {
+				Region region = footprints.get(ifcWall);
+				if (region != null) {
+					Area area = region.toArea();
 					area.transform(affineTransform);
 					graphics.fill(area);
 				}
 			}
 		}
 		
-		if (newPath != null) {
+		if (newRegion != null) {
 			graphics.setColor(Color.RED);
-			Area newArea = new Area(newPath);
+			Area newArea = newRegion.toArea();
 			newArea.transform(affineTransform);
 			graphics.fill(newArea);
 		}
@@ -499,37 +519,22 @@ public class UnidentifiedSpaces extends ModelCheck {
 		return bufferedImage;
 	}
 
-	private Area getInnerCurve(Area area) {
-		PathIterator pathIterator = area.getPathIterator(null);
-		if (area.isSingular()) {
-			System.out.println("Is singular");
+	private Region getInnerCurve(Region region) {
+		List<Region> rings = region.getRings();
+		if (rings.size() <= 1) {
+			componentMetrics.increment("singularRegions");
 		} else {
-			Path2D.Float tmp = new Path2D.Float();
-			Path2D.Float smallest = new Path2D.Float();
+			Region smallest = null;
 			Rectangle smallestRectangle = null;
-			while (!pathIterator.isDone()) {
-				double[] coords = new double[6];
-				int type = pathIterator.currentSegment(coords);
-				if (type == 0) {
-					tmp.moveTo(coords[0], coords[1]);
-				} else if (type == 4) {
-					tmp.closePath();
-					
-					// TODO use area, not the containment of aabb's, this only sort of works for rectangular "spaces"
-					if (smallestRectangle == null || smallestRectangle.contains(tmp.getBounds())) {
-						smallestRectangle = tmp.getBounds();
-						smallest = tmp;
-					}
-					tmp = new Path2D.Float();
-				} else if (type == 1) {
-					tmp.lineTo(coords[0], coords[1]);
+			for (Region ring : rings) {
+				// TODO use area, not the containment of aabb's, this only sort of works for rectangular "spaces"
+				Rectangle bounds = ring.getBounds2D().getBounds();
+				if (smallestRectangle == null || smallestRectangle.contains(bounds)) {
+					smallestRectangle = bounds;
+					smallest = ring;
 				}
-				pathIterator.next();
-			}
-			if (smallest != null) {
-				Area smallestArea = new Area(smallest);
-				return smallestArea;
 			}
+			return smallest;
 		}
 		return null;
 	}
@@ -537,7 +542,7 @@ public class UnidentifiedSpaces extends ModelCheck {
 	public Area getOuterCurve(Area area) {
 		PathIterator pathIterator = area.getPathIterator(null);
 		if (area.isSingular()) {
-			System.out.println("Is singular");
+			componentMetrics.increment("singularRegions");
 		} else {
 			Path2D.Float tmp = new Path2D.Float();
 			Path2D.Float largest = new Path2D.Float();
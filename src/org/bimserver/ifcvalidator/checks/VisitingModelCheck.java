@@ -0,0 +1,90 @@
+package org.bimserver.ifcvalidator.checks;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CheckCancelledException;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * A check that does not query the model itself, but gets called back for the objects it is interested in. All enabled
+ * visiting checks without dependencies are fused into one traversal of the model (see {@link ModelTraversal}).
+ */
+public abstract class VisitingModelCheck extends ModelCheck {
+
+	public VisitingModelCheck(String groupIdentifier, String identifier) {
+		super(groupIdentifier, identifier);
+	}
+
+	/**
+	 * @return The classes this check wants to visit, instances of subclasses are visited as well
+	 */
+	public abstract Set<EClass> getInterests();
+
+	/**
+	 * Every object of the interests is visited
+	 */
+	@Override
+	public Set<EClass> getCompleteInputClasses() {
+		return getInterests();
+	}
+
+	public abstract ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException;
+
+	/**
+	 * Whether the visits of the objects are independent of each other and every object with an error gets at least one
+	 * {@link org.bimserver.validationreport.Type#ERROR} issue, so the check can be run on a sample of the objects to
+	 * estimate the share of objects with errors (see {@link SampledModelCheck})
+	 */
+	public boolean supportsSampling() {
+		return false;
+	}
+
+	/**
+	 * Whether the check judges the given object of its interests, objects it skips are left out of the population a
+	 * sample is drawn from, as they can never count as errors
+	 */
+	public boolean isSampleTarget(IdEObject object) {
+		return true;
+	}
+
+	@Override
+	public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+		ModelVisitor modelVisitor = createVisitor(model, issueContainer, checkerContext);
+		ModelTraversal modelTraversal = new ModelTraversal();
+		modelTraversal.add(getInterests(), modelVisitor, checkerContext.getCancellationToken());
+		modelTraversal.traverse(model);
+		if (modelTraversal.isCancelled(modelVisitor)) {
+			throw new CheckCancelledException();
+		}
+		modelVisitor.done();
+	}
+
+	protected static Set<EClass> interests(EClass... eClasses) {
+		return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(eClasses)));
+	}
+}
@@ -0,0 +1,65 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+
+/**
+ * {@link GeometryEngine} based on {@link Area}, gives the same results as the checks had before the engines existed
+ */
+public class AwtGeometryEngine extends GeometryEngine {
+
+	@Override
+	public Region create(Shape shape) {
+		return shape == null ? null : new AwtRegion(new Area(shape));
+	}
+
+	@Override
+	public Region empty() {
+		return new AwtRegion(new Area());
+	}
+
+	@Override
+	public Region union(Region a, Region b) {
+		Area area = new Area(cast(a).getArea2D());
+		area.add(cast(b).getArea2D());
+		return new AwtRegion(area);
+	}
+
+	@Override
+	public Region difference(Region a, Region b) {
+		Area area = new Area(cast(a).getArea2D());
+		area.subtract(cast(b).getArea2D());
+		return new AwtRegion(area);
+	}
+
+	@Override
+	public Region intersection(Region a, Region b) {
+		Area area = new Area(cast(a).getArea2D());
+		area.intersect(cast(b).getArea2D());
+		return new AwtRegion(area);
+	}
+
+	static AwtRegion cast(Region region) {
+		if (!(region instanceof AwtRegion)) {
+			throw new IllegalArgumentException("Region of another geometry engine");
+		}
+		return (AwtRegion) region;
+	}
+}
@@ -0,0 +1,106 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bimserver.utils.IfcTools2D;
+
+/**
+ * {@link Region} of the {@link AwtGeometryEngine}, the wrapped {@link Area} is never modified
+ */
+class AwtRegion implements Region {
+	private final Area area;
+
+	AwtRegion(Area area) {
+		this.area = area;
+	}
+
+	Area getArea2D() {
+		return area;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return area.isEmpty();
+	}
+
+	@Override
+	public double getArea() {
+		return Math.abs(IfcTools2D.getArea(area));
+	}
+
+	@Override
+	public Rectangle2D getBounds2D() {
+		return area.getBounds2D();
+	}
+
+	@Override
+	public boolean contains(double x, double y) {
+		return area.contains(x, y);
+	}
+
+	@Override
+	public boolean containsAllPoints(Region region) {
+		return IfcTools2D.containsAllPoints(area, AwtGeometryEngine.cast(region).getArea2D());
+	}
+
+	@Override
+	public List<Region> getRings() {
+		List<Region> rings = new ArrayList<>();
+		PathIterator pathIterator = area.getPathIterator(null);
+		double[] coords = new double[6];
+		Path2D.Double ring = new Path2D.Double();
+		while (!pathIterator.isDone()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO) {
+				ring.moveTo(coords[0], coords[1]);
+			} else if (type == PathIterator.SEG_LINETO) {
+				ring.lineTo(coords[0], coords[1]);
+			} else if (type == PathIterator.SEG_CLOSE) {
+				ring.closePath();
+				rings.add(new AwtRegion(new Area(ring)));
+				ring = new Path2D.Double();
+			}
+			pathIterator.next();
+		}
+		return rings;
+	}
+
+	@Override
+	public Region getSmallestRing() {
+		Area smallest = IfcTools2D.findSmallest(area);
+		return smallest == null ? null : new AwtRegion(smallest);
+	}
+
+	@Override
+	public Region transform(AffineTransform affineTransform) {
+		return new AwtRegion(area.createTransformedArea(affineTransform));
+	}
+
+	@Override
+	public Area toArea() {
+		return new Area(area);
+	}
+}
@@ -0,0 +1,480 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryInfo;
+import org.bimserver.utils.IfcTools2D;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of 2D footprints, keyed by a hash of the geometry of a product (see {@link #createKey}), so
+ * validations of successive revisions of a project only project the products of which the geometry changed. The cache
+ * is a ring of memory-mapped segment files to which footprints are appended. When the ring is full the oldest segment
+ * is emptied and reused, so the disk usage is bounded. Footprints read from one of the older segments are appended
+ * again, so frequently used footprints survive. The index is rebuilt from the segments at startup. Only one process can
+ * use a directory at a time, other processes run without a cache.
+ */
+public class FootprintCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(FootprintCache.class);
+	private static final int MAGIC = 0x46505243;
+	private static final int VERSION = 1;
+	private static final int SEGMENTS = 8;
+	private static final int SEGMENT_HEADER_SIZE = 16;
+	private static final int RECORD_HEADER_SIZE = 24;
+	private static final int MIN_SEGMENT_SIZE = 64 * 1024;
+	private static final double FLATNESS = 0.00001;
+	/**
+	 * Identifies the code that projects the footprints, footprints projected by another version are not reused
+	 */
+	private static final String PROJECTION = getVersion(IfcTools2D.class) + " " + getVersion(FootprintStore.class);
+
+	private static class Holder {
+		private static final FootprintCache INSTANCE = fromSystemProperties();
+	}
+
+	/**
+	 * Hash of the geometry of a product, the length unit it is projected with and the version of the projection
+	 */
+	public static final class Key {
+		private final long high;
+		private final long low;
+
+		private Key(long high, long low) {
+			this.high = high;
+			this.low = low;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).high == high && ((Key) obj).low == low;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(high ^ low);
+		}
+	}
+
+	private final ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("FootprintCache");
+	private final Path directory;
+	private final int segmentSize;
+	private final MappedByteBuffer[] segments = new MappedByteBuffer[SEGMENTS];
+	private final long[] generations = new long[SEGMENTS];
+	// Location of every footprint: segment in the high 32 bits, offset of the record in the low 32 bits
+	private final Map<Key, Long> index = new HashMap<>();
+	private boolean enabled;
+	private int currentSegment;
+	private int position;
+	private FileLock lock;
+
+	/**
+	 * @param maxDiskBytes Maximum size of all segment files together, 0 disables the cache
+	 * @param directory Directory of the segment files
+	 */
+	public FootprintCache(long maxDiskBytes, Path directory) {
+		this.directory = directory;
+		this.segmentSize = (int) Math.min(Integer.MAX_VALUE, maxDiskBytes / SEGMENTS);
+		this.enabled = segmentSize >= MIN_SEGMENT_SIZE && open();
+	}
+
+	/**
+	 * The process-wide cache, see {@link #fromSystemProperties()}
+	 */
+	public static FootprintCache get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Creates a cache configured by the system properties ifcvalidator.footprintCache.diskBytes (default 256 MB, 0 to
+	 * disable) and ifcvalidator.cache.directory (default a directory in java.io.tmpdir)
+	 */
+	public static FootprintCache fromSystemProperties() {
+		long maxDiskBytes = Long.getLong("ifcvalidator.footprintCache.diskBytes", 256L * 1024 * 1024);
+		Path baseDirectory = Paths.get(System.getProperty("ifcvalidator.cache.directory", System.getProperty("java.io.tmpdir") + "/ifcvalidator-cache"));
+		return new FootprintCache(maxDiskBytes, baseDirectory.resolve("footprints"));
+	}
+
+	/**
+	 * Hash of the transformation, vertices and indices of the given geometry, the length unit multiplier and the version
+	 * of the projection, or null when the product has no geometry
+	 */
+	public static Key createKey(GeometryInfo geometryInfo, float multiplierMillimeters) {
+		if (geometryInfo == null || geometryInfo.getData() == null) {
+			return null;
+		}
+		GeometryData geometryData = geometryInfo.getData();
+		return createKey(multiplierMillimeters, geometryInfo.getTransformation(), geometryData.getVertices(), geometryData.getIndices());
+	}
+
+	public static Key createKey(float multiplierMillimeters, byte[]... data) {
+		return createKey(PROJECTION, multiplierMillimeters, data);
+	}
+
+	/**
+	 * @param projection Identifies the code that projects the footprints
+	 */
+	public static Key createKey(String projection, float multiplierMillimeters, byte[]... data) {
+		try {
+			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+			update(messageDigest, projection.getBytes(StandardCharsets.UTF_8));
+			messageDigest.update(ByteBuffer.allocate(4).putFloat(multiplierMillimeters).array());
+			for (byte[] bytes : data) {
+				update(messageDigest, bytes);
+			}
+			ByteBuffer digest = ByteBuffer.wrap(messageDigest.digest());
+			return new Key(digest.getLong(), digest.getLong());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The implementation version of the jar of the given class, or the modification time of its class file when it is
+	 * not loaded from a versioned jar, for example during development
+	 */
+	private static String getVersion(Class<?> type) {
+		Package typePackage = type.getPackage();
+		if (typePackage != null && typePackage.getImplementationVersion() != null) {
+			return typePackage.getImplementationVersion();
+		}
+		URL classFile = type.getResource(type.getSimpleName() + ".class");
+		try {
+			return type.getName() + "@" + (classFile == null ? 0 : classFile.openConnection().getLastModified());
+		} catch (IOException e) {
+			return type.getName();
+		}
+	}
+
+	private static void update(MessageDigest messageDigest, byte[] data) {
+		// Length prefixed, so the boundaries between the arrays are part of the hash
+		messageDigest.update(ByteBuffer.allocate(4).putInt(data == null ? -1 : data.length).array());
+		if (data != null) {
+			messageDigest.update(data);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * The cached footprint, an empty optional when the product was cached as having no footprint, or null when the key is
+	 * not in the cache
+	 */
+	public Optional<Shape> get(Key key) {
+		byte[] payload;
+		synchronized (this) {
+			Long location = enabled ? index.get(key) : null;
+			if (location == null) {
+				componentMetrics.increment("misses");
+				return null;
+			}
+			int segment = (int) (location >>> 32);
+			ByteBuffer buffer = segments[segment].duplicate();
+			buffer.position((int) (long) location);
+			int length = buffer.getInt();
+			buffer.getLong();
+			buffer.getLong();
+			int checksum = buffer.getInt();
+			payload = new byte[length];
+			buffer.get(payload);
+			if (checksum(payload) != checksum) {
+				LOGGER.warn("Corrupt footprint in " + directory + ", ignoring it");
+				index.remove(key);
+				componentMetrics.increment("misses");
+				return null;
+			}
+			if (generations[currentSegment] - generations[segment] >= SEGMENTS / 2) {
+				// Will be evicted soon, move it to the front of the ring
+				append(key, payload);
+			}
+		}
+		componentMetrics.increment("hits");
+		return Optional.ofNullable(decode(payload));
+	}
+
+	/**
+	 * Stores the footprint of a product, null when the product has no footprint
+	 */
+	public void put(Key key, Shape footprint) {
+		byte[] payload = encode(footprint);
+		if (payload.length + RECORD_HEADER_SIZE + 4 > segmentSize - SEGMENT_HEADER_SIZE) {
+			return;
+		}
+		synchronized (this) {
+			if (enabled && !index.containsKey(key)) {
+				append(key, payload);
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return index.size();
+	}
+
+	/**
+	 * Releases the lock on the directory, the cache is disabled afterwards
+	 */
+	public synchronized void close() {
+		enabled = false;
+		index.clear();
+		try {
+			if (lock != null) {
+				lock.channel().close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Could not release " + directory, e);
+		}
+	}
+
+	private void append(Key key, byte[] payload) {
+		// Room for the record and the end marker behind it
+		if (position + RECORD_HEADER_SIZE + payload.length + 4 > segmentSize) {
+			recycle((currentSegment + 1) % SEGMENTS);
+		}
+		ByteBuffer buffer = segments[currentSegment].duplicate();
+		buffer.position(position + 4);
+		buffer.putLong(key.high);
+		buffer.putLong(key.low);
+		buffer.putInt(checksum(payload));
+		buffer.put(payload);
+		buffer.putInt(0);
+		// The length goes in last, an interrupted write leaves the end marker in place
+		buffer.putInt(position, payload.length);
+		index.put(key, ((long) currentSegment << 32) | position);
+		position += RECORD_HEADER_SIZE + payload.length;
+	}
+
+	private void recycle(int segment) {
+		Iterator<Long> iterator = index.values().iterator();
+		while (iterator.hasNext()) {
+			if ((int) (iterator.next() >>> 32) == segment) {
+				iterator.remove();
+			}
+		}
+		reset(segment, generations[currentSegment] + 1);
+		componentMetrics.increment("recycledSegments");
+	}
+
+	private void reset(int segment, long generation) {
+		generations[segment] = generation;
+		ByteBuffer buffer = segments[segment].duplicate();
+		buffer.putInt(SEGMENT_HEADER_SIZE, 0);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		buffer.putLong(8, generation);
+		currentSegment = segment;
+		position = SEGMENT_HEADER_SIZE;
+	}
+
+	private synchronized boolean open() {
+		try {
+			Files.createDirectories(directory);
+			FileChannel lockChannel = FileChannel.open(directory.resolve("lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			try {
+				lock = lockChannel.tryLock();
+			} catch (OverlappingFileLockException e) {
+				// Locked by another cache in this process
+				lock = null;
+			}
+			if (lock == null) {
+				lockChannel.close();
+				LOGGER.warn(directory + " is in use by another process, not caching footprints");
+				return false;
+			}
+			boolean opened = false;
+			try {
+				mapSegments();
+				opened = true;
+			} finally {
+				if (!opened) {
+					// Closing the channel releases the lock, so the directory can be used again
+					lock = null;
+					index.clear();
+					Arrays.fill(segments, null);
+					try {
+						lockChannel.close();
+					} catch (IOException e) {
+						LOGGER.warn("Could not release " + directory, e);
+					}
+				}
+			}
+			return true;
+		} catch (IOException e) {
+			LOGGER.warn("Could not use " + directory + " for cached footprints, not caching footprints", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Maps the segments and rebuilds the index from them
+	 */
+	private void mapSegments() throws IOException {
+		for (int segment = 0; segment < SEGMENTS; segment++) {
+			try (FileChannel fileChannel = FileChannel.open(directory.resolve("footprints-" + segment + ".segment"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				if (fileChannel.size() != segmentSize) {
+					// New, or written with another maximum size
+					fileChannel.truncate(0);
+				}
+				segments[segment] = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+			}
+			ByteBuffer buffer = segments[segment].duplicate();
+			boolean valid = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION;
+			generations[segment] = valid ? buffer.getLong(8) : -1;
+		}
+		// Replay the segments from old to new, so the newest copy of a footprint ends up in the index
+		Integer[] order = new Integer[SEGMENTS];
+		for (int segment = 0; segment < SEGMENTS; segment++) {
+			order[segment] = segment;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(generations[a], generations[b]));
+		for (int segment : order) {
+			if (generations[segment] >= 0) {
+				currentSegment = segment;
+				position = load(segment);
+			}
+		}
+		if (generations[currentSegment] < 0) {
+			reset(0, 0);
+		}
+	}
+
+	/**
+	 * Adds the records of the given segment to the index, returns the offset behind the last valid record
+	 */
+	private int load(int segment) {
+		ByteBuffer buffer = segments[segment].duplicate();
+		int offset = SEGMENT_HEADER_SIZE;
+		while (offset + RECORD_HEADER_SIZE + 4 <= segmentSize) {
+			int length = buffer.getInt(offset);
+			if (length <= 0 || offset + RECORD_HEADER_SIZE + length + 4 > segmentSize) {
+				break;
+			}
+			Key key = new Key(buffer.getLong(offset + 4), buffer.getLong(offset + 12));
+			byte[] payload = new byte[length];
+			buffer.position(offset + RECORD_HEADER_SIZE);
+			buffer.get(payload);
+			if (checksum(payload) != buffer.getInt(offset + 20)) {
+				break;
+			}
+			index.put(key, ((long) segment << 32) | offset);
+			offset += RECORD_HEADER_SIZE + length;
+		}
+		return offset;
+	}
+
+	private static int checksum(byte[] payload) {
+		CRC32 crc32 = new CRC32();
+		crc32.update(payload, 0, payload.length);
+		return (int) crc32.getValue();
+	}
+
+	/**
+	 * Number of rings (-1 for no footprint), then per ring the number of points followed by their coordinates
+	 */
+	static byte[] encode(Shape footprint) {
+		if (footprint == null) {
+			return ByteBuffer.allocate(4).putInt(-1).array();
+		}
+		int nrRings = 0;
+		int nrPoints = 0;
+		double[] coords = new double[6];
+		for (PathIterator pathIterator = footprint.getPathIterator(null, FLATNESS); !pathIterator.isDone(); pathIterator.next()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO) {
+				nrRings++;
+			}
+			if (type != PathIterator.SEG_CLOSE) {
+				nrPoints++;
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(4 + nrRings * 4 + nrPoints * 16);
+		buffer.putInt(nrRings);
+		int countPosition = -1;
+		int count = 0;
+		for (PathIterator pathIterator = footprint.getPathIterator(null, FLATNESS); !pathIterator.isDone(); pathIterator.next()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO) {
+				if (countPosition >= 0) {
+					buffer.putInt(countPosition, count);
+				}
+				countPosition = buffer.position();
+				buffer.putInt(0);
+				count = 0;
+			}
+			if (type != PathIterator.SEG_CLOSE) {
+				buffer.putDouble(coords[0]);
+				buffer.putDouble(coords[1]);
+				count++;
+			}
+		}
+		if (countPosition >= 0) {
+			buffer.putInt(countPosition, count);
+		}
+		return buffer.array();
+	}
+
+	static Shape decode(byte[] payload) {
+		ByteBuffer buffer = ByteBuffer.wrap(payload);
+		int nrRings = buffer.getInt();
+		if (nrRings < 0) {
+			return null;
+		}
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		for (int ring = 0; ring < nrRings; ring++) {
+			int nrPoints = buffer.getInt();
+			for (int point = 0; point < nrPoints; point++) {
+				if (point == 0) {
+					path.moveTo(buffer.getDouble(), buffer.getDouble());
+				} else {
+					path.lineTo(buffer.getDouble(), buffer.getDouble());
+				}
+			}
+			path.closePath();
+		}
+		return path;
+	}
+}
@@ -0,0 +1,334 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+import org.bimserver.ifcvalidator.checks.Concurrent;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.InstrumentedIfcTools2D;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryInfo;
+import org.bimserver.models.geometry.Vector3f;
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+import org.bimserver.utils.IfcTools2D;
+import org.bimserver.utils.IfcUtils;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * The 2D footprints (in meters) of the products of one model, shared by the geometric checks of a validation run. The
+ * {@link org.bimserver.ifcvalidator.CheckScheduler} computes the footprints the checks ask for (see
+ * {@link org.bimserver.ifcvalidator.checks.ModelCheck#getFootprintClasses()}) in parallel before these checks start,
+ * other footprints are computed on first use. Footprints are immutable {@link Region}s, so they are handed out without
+ * copying. Projections are taken from the {@link FootprintCache} when the geometry of a product did not change since an
+ * earlier run. Products that share their geometry with another product (like the instances of a window type) are
+ * projected once, the other instances get that footprint moved to their own placement. Safe to use from multiple
+ * threads.
+ */
+public class FootprintStore {
+	private static final int PRODUCTS_PER_TASK = 64;
+	// Meters a footprint derived from another instance may differ from the bounds of the geometry of the product
+	private static final double BOUNDS_TOLERANCE = 0.01;
+	private static final double COUPLING_TOLERANCE = 1e-9;
+
+	private static class SharedFootprint {
+		private final double[] transformation;
+		private final Shape footprint;
+
+		private SharedFootprint(double[] transformation, Shape footprint) {
+			this.transformation = transformation;
+			this.footprint = footprint;
+		}
+	}
+
+	private final IfcModelInterface model;
+	private final GeometryEngine geometryEngine;
+	private final IfcTools2D ifcTools2D = new InstrumentedIfcTools2D();
+	private final FootprintCache footprintCache;
+	private final float lengthUnitPrefix;
+	private final Map<IfcProduct, Optional<Region>> footprints = new ConcurrentHashMap<>();
+	// The first projected product of every GeometryData that is shared by multiple products (type geometry)
+	private final Map<GeometryData, SharedFootprint> sharedFootprints = new ConcurrentHashMap<>();
+	private final ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("FootprintStore");
+	// Meters per unit of the geometry of the render engine, determined from the first projected product
+	private volatile double geometryUnitScale = Double.NaN;
+	private volatile boolean released;
+
+	public FootprintStore(IfcModelInterface model) {
+		this(model, GeometryEngine.get());
+	}
+
+	public FootprintStore(IfcModelInterface model, GeometryEngine geometryEngine) {
+		this(model, geometryEngine, FootprintCache.get());
+	}
+
+	/**
+	 * @param footprintCache Persistent cache of footprints shared with earlier runs, or null
+	 */
+	public FootprintStore(IfcModelInterface model, GeometryEngine geometryEngine, FootprintCache footprintCache) {
+		this.model = model;
+		this.geometryEngine = geometryEngine;
+		this.footprintCache = footprintCache;
+		this.lengthUnitPrefix = IfcUtils.getLengthUnitPrefix(model);
+	}
+
+	public IfcModelInterface getModel() {
+		return model;
+	}
+
+	public GeometryEngine getGeometryEngine() {
+		return geometryEngine;
+	}
+
+	/**
+	 * The footprint of the given product, or null when it has no (2D convertible) geometry
+	 */
+	public Region get(IfcProduct ifcProduct) {
+		Optional<Region> footprint = footprints.get(ifcProduct);
+		if (footprint == null) {
+			// Computed outside of the map, so a slow conversion does not block other products. Two threads asking for the
+			// same product at the same time both compute it, the first one wins
+			footprint = Optional.ofNullable(geometryEngine.create(project(ifcProduct)));
+			if (released) {
+				return footprint.orElse(null);
+			}
+			Optional<Region> existing = footprints.putIfAbsent(ifcProduct, footprint);
+			if (existing != null) {
+				footprint = existing;
+			}
+		}
+		return footprint.orElse(null);
+	}
+
+	/**
+	 * Projects the product, unless it shares its geometry with a product that has already been projected, or its
+	 * geometry is unchanged since it was projected in an earlier run
+	 */
+	private Shape project(IfcProduct ifcProduct) {
+		GeometryInfo geometryInfo = ifcProduct.getGeometry();
+		Shape footprint = fromSharedGeometry(geometryInfo);
+		if (footprint != null) {
+			componentMetrics.increment("reusedFootprints");
+			return footprint;
+		}
+		FootprintCache.Key key = footprintCache != null && footprintCache.isEnabled() ? FootprintCache.createKey(geometryInfo, lengthUnitPrefix) : null;
+		Optional<Shape> cached = key == null ? null : footprintCache.get(key);
+		if (cached != null) {
+			footprint = cached.orElse(null);
+		} else {
+			footprint = ifcTools2D.get2D(ifcProduct, lengthUnitPrefix);
+			if (key != null) {
+				footprintCache.put(key, footprint);
+			}
+		}
+		share(geometryInfo, footprint);
+		return footprint;
+	}
+
+	/**
+	 * The footprint of the first projected product with the same {@link GeometryData}, moved by the difference between
+	 * the placements of both products. Null when there is no such product, the placements differ by more than a
+	 * translation, rotation or mirroring in the XY plane, or the moved footprint does not match the bounds of the
+	 * geometry.
+	 */
+	private Shape fromSharedGeometry(GeometryInfo geometryInfo) {
+		if (!isShared(geometryInfo)) {
+			return null;
+		}
+		SharedFootprint sharedFootprint = sharedFootprints.get(geometryInfo.getData());
+		double unitScale = geometryUnitScale;
+		if (sharedFootprint == null || Double.isNaN(unitScale)) {
+			return null;
+		}
+		AffineTransform affineTransform = getFootprintTransform(sharedFootprint.transformation, getTransformation(geometryInfo), unitScale);
+		if (affineTransform == null) {
+			return null;
+		}
+		Shape footprint = affineTransform.createTransformedShape(sharedFootprint.footprint);
+		Rectangle2D bounds = footprint.getBounds2D();
+		Vector3f min = geometryInfo.getBounds().getMin();
+		Vector3f max = geometryInfo.getBounds().getMax();
+		if (Math.abs(bounds.getMinX() - min.getX() * unitScale) > BOUNDS_TOLERANCE || Math.abs(bounds.getMinY() - min.getY() * unitScale) > BOUNDS_TOLERANCE || Math.abs(bounds.getMaxX() - max.getX() * unitScale) > BOUNDS_TOLERANCE || Math.abs(bounds.getMaxY() - max.getY() * unitScale) > BOUNDS_TOLERANCE) {
+			return null;
+		}
+		return footprint;
+	}
+
+	private void share(GeometryInfo geometryInfo, Shape footprint) {
+		if (footprint == null || geometryInfo == null || geometryInfo.getBounds() == null) {
+			return;
+		}
+		if (Double.isNaN(geometryUnitScale)) {
+			// Footprints are in meters, the geometry is in the units of the render engine
+			Rectangle2D bounds = footprint.getBounds2D();
+			double width = geometryInfo.getBounds().getMax().getX() - geometryInfo.getBounds().getMin().getX();
+			double height = geometryInfo.getBounds().getMax().getY() - geometryInfo.getBounds().getMin().getY();
+			if (width >= height && width > 0) {
+				geometryUnitScale = bounds.getWidth() / width;
+			} else if (height > 0) {
+				geometryUnitScale = bounds.getHeight() / height;
+			}
+		}
+		if (isShared(geometryInfo)) {
+			double[] transformation = getTransformation(geometryInfo);
+			if (transformation != null) {
+				sharedFootprints.putIfAbsent(geometryInfo.getData(), new SharedFootprint(transformation, footprint));
+			}
+		}
+	}
+
+	private static boolean isShared(GeometryInfo geometryInfo) {
+		return geometryInfo != null && geometryInfo.getData() != null && geometryInfo.getData().getReused() > 1 && geometryInfo.getBounds() != null;
+	}
+
+	/**
+	 * The column-major 4x4 matrix that places the geometry, or null when there is none
+	 */
+	private static double[] getTransformation(GeometryInfo geometryInfo) {
+		byte[] bytes = geometryInfo.getTransformation();
+		if (bytes == null || bytes.length != 16 * 8) {
+			return null;
+		}
+		double[] transformation = new double[16];
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer().get(transformation);
+		return transformation;
+	}
+
+	/**
+	 * The 2D transformation that maps the footprint of geometry placed with the column-major 4x4 matrix from, onto the
+	 * footprint of the same geometry placed with to. Null when the footprints are not related that way, because the
+	 * difference between both placements moves points in the XY plane depending on their height (a tilt).
+	 * 
+	 * @param unitScale Meters per unit of the translation of the matrices
+	 */
+	public static AffineTransform getFootprintTransform(double[] from, double[] to, double unitScale) {
+		double[][] fromLinear = linear(from);
+		double[][] inverse = invert(fromLinear);
+		if (inverse == null) {
+			return null;
+		}
+		double[][] linear = multiply(linear(to), inverse);
+		double scale = 0;
+		for (double[] row : linear) {
+			for (double value : row) {
+				scale = Math.max(scale, Math.abs(value));
+			}
+		}
+		if (Math.abs(linear[0][2]) > COUPLING_TOLERANCE * scale || Math.abs(linear[1][2]) > COUPLING_TOLERANCE * scale) {
+			return null;
+		}
+		// Translation of the difference: t(to) - linear * t(from)
+		double translateX = to[12] - (linear[0][0] * from[12] + linear[0][1] * from[13] + linear[0][2] * from[14]);
+		double translateY = to[13] - (linear[1][0] * from[12] + linear[1][1] * from[13] + linear[1][2] * from[14]);
+		return new AffineTransform(linear[0][0], linear[1][0], linear[0][1], linear[1][1], translateX * unitScale, translateY * unitScale);
+	}
+
+	private static double[][] linear(double[] matrix) {
+		double[][] linear = new double[3][3];
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				linear[row][column] = matrix[column * 4 + row];
+			}
+		}
+		return linear;
+	}
+
+	private static double[][] multiply(double[][] a, double[][] b) {
+		double[][] result = new double[3][3];
+		for (int row = 0; row < 3; row++) {
+			for (int column = 0; column < 3; column++) {
+				for (int i = 0; i < 3; i++) {
+					result[row][column] += a[row][i] * b[i][column];
+				}
+			}
+		}
+		return result;
+	}
+
+	private static double[][] invert(double[][] m) {
+		double determinant = m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1]) - m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0]) + m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+		if (Math.abs(determinant) < 1e-12) {
+			return null;
+		}
+		double[][] inverse = new double[3][3];
+		inverse[0][0] = (m[1][1] * m[2][2] - m[1][2] * m[2][1]) / determinant;
+		inverse[0][1] = (m[0][2] * m[2][1] - m[0][1] * m[2][2]) / determinant;
+		inverse[0][2] = (m[0][1] * m[1][2] - m[0][2] * m[1][1]) / determinant;
+		inverse[1][0] = (m[1][2] * m[2][0] - m[1][0] * m[2][2]) / determinant;
+		inverse[1][1] = (m[0][0] * m[2][2] - m[0][2] * m[2][0]) / determinant;
+		inverse[1][2] = (m[0][2] * m[1][0] - m[0][0] * m[1][2]) / determinant;
+		inverse[2][0] = (m[1][0] * m[2][1] - m[1][1] * m[2][0]) / determinant;
+		inverse[2][1] = (m[0][1] * m[2][0] - m[0][0] * m[2][1]) / determinant;
+		inverse[2][2] = (m[0][0] * m[1][1] - m[0][1] * m[1][0]) / determinant;
+		return inverse;
+	}
+
+	/**
+	 * Computes the footprints of all products of the given classes (including subtypes) on the given work queue, and
+	 * returns when they are done
+	 */
+	public void computeAll(Set<EClass> eClasses, WorkQueue workQueue, CancellationToken cancellationToken) {
+		List<IfcProduct> products = new ArrayList<>();
+		for (EClass eClass : eClasses) {
+			for (IdEObject object : model.getAllWithSubTypes(eClass)) {
+				if (object instanceof IfcProduct && !footprints.containsKey(object)) {
+					products.add((IfcProduct) object);
+				}
+			}
+		}
+		Concurrent concurrent = new Concurrent(workQueue, cancellationToken);
+		for (int start = 0; start < products.size(); start += PRODUCTS_PER_TASK) {
+			List<IfcProduct> batch = products.subList(start, Math.min(products.size(), start + PRODUCTS_PER_TASK));
+			concurrent.run(() -> {
+				for (IfcProduct ifcProduct : batch) {
+					get(ifcProduct);
+				}
+			});
+		}
+		concurrent.await();
+	}
+
+	public int size() {
+		return footprints.size();
+	}
+
+	/**
+	 * Drops all footprints at the end of the run. Checks that are still running (abandoned after their time budget) can
+	 * still ask for footprints, these are computed but no longer kept.
+	 */
+	public void release() {
+		released = true;
+		footprints.clear();
+		sharedFootprints.clear();
+	}
+}
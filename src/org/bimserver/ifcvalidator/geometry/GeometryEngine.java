@@ -0,0 +1,156 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+import org.bimserver.ifcvalidator.checks.Concurrent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates and combines the 2D {@link Region}s of the geometric checks. There are two implementations:
+ * {@link AwtGeometryEngine}, based on {@link java.awt.geom.Area}, and {@link PolygonGeometryEngine}, which clips
+ * straight-edged polygons on an integer grid.
+ */
+public abstract class GeometryEngine {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GeometryEngine.class);
+	private static final double DEFAULT_GRID_SIZE = 0.0001;
+	private static final int MIN_UNIONS_PER_TASK = 4;
+
+	private static class Holder {
+		private static final GeometryEngine INSTANCE = fromSystemProperties();
+	}
+
+	/**
+	 * The process-wide engine, see {@link #fromSystemProperties()}
+	 */
+	public static GeometryEngine get() {
+		return Holder.INSTANCE;
+	}
+
+	/**
+	 * Reads the system properties ifcvalidator.geometryEngine, AWT (default) or POLYGON, and
+	 * ifcvalidator.geometry.gridSize, the grid the polygon engine snaps to in meters (0.0001). The polygon engine is
+	 * not faster than AWT on the cascaded unions of the checks, compare them with the geometryEngine parameter of the
+	 * ModelCheckBenchmark.
+	 */
+	public static GeometryEngine fromSystemProperties() {
+		String value = System.getProperty("ifcvalidator.geometryEngine", "AWT").trim().toUpperCase();
+		if (value.equals("POLYGON")) {
+			return new PolygonGeometryEngine(Double.parseDouble(System.getProperty("ifcvalidator.geometry.gridSize", Double.toString(DEFAULT_GRID_SIZE))));
+		} else if (!value.equals("AWT")) {
+			LOGGER.warn("Unknown geometry engine " + value + ", using AWT");
+		}
+		return new AwtGeometryEngine();
+	}
+
+	/**
+	 * The region enclosed by the given shape (non-zero winding), or null when the shape is null
+	 */
+	public abstract Region create(Shape shape);
+
+	public abstract Region empty();
+
+	public abstract Region union(Region a, Region b);
+
+	public abstract Region difference(Region a, Region b);
+
+	public abstract Region intersection(Region a, Region b);
+
+	/**
+	 * The union of all given regions, see {@link #unionAll(Collection, WorkQueue, CancellationToken)}
+	 */
+	public Region unionAll(Collection<Region> regions) {
+		return unionAll(regions, null, CancellationToken.NONE);
+	}
+
+	/**
+	 * The union of all given regions (null regions are ignored), computed as a cascade: the regions are put in
+	 * Sort-Tile-Recursive order so that neighbours end up next to each other, then adjacent pairs are merged level by
+	 * level until one region is left. Every union combines two regions of about the same complexity, where adding the
+	 * regions one by one to an ever growing result is roughly quadratic. The unions of one level are independent and
+	 * are run on the given work queue, or on the calling thread when it is null.
+	 */
+	public Region unionAll(Collection<Region> regions, WorkQueue workQueue, CancellationToken cancellationToken) {
+		List<Region> level = new ArrayList<>(regions.size());
+		for (Region region : regions) {
+			if (region != null && !region.isEmpty()) {
+				level.add(region);
+			}
+		}
+		if (level.isEmpty()) {
+			return empty();
+		}
+		level = sortTileRecursive(level);
+		while (level.size() > 1) {
+			cancellationToken.throwIfCancelled();
+			Region[] next = new Region[(level.size() + 1) / 2];
+			int unionsPerTask = Math.max(MIN_UNIONS_PER_TASK, next.length / (4 * Runtime.getRuntime().availableProcessors()));
+			if (workQueue == null || next.length <= unionsPerTask) {
+				unionPairs(level, next, 0, next.length);
+			} else {
+				Concurrent concurrent = new Concurrent(workQueue, cancellationToken);
+				for (int start = 0; start < next.length; start += unionsPerTask) {
+					List<Region> current = level;
+					int from = start;
+					int to = Math.min(next.length, start + unionsPerTask);
+					concurrent.run(() -> unionPairs(current, next, from, to));
+				}
+				concurrent.await();
+			}
+			level = new ArrayList<>(next.length);
+			Collections.addAll(level, next);
+		}
+		return level.get(0);
+	}
+
+	private void unionPairs(List<Region> level, Region[] next, int from, int to) {
+		for (int i = from; i < to; i++) {
+			next[i] = 2 * i + 1 < level.size() ? union(level.get(2 * i), level.get(2 * i + 1)) : level.get(2 * i);
+		}
+	}
+
+	private static List<Region> sortTileRecursive(List<Region> regions) {
+		List<Rectangle2D> bounds = new ArrayList<>(regions.size());
+		List<Integer> order = new ArrayList<>(regions.size());
+		for (int i = 0; i < regions.size(); i++) {
+			bounds.add(regions.get(i).getBounds2D());
+			order.add(i);
+		}
+		int sliceSize = (int) Math.ceil(Math.sqrt(regions.size()));
+		Collections.sort(order, Comparator.comparingDouble(i -> bounds.get(i).getCenterX()));
+		List<Region> result = new ArrayList<>(regions.size());
+		for (int sliceStart = 0; sliceStart < order.size(); sliceStart += sliceSize) {
+			List<Integer> slice = new ArrayList<>(order.subList(sliceStart, Math.min(order.size(), sliceStart + sliceSize)));
+			Collections.sort(slice, Comparator.comparingDouble(i -> bounds.get(i).getCenterY()));
+			for (int i : slice) {
+				result.add(regions.get(i));
+			}
+		}
+		return result;
+	}
+}
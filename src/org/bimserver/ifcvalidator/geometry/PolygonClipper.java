@@ -0,0 +1,641 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Boolean operations on sets of polygons with integer coordinates. A ring is a long[] of interleaved x and y
+ * coordinates, implicitly closed. The input may have any orientation, overlaps and self intersections, the
+ * interior is defined by the non-zero winding rule. The output rings do not overlap or cross, have the interior on
+ * their left (outlines counter-clockwise, holes clockwise) and have no collinear vertices.
+ * <p>
+ * All edges are split at their mutual intersections, which are snapped to the grid. Snapping can make edges cross
+ * again, so splitting is repeated until no crossings are left, or fails with an {@link UnresolvedCrossingsException}
+ * when they are still there after a fixed number of rounds. Coincident edges are merged, then a sweep over the
+ * edges from left to right gives the winding numbers of both operands on either side of every edge, which decide
+ * whether the edge is part of the result. All predicates are evaluated exactly in long arithmetic.
+ */
+class PolygonClipper {
+	/**
+	 * Largest extent of the input in grid units, keeps all products of coordinate differences within a long
+	 */
+	static final long MAX_EXTENT = 1L << 29;
+	private static final int MAX_SNAP_ROUNDS = 16;
+
+	enum Operation {
+		UNION, DIFFERENCE, INTERSECTION;
+
+		boolean apply(boolean a, boolean b) {
+			switch (this) {
+			case UNION:
+				return a || b;
+			case DIFFERENCE:
+				return a && !b;
+			default:
+				return a && b;
+			}
+		}
+	}
+
+	private static class Segment {
+		private long ax;
+		private long ay;
+		private long bx;
+		private long by;
+		private int windingA;
+		private int windingB;
+		// Set by split, whether this segment was created by the last round of splitting
+		private boolean split;
+		// Set by computeWindings, the winding numbers left and right of the segment
+		private int leftA;
+		private int leftB;
+		private int rightA;
+		private int rightB;
+
+		private Segment(long ax, long ay, long bx, long by, int windingA, int windingB) {
+			this.ax = ax;
+			this.ay = ay;
+			this.bx = bx;
+			this.by = by;
+			this.windingA = windingA;
+			this.windingB = windingB;
+		}
+
+		private boolean isVertical() {
+			return ax == bx;
+		}
+
+		private long minX() {
+			return Math.min(ax, bx);
+		}
+
+		private long maxX() {
+			return Math.max(ax, bx);
+		}
+
+		private long minY() {
+			return Math.min(ay, by);
+		}
+
+		private long maxY() {
+			return Math.max(ay, by);
+		}
+
+		/**
+		 * Whether the given point, known to be on the line through this segment, lies strictly between its end points
+		 */
+		private boolean isInside(long x, long y) {
+			return !(x == ax && y == ay) && !(x == bx && y == by) && x >= minX() && x <= maxX() && y >= minY() && y <= maxY();
+		}
+	}
+
+	/**
+	 * Thrown when snapping keeps making edges cross, the windings of the remaining crossings would be wrong
+	 */
+	static class UnresolvedCrossingsException extends IllegalStateException {
+		private static final long serialVersionUID = 1L;
+
+		private UnresolvedCrossingsException() {
+			super("Edges still cross after " + MAX_SNAP_ROUNDS + " rounds of splitting");
+		}
+	}
+
+	private PolygonClipper() {
+	}
+
+	/**
+	 * @param normalized Whether a and b are results of earlier operations, their own edges then do not cross or touch
+	 */
+	static long[][] clip(long[][] a, long[][] b, Operation operation, boolean normalized) {
+		long minX = Long.MAX_VALUE;
+		long minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE;
+		long maxY = Long.MIN_VALUE;
+		for (long[][] rings : new long[][][] {a, b}) {
+			for (long[] ring : rings) {
+				for (int i = 0; i < ring.length; i += 2) {
+					minX = Math.min(minX, ring[i]);
+					minY = Math.min(minY, ring[i + 1]);
+					maxX = Math.max(maxX, ring[i]);
+					maxY = Math.max(maxY, ring[i + 1]);
+				}
+			}
+		}
+		if (minX > maxX) {
+			return new long[0][];
+		}
+		if (maxX - minX > MAX_EXTENT || maxY - minY > MAX_EXTENT) {
+			throw new IllegalArgumentException("Polygons span more than " + MAX_EXTENT + " grid units");
+		}
+
+		// Work relative to the lower left corner, so the predicates never overflow
+		List<Segment> segments = new ArrayList<>();
+		addSegments(segments, a, minX, minY, 1, 0);
+		addSegments(segments, b, minX, minY, 0, 1);
+		boolean resolved = false;
+		for (int round = 0; round < MAX_SNAP_ROUNDS && !resolved; round++) {
+			List<Segment> split = split(segments, round == 0 ? (normalized ? Pairs.OTHER_OPERAND : Pairs.ALL) : Pairs.SPLIT);
+			if (split == null) {
+				resolved = true;
+			} else {
+				segments = split;
+			}
+		}
+		if (!resolved && split(segments, Pairs.SPLIT) != null) {
+			throw new UnresolvedCrossingsException();
+		}
+		Segment[] merged = merge(segments);
+		computeWindings(merged);
+
+		List<long[]> edges = new ArrayList<>();
+		for (Segment segment : merged) {
+			boolean left = operation.apply(segment.leftA != 0, segment.leftB != 0);
+			boolean right = operation.apply(segment.rightA != 0, segment.rightB != 0);
+			if (left && !right) {
+				edges.add(new long[] {segment.ax, segment.ay, segment.bx, segment.by});
+			} else if (right && !left) {
+				edges.add(new long[] {segment.bx, segment.by, segment.ax, segment.ay});
+			}
+		}
+		List<long[]> rings = link(edges);
+		for (long[] ring : rings) {
+			for (int i = 0; i < ring.length; i += 2) {
+				ring[i] += minX;
+				ring[i + 1] += minY;
+			}
+		}
+		return rings.toArray(new long[rings.size()][]);
+	}
+
+	private static void addSegments(List<Segment> segments, long[][] rings, long offsetX, long offsetY, int windingA, int windingB) {
+		for (long[] ring : rings) {
+			int n = ring.length / 2;
+			for (int i = 0; i < n; i++) {
+				int j = (i + 1) % n;
+				long ax = ring[2 * i] - offsetX;
+				long ay = ring[2 * i + 1] - offsetY;
+				long bx = ring[2 * j] - offsetX;
+				long by = ring[2 * j + 1] - offsetY;
+				if (ax != bx || ay != by) {
+					segments.add(new Segment(ax, ay, bx, by, windingA, windingB));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sign of the cross product of (b - a) and (c - a), positive when c lies left of a to b
+	 */
+	static int orientation(long ax, long ay, long bx, long by, long cx, long cy) {
+		return Long.signum((bx - ax) * (cy - ay) - (by - ay) * (cx - ax));
+	}
+
+	/**
+	 * The pairs of segments split tests
+	 */
+	private enum Pairs {
+		ALL, OTHER_OPERAND, SPLIT;
+
+		private boolean test(Segment s, Segment t) {
+			switch (this) {
+			case OTHER_OPERAND:
+				return (s.windingA != 0) != (t.windingA != 0);
+			case SPLIT:
+				return s.split || t.split;
+			default:
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Splits all segments at the points where other segments cross or touch them, or returns null when there are none.
+	 * Segments that cross can only appear between the pairs that are tested.
+	 */
+	private static List<Segment> split(List<Segment> segments, Pairs pairs) {
+		Segment[] sorted = getCandidates(segments, pairs);
+		Arrays.sort(sorted, Comparator.comparingLong(Segment::minX));
+		Map<Segment, List<long[]>> splitPoints = new HashMap<>();
+		for (int i = 0; i < sorted.length; i++) {
+			Segment s = sorted[i];
+			long maxX = s.maxX();
+			for (int j = i + 1; j < sorted.length && sorted[j].minX() <= maxX; j++) {
+				Segment t = sorted[j];
+				if (t.minY() > s.maxY() || t.maxY() < s.minY() || !pairs.test(s, t)) {
+					continue;
+				}
+				int o1 = orientation(s.ax, s.ay, s.bx, s.by, t.ax, t.ay);
+				int o2 = orientation(s.ax, s.ay, s.bx, s.by, t.bx, t.by);
+				int o3 = orientation(t.ax, t.ay, t.bx, t.by, s.ax, s.ay);
+				int o4 = orientation(t.ax, t.ay, t.bx, t.by, s.bx, s.by);
+				if (o1 * o2 < 0 && o3 * o4 < 0) {
+					long[] point = intersect(s, t);
+					addSplitPoint(splitPoints, s, point);
+					addSplitPoint(splitPoints, t, point);
+				} else {
+					if (o1 == 0 && s.isInside(t.ax, t.ay)) {
+						addSplitPoint(splitPoints, s, new long[] {t.ax, t.ay});
+					}
+					if (o2 == 0 && s.isInside(t.bx, t.by)) {
+						addSplitPoint(splitPoints, s, new long[] {t.bx, t.by});
+					}
+					if (o3 == 0 && t.isInside(s.ax, s.ay)) {
+						addSplitPoint(splitPoints, t, new long[] {s.ax, s.ay});
+					}
+					if (o4 == 0 && t.isInside(s.bx, s.by)) {
+						addSplitPoint(splitPoints, t, new long[] {s.bx, s.by});
+					}
+				}
+			}
+		}
+		if (splitPoints.isEmpty()) {
+			return null;
+		}
+		List<Segment> result = new ArrayList<>(segments.size() + splitPoints.size() * 2);
+		for (Segment segment : segments) {
+			List<long[]> points = splitPoints.get(segment);
+			if (points == null) {
+				segment.split = false;
+				result.add(segment);
+				continue;
+			}
+			long dx = segment.bx - segment.ax;
+			long dy = segment.by - segment.ay;
+			points.sort(Comparator.comparingLong(point -> (point[0] - segment.ax) * dx + (point[1] - segment.ay) * dy));
+			long x = segment.ax;
+			long y = segment.ay;
+			for (long[] point : points) {
+				if (point[0] != x || point[1] != y) {
+					result.add(newSplitSegment(x, y, point[0], point[1], segment));
+					x = point[0];
+					y = point[1];
+				}
+			}
+			if (segment.bx != x || segment.by != y) {
+				result.add(newSplitSegment(x, y, segment.bx, segment.by, segment));
+			}
+		}
+		return result;
+	}
+
+	private static Segment newSplitSegment(long ax, long ay, long bx, long by, Segment original) {
+		Segment segment = new Segment(ax, ay, bx, by, original.windingA, original.windingB);
+		segment.split = true;
+		return segment;
+	}
+
+	/**
+	 * The segments that can be part of a tested pair: those within the bounds of the smallest operand, or of the
+	 * segments split last round
+	 */
+	private static Segment[] getCandidates(List<Segment> segments, Pairs pairs) {
+		if (pairs == Pairs.ALL) {
+			return segments.toArray(new Segment[segments.size()]);
+		}
+		int operandA = 0;
+		for (Segment segment : segments) {
+			if (segment.windingA != 0) {
+				operandA++;
+			}
+		}
+		boolean probeA = operandA <= segments.size() - operandA;
+		long minX = Long.MAX_VALUE;
+		long minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE;
+		long maxY = Long.MIN_VALUE;
+		for (Segment segment : segments) {
+			if (pairs == Pairs.SPLIT ? segment.split : (segment.windingA != 0) == probeA) {
+				minX = Math.min(minX, segment.minX());
+				minY = Math.min(minY, segment.minY());
+				maxX = Math.max(maxX, segment.maxX());
+				maxY = Math.max(maxY, segment.maxY());
+			}
+		}
+		List<Segment> candidates = new ArrayList<>();
+		for (Segment segment : segments) {
+			if (segment.minX() <= maxX && segment.maxX() >= minX && segment.minY() <= maxY && segment.maxY() >= minY) {
+				candidates.add(segment);
+			}
+		}
+		return candidates.toArray(new Segment[candidates.size()]);
+	}
+
+	private static void addSplitPoint(Map<Segment, List<long[]>> splitPoints, Segment segment, long[] point) {
+		if ((point[0] != segment.ax || point[1] != segment.ay) && (point[0] != segment.bx || point[1] != segment.by)) {
+			splitPoints.computeIfAbsent(segment, k -> new ArrayList<>()).add(point);
+		}
+	}
+
+	/**
+	 * The intersection point of two properly crossing segments, rounded to the grid
+	 */
+	private static long[] intersect(Segment s, Segment t) {
+		long sdx = s.bx - s.ax;
+		long sdy = s.by - s.ay;
+		long tdx = t.bx - t.ax;
+		long tdy = t.by - t.ay;
+		double denominator = sdx * tdy - sdy * tdx;
+		double numerator = (t.ax - s.ax) * tdy - (t.ay - s.ay) * tdx;
+		double fraction = numerator / denominator;
+		return new long[] {s.ax + Math.round(fraction * sdx), s.ay + Math.round(fraction * sdy)};
+	}
+
+	/**
+	 * Orients every segment from its lexicographically smallest end point and merges coincident segments, adding up
+	 * their windings
+	 */
+	private static Segment[] merge(List<Segment> segments) {
+		for (Segment segment : segments) {
+			if (segment.ax > segment.bx || (segment.ax == segment.bx && segment.ay > segment.by)) {
+				long x = segment.ax;
+				long y = segment.ay;
+				segment.ax = segment.bx;
+				segment.ay = segment.by;
+				segment.bx = x;
+				segment.by = y;
+				segment.windingA = -segment.windingA;
+				segment.windingB = -segment.windingB;
+			}
+		}
+		segments.sort(Comparator.<Segment>comparingLong(s -> s.ax).thenComparingLong(s -> s.ay).thenComparingLong(s -> s.bx).thenComparingLong(s -> s.by));
+		List<Segment> merged = new ArrayList<>(segments.size());
+		Segment previous = null;
+		for (Segment segment : segments) {
+			if (previous != null && previous.ax == segment.ax && previous.ay == segment.ay && previous.bx == segment.bx && previous.by == segment.by) {
+				previous.windingA += segment.windingA;
+				previous.windingB += segment.windingB;
+			} else {
+				merged.add(segment);
+				previous = segment;
+			}
+		}
+		return merged.toArray(new Segment[merged.size()]);
+	}
+
+	/**
+	 * Sweeps a vertical line from left to right over the merged segments, keeping the non-vertical segments it crosses
+	 * ordered from bottom to top. The winding numbers just above a segment are those just below it plus its own, just
+	 * below it they are those just above the segment below it. Vertical segments take the winding numbers of the
+	 * segment below their midpoint.
+	 */
+	private static void computeWindings(Segment[] segments) {
+		// Merged segments are sorted by their left end point
+		Segment[] byEnd = Arrays.stream(segments).filter(segment -> !segment.isVertical()).sorted(Comparator.comparingLong(segment -> segment.bx)).toArray(Segment[]::new);
+		List<Segment> status = new ArrayList<>();
+		List<Segment> starting = new ArrayList<>();
+		int start = 0;
+		int end = 0;
+		while (start < segments.length) {
+			long x = segments[start].ax;
+			while (end < byEnd.length && byEnd[end].bx <= x) {
+				remove(status, byEnd[end++]);
+			}
+			starting.clear();
+			int first = start;
+			while (start < segments.length && segments[start].ax == x) {
+				if (!segments[start].isVertical()) {
+					starting.add(segments[start]);
+				}
+				start++;
+			}
+			starting.sort(PolygonClipper::compareInSweep);
+			for (Segment segment : starting) {
+				int index = insertionIndex(status, segment);
+				status.add(index, segment);
+				// Segments run to the right, so their left side is above them
+				Segment below = index == 0 ? null : status.get(index - 1);
+				segment.rightA = below == null ? 0 : below.leftA;
+				segment.rightB = below == null ? 0 : below.leftB;
+				segment.leftA = segment.rightA + segment.windingA;
+				segment.leftB = segment.rightB + segment.windingB;
+			}
+			for (int i = first; i < start; i++) {
+				Segment segment = segments[i];
+				if (segment.isVertical()) {
+					// Vertical segments run up, so their right side is the one the sweep line just passed
+					Segment below = segmentBelow(status, 2 * x, segment.ay + segment.by);
+					segment.rightA = below == null ? 0 : below.leftA;
+					segment.rightB = below == null ? 0 : below.leftB;
+					segment.leftA = segment.rightA + segment.windingA;
+					segment.leftB = segment.rightB + segment.windingB;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Orders two non-vertical segments that do not cross and are both crossed by the sweep line, from bottom to top
+	 */
+	private static int compareInSweep(Segment s, Segment t) {
+		if (s == t) {
+			return 0;
+		}
+		if (s.ax <= t.ax) {
+			int orientation = orientation(s.ax, s.ay, s.bx, s.by, t.ax, t.ay);
+			if (orientation == 0) {
+				orientation = orientation(s.ax, s.ay, s.bx, s.by, t.bx, t.by);
+			}
+			return -orientation;
+		}
+		int orientation = orientation(t.ax, t.ay, t.bx, t.by, s.ax, s.ay);
+		if (orientation == 0) {
+			orientation = orientation(t.ax, t.ay, t.bx, t.by, s.bx, s.by);
+		}
+		return orientation;
+	}
+
+	private static int insertionIndex(List<Segment> status, Segment segment) {
+		int low = 0;
+		int high = status.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (compareInSweep(status.get(middle), segment) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static void remove(List<Segment> status, Segment segment) {
+		int index = insertionIndex(status, segment);
+		if (index < status.size() && status.get(index) == segment) {
+			status.remove(index);
+		} else {
+			// Only when snapping left crossings behind, the order is not consistent then
+			status.remove(segment);
+		}
+	}
+
+	/**
+	 * The highest segment of the sweep line below the given point, in doubled coordinates
+	 */
+	private static Segment segmentBelow(List<Segment> status, long px, long py) {
+		int low = 0;
+		int high = status.size();
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			Segment segment = status.get(middle);
+			if (orientation(2 * segment.ax, 2 * segment.ay, 2 * segment.bx, 2 * segment.by, px, py) > 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low == 0 ? null : status.get(low - 1);
+	}
+
+	/**
+	 * Links the directed edges into rings, taking the sharpest right turn where several edges leave the same vertex
+	 */
+	private static List<long[]> link(List<long[]> edges) {
+		// Sorted by start vertex, so the edges leaving a vertex are found by binary search
+		edges.sort(Comparator.comparingLong(edge -> key(edge[0], edge[1])));
+		long[] keys = new long[edges.size()];
+		for (int i = 0; i < keys.length; i++) {
+			keys[i] = key(edges.get(i)[0], edges.get(i)[1]);
+		}
+		boolean[] used = new boolean[edges.size()];
+		List<long[]> rings = new ArrayList<>();
+		for (int first = 0; first < edges.size(); first++) {
+			if (used[first]) {
+				continue;
+			}
+			LongList ring = new LongList();
+			int current = first;
+			long[] start = edges.get(first);
+			while (current != -1) {
+				used[current] = true;
+				long[] edge = edges.get(current);
+				ring.add(edge[0], edge[1]);
+				if (edge[2] == start[0] && edge[3] == start[1]) {
+					break;
+				}
+				current = next(edges, keys, used, edge);
+			}
+			if (current != -1) {
+				long[] simplified = removeCollinear(ring.toArray());
+				if (simplified.length >= 6) {
+					rings.add(simplified);
+				}
+			}
+		}
+		return rings;
+	}
+
+	private static int next(List<long[]> edges, long[] keys, boolean[] used, long[] incoming) {
+		int best = -1;
+		double bestAngle = Double.MAX_VALUE;
+		long key = key(incoming[2], incoming[3]);
+		int low = 0;
+		int high = keys.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		double backX = incoming[0] - incoming[2];
+		double backY = incoming[1] - incoming[3];
+		for (int candidate = low; candidate < keys.length && keys[candidate] == key; candidate++) {
+			if (used[candidate]) {
+				continue;
+			}
+			long[] edge = edges.get(candidate);
+			double outX = edge[2] - edge[0];
+			double outY = edge[3] - edge[1];
+			// Counter-clockwise angle from the way back to the outgoing edge, the smallest one is the sharpest right turn
+			double angle = Math.atan2(backX * outY - backY * outX, backX * outX + backY * outY);
+			if (angle <= 0) {
+				angle += 2 * Math.PI;
+			}
+			if (angle < bestAngle) {
+				bestAngle = angle;
+				best = candidate;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Removes the vertices that lie on the line through their neighbours, in one pass with the ring as a stack
+	 */
+	private static long[] removeCollinear(long[] ring) {
+		int n = ring.length / 2;
+		long[] stack = new long[ring.length];
+		int size = 0;
+		for (int i = 0; i < n; i++) {
+			stack[2 * size] = ring[2 * i];
+			stack[2 * size + 1] = ring[2 * i + 1];
+			size++;
+			while (size >= 3 && isCollinear(stack, size - 3, size - 2, size - 1)) {
+				stack[2 * (size - 2)] = stack[2 * (size - 1)];
+				stack[2 * (size - 2) + 1] = stack[2 * (size - 1) + 1];
+				size--;
+			}
+		}
+		// Where the ring closes, the last and the first vertex can still be collinear with their neighbours
+		int first = 0;
+		boolean removed = true;
+		while (removed && size - first >= 3) {
+			removed = false;
+			if (isCollinear(stack, size - 2, size - 1, first)) {
+				size--;
+				removed = true;
+			} else if (isCollinear(stack, size - 1, first, first + 1)) {
+				first++;
+				removed = true;
+			}
+		}
+		return Arrays.copyOfRange(stack, 2 * first, 2 * size);
+	}
+
+	private static boolean isCollinear(long[] points, int a, int b, int c) {
+		return orientation(points[2 * a], points[2 * a + 1], points[2 * b], points[2 * b + 1], points[2 * c], points[2 * c + 1]) == 0;
+	}
+
+	private static long key(long x, long y) {
+		return (x << 31) | y;
+	}
+
+	private static class LongList {
+		private long[] values = new long[16];
+		private int size;
+
+		private void add(long x, long y) {
+			if (size + 2 > values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+			values[size++] = x;
+			values[size++] = y;
+		}
+
+		private long[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
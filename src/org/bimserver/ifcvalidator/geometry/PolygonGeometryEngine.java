@@ -0,0 +1,155 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bimserver.ifcvalidator.geometry.PolygonClipper.Operation;
+import org.bimserver.ifcvalidator.geometry.PolygonClipper.UnresolvedCrossingsException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link GeometryEngine} for straight-edged footprints. Coordinates are snapped to a grid and kept in primitive long
+ * arrays, the boolean operations are done by the {@link PolygonClipper} with exact predicates. Curves are flattened
+ * to the grid size. In the rare case that snapping keeps making edges cross, an operation falls back to
+ * {@link Area} and snaps its result.
+ */
+public class PolygonGeometryEngine extends GeometryEngine {
+	private static final Logger LOGGER = LoggerFactory.getLogger(PolygonGeometryEngine.class);
+	private final double gridSize;
+
+	/**
+	 * @param gridSize Size of a grid cell in the units of the shapes, a region can span at most
+	 *            {@link PolygonClipper#MAX_EXTENT} cells
+	 */
+	public PolygonGeometryEngine(double gridSize) {
+		if (!(gridSize > 0)) {
+			throw new IllegalArgumentException("Grid size must be positive");
+		}
+		this.gridSize = gridSize;
+	}
+
+	public double getGridSize() {
+		return gridSize;
+	}
+
+	@Override
+	public Region create(Shape shape) {
+		if (shape == null) {
+			return null;
+		}
+		try {
+			return normalize(getRings(shape));
+		} catch (UnresolvedCrossingsException e) {
+			// Area resolves the self intersections before snapping
+			LOGGER.debug("Falling back to Area to create a region", e);
+			return normalize(getRings(new Area(shape)));
+		}
+	}
+
+	private long[][] getRings(Shape shape) {
+		List<long[]> rings = new ArrayList<>();
+		PathIterator pathIterator = shape.getPathIterator(null, gridSize);
+		double[] coords = new double[6];
+		long[] ring = new long[16];
+		int size = 0;
+		while (!pathIterator.isDone()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_CLOSE) {
+				if (size >= 6) {
+					rings.add(Arrays.copyOf(ring, size));
+				}
+				size = 0;
+			}
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+				if (size + 2 > ring.length) {
+					ring = Arrays.copyOf(ring, ring.length * 2);
+				}
+				ring[size++] = Math.round(coords[0] / gridSize);
+				ring[size++] = Math.round(coords[1] / gridSize);
+			}
+			pathIterator.next();
+		}
+		if (size >= 6) {
+			rings.add(Arrays.copyOf(ring, size));
+		}
+		return rings.toArray(new long[rings.size()][]);
+	}
+
+	@Override
+	public Region empty() {
+		return new PolygonRegion(new long[0][], gridSize);
+	}
+
+	@Override
+	public Region union(Region a, Region b) {
+		return clip(a, b, Operation.UNION);
+	}
+
+	@Override
+	public Region difference(Region a, Region b) {
+		return clip(a, b, Operation.DIFFERENCE);
+	}
+
+	@Override
+	public Region intersection(Region a, Region b) {
+		return clip(a, b, Operation.INTERSECTION);
+	}
+
+	private Region clip(Region a, Region b, Operation operation) {
+		try {
+			return new PolygonRegion(PolygonClipper.clip(cast(a).getRings(gridSize), cast(b).getRings(gridSize), operation, true), gridSize);
+		} catch (UnresolvedCrossingsException e) {
+			LOGGER.debug("Falling back to Area for " + operation, e);
+			Area area = cast(a).toArea();
+			switch (operation) {
+			case UNION:
+				area.add(cast(b).toArea());
+				break;
+			case DIFFERENCE:
+				area.subtract(cast(b).toArea());
+				break;
+			default:
+				area.intersect(cast(b).toArea());
+			}
+			return create(area);
+		}
+	}
+
+	/**
+	 * Resolves the overlaps, self intersections and degenerate edges of the given rings
+	 * 
+	 * @throws UnresolvedCrossingsException When snapping keeps making edges cross
+	 */
+	Region normalize(long[][] rings) {
+		return new PolygonRegion(PolygonClipper.clip(rings, new long[0][], Operation.UNION, false), gridSize);
+	}
+
+	static PolygonRegion cast(Region region) {
+		if (!(region instanceof PolygonRegion)) {
+			throw new IllegalArgumentException("Region of another geometry engine");
+		}
+		return (PolygonRegion) region;
+	}
+}
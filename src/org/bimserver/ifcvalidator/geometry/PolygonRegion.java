@@ -0,0 +1,213 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bimserver.ifcvalidator.geometry.PolygonClipper.Operation;
+import org.bimserver.ifcvalidator.geometry.PolygonClipper.UnresolvedCrossingsException;
+
+/**
+ * {@link Region} of the {@link PolygonGeometryEngine}: non-overlapping rings of grid coordinates with the interior on
+ * their left
+ */
+class PolygonRegion implements Region {
+	private final long[][] rings;
+	private final double gridSize;
+
+	PolygonRegion(long[][] rings, double gridSize) {
+		this.rings = rings;
+		this.gridSize = gridSize;
+	}
+
+	/**
+	 * The rings in cells of the given grid size
+	 */
+	long[][] getRings(double gridSize) {
+		if (gridSize == this.gridSize) {
+			return rings;
+		}
+		long[][] result = new long[rings.length][];
+		for (int i = 0; i < rings.length; i++) {
+			result[i] = new long[rings[i].length];
+			for (int j = 0; j < rings[i].length; j++) {
+				result[i][j] = Math.round(rings[i][j] * this.gridSize / gridSize);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return rings.length == 0;
+	}
+
+	@Override
+	public double getArea() {
+		double area = 0;
+		for (long[] ring : rings) {
+			area += getSignedArea(ring);
+		}
+		return area * gridSize * gridSize;
+	}
+
+	/**
+	 * Twice the signed area in grid cells, positive for counter-clockwise rings
+	 */
+	private static double getSignedArea(long[] ring) {
+		double sum = 0;
+		long x0 = ring[0];
+		long y0 = ring[1];
+		for (int i = 2; i + 2 < ring.length; i += 2) {
+			sum += (double) (ring[i] - x0) * (ring[i + 3] - y0) - (double) (ring[i + 2] - x0) * (ring[i + 1] - y0);
+		}
+		return sum / 2;
+	}
+
+	@Override
+	public Rectangle2D getBounds2D() {
+		if (rings.length == 0) {
+			return new Rectangle2D.Double();
+		}
+		long minX = Long.MAX_VALUE;
+		long minY = Long.MAX_VALUE;
+		long maxX = Long.MIN_VALUE;
+		long maxY = Long.MIN_VALUE;
+		for (long[] ring : rings) {
+			for (int i = 0; i < ring.length; i += 2) {
+				minX = Math.min(minX, ring[i]);
+				minY = Math.min(minY, ring[i + 1]);
+				maxX = Math.max(maxX, ring[i]);
+				maxY = Math.max(maxY, ring[i + 1]);
+			}
+		}
+		return new Rectangle2D.Double(minX * gridSize, minY * gridSize, (maxX - minX) * gridSize, (maxY - minY) * gridSize);
+	}
+
+	@Override
+	public boolean contains(double x, double y) {
+		double px = x / gridSize;
+		double py = y / gridSize;
+		int winding = 0;
+		for (long[] ring : rings) {
+			int n = ring.length / 2;
+			for (int i = 0; i < n; i++) {
+				int j = (i + 1) % n;
+				double ax = ring[2 * i];
+				double ay = ring[2 * i + 1];
+				double bx = ring[2 * j];
+				double by = ring[2 * j + 1];
+				double cross = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+				if (ay <= py && by > py && cross > 0) {
+					winding++;
+				} else if (ay > py && by <= py && cross < 0) {
+					winding--;
+				}
+			}
+		}
+		return winding != 0;
+	}
+
+	@Override
+	public boolean containsAllPoints(Region region) {
+		PolygonRegion other = PolygonGeometryEngine.cast(region);
+		for (long[] ring : other.rings) {
+			for (int i = 0; i < ring.length; i += 2) {
+				if (!contains(ring[i] * other.gridSize, ring[i + 1] * other.gridSize)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public List<Region> getRings() {
+		List<Region> result = new ArrayList<>(rings.length);
+		for (long[] ring : rings) {
+			result.add(new PolygonRegion(new long[][] {getSignedArea(ring) < 0 ? reverse(ring) : ring}, gridSize));
+		}
+		return result;
+	}
+
+	private static long[] reverse(long[] ring) {
+		long[] reversed = new long[ring.length];
+		for (int i = 0; i < ring.length; i += 2) {
+			reversed[ring.length - 2 - i] = ring[i];
+			reversed[ring.length - 1 - i] = ring[i + 1];
+		}
+		return reversed;
+	}
+
+	@Override
+	public Region getSmallestRing() {
+		long[] smallest = null;
+		double smallestArea = Double.MAX_VALUE;
+		for (long[] ring : rings) {
+			double area = Math.abs(getSignedArea(ring));
+			if (area < smallestArea) {
+				smallestArea = area;
+				smallest = ring;
+			}
+		}
+		if (smallest == null) {
+			return null;
+		}
+		return new PolygonRegion(new long[][] {getSignedArea(smallest) < 0 ? reverse(smallest) : smallest}, gridSize);
+	}
+
+	@Override
+	public Region transform(AffineTransform affineTransform) {
+		long[][] transformed = new long[rings.length][];
+		double[] point = new double[2];
+		for (int i = 0; i < rings.length; i++) {
+			transformed[i] = new long[rings[i].length];
+			for (int j = 0; j < rings[i].length; j += 2) {
+				point[0] = rings[i][j] * gridSize;
+				point[1] = rings[i][j + 1] * gridSize;
+				affineTransform.transform(point, 0, point, 0, 1);
+				transformed[i][j] = Math.round(point[0] / gridSize);
+				transformed[i][j + 1] = Math.round(point[1] / gridSize);
+			}
+		}
+		// Snapping can make edges touch or cross, and a mirroring transform turns the rings around
+		try {
+			return new PolygonRegion(PolygonClipper.clip(transformed, new long[0][], Operation.UNION, false), gridSize);
+		} catch (UnresolvedCrossingsException e) {
+			return new PolygonGeometryEngine(gridSize).create(toArea().createTransformedArea(affineTransform));
+		}
+	}
+
+	@Override
+	public Area toArea() {
+		Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+		for (long[] ring : rings) {
+			path.moveTo(ring[0] * gridSize, ring[1] * gridSize);
+			for (int i = 2; i < ring.length; i += 2) {
+				path.lineTo(ring[i] * gridSize, ring[i + 1] * gridSize);
+			}
+			path.closePath();
+		}
+		return new Area(path);
+	}
+}
@@ -0,0 +1,62 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * Immutable 2D region, a set of closed polygons such as the footprint of a product. Regions are created and combined by
+ * a {@link GeometryEngine}, regions of different engines can not be combined.
+ */
+public interface Region {
+	boolean isEmpty();
+
+	/**
+	 * The enclosed area, holes excluded
+	 */
+	double getArea();
+
+	Rectangle2D getBounds2D();
+
+	boolean contains(double x, double y);
+
+	/**
+	 * Whether all vertices of the given region lie within this region
+	 */
+	boolean containsAllPoints(Region region);
+
+	/**
+	 * Every outline and every hole of this region as a separate filled region, in a stable order
+	 */
+	List<Region> getRings();
+
+	/**
+	 * The ring with the smallest area, or null when this region is empty
+	 */
+	Region getSmallestRing();
+
+	Region transform(AffineTransform affineTransform);
+
+	/**
+	 * A new {@link Area} with the same outline, for rendering
+	 */
+	Area toArea();
+}
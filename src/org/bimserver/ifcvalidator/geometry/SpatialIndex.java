@@ -0,0 +1,160 @@
+package org.bimserver.ifcvalidator.geometry;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static 2D R-tree over the bounding boxes of shapes, bulk loaded with Sort-Tile-Recursive packing. Used to find the
+ * candidates for an exact (and expensive) polygon test, typically over the footprints of the products of one building
+ * storey. Immutable once built, so it can be queried from multiple threads.
+ */
+public class SpatialIndex<T> {
+	private static final int DEFAULT_NODE_CAPACITY = 10;
+
+	private static class Node {
+		private final double minX;
+		private final double minY;
+		private final double maxX;
+		private final double maxY;
+		private final List<Node> children;
+		private final Object item;
+
+		private Node(Rectangle2D bounds, Object item) {
+			this.minX = bounds.getMinX();
+			this.minY = bounds.getMinY();
+			this.maxX = bounds.getMaxX();
+			this.maxY = bounds.getMaxY();
+			this.children = null;
+			this.item = item;
+		}
+
+		private Node(List<Node> children) {
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (Node child : children) {
+				minX = Math.min(minX, child.minX);
+				minY = Math.min(minY, child.minY);
+				maxX = Math.max(maxX, child.maxX);
+				maxY = Math.max(maxY, child.maxY);
+			}
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+			this.children = children;
+			this.item = null;
+		}
+
+		private double getCenterX() {
+			return (minX + maxX) / 2;
+		}
+
+		private double getCenterY() {
+			return (minY + maxY) / 2;
+		}
+
+		private boolean intersects(double minX, double minY, double maxX, double maxY) {
+			return this.minX <= maxX && this.maxX >= minX && this.minY <= maxY && this.maxY >= minY;
+		}
+	}
+
+	private final Node root;
+	private final int size;
+
+	/**
+	 * Indexes the bounding boxes of the given shapes, entries without a shape are left out
+	 */
+	public SpatialIndex(Map<T, ? extends Shape> shapes) {
+		this(shapes, DEFAULT_NODE_CAPACITY);
+	}
+
+	public SpatialIndex(Map<T, ? extends Shape> shapes, int nodeCapacity) {
+		if (nodeCapacity < 2) {
+			throw new IllegalArgumentException("Node capacity must be at least 2");
+		}
+		List<Node> nodes = new ArrayList<>(shapes.size());
+		for (Map.Entry<T, ? extends Shape> entry : shapes.entrySet()) {
+			if (entry.getValue() != null) {
+				nodes.add(new Node(entry.getValue().getBounds2D(), entry.getKey()));
+			}
+		}
+		this.size = nodes.size();
+		while (nodes.size() > 1) {
+			nodes = pack(nodes, nodeCapacity);
+		}
+		this.root = nodes.isEmpty() ? null : nodes.get(0);
+	}
+
+	/**
+	 * One level of STR packing: sorts the nodes into vertical slices by their center x, sorts every slice by center y and
+	 * groups consecutive nodes into parents of at most nodeCapacity children
+	 */
+	private static List<Node> pack(List<Node> nodes, int nodeCapacity) {
+		int nrParents = (nodes.size() + nodeCapacity - 1) / nodeCapacity;
+		int nrSlices = (int) Math.ceil(Math.sqrt(nrParents));
+		int sliceSize = nrSlices * nodeCapacity;
+		Collections.sort(nodes, Comparator.comparingDouble(Node::getCenterX));
+		List<Node> parents = new ArrayList<>(nrParents);
+		for (int sliceStart = 0; sliceStart < nodes.size(); sliceStart += sliceSize) {
+			List<Node> slice = new ArrayList<>(nodes.subList(sliceStart, Math.min(nodes.size(), sliceStart + sliceSize)));
+			Collections.sort(slice, Comparator.comparingDouble(Node::getCenterY));
+			for (int start = 0; start < slice.size(); start += nodeCapacity) {
+				parents.add(new Node(new ArrayList<>(slice.subList(start, Math.min(slice.size(), start + nodeCapacity)))));
+			}
+		}
+		return parents;
+	}
+
+	/**
+	 * Returns the items whose bounding box intersects the given rectangle, boxes that only touch it included
+	 */
+	public List<T> query(Rectangle2D rectangle) {
+		List<T> result = new ArrayList<>();
+		if (root != null) {
+			query(root, rectangle.getMinX(), rectangle.getMinY(), rectangle.getMaxX(), rectangle.getMaxY(), result);
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void query(Node node, double minX, double minY, double maxX, double maxY, List<T> result) {
+		if (!node.intersects(minX, minY, maxX, maxY)) {
+			return;
+		}
+		if (node.children == null) {
+			result.add((T) node.item);
+		} else {
+			for (Node child : node.children) {
+				query(child, minX, minY, maxX, maxY, result);
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+}
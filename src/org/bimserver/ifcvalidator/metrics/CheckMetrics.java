@@ -0,0 +1,114 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+
+public class CheckMetrics implements CheckMetricsMXBean {
+	private final LongAdder invocations = new LongAdder();
+	private final LongAdder exceptions = new LongAdder();
+	private final LongAdder cancellations = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder modelObjects = new LongAdder();
+	private final Map<String, LongAdder> issues = new ConcurrentHashMap<>();
+	private volatile LatencyHistogram latencyHistogram = new LatencyHistogram();
+
+	public void record(long nanos, int modelSize) {
+		invocations.increment();
+		totalNanos.add(nanos);
+		modelObjects.add(modelSize);
+		latencyHistogram.record(nanos);
+	}
+
+	public void recordException() {
+		exceptions.increment();
+	}
+
+	public void recordCancellation() {
+		cancellations.increment();
+	}
+
+	public void recordIssues(IssueContainer issueContainer) {
+		for (Issue issue : issueContainer.list()) {
+			issues.computeIfAbsent(String.valueOf(issue.getType()), type -> new LongAdder()).increment();
+		}
+	}
+
+	@Override
+	public long getInvocations() {
+		return invocations.sum();
+	}
+
+	@Override
+	public long getExceptions() {
+		return exceptions.sum();
+	}
+
+	@Override
+	public long getCancellations() {
+		return cancellations.sum();
+	}
+
+	@Override
+	public long getTotalMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(totalNanos.sum());
+	}
+
+	@Override
+	public double getMeanMillis() {
+		long invocations = this.invocations.sum();
+		return invocations == 0 ? 0 : totalNanos.sum() / 1000000.0 / invocations;
+	}
+
+	@Override
+	public Map<String, Long> getLatencyHistogram() {
+		return latencyHistogram.snapshot();
+	}
+
+	@Override
+	public Map<String, Long> getIssues() {
+		Map<String, Long> result = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : issues.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return result;
+	}
+
+	@Override
+	public long getModelObjects() {
+		return modelObjects.sum();
+	}
+
+	@Override
+	public void reset() {
+		invocations.reset();
+		exceptions.reset();
+		cancellations.reset();
+		totalNanos.reset();
+		modelObjects.reset();
+		issues.clear();
+		latencyHistogram = new LatencyHistogram();
+	}
+}
@@ -0,0 +1,46 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Map;
+
+public interface CheckMetricsMXBean {
+	long getInvocations();
+
+	long getExceptions();
+
+	long getCancellations();
+
+	long getTotalMillis();
+
+	double getMeanMillis();
+
+	Map<String, Long> getLatencyHistogram();
+
+	/**
+	 * Number of issues emitted per issue type
+	 */
+	Map<String, Long> getIssues();
+
+	/**
+	 * Sum of the number of objects of the checked models
+	 */
+	long getModelObjects();
+
+	void reset();
+}
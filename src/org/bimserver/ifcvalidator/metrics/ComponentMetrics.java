@@ -0,0 +1,67 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters and latency histograms of a component that is shared by checks, like the 2D geometry tools
+ */
+public class ComponentMetrics implements ComponentMetricsMXBean {
+	private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	private final Map<String, LatencyHistogram> latencyHistograms = new ConcurrentHashMap<>();
+
+	public void increment(String counter) {
+		add(counter, 1);
+	}
+
+	public void add(String counter, long value) {
+		counters.computeIfAbsent(counter, name -> new LongAdder()).add(value);
+	}
+
+	public void recordLatency(String operation, long nanos) {
+		latencyHistograms.computeIfAbsent(operation, name -> new LatencyHistogram()).record(nanos);
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> result = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().sum());
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, Map<String, Long>> getLatencyHistograms() {
+		Map<String, Map<String, Long>> result = new TreeMap<>();
+		for (Map.Entry<String, LatencyHistogram> entry : latencyHistograms.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().snapshot());
+		}
+		return result;
+	}
+
+	@Override
+	public void reset() {
+		counters.clear();
+		latencyHistograms.clear();
+	}
+}
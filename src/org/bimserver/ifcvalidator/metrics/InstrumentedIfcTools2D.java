@@ -0,0 +1,43 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.Area;
+
+import org.bimserver.models.ifc2x3tc1.IfcProduct;
+import org.bimserver.utils.IfcTools2D;
+
+/**
+ * {@link IfcTools2D} that reports the number, outcome and duration of its 2D conversions to the {@link MetricsRegistry}
+ */
+public class InstrumentedIfcTools2D extends IfcTools2D {
+	private final ComponentMetrics componentMetrics = MetricsRegistry.get().getComponentMetrics("IfcTools2D");
+
+	@Override
+	public Area get2D(IfcProduct ifcProduct, float multiplierMillimeters) {
+		long start = System.nanoTime();
+		Area area = null;
+		try {
+			area = super.get2D(ifcProduct, multiplierMillimeters);
+			return area;
+		} finally {
+			componentMetrics.recordLatency("get2D", System.nanoTime() - start);
+			componentMetrics.increment(area == null ? "get2D.failed" : "get2D.succeeded");
+		}
+	}
+}
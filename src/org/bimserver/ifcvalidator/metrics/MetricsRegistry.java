@@ -0,0 +1,77 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runtime metrics of the checks, of the components they share and of the work scheduler, every entry is registered as an MXBean in the
+ * platform MBean server under the domain org.bimserver.ifcvalidator. An MXBean that is already registered under the same name, for
+ * example by an earlier load of the plugin, is replaced so that the server no longer holds on to that plugin's classes.
+ */
+public class MetricsRegistry {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsRegistry.class);
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	private final Map<String, CheckMetrics> checkMetrics = new ConcurrentHashMap<>();
+	private final Map<String, ComponentMetrics> componentMetrics = new ConcurrentHashMap<>();
+
+	public static MetricsRegistry get() {
+		return INSTANCE;
+	}
+
+	public CheckMetrics getCheckMetrics(String fullIdentifier) {
+		return checkMetrics.computeIfAbsent(fullIdentifier, name -> register("Check", name, new CheckMetrics()));
+	}
+
+	public ComponentMetrics getComponentMetrics(String component) {
+		return componentMetrics.computeIfAbsent(component, name -> register("Component", name, new ComponentMetrics()));
+	}
+
+	public void registerWorkScheduler(String name, WorkSchedulerMXBean workScheduler) {
+		register("WorkScheduler", name, workScheduler);
+	}
+
+	private <T> T register(String type, String name, T metrics) {
+		MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName objectName = new ObjectName("org.bimserver.ifcvalidator:type=" + type + ",name=" + ObjectName.quote(name));
+			if (mBeanServer.isRegistered(objectName)) {
+				try {
+					mBeanServer.unregisterMBean(objectName);
+				} catch (InstanceNotFoundException e) {
+					// Removed in the meantime
+				}
+			}
+			mBeanServer.registerMBean(metrics, objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Could not register metrics of " + name, e);
+		}
+		return metrics;
+	}
+}
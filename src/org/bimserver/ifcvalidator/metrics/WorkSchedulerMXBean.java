@@ -0,0 +1,43 @@
+package org.bimserver.ifcvalidator.metrics;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+public interface WorkSchedulerMXBean {
+	int getThreads();
+
+	int getBusyThreads();
+
+	/**
+	 * Number of tasks waiting to be picked up, over all queues
+	 */
+	int getQueueDepth();
+
+	/**
+	 * Number of queues (validation runs) that have tasks waiting
+	 */
+	int getActiveQueues();
+
+	long getCompletedTasks();
+
+	/**
+	 * Fraction of the available thread time spent running tasks since the start or the last reset
+	 */
+	double getUtilization();
+
+	void reset();
+}
@@ -0,0 +1,589 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.bimserver.BimserverDatabaseException;
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.emf.IfcModelInterfaceException;
+import org.bimserver.emf.PackageMetaData;
+import org.bimserver.emf.Schema;
+import org.bimserver.ifc.BasicIfcModel;
+import org.bimserver.ifc.step.serializer.Ifc2x3tc1StepSerializer;
+import org.bimserver.models.geometry.Bounds;
+import org.bimserver.models.geometry.GeometryData;
+import org.bimserver.models.geometry.GeometryFactory;
+import org.bimserver.models.geometry.GeometryInfo;
+import org.bimserver.models.geometry.Vector3f;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.bimserver.models.ifc2x3tc1.IfcAxis2Placement2D;
+import org.bimserver.models.ifc2x3tc1.IfcAxis2Placement3D;
+import org.bimserver.models.ifc2x3tc1.IfcBoolean;
+import org.bimserver.models.ifc2x3tc1.IfcBuilding;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcCartesianPoint;
+import org.bimserver.models.ifc2x3tc1.IfcClassificationReference;
+import org.bimserver.models.ifc2x3tc1.IfcConnectionTypeEnum;
+import org.bimserver.models.ifc2x3tc1.IfcDirection;
+import org.bimserver.models.ifc2x3tc1.IfcExtrudedAreaSolid;
+import org.bimserver.models.ifc2x3tc1.IfcGeometricRepresentationContext;
+import org.bimserver.models.ifc2x3tc1.IfcLocalPlacement;
+import org.bimserver.models.ifc2x3tc1.IfcObject;
+import org.bimserver.models.ifc2x3tc1.IfcObjectDefinition;
+import org.bimserver.models.ifc2x3tc1.IfcObjectPlacement;
+import org.bimserver.models.ifc2x3tc1.IfcOpeningElement;
+import org.bimserver.models.ifc2x3tc1.IfcProductDefinitionShape;
+import org.bimserver.models.ifc2x3tc1.IfcProfileTypeEnum;
+import org.bimserver.models.ifc2x3tc1.IfcProject;
+import org.bimserver.models.ifc2x3tc1.IfcPropertySet;
+import org.bimserver.models.ifc2x3tc1.IfcPropertySingleValue;
+import org.bimserver.models.ifc2x3tc1.IfcRectangleProfileDef;
+import org.bimserver.models.ifc2x3tc1.IfcRelAggregates;
+import org.bimserver.models.ifc2x3tc1.IfcRelAssociatesClassification;
+import org.bimserver.models.ifc2x3tc1.IfcRelConnectsPathElements;
+import org.bimserver.models.ifc2x3tc1.IfcRelContainedInSpatialStructure;
+import org.bimserver.models.ifc2x3tc1.IfcRelDefinesByProperties;
+import org.bimserver.models.ifc2x3tc1.IfcRelFillsElement;
+import org.bimserver.models.ifc2x3tc1.IfcRelSpaceBoundary;
+import org.bimserver.models.ifc2x3tc1.IfcRelVoidsElement;
+import org.bimserver.models.ifc2x3tc1.IfcRoot;
+import org.bimserver.models.ifc2x3tc1.IfcSIPrefix;
+import org.bimserver.models.ifc2x3tc1.IfcSIUnit;
+import org.bimserver.models.ifc2x3tc1.IfcSIUnitName;
+import org.bimserver.models.ifc2x3tc1.IfcShapeRepresentation;
+import org.bimserver.models.ifc2x3tc1.IfcSite;
+import org.bimserver.models.ifc2x3tc1.IfcSpace;
+import org.bimserver.models.ifc2x3tc1.IfcUnitAssignment;
+import org.bimserver.models.ifc2x3tc1.IfcUnitEnum;
+import org.bimserver.models.ifc2x3tc1.IfcWallStandardCase;
+import org.bimserver.models.ifc2x3tc1.IfcWindow;
+import org.bimserver.models.ifc2x3tc1.Tristate;
+import org.bimserver.plugins.PluginConfiguration;
+import org.bimserver.plugins.serializers.ProgressReporter;
+import org.bimserver.plugins.serializers.ProjectInfo;
+import org.bimserver.plugins.serializers.SerializerException;
+import org.eclipse.emf.ecore.EClass;
+
+/**
+ * Generates Ifc2x3tc1 models of a configurable size, for benchmarks and scale tests that should not depend on a
+ * BIMserver or on model files. Every storey has a grid of rooms enclosed by walls that are connected with
+ * IfcRelConnectsPathElements, external walls have windows, and a row of parking spaces runs along the building. Room
+ * sizes and gaps (rooms without an IfcSpace) are drawn from a seeded random, so the same settings always give the same
+ * model. All lengths are in millimetres, geometry is in metres like the render engine produces it.
+ */
+public class ModelGenerator {
+	private static final Ifc2x3tc1Package PACKAGE = Ifc2x3tc1Package.eINSTANCE;
+	private static final double ROOM_WIDTH = 5000;
+	private static final double ROOM_DEPTH = 4000;
+	private static final double WALL_THICKNESS = 200;
+	private static final double STOREY_HEIGHT = 3000;
+	private static final double WINDOW_WIDTH = 1200;
+	private static final double WINDOW_HEIGHT = 1500;
+	private static final double WINDOW_SILL = 900;
+	private static final double PARKING_WIDTH = 2400;
+	private static final double HANDICAPPED_PARKING_WIDTH = 3600;
+	private static final double PARKING_DEPTH = 4800;
+	private static final String SPACE_CLASSIFICATION = "13-11 11 00";
+
+	private int storeys = 1;
+	private int rows = 2;
+	private int columns = 2;
+	private int windowsPerExternalWall = 1;
+	private int parkingSpacesPerStorey = 0;
+	private int handicappedParkingInterval = 10;
+	private long seed = 0;
+	private double sizeVariation = 0;
+	private double spaceGapRatio = 0;
+	private boolean geometry = true;
+
+	private IfcModelInterface model;
+	private long oidCounter;
+	private Random random;
+	private IfcGeometricRepresentationContext context;
+	private Map<String, GeometryData> geometryData;
+
+	public ModelGenerator setStoreys(int storeys) {
+		this.storeys = storeys;
+		return this;
+	}
+
+	/**
+	 * Rooms per storey are laid out in a grid of rows by columns
+	 */
+	public ModelGenerator setGrid(int rows, int columns) {
+		this.rows = rows;
+		this.columns = columns;
+		return this;
+	}
+
+	public ModelGenerator setWindowsPerExternalWall(int windowsPerExternalWall) {
+		this.windowsPerExternalWall = windowsPerExternalWall;
+		return this;
+	}
+
+	public ModelGenerator setParkingSpacesPerStorey(int parkingSpacesPerStorey) {
+		this.parkingSpacesPerStorey = parkingSpacesPerStorey;
+		return this;
+	}
+
+	/**
+	 * Every n-th parking space is a handicapped parking space, 0 for none
+	 */
+	public ModelGenerator setHandicappedParkingInterval(int handicappedParkingInterval) {
+		this.handicappedParkingInterval = handicappedParkingInterval;
+		return this;
+	}
+
+	public ModelGenerator setSeed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Column widths and row depths vary randomly by at most this fraction of the default room size, 0 for a regular grid
+	 */
+	public ModelGenerator setSizeVariation(double sizeVariation) {
+		this.sizeVariation = sizeVariation;
+		return this;
+	}
+
+	/**
+	 * Fraction of the rooms that are left without an IfcSpace
+	 */
+	public ModelGenerator setSpaceGapRatio(double spaceGapRatio) {
+		this.spaceGapRatio = spaceGapRatio;
+		return this;
+	}
+
+	/**
+	 * Whether to add GeometryInfo to the products, which the 2D checks need but which costs memory on very large models
+	 */
+	public ModelGenerator setGeometry(boolean geometry) {
+		this.geometry = geometry;
+		return this;
+	}
+
+	public IfcModelInterface generate() throws IfcModelInterfaceException {
+		PackageMetaData packageMetaData = new PackageMetaData(PACKAGE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+		model = new BasicIfcModel(packageMetaData, null);
+		oidCounter = 1;
+		random = new Random(seed);
+		geometryData = new HashMap<>();
+
+		IfcProject ifcProject = createRoot(PACKAGE.getIfcProject(), "Generated project");
+		ifcProject.setUnitsInContext(createUnits());
+		context = create(PACKAGE.getIfcGeometricRepresentationContext());
+		context.setContextType("Model");
+		context.setCoordinateSpaceDimension(3);
+		context.setPrecision(0.00001);
+		context.setWorldCoordinateSystem(axis(0, 0, 0));
+		context.setTrueNorth(direction(0, 1, 0));
+		ifcProject.getRepresentationContexts().add(context);
+
+		IfcSite ifcSite = createRoot(PACKAGE.getIfcSite(), "Apeldoorn K 1234");
+		ifcSite.getRefLatitude().add(52L);
+		ifcSite.getRefLatitude().add(13L);
+		ifcSite.getRefLongitude().add(5L);
+		ifcSite.getRefLongitude().add(58L);
+		ifcSite.setRefElevation(0);
+		ifcSite.setObjectPlacement(placement(null, 0, 0, 0));
+		aggregate(ifcProject, ifcSite);
+
+		IfcBuilding ifcBuilding = createRoot(PACKAGE.getIfcBuilding(), "Generated building");
+		ifcBuilding.setObjectPlacement(placement(ifcSite.getObjectPlacement(), 0, 0, 0));
+		aggregate(ifcSite, ifcBuilding);
+
+		// Grid lines are shared by all storeys, like in a real building
+		double[] xs = gridLines(columns, ROOM_WIDTH);
+		double[] ys = gridLines(rows, ROOM_DEPTH);
+		for (int storey = 0; storey < storeys; storey++) {
+			generateStorey(ifcBuilding, storey, xs, ys);
+		}
+		geometryData = null;
+		return model;
+	}
+
+	/**
+	 * Generates a model and writes it as an IFC STEP file
+	 */
+	public void generate(Path path) throws IfcModelInterfaceException, SerializerException, BimserverDatabaseException, IOException {
+		IfcModelInterface model = generate();
+		try (OutputStream outputStream = Files.newOutputStream(path)) {
+			writeStep(model, outputStream);
+		}
+	}
+
+	public static void writeStep(IfcModelInterface model, OutputStream outputStream) throws SerializerException, BimserverDatabaseException {
+		ProjectInfo projectInfo = new ProjectInfo();
+		projectInfo.setName("Generated project");
+		projectInfo.setDescription("");
+		projectInfo.setAuthorName("ModelGenerator");
+		Ifc2x3tc1StepSerializer serializer = new Ifc2x3tc1StepSerializer(new PluginConfiguration());
+		serializer.init(model, projectInfo, true);
+		serializer.writeToOutputStream(outputStream, new ProgressReporter() {
+			@Override
+			public void update(long progress, long max) {
+			}
+
+			@Override
+			public void setTitle(String title) {
+			}
+		});
+	}
+
+	private double[] gridLines(int count, double size) {
+		double[] lines = new double[count + 1];
+		for (int i = 0; i < count; i++) {
+			double variation = sizeVariation * (2 * random.nextDouble() - 1);
+			lines[i + 1] = lines[i] + Math.round(size * (1 + variation) / 100) * 100;
+		}
+		return lines;
+	}
+
+	private void generateStorey(IfcBuilding ifcBuilding, int storey, double[] xs, double[] ys) throws IfcModelInterfaceException {
+		double elevation = storey * STOREY_HEIGHT;
+		IfcBuildingStorey ifcBuildingStorey = createRoot(PACKAGE.getIfcBuildingStorey(), String.format("%02d verdieping", storey));
+		ifcBuildingStorey.setElevation(elevation);
+		ifcBuildingStorey.setObjectPlacement(placement(ifcBuilding.getObjectPlacement(), 0, 0, elevation));
+		aggregate(ifcBuilding, ifcBuildingStorey);
+
+		IfcRelContainedInSpatialStructure containment = createRoot(PACKAGE.getIfcRelContainedInSpatialStructure(), null);
+		containment.setRelatingStructure(ifcBuildingStorey);
+		IfcRelAggregates spaces = createRoot(PACKAGE.getIfcRelAggregates(), null);
+		spaces.setRelatingObject(ifcBuildingStorey);
+		IfcRelAssociatesClassification classification = createRoot(PACKAGE.getIfcRelAssociatesClassification(), null);
+		IfcClassificationReference ifcClassificationReference = create(PACKAGE.getIfcClassificationReference());
+		ifcClassificationReference.setItemReference(SPACE_CLASSIFICATION);
+		classification.setRelatingClassification(ifcClassificationReference);
+
+		IfcObjectPlacement storeyPlacement = ifcBuildingStorey.getObjectPlacement();
+
+		// Walls along the x axis are indexed [row line][column], walls along the y axis [row][column line]. Walls are
+		// extended by their thickness so they overlap at the grid nodes.
+		IfcWallStandardCase[][] wallsX = new IfcWallStandardCase[rows + 1][columns];
+		IfcWallStandardCase[][] wallsY = new IfcWallStandardCase[rows][columns + 1];
+		for (int row = 0; row <= rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				boolean external = row == 0 || row == rows;
+				wallsX[row][column] = createWall(storeyPlacement, elevation, (xs[column] + xs[column + 1]) / 2, ys[row], xs[column + 1] - xs[column] + WALL_THICKNESS, WALL_THICKNESS, external, containment, storey + "-X-" + row + "-" + column);
+			}
+		}
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column <= columns; column++) {
+				boolean external = column == 0 || column == columns;
+				wallsY[row][column] = createWall(storeyPlacement, elevation, xs[column], (ys[row] + ys[row + 1]) / 2, WALL_THICKNESS, ys[row + 1] - ys[row] + WALL_THICKNESS, external, containment, storey + "-Y-" + row + "-" + column);
+			}
+		}
+
+		// Every wall is connected at its end to the walls that start at the same grid node
+		for (int row = 0; row <= rows; row++) {
+			for (int column = 0; column <= columns; column++) {
+				IfcWallStandardCase endingX = column > 0 ? wallsX[row][column - 1] : null;
+				IfcWallStandardCase endingY = row > 0 ? wallsY[row - 1][column] : null;
+				IfcWallStandardCase startingX = column < columns ? wallsX[row][column] : null;
+				IfcWallStandardCase startingY = row < rows ? wallsY[row][column] : null;
+				connect(endingX, startingX);
+				connect(endingX, startingY);
+				connect(endingY, startingX);
+				connect(endingY, startingY);
+			}
+		}
+
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				if (random.nextDouble() < spaceGapRatio) {
+					continue;
+				}
+				double xDim = xs[column + 1] - xs[column] - WALL_THICKNESS;
+				double yDim = ys[row + 1] - ys[row] - WALL_THICKNESS;
+				IfcSpace ifcSpace = createSpace(storeyPlacement, elevation, (xs[column] + xs[column + 1]) / 2, (ys[row] + ys[row + 1]) / 2, xDim, yDim, "Room " + storey + "-" + row + "-" + column);
+				spaces.getRelatedObjects().add(ifcSpace);
+				classification.getRelatedObjects().add(ifcSpace);
+				bound(ifcSpace, wallsX[row][column]);
+				bound(ifcSpace, wallsX[row + 1][column]);
+				bound(ifcSpace, wallsY[row][column]);
+				bound(ifcSpace, wallsY[row][column + 1]);
+			}
+		}
+
+		double x = 0;
+		for (int parkingSpace = 0; parkingSpace < parkingSpacesPerStorey; parkingSpace++) {
+			boolean handicapped = handicappedParkingInterval > 0 && parkingSpace % handicappedParkingInterval == 0;
+			double width = handicapped ? HANDICAPPED_PARKING_WIDTH : PARKING_WIDTH;
+			IfcSpace ifcSpace = createSpace(storeyPlacement, elevation, x + width / 2, -WALL_THICKNESS - PARKING_DEPTH / 2, width, PARKING_DEPTH, "Parking " + storey + "-" + parkingSpace);
+			ifcSpace.setObjectType("parking");
+			addProperty(ifcSpace, "Pset_SpaceParking", "HandicapAccessible", handicapped ? Tristate.TRUE : Tristate.FALSE);
+			spaces.getRelatedObjects().add(ifcSpace);
+			classification.getRelatedObjects().add(ifcSpace);
+			x += width;
+		}
+	}
+
+	private IfcWallStandardCase createWall(IfcObjectPlacement storeyPlacement, double elevation, double centerX, double centerY, double xDim, double yDim, boolean external, IfcRelContainedInSpatialStructure containment, String name) throws IfcModelInterfaceException {
+		IfcWallStandardCase ifcWall = createRoot(PACKAGE.getIfcWallStandardCase(), "Wall " + name);
+		ifcWall.setObjectPlacement(placement(storeyPlacement, centerX, centerY, 0));
+		ifcWall.setRepresentation(extrudedRectangle(xDim, yDim, STOREY_HEIGHT));
+		ifcWall.setGeometry(geometryInfo(centerX, centerY, elevation, xDim, yDim, STOREY_HEIGHT));
+		addProperty(ifcWall, "Pset_WallCommon", "IsExternal", external ? Tristate.TRUE : Tristate.FALSE);
+		containment.getRelatedElements().add(ifcWall);
+		if (external) {
+			boolean alongX = xDim > yDim;
+			double length = (alongX ? xDim : yDim) - WALL_THICKNESS;
+			for (int window = 0; window < windowsPerExternalWall; window++) {
+				double offset = (window + 0.5) * length / windowsPerExternalWall - length / 2;
+				double offsetX = alongX ? offset : 0;
+				double offsetY = alongX ? 0 : offset;
+				createWindow(ifcWall, storeyPlacement, elevation, offsetX, offsetY, centerX + offsetX, centerY + offsetY, alongX ? WINDOW_WIDTH : WALL_THICKNESS, alongX ? WALL_THICKNESS : WINDOW_WIDTH, containment, name + "-" + window);
+			}
+		}
+		return ifcWall;
+	}
+
+	private void createWindow(IfcWallStandardCase ifcWall, IfcObjectPlacement storeyPlacement, double elevation, double offsetX, double offsetY, double centerX, double centerY, double xDim, double yDim, IfcRelContainedInSpatialStructure containment, String name) throws IfcModelInterfaceException {
+		IfcOpeningElement ifcOpeningElement = createRoot(PACKAGE.getIfcOpeningElement(), "Opening " + name);
+		ifcOpeningElement.setObjectPlacement(placement(ifcWall.getObjectPlacement(), offsetX, offsetY, WINDOW_SILL));
+		ifcOpeningElement.setRepresentation(extrudedRectangle(xDim, yDim, WINDOW_HEIGHT));
+		IfcRelVoidsElement ifcRelVoidsElement = createRoot(PACKAGE.getIfcRelVoidsElement(), null);
+		ifcRelVoidsElement.setRelatingBuildingElement(ifcWall);
+		ifcRelVoidsElement.setRelatedOpeningElement(ifcOpeningElement);
+
+		IfcWindow ifcWindow = createRoot(PACKAGE.getIfcWindow(), "Window " + name);
+		ifcWindow.setOverallWidth(WINDOW_WIDTH);
+		ifcWindow.setOverallHeight(WINDOW_HEIGHT);
+		ifcWindow.setObjectPlacement(placement(storeyPlacement, centerX, centerY, WINDOW_SILL));
+		ifcWindow.setRepresentation(extrudedRectangle(xDim, yDim, WINDOW_HEIGHT));
+		ifcWindow.setGeometry(geometryInfo(centerX, centerY, elevation + WINDOW_SILL, xDim, yDim, WINDOW_HEIGHT));
+		addProperty(ifcWindow, "Pset_WindowCommon", "IsExternal", Tristate.TRUE);
+		containment.getRelatedElements().add(ifcWindow);
+		IfcRelFillsElement ifcRelFillsElement = createRoot(PACKAGE.getIfcRelFillsElement(), null);
+		ifcRelFillsElement.setRelatingOpeningElement(ifcOpeningElement);
+		ifcRelFillsElement.setRelatedBuildingElement(ifcWindow);
+	}
+
+	private IfcSpace createSpace(IfcObjectPlacement storeyPlacement, double elevation, double centerX, double centerY, double xDim, double yDim, String name) throws IfcModelInterfaceException {
+		IfcSpace ifcSpace = createRoot(PACKAGE.getIfcSpace(), name);
+		ifcSpace.setLongName(name);
+		ifcSpace.setObjectPlacement(placement(storeyPlacement, centerX, centerY, 0));
+		ifcSpace.setRepresentation(extrudedRectangle(xDim, yDim, STOREY_HEIGHT));
+		ifcSpace.setGeometry(geometryInfo(centerX, centerY, elevation, xDim, yDim, STOREY_HEIGHT));
+		return ifcSpace;
+	}
+
+	private void connect(IfcWallStandardCase ending, IfcWallStandardCase starting) throws IfcModelInterfaceException {
+		if (ending == null || starting == null) {
+			return;
+		}
+		IfcRelConnectsPathElements ifcRelConnectsPathElements = createRoot(PACKAGE.getIfcRelConnectsPathElements(), null);
+		ifcRelConnectsPathElements.setRelatingElement(ending);
+		ifcRelConnectsPathElements.setRelatingConnectionType(IfcConnectionTypeEnum.ATEND);
+		ifcRelConnectsPathElements.setRelatedElement(starting);
+		ifcRelConnectsPathElements.setRelatedConnectionType(IfcConnectionTypeEnum.ATSTART);
+	}
+
+	private void bound(IfcSpace ifcSpace, IfcWallStandardCase ifcWall) throws IfcModelInterfaceException {
+		IfcRelSpaceBoundary ifcRelSpaceBoundary = createRoot(PACKAGE.getIfcRelSpaceBoundary(), null);
+		ifcRelSpaceBoundary.setRelatingSpace(ifcSpace);
+		ifcRelSpaceBoundary.setRelatedBuildingElement(ifcWall);
+	}
+
+	private void aggregate(IfcObjectDefinition relatingObject, IfcObjectDefinition relatedObject) throws IfcModelInterfaceException {
+		IfcRelAggregates ifcRelAggregates = createRoot(PACKAGE.getIfcRelAggregates(), null);
+		ifcRelAggregates.setRelatingObject(relatingObject);
+		ifcRelAggregates.getRelatedObjects().add(relatedObject);
+	}
+
+	private void addProperty(IfcObject ifcObject, String propertySetName, String propertyName, Tristate value) throws IfcModelInterfaceException {
+		IfcBoolean ifcBoolean = create(PACKAGE.getIfcBoolean());
+		ifcBoolean.setWrappedValue(value);
+		IfcPropertySingleValue ifcPropertySingleValue = create(PACKAGE.getIfcPropertySingleValue());
+		ifcPropertySingleValue.setName(propertyName);
+		ifcPropertySingleValue.setNominalValue(ifcBoolean);
+		IfcPropertySet ifcPropertySet = createRoot(PACKAGE.getIfcPropertySet(), propertySetName);
+		ifcPropertySet.getHasProperties().add(ifcPropertySingleValue);
+		IfcRelDefinesByProperties ifcRelDefinesByProperties = createRoot(PACKAGE.getIfcRelDefinesByProperties(), null);
+		ifcRelDefinesByProperties.setRelatingPropertyDefinition(ifcPropertySet);
+		ifcRelDefinesByProperties.getRelatedObjects().add(ifcObject);
+	}
+
+	private IfcUnitAssignment createUnits() throws IfcModelInterfaceException {
+		IfcUnitAssignment ifcUnitAssignment = create(PACKAGE.getIfcUnitAssignment());
+		ifcUnitAssignment.getUnits().add(siUnit(IfcUnitEnum.LENGTHUNIT, IfcSIUnitName.METRE, IfcSIPrefix.MILLI));
+		ifcUnitAssignment.getUnits().add(siUnit(IfcUnitEnum.AREAUNIT, IfcSIUnitName.SQUARE_METRE, IfcSIPrefix.NULL));
+		ifcUnitAssignment.getUnits().add(siUnit(IfcUnitEnum.VOLUMEUNIT, IfcSIUnitName.CUBIC_METRE, IfcSIPrefix.NULL));
+		return ifcUnitAssignment;
+	}
+
+	private IfcSIUnit siUnit(IfcUnitEnum unitType, IfcSIUnitName name, IfcSIPrefix prefix) throws IfcModelInterfaceException {
+		IfcSIUnit ifcSIUnit = create(PACKAGE.getIfcSIUnit());
+		ifcSIUnit.setUnitType(unitType);
+		ifcSIUnit.setName(name);
+		ifcSIUnit.setPrefix(prefix);
+		return ifcSIUnit;
+	}
+
+	private IfcProductDefinitionShape extrudedRectangle(double xDim, double yDim, double depth) throws IfcModelInterfaceException {
+		IfcAxis2Placement2D profilePosition = create(PACKAGE.getIfcAxis2Placement2D());
+		profilePosition.setLocation(point(0, 0));
+		IfcRectangleProfileDef ifcRectangleProfileDef = create(PACKAGE.getIfcRectangleProfileDef());
+		ifcRectangleProfileDef.setProfileType(IfcProfileTypeEnum.AREA);
+		ifcRectangleProfileDef.setPosition(profilePosition);
+		ifcRectangleProfileDef.setXDim(xDim);
+		ifcRectangleProfileDef.setYDim(yDim);
+
+		IfcExtrudedAreaSolid ifcExtrudedAreaSolid = create(PACKAGE.getIfcExtrudedAreaSolid());
+		ifcExtrudedAreaSolid.setSweptArea(ifcRectangleProfileDef);
+		ifcExtrudedAreaSolid.setPosition(axis(0, 0, 0));
+		ifcExtrudedAreaSolid.setExtrudedDirection(direction(0, 0, 1));
+		ifcExtrudedAreaSolid.setDepth(depth);
+
+		IfcShapeRepresentation ifcShapeRepresentation = create(PACKAGE.getIfcShapeRepresentation());
+		ifcShapeRepresentation.setContextOfItems(context);
+		ifcShapeRepresentation.setRepresentationIdentifier("Body");
+		ifcShapeRepresentation.setRepresentationType("SweptSolid");
+		ifcShapeRepresentation.getItems().add(ifcExtrudedAreaSolid);
+
+		IfcProductDefinitionShape ifcProductDefinitionShape = create(PACKAGE.getIfcProductDefinitionShape());
+		ifcProductDefinitionShape.getRepresentations().add(ifcShapeRepresentation);
+		return ifcProductDefinitionShape;
+	}
+
+	/**
+	 * Geometry as the render engine would produce it: a triangulated box around the origin, moved into place by the
+	 * transformation. Boxes of the same size share their GeometryData.
+	 */
+	private GeometryInfo geometryInfo(double centerX, double centerY, double minZ, double xDim, double yDim, double zDim) {
+		if (!geometry) {
+			return null;
+		}
+		double x = xDim / 2000;
+		double y = yDim / 2000;
+		double z = zDim / 1000;
+		GeometryInfo geometryInfo = GeometryFactory.eINSTANCE.createGeometryInfo();
+		geometryInfo.setBounds(bounds(centerX / 1000 - x, centerY / 1000 - y, minZ / 1000, centerX / 1000 + x, centerY / 1000 + y, minZ / 1000 + z));
+		geometryInfo.setBoundsUntransformed(bounds(-x, -y, 0, x, y, z));
+		geometryInfo.setArea(xDim * yDim / 1000000);
+		geometryInfo.setVolume(xDim * yDim * zDim / 1000000000);
+		geometryInfo.setPrimitiveCount(12);
+		geometryInfo.setTransformation(translation(centerX / 1000, centerY / 1000, minZ / 1000));
+		String key = xDim + "x" + yDim + "x" + zDim;
+		GeometryData data = geometryData.get(key);
+		if (data == null) {
+			data = box(x, y, z);
+			geometryData.put(key, data);
+		}
+		geometryInfo.setData(data);
+		return geometryInfo;
+	}
+
+	private GeometryData box(double x, double y, double z) {
+		ByteBuffer vertices = ByteBuffer.allocate(8 * 3 * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < 8; i++) {
+			vertices.putFloat((float) ((i & 1) == 0 ? -x : x));
+			vertices.putFloat((float) ((i & 2) == 0 ? -y : y));
+			vertices.putFloat((float) ((i & 4) == 0 ? 0 : z));
+		}
+		int[] triangles = { 0, 2, 1, 1, 2, 3, 4, 5, 6, 5, 7, 6, 0, 1, 4, 1, 5, 4, 2, 6, 3, 3, 6, 7, 0, 4, 2, 2, 4, 6, 1, 3, 5, 3, 7, 5 };
+		ByteBuffer indices = ByteBuffer.allocate(triangles.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int index : triangles) {
+			indices.putInt(index);
+		}
+		GeometryData data = GeometryFactory.eINSTANCE.createGeometryData();
+		data.setVertices(vertices.array());
+		data.setIndices(indices.array());
+		return data;
+	}
+
+	private byte[] translation(double x, double y, double z) {
+		// Column-major 4x4 matrix, as stored by BIMserver
+		ByteBuffer buffer = ByteBuffer.allocate(16 * 8).order(ByteOrder.LITTLE_ENDIAN);
+		double[] matrix = { 1, 0, 0, 0, 0, 1, 0, 0, 0, 0, 1, 0, x, y, z, 1 };
+		for (double value : matrix) {
+			buffer.putDouble(value);
+		}
+		return buffer.array();
+	}
+
+	private Bounds bounds(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		Bounds bounds = GeometryFactory.eINSTANCE.createBounds();
+		bounds.setMin(vector(minX, minY, minZ));
+		bounds.setMax(vector(maxX, maxY, maxZ));
+		return bounds;
+	}
+
+	private Vector3f vector(double x, double y, double z) {
+		Vector3f vector3f = GeometryFactory.eINSTANCE.createVector3f();
+		vector3f.setX(x);
+		vector3f.setY(y);
+		vector3f.setZ(z);
+		return vector3f;
+	}
+
+	private IfcLocalPlacement placement(IfcObjectPlacement relativeTo, double x, double y, double z) throws IfcModelInterfaceException {
+		IfcLocalPlacement ifcLocalPlacement = create(PACKAGE.getIfcLocalPlacement());
+		ifcLocalPlacement.setPlacementRelTo(relativeTo);
+		ifcLocalPlacement.setRelativePlacement(axis(x, y, z));
+		return ifcLocalPlacement;
+	}
+
+	private IfcAxis2Placement3D axis(double x, double y, double z) throws IfcModelInterfaceException {
+		IfcAxis2Placement3D ifcAxis2Placement3D = create(PACKAGE.getIfcAxis2Placement3D());
+		ifcAxis2Placement3D.setLocation(point(x, y, z));
+		ifcAxis2Placement3D.setAxis(direction(0, 0, 1));
+		ifcAxis2Placement3D.setRefDirection(direction(1, 0, 0));
+		return ifcAxis2Placement3D;
+	}
+
+	private IfcCartesianPoint point(double... coordinates) throws IfcModelInterfaceException {
+		IfcCartesianPoint ifcCartesianPoint = create(PACKAGE.getIfcCartesianPoint());
+		for (double coordinate : coordinates) {
+			ifcCartesianPoint.getCoordinates().add(coordinate);
+		}
+		return ifcCartesianPoint;
+	}
+
+	private IfcDirection direction(double... ratios) throws IfcModelInterfaceException {
+		IfcDirection ifcDirection = create(PACKAGE.getIfcDirection());
+		for (double ratio : ratios) {
+			ifcDirection.getDirectionRatios().add(ratio);
+		}
+		return ifcDirection;
+	}
+
+	private <T extends IfcRoot> T createRoot(EClass eClass, String name) throws IfcModelInterfaceException {
+		T ifcRoot = create(eClass);
+		// Deterministic, 22 characters from the IFC GUID alphabet
+		ifcRoot.setGlobalId(String.format("%022d", oidCounter - 1));
+		ifcRoot.setName(name);
+		return ifcRoot;
+	}
+
+	private <T extends IdEObject> T create(EClass eClass) throws IfcModelInterfaceException {
+		return model.createAndAdd(eClass, oidCounter++);
+	}
+}
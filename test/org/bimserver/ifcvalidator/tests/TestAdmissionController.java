@@ -0,0 +1,120 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.bimserver.ifcvalidator.AdmissionController;
+import org.bimserver.ifcvalidator.AdmissionController.Admission;
+import org.bimserver.ifcvalidator.AdmissionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdmissionController {
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void testWaitsForRunningValidations() throws Exception {
+		AdmissionController admissionController = new AdmissionController(100 * MB, TimeUnit.SECONDS.toMillis(10));
+		Admission first = admissionController.admit(60 * MB);
+		Assert.assertEquals(40, admissionController.getAvailableMb());
+
+		CompletableFuture<Admission> second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return admissionController.admit(60 * MB);
+			} catch (AdmissionException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		Thread.sleep(100);
+		Assert.assertFalse(second.isDone());
+
+		first.close();
+		second.get(10, TimeUnit.SECONDS).close();
+		Assert.assertEquals(100, admissionController.getAvailableMb());
+	}
+
+	@Test
+	public void testAdmitsInOrder() throws Exception {
+		AdmissionController admissionController = new AdmissionController(100 * MB, TimeUnit.SECONDS.toMillis(10));
+		Admission first = admissionController.admit(60 * MB);
+		CompletableFuture<Admission> second = CompletableFuture.supplyAsync(() -> admit(admissionController, 60 * MB));
+		Thread.sleep(100);
+		// Fits next to the first, but has to wait behind the second
+		CompletableFuture<Admission> third = CompletableFuture.supplyAsync(() -> admit(admissionController, 30 * MB));
+		Thread.sleep(100);
+		Assert.assertFalse(second.isDone());
+		Assert.assertFalse(third.isDone());
+
+		first.close();
+		second.get(10, TimeUnit.SECONDS).close();
+		third.get(10, TimeUnit.SECONDS).close();
+		Assert.assertEquals(100, admissionController.getAvailableMb());
+	}
+
+	@Test
+	public void testSharedController() {
+		Assert.assertSame(AdmissionController.get(), AdmissionController.get());
+	}
+
+	private Admission admit(AdmissionController admissionController, long bytes) {
+		try {
+			return admissionController.admit(bytes);
+		} catch (AdmissionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Test(expected = AdmissionException.class)
+	public void testRejectsOverBudget() throws Exception {
+		new AdmissionController(100 * MB, 0).admit(101 * MB);
+	}
+
+	@Test
+	public void testRejectsAfterWaiting() throws Exception {
+		AdmissionController admissionController = new AdmissionController(100 * MB, 50);
+		try (Admission admission = admissionController.admit(80 * MB)) {
+			admissionController.admit(30 * MB);
+			Assert.fail("Admitted beyond the budget");
+		} catch (AdmissionException e) {
+			// Expected
+		}
+		Assert.assertEquals(100, admissionController.getAvailableMb());
+	}
+
+	@Test
+	public void testExtend() throws Exception {
+		AdmissionController admissionController = new AdmissionController(100 * MB, 50);
+		try (Admission admission = admissionController.admit(40 * MB)) {
+			admission.extend(70 * MB);
+			Assert.assertEquals(30, admissionController.getAvailableMb());
+			admission.extend(50 * MB);
+			Assert.assertEquals(30, admissionController.getAvailableMb());
+			try (Admission other = admissionController.admit(20 * MB)) {
+				admission.extend(90 * MB);
+				Assert.fail("Extended beyond the budget");
+			} catch (AdmissionException e) {
+				// Expected
+			}
+			Assert.assertEquals(30, admissionController.getAvailableMb());
+		}
+		Assert.assertEquals(100, admissionController.getAvailableMb());
+	}
+}
@@ -0,0 +1,141 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.BatchValidator;
+import org.bimserver.ifcvalidator.BatchValidator.ReportFormat;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.PluginResources;
+import org.bimserver.ifcvalidator.checks.FullModelCheckerRegistry;
+import org.bimserver.ifcvalidator.checks.IfcSiteLatitude;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.checks.ModelCheckerRegistry;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.bimserver.validationreport.IssueContainer;
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestBatchValidator {
+
+	@Test
+	public void testValidateDirectory() throws Exception {
+		Path directory = Files.createTempDirectory("batchvalidator");
+		Path first = directory.resolve("first.ifc");
+		Path second = directory.resolve("second.ifc");
+		new ModelGenerator().setStoreys(2).generate(first);
+		new ModelGenerator().setStoreys(3).setSeed(1).generate(second);
+
+		BatchValidator batchValidator = new BatchValidator(new FullModelCheckerRegistry(), ReportFormat.JSON, PluginResources.get(Paths.get(".")), "EN", 0, 2, 64);
+		try {
+			Assert.assertEquals(0, batchValidator.validate(Arrays.asList(first, second), null));
+		} finally {
+			batchValidator.shutdown();
+		}
+
+		String report = new String(Files.readAllBytes(directory.resolve("first.ifc.json")), StandardCharsets.UTF_8);
+		Assert.assertTrue(report.contains("CANNOT_CHECK"));
+		Assert.assertTrue(Files.exists(directory.resolve("second.ifc.json")));
+	}
+
+	@Test
+	public void testOutputDirectoryKeepsRelativePaths() throws Exception {
+		Path directory = Files.createTempDirectory("batchvalidator");
+		Path first = directory.resolve("a").resolve("model.ifc");
+		Path second = directory.resolve("b").resolve("model.ifc");
+		Files.createDirectories(first.getParent());
+		Files.createDirectories(second.getParent());
+		new ModelGenerator().setStoreys(2).generate(first);
+		new ModelGenerator().setStoreys(3).setSeed(1).generate(second);
+		Path outputDirectory = Files.createTempDirectory("batchvalidator");
+
+		Map<Path, Path> files = new LinkedHashMap<>();
+		files.put(first, directory.relativize(first));
+		files.put(second, directory.relativize(second));
+		BatchValidator batchValidator = new BatchValidator(new FullModelCheckerRegistry(), ReportFormat.JSON, PluginResources.get(Paths.get(".")), "EN", 0, 2, 64);
+		try {
+			Assert.assertEquals(0, batchValidator.validate(files, outputDirectory));
+			// Without the relative paths both reports would end up in the same file
+			Assert.assertEquals(1, batchValidator.validate(Arrays.asList(first, second), outputDirectory));
+		} finally {
+			batchValidator.shutdown();
+		}
+		Assert.assertTrue(Files.exists(outputDirectory.resolve("a").resolve("model.ifc.json")));
+		Assert.assertTrue(Files.exists(outputDirectory.resolve("b").resolve("model.ifc.json")));
+	}
+
+	@Test
+	public void testDisabledGeometryCheckIsNotReported() throws Exception {
+		Path directory = Files.createTempDirectory("batchvalidator");
+		Path file = directory.resolve("model.ifc");
+		new ModelGenerator().setStoreys(1).generate(file);
+		ModelCheckerRegistry modelCheckerRegistry = new ModelCheckerRegistry();
+		modelCheckerRegistry.addCheck(new IfcSiteLatitude());
+		modelCheckerRegistry.addCheck(new ModelCheck("SPACES", "DISABLED") {
+			@Override
+			public Set<EClass> getGeometryClasses() {
+				return Collections.singleton(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+			}
+
+			@Override
+			public boolean isEnabledByDefault() {
+				return false;
+			}
+
+			@Override
+			public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+				Assert.fail();
+			}
+		});
+
+		BatchValidator batchValidator = new BatchValidator(modelCheckerRegistry, ReportFormat.JSON, PluginResources.get(Paths.get(".")), "EN", 0, 1, 64);
+		try {
+			Assert.assertEquals(0, batchValidator.validate(Arrays.asList(file), null));
+		} finally {
+			batchValidator.shutdown();
+		}
+		String report = new String(Files.readAllBytes(directory.resolve("model.ifc.json")), StandardCharsets.UTF_8);
+		Assert.assertFalse(report.contains("Check needs geometry"));
+	}
+
+	@Test
+	public void testUnreadableFile() throws Exception {
+		Path directory = Files.createTempDirectory("batchvalidator");
+		Path broken = directory.resolve("broken.ifc");
+		Files.write(broken, "not an ifc file".getBytes(StandardCharsets.UTF_8));
+
+		BatchValidator batchValidator = new BatchValidator(new FullModelCheckerRegistry(), ReportFormat.JSON, PluginResources.get(Paths.get(".")), "EN", 0, 1, 64);
+		try {
+			Assert.assertEquals(1, batchValidator.validate(Arrays.asList(broken), null));
+		} finally {
+			batchValidator.shutdown();
+		}
+		Assert.assertFalse(Files.exists(directory.resolve("broken.ifc.json")));
+	}
+}
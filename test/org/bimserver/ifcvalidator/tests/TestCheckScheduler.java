@@ -0,0 +1,382 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CappedIssueContainer;
+import org.bimserver.ifcvalidator.CappedIssueContainer.ErrorLimit;
+import org.bimserver.ifcvalidator.CheckScheduler;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.ExecutionMode;
+import org.bimserver.ifcvalidator.Translations;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.bimserver.models.ifc2x3tc1.IfcSpace;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class TestCheckScheduler {
+
+	private static class RecordingCheck extends ModelCheck {
+		private final List<String> log;
+		private final Set<String> dependencies;
+
+		public RecordingCheck(String identifier, List<String> log, Set<String> dependencies) {
+			super("TEST", identifier);
+			this.log = log;
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+			try {
+				Thread.sleep(20);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (log) {
+				log.add(getIdentifier());
+			}
+		}
+
+		@Override
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+	}
+
+	private static class GeometryCheck extends RecordingCheck {
+		public GeometryCheck(String identifier, List<String> log) {
+			super(identifier, log, Collections.<String>emptySet());
+		}
+
+		@Override
+		public Set<EClass> getGeometryClasses() {
+			return Collections.singleton(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+		}
+	}
+
+	private static class FootprintCheck extends ModelCheck {
+		private FootprintStore footprintStore;
+		private int footprintsAtStart;
+
+		public FootprintCheck(String identifier) {
+			super("TEST", identifier);
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+			footprintStore = checkerContext.getFootprintStore(model);
+			footprintsAtStart = footprintStore.size();
+		}
+
+		@Override
+		public Set<EClass> getGeometryClasses() {
+			return Collections.singleton(Ifc2x3tc1Package.eINSTANCE.getIfcSpace());
+		}
+
+		@Override
+		public Set<EClass> getFootprintClasses() {
+			return getGeometryClasses();
+		}
+	}
+
+	private static class ErrorsCheck extends ModelCheck {
+		private final int errors;
+
+		public ErrorsCheck(String identifier, int errors) {
+			super("TEST", identifier);
+			this.errors = errors;
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+			for (int i = 0; i < errors; i++) {
+				issueContainer.builder().type(Type.ERROR).message("Error " + i).add();
+			}
+		}
+	}
+
+	private static class SlowCheck extends ModelCheck {
+		public SlowCheck() {
+			super("TEST", "SLOW");
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+			issueContainer.builder().type(Type.SUCCESS).message("Partial result").add();
+			while (true) {
+				checkerContext.getCancellationToken().throwIfCancelled();
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	private CheckerContext createCheckerContext(CancellationToken cancellationToken) {
+		return new CheckerContext(new Translations("en.properties", Collections.<String, String>emptyMap()), null, null, cancellationToken);
+	}
+
+	@Test
+	public void testDependenciesAreHonored() throws IssueException {
+		List<String> log = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("B", log, Collections.singleton("TEST___A")), 0));
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("A", log, Collections.<String>emptySet()), 0));
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("C", log, Collections.singleton("TEST___B")), 0));
+
+		CheckScheduler checkScheduler = new CheckScheduler(4);
+		try {
+			checkScheduler.run(null, scheduledChecks, createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(3, log.size());
+		Assert.assertTrue(log.indexOf("A") < log.indexOf("B"));
+		Assert.assertTrue(log.indexOf("B") < log.indexOf("C"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCyclicDependencies() throws IssueException {
+		List<String> log = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("A", log, Collections.singleton("TEST___B")), 0));
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("B", log, Collections.singleton("TEST___A")), 0));
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, scheduledChecks, createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testCheckTimeout() throws IssueException {
+		List<String> log = new ArrayList<>();
+		ScheduledCheck slow = new ScheduledCheck(new SlowCheck(), 100);
+		ScheduledCheck other = new ScheduledCheck(new RecordingCheck("A", log, Collections.<String>emptySet()), 0);
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, Arrays.asList(slow, other), createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(2, slow.getIssueContainer().list().size());
+		Assert.assertEquals(Type.SUCCESS, slow.getIssueContainer().list().get(0).getType());
+		Assert.assertEquals(Type.CANNOT_CHECK, slow.getIssueContainer().list().get(1).getType());
+		Assert.assertEquals(Collections.singletonList("A"), log);
+		Assert.assertFalse(slow.isComplete());
+		Assert.assertTrue(other.isComplete());
+		Assert.assertFalse(CheckScheduler.isComplete(Arrays.asList(slow, other)));
+	}
+
+	@Test
+	public void testRunTimeout() throws IssueException {
+		List<String> log = new ArrayList<>();
+		ScheduledCheck slow = new ScheduledCheck(new SlowCheck(), 0);
+		ScheduledCheck dependent = new ScheduledCheck(new RecordingCheck("A", log, Collections.singleton("TEST___SLOW")), 0);
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, Arrays.asList(slow, dependent), createCheckerContext(CancellationToken.create(100)));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(Type.CANNOT_CHECK, slow.getIssueContainer().list().get(1).getType());
+		Assert.assertEquals(1, dependent.getIssueContainer().list().size());
+		Assert.assertEquals(Type.CANNOT_CHECK, dependent.getIssueContainer().list().get(0).getType());
+		Assert.assertTrue(log.isEmpty());
+		Assert.assertFalse(slow.isComplete());
+		Assert.assertFalse(dependent.isComplete());
+	}
+
+	@Test
+	public void testGeometryChecksWaitForGeometry() throws IssueException {
+		List<String> log = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new GeometryCheck("G", log), 0));
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("A", log, Collections.<String>emptySet()), 0));
+		CompletableFuture<Void> geometry = CompletableFuture.runAsync(() -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, scheduledChecks, createCheckerContext(CancellationToken.NONE), geometry);
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(Arrays.asList("A", "G"), log);
+	}
+
+	@Test
+	public void testGeometryNotLoaded() throws IssueException {
+		List<String> log = new ArrayList<>();
+		ScheduledCheck geometryCheck = new ScheduledCheck(new GeometryCheck("G", log), 0);
+		ScheduledCheck other = new ScheduledCheck(new RecordingCheck("A", log, Collections.<String>emptySet()), 0);
+		CompletableFuture<Void> geometry = new CompletableFuture<>();
+		geometry.completeExceptionally(new IllegalStateException("No render engine"));
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, Arrays.asList(geometryCheck, other), createCheckerContext(CancellationToken.NONE), geometry);
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(1, geometryCheck.getIssueContainer().list().size());
+		Assert.assertEquals(Type.CANNOT_CHECK, geometryCheck.getIssueContainer().list().get(0).getType());
+		Assert.assertEquals(Collections.singletonList("A"), log);
+		Assert.assertFalse(geometryCheck.isComplete());
+		Assert.assertTrue(other.isComplete());
+	}
+
+	@Test
+	public void testVirtualThreads() throws IssueException {
+		Assume.assumeTrue(ExecutionMode.isVirtualThreadsAvailable());
+		List<String> log = new ArrayList<>();
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("B", log, Collections.singleton("TEST___A")), 0));
+		scheduledChecks.add(new ScheduledCheck(new RecordingCheck("A", log, Collections.<String>emptySet()), 0));
+
+		CheckScheduler checkScheduler = new CheckScheduler(ExecutionMode.VIRTUAL, 1);
+		try {
+			checkScheduler.run(null, scheduledChecks, createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(Arrays.asList("A", "B"), log);
+	}
+
+	@Test
+	public void testExecutionModeFallback() {
+		String previous = System.getProperty("ifcvalidator.executionMode");
+		try {
+			System.setProperty("ifcvalidator.executionMode", "virtual");
+			Assert.assertEquals(ExecutionMode.isVirtualThreadsAvailable() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM, ExecutionMode.fromSystemProperties());
+			System.setProperty("ifcvalidator.executionMode", "unknown");
+			Assert.assertEquals(ExecutionMode.PLATFORM, ExecutionMode.fromSystemProperties());
+		} finally {
+			if (previous == null) {
+				System.clearProperty("ifcvalidator.executionMode");
+			} else {
+				System.setProperty("ifcvalidator.executionMode", previous);
+			}
+		}
+	}
+
+	@Test
+	public void testVirtualThreadFactoryFallback() throws InterruptedException {
+		// Without virtual threads the factory creates platform threads instead of failing
+		AtomicBoolean ran = new AtomicBoolean();
+		Thread thread = ExecutionMode.VIRTUAL.createThreadFactory("test").newThread(() -> ran.set(true));
+		thread.start();
+		thread.join();
+		Assert.assertTrue(ran.get());
+	}
+
+	@Test
+	public void testIssueCap() throws IssueException {
+		ScheduledCheck scheduledCheck = new ScheduledCheck(new ErrorsCheck("ERRORS", 10), 0, new CappedIssueContainer(3, null));
+
+		CheckScheduler checkScheduler = new CheckScheduler(1);
+		try {
+			checkScheduler.run(null, Collections.singletonList(scheduledCheck), createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(4, scheduledCheck.getIssueContainer().list().size());
+		Assert.assertEquals("10 issues of type ERROR in total, only the first 3 are listed", scheduledCheck.getIssueContainer().list().get(3).getMessage());
+		Assert.assertEquals(10, ((CappedIssueContainer) scheduledCheck.getIssueContainer()).getCount(Type.ERROR));
+	}
+
+	@Test
+	public void testFailFast() throws IssueException {
+		CancellationToken runToken = CancellationToken.create(0);
+		ErrorLimit errorLimit = new ErrorLimit(5, runToken);
+		ScheduledCheck first = new ScheduledCheck(new ErrorsCheck("FIRST", 5), 0, new CappedIssueContainer(0, errorLimit));
+		ScheduledCheck second = new ScheduledCheck(new ErrorsCheck("SECOND", 1) {
+			@Override
+			public Set<String> getDependencies() {
+				return Collections.singleton("TEST___FIRST");
+			}
+		}, 0, new CappedIssueContainer(0, errorLimit));
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(null, Arrays.asList(first, second), createCheckerContext(runToken));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertTrue(errorLimit.isReached());
+		Assert.assertEquals(5, first.getIssueContainer().list().size());
+		Assert.assertEquals(1, second.getIssueContainer().list().size());
+		Assert.assertEquals(Type.CANNOT_CHECK, second.getIssueContainer().list().get(0).getType());
+		Assert.assertEquals("Check not started, the validation stopped after 5 errors", second.getIssueContainer().list().get(0).getMessage());
+	}
+
+	@Test
+	public void testFootprintsAreSharedAndReleased() throws Exception {
+		IfcModelInterface model = new ModelGenerator().setStoreys(2).setGeometry(false).generate();
+		FootprintCheck first = new FootprintCheck("FIRST");
+		FootprintCheck second = new FootprintCheck("SECOND");
+
+		CheckScheduler checkScheduler = new CheckScheduler(2);
+		try {
+			checkScheduler.run(model, Arrays.asList(new ScheduledCheck(first, 0), new ScheduledCheck(second, 0)), createCheckerContext(CancellationToken.NONE));
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertSame(first.footprintStore, second.footprintStore);
+		Assert.assertEquals(model.getAllWithSubTypes(IfcSpace.class).size(), first.footprintsAtStart);
+		Assert.assertEquals(0, first.footprintStore.size());
+	}
+}
@@ -0,0 +1,135 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.bimserver.ifcvalidator.geometry.FootprintCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFootprintCache {
+	private static final long MAX_DISK_BYTES = 8 * 64 * 1024;
+
+	@Test
+	public void testKey() {
+		FootprintCache.Key key = FootprintCache.createKey(1f, new byte[] { 1 }, new byte[] { 2, 3 });
+		Assert.assertEquals(key, FootprintCache.createKey(1f, new byte[] { 1 }, new byte[] { 2, 3 }));
+		Assert.assertNotEquals(key, FootprintCache.createKey(0.001f, new byte[] { 1 }, new byte[] { 2, 3 }));
+		Assert.assertNotEquals(key, FootprintCache.createKey(1f, new byte[] { 1, 2 }, new byte[] { 3 }));
+		Assert.assertEquals(FootprintCache.createKey("1.0", 1f, new byte[] { 1 }), FootprintCache.createKey("1.0", 1f, new byte[] { 1 }));
+		Assert.assertNotEquals(FootprintCache.createKey("1.0", 1f, new byte[] { 1 }), FootprintCache.createKey("1.1", 1f, new byte[] { 1 }));
+	}
+
+	@Test
+	public void testReleasesLockWhenOpeningFails() throws IOException {
+		Path directory = Files.createTempDirectory("ifcvalidator-footprints");
+		try {
+			// A segment that cannot be mapped
+			Path segment = Files.createDirectory(directory.resolve("footprints-3.segment"));
+			Assert.assertFalse(new FootprintCache(MAX_DISK_BYTES, directory).isEnabled());
+			Files.delete(segment);
+			FootprintCache footprintCache = new FootprintCache(MAX_DISK_BYTES, directory);
+			Assert.assertTrue(footprintCache.isEnabled());
+			footprintCache.close();
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testSurvivesRestart() throws IOException {
+		Path directory = Files.createTempDirectory("ifcvalidator-footprints");
+		try {
+			Area footprint = new Area(new Rectangle2D.Double(0, 0, 4, 4));
+			footprint.subtract(new Area(new Rectangle2D.Double(1, 1, 2, 2)));
+			FootprintCache.Key withHole = FootprintCache.createKey(1f, new byte[] { 1 });
+			FootprintCache.Key withoutFootprint = FootprintCache.createKey(1f, new byte[] { 2 });
+
+			FootprintCache footprintCache = new FootprintCache(MAX_DISK_BYTES, directory);
+			Assert.assertTrue(footprintCache.isEnabled());
+			Assert.assertNull(footprintCache.get(withHole));
+			footprintCache.put(withHole, footprint);
+			footprintCache.put(withoutFootprint, null);
+			Assert.assertFalse(new FootprintCache(MAX_DISK_BYTES, directory).isEnabled());
+			footprintCache.close();
+
+			FootprintCache restarted = new FootprintCache(MAX_DISK_BYTES, directory);
+			Optional<Shape> cached = restarted.get(withHole);
+			Assert.assertTrue(cached.isPresent());
+			Assert.assertTrue(footprint.equals(new Area(cached.get())));
+			Assert.assertFalse(restarted.get(withoutFootprint).isPresent());
+			restarted.close();
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException {
+		Path directory = Files.createTempDirectory("ifcvalidator-footprints");
+		try {
+			FootprintCache footprintCache = new FootprintCache(MAX_DISK_BYTES, directory);
+			FootprintCache.Key first = FootprintCache.createKey(1f, new byte[] { 0 });
+			for (int i = 0; i < 200; i++) {
+				// About 16 kB per footprint, so the cache holds about 32 of them
+				footprintCache.put(FootprintCache.createKey(1f, new byte[] { (byte) i }), polygon(1000, i));
+			}
+			FootprintCache.Key last = FootprintCache.createKey(1f, new byte[] { (byte) 199 });
+			Assert.assertNull(footprintCache.get(first));
+			Assert.assertNotNull(footprintCache.get(last));
+			Assert.assertTrue(footprintCache.size() < 40);
+			long diskBytes = 0;
+			for (Path file : Files.newDirectoryStream(directory)) {
+				diskBytes += Files.size(file);
+			}
+			Assert.assertTrue(diskBytes <= MAX_DISK_BYTES);
+			footprintCache.close();
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private Shape polygon(int nrPoints, double offset) {
+		Path2D.Double path = new Path2D.Double();
+		for (int i = 0; i < nrPoints; i++) {
+			double angle = 2 * Math.PI * i / nrPoints;
+			if (i == 0) {
+				path.moveTo(offset + Math.cos(angle), Math.sin(angle));
+			} else {
+				path.lineTo(offset + Math.cos(angle), Math.sin(angle));
+			}
+		}
+		path.closePath();
+		return path;
+	}
+
+	private void delete(Path directory) throws IOException {
+		for (Path file : Files.newDirectoryStream(directory)) {
+			Files.delete(file);
+		}
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,83 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+
+import org.bimserver.ifcvalidator.geometry.FootprintStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestFootprintStore {
+
+	@Test
+	public void testTranslation() {
+		double[] from = placement(0, 1000, 2000, 0);
+		double[] to = placement(0, 3000, 2000, 500);
+
+		AffineTransform affineTransform = FootprintStore.getFootprintTransform(from, to, 0.001);
+		assertPoint(3, 2, affineTransform.transform(new Point2D.Double(1, 2), null));
+	}
+
+	@Test
+	public void testRotation() {
+		double[] from = placement(0, 1000, 0, 0);
+		double[] to = placement(Math.PI / 2, 0, 1000, 0);
+
+		// The footprint point 2 m along the local x axis of the first instance ends up 2 m along the y axis
+		AffineTransform affineTransform = FootprintStore.getFootprintTransform(from, to, 0.001);
+		assertPoint(0, 3, affineTransform.transform(new Point2D.Double(3, 0), null));
+	}
+
+	@Test
+	public void testTiltIsNotAFootprintTransform() {
+		double[] from = placement(0, 0, 0, 0);
+		double[] to = placement(0, 0, 0, 0);
+		// Rotated 30 degrees around the x axis
+		to[5] = Math.cos(Math.PI / 6);
+		to[6] = Math.sin(Math.PI / 6);
+		to[9] = -Math.sin(Math.PI / 6);
+		to[10] = Math.cos(Math.PI / 6);
+
+		Assert.assertNull(FootprintStore.getFootprintTransform(from, to, 0.001));
+		Assert.assertNull(FootprintStore.getFootprintTransform(new double[16], to, 0.001));
+	}
+
+	/**
+	 * Column-major matrix of a rotation around the z axis followed by a translation
+	 */
+	private double[] placement(double angle, double x, double y, double z) {
+		double[] matrix = new double[16];
+		matrix[0] = Math.cos(angle);
+		matrix[1] = Math.sin(angle);
+		matrix[4] = -Math.sin(angle);
+		matrix[5] = Math.cos(angle);
+		matrix[10] = 1;
+		matrix[12] = x;
+		matrix[13] = y;
+		matrix[14] = z;
+		matrix[15] = 1;
+		return matrix;
+	}
+
+	private void assertPoint(double x, double y, Point2D point) {
+		Assert.assertEquals(x, point.getX(), 1e-9);
+		Assert.assertEquals(y, point.getY(), 1e-9);
+	}
+}
@@ -0,0 +1,301 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.RevisionFingerprint;
+import org.bimserver.ifcvalidator.ValidationHistory.ValidatedRevision;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestIncrementalValidation {
+
+	private static class InputCheck extends ModelCheck {
+		private final Set<EClass> inputClasses;
+		private final Set<String> dependencies;
+
+		public InputCheck(String identifier, Set<EClass> inputClasses, Set<String> dependencies) {
+			super("TEST", identifier);
+			this.inputClasses = inputClasses;
+			this.dependencies = dependencies;
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+		}
+
+		@Override
+		public Set<EClass> getInputClasses() {
+			return inputClasses;
+		}
+
+		@Override
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+	}
+
+	private EStructuralFeature createFeature(String name, Class<? extends EStructuralFeature> type, EClass referenceType) {
+		return (EStructuralFeature) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "getName":
+				return name;
+			case "isMany":
+				return false;
+			case "getEReferenceType":
+				return referenceType;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				return null;
+			}
+		});
+	}
+
+	private EClass createEClass(String name, EClass superType, EPackage ePackage, EStructuralFeature... features) {
+		EList<EStructuralFeature> allFeatures = new BasicEList<>(Arrays.asList(features));
+		return (EClass) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { EClass.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "isSuperTypeOf":
+				EClass other = (EClass) args[0];
+				return other == proxy || (other != null && other.getName() != null && other.getName().startsWith(name + "/"));
+			case "getName":
+				return superType == null ? name : superType.getName() + "/" + name;
+			case "getEPackage":
+				return ePackage;
+			case "getEAllStructuralFeatures":
+				return allFeatures;
+			case "getEStructuralFeature":
+				for (EStructuralFeature feature : allFeatures) {
+					if (feature.getName().equals(args[0])) {
+						return feature;
+					}
+				}
+				return null;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				return null;
+			}
+		});
+	}
+
+	private EClass createEClass(String name, EClass superType) {
+		return createEClass(name, superType, null, nameFeature);
+	}
+
+	private IdEObject createObject(EClass eClass, long oid, Map<EStructuralFeature, Object> values) {
+		return (IdEObject) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IdEObject.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "eClass":
+				return eClass;
+			case "getOid":
+				return oid;
+			case "eGet":
+				return values.get(args[0]);
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				return null;
+			}
+		});
+	}
+
+	private IdEObject createObject(EClass eClass, long oid, String name) {
+		return createObject(eClass, oid, Collections.singletonMap(nameFeature, name));
+	}
+
+	private IfcModelInterface createModel(IdEObject... objects) {
+		List<IdEObject> values = Arrays.asList(objects);
+		return (IfcModelInterface) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IfcModelInterface.class }, (proxy, method, args) -> {
+			List<IdEObject> result = new ArrayList<>();
+			switch (method.getName()) {
+			case "getValues":
+				return values;
+			case "getAll":
+				for (IdEObject object : values) {
+					if (object.eClass() == args[0]) {
+						result.add(object);
+					}
+				}
+				return result;
+			case "getByGuid":
+				for (IdEObject object : values) {
+					EStructuralFeature globalId = object.eClass().getEStructuralFeature("GlobalId");
+					if (globalId != null && args[0].equals(object.eGet(globalId))) {
+						return object;
+					}
+				}
+				return null;
+			default:
+				return null;
+			}
+		});
+	}
+
+	private final EStructuralFeature nameFeature = createFeature("Name", EAttribute.class, null);
+	private final EStructuralFeature globalIdFeature = createFeature("GlobalId", EAttribute.class, null);
+	private final EStructuralFeature coordinatesFeature = createFeature("Coordinates", EAttribute.class, null);
+	private final EPackage ifcPackage = (EPackage) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { EPackage.class }, (proxy, method, args) -> method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null);
+	private final EPackage geometryPackage = (EPackage) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { EPackage.class }, (proxy, method, args) -> method.getName().equals("equals") ? proxy == args[0] : method.getName().equals("hashCode") ? System.identityHashCode(proxy) : null);
+
+	private final EClass product = createEClass("Product", null);
+	private final EClass wall = createEClass("Wall", product);
+	private final EClass site = createEClass("Site", null);
+	private final EClass geometryInfo = createEClass("GeometryInfo", null, geometryPackage, nameFeature);
+	private final EClass point = createEClass("Point", null, ifcPackage, coordinatesFeature);
+	private final EStructuralFeature locationFeature = createFeature("Location", EReference.class, point);
+	private final EStructuralFeature geometryFeature = createFeature("geometry", EReference.class, geometryInfo);
+	private final EClass column = createEClass("Column", product, ifcPackage, globalIdFeature, nameFeature, locationFeature, geometryFeature);
+
+	private ValidatedRevision validate(RevisionFingerprint fingerprint, List<ScheduledCheck> scheduledChecks, Set<String> incomplete) {
+		Map<String, IssueContainer> issueContainers = new HashMap<>();
+		for (ScheduledCheck scheduledCheck : scheduledChecks) {
+			String fullIdentifier = scheduledCheck.getModelCheck().getFullIdentifier();
+			if (!incomplete.contains(fullIdentifier)) {
+				IssueContainer issueContainer = new IssueContainer();
+				// Checks use CANNOT_CHECK as a verdict too, that does not make them incomplete
+				issueContainer.builder().type(Type.CANNOT_CHECK).message(fullIdentifier).add();
+				issueContainers.put(fullIdentifier, issueContainer);
+			}
+		}
+		return new ValidatedRevision(1, "EN", fingerprint, issueContainers);
+	}
+
+	@Test
+	public void testUnchangedModel() {
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("SITE", Collections.singleton(site), Collections.<String>emptySet()), 0));
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("ANY", null, Collections.<String>emptySet()), 0));
+
+		ValidatedRevision previous = validate(RevisionFingerprint.create(createModel(createObject(site, 1, "Site"), createObject(wall, 2, "Wall"))), scheduledChecks, Collections.<String>emptySet());
+		// Same content in a different order
+		RevisionFingerprint fingerprint = RevisionFingerprint.create(createModel(createObject(wall, 2, "Wall"), createObject(site, 1, "Site")));
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList("TEST___SITE", "TEST___ANY")), previous.getReusableChecks(scheduledChecks, fingerprint, "EN"));
+		Assert.assertTrue(previous.getReusableChecks(scheduledChecks, fingerprint, "NL").isEmpty());
+	}
+
+	@Test
+	public void testChangedSubType() {
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("SITE", Collections.singleton(site), Collections.<String>emptySet()), 0));
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("PRODUCT", Collections.singleton(product), Collections.<String>emptySet()), 0));
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("DEPENDENT", Collections.singleton(site), Collections.singleton("TEST___PRODUCT")), 0));
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("ANY", null, Collections.<String>emptySet()), 0));
+
+		ValidatedRevision previous = validate(RevisionFingerprint.create(createModel(createObject(site, 1, "Site"), createObject(wall, 2, "Wall"))), scheduledChecks, Collections.<String>emptySet());
+		RevisionFingerprint fingerprint = RevisionFingerprint.create(createModel(createObject(site, 1, "Site"), createObject(wall, 2, "Renamed wall")));
+
+		Assert.assertEquals(Collections.singleton("TEST___SITE"), previous.getReusableChecks(scheduledChecks, fingerprint, "EN"));
+	}
+
+	@Test
+	public void testIncompleteChecksAreRerun() {
+		List<ScheduledCheck> scheduledChecks = new ArrayList<>();
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("SITE", Collections.singleton(site), Collections.<String>emptySet()), 0));
+		scheduledChecks.add(new ScheduledCheck(new InputCheck("SLOW", Collections.singleton(site), Collections.<String>emptySet()), 0));
+
+		RevisionFingerprint fingerprint = RevisionFingerprint.create(createModel(createObject(site, 1, "Site")));
+		ValidatedRevision previous = validate(fingerprint, scheduledChecks, Collections.singleton("TEST___SLOW"));
+
+		Assert.assertEquals(Collections.singleton("TEST___SITE"), previous.getReusableChecks(scheduledChecks, fingerprint, "EN"));
+	}
+
+	@Test
+	public void testReusedIssuesReferenceTheNewModel() {
+		InputCheck siteCheck = new InputCheck("SITE", Collections.singleton(site), Collections.<String>emptySet());
+		IdEObject previousSite = createObject(site, 1, "Site");
+		IssueContainer issueContainer = new IssueContainer();
+		issueContainer.builder().type(Type.ERROR).object(previousSite).message("Site has no address").is(0).shouldBe("1 address").add();
+		ValidatedRevision previous = new ValidatedRevision(1, "EN", RevisionFingerprint.create(createModel(previousSite)), Collections.singletonMap("TEST___SITE", issueContainer));
+
+		IdEObject site = createObject(this.site, 1, "Site");
+		IssueContainer reused = previous.createIssueContainer(siteCheck, createModel(site));
+
+		Assert.assertEquals(1, reused.list().size());
+		Assert.assertSame(site, reused.list().get(0).getObject());
+		Assert.assertEquals(Type.ERROR, reused.list().get(0).getType());
+		Assert.assertEquals("Site has no address", reused.list().get(0).getMessage());
+		Assert.assertEquals(0, reused.list().get(0).getIs());
+		Assert.assertEquals("1 address", reused.list().get(0).getShouldBe());
+		Assert.assertNull(previous.createIssueContainer(new InputCheck("OTHER", null, Collections.<String>emptySet()), createModel(site)));
+	}
+
+	private IdEObject[] createColumn(long oid, String name, byte[] coordinates, String geometry) {
+		IdEObject location = createObject(point, oid, Collections.singletonMap(coordinatesFeature, coordinates));
+		Map<EStructuralFeature, Object> values = new HashMap<>();
+		values.put(globalIdFeature, "2O2Fr$t4X7Zf8NOew3FLOH");
+		values.put(nameFeature, name);
+		values.put(locationFeature, location);
+		values.put(geometryFeature, createObject(geometryInfo, oid + 1, geometry));
+		return new IdEObject[] { createObject(column, oid + 2, values), location };
+	}
+
+	@Test
+	public void testRenumberedOids() {
+		// BIMserver gives every object a new oid on each check-in, the geometry is added while the model is validated
+		IdEObject[] previousObjects = createColumn(1, "Column", new byte[] { 1, 2 }, "Loaded");
+		IdEObject[] objects = createColumn(100, "Column", new byte[] { 1, 2 }, "Not loaded yet");
+		RevisionFingerprint previousFingerprint = RevisionFingerprint.create(createModel(previousObjects));
+		Assert.assertTrue(RevisionFingerprint.create(createModel(objects)).getChangedClasses(previousFingerprint).isEmpty());
+		Assert.assertTrue(RevisionFingerprint.create(createModel(createColumn(200, "Column", new byte[] { 1, 3 }, "Loaded"))).getChangedClasses(previousFingerprint).contains(point));
+		Assert.assertEquals(Collections.singleton(column), RevisionFingerprint.create(createModel(createColumn(300, "Renamed", new byte[] { 1, 2 }, "Loaded"))).getChangedClasses(previousFingerprint));
+
+		InputCheck columnCheck = new InputCheck("COLUMN", new HashSet<>(Arrays.asList(column, point)), Collections.<String>emptySet());
+		IssueContainer issueContainer = new IssueContainer();
+		issueContainer.builder().type(Type.ERROR).object(previousObjects[0]).message("Column").add();
+		issueContainer.builder().type(Type.ERROR).object(previousObjects[1]).message("Location").add();
+		ValidatedRevision previous = new ValidatedRevision(1, "EN", previousFingerprint, Collections.singletonMap("TEST___COLUMN", issueContainer));
+		Assert.assertEquals(Collections.singleton("TEST___COLUMN"), previous.getReusableChecks(Collections.singletonList(new ScheduledCheck(columnCheck, 0)), RevisionFingerprint.create(createModel(objects)), "EN"));
+
+		IssueContainer reused = previous.createIssueContainer(columnCheck, createModel(objects));
+		Assert.assertSame(objects[0], reused.list().get(0).getObject());
+		Assert.assertSame(objects[1], reused.list().get(1).getObject());
+	}
+}
@@ -0,0 +1,109 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckScheduler;
+import org.bimserver.ifcvalidator.CheckScheduler.ScheduledCheck;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.Translations;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.metrics.CheckMetrics;
+import org.bimserver.ifcvalidator.metrics.ComponentMetrics;
+import org.bimserver.ifcvalidator.metrics.LatencyHistogram;
+import org.bimserver.ifcvalidator.metrics.MetricsRegistry;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.IssueException;
+import org.bimserver.validationreport.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestMetricsRegistry {
+
+	private static class FailingCheck extends ModelCheck {
+		public FailingCheck() {
+			super("METRICS", "FAILING");
+		}
+
+		@Override
+		public void check(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) throws IssueException {
+			issueContainer.builder().type(Type.SUCCESS).message("First").add();
+			issueContainer.builder().type(Type.ERROR).message("Second").add();
+			throw new IssueException("Failed");
+		}
+	}
+
+	@Test
+	public void testLatencyHistogram() {
+		LatencyHistogram latencyHistogram = new LatencyHistogram();
+		latencyHistogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+		latencyHistogram.record(TimeUnit.MILLISECONDS.toNanos(15));
+		latencyHistogram.record(TimeUnit.HOURS.toNanos(1));
+
+		Map<String, Long> snapshot = latencyHistogram.snapshot();
+		Assert.assertEquals(Long.valueOf(1), snapshot.get("<= 1 ms"));
+		Assert.assertEquals(Long.valueOf(1), snapshot.get("<= 20 ms"));
+		Assert.assertEquals(Long.valueOf(1), snapshot.get("> 600000 ms"));
+		Assert.assertEquals(Long.valueOf(0), snapshot.get("<= 10 ms"));
+	}
+
+	@Test
+	public void testCheckMetrics() throws Exception {
+		CheckMetrics checkMetrics = MetricsRegistry.get().getCheckMetrics("METRICS___FAILING");
+		checkMetrics.reset();
+
+		CheckScheduler checkScheduler = new CheckScheduler(1);
+		try {
+			checkScheduler.run(null, Collections.singletonList(new ScheduledCheck(new FailingCheck(), 0)), new CheckerContext(new Translations("en.properties", Collections.<String, String>emptyMap()), null, null, CancellationToken.NONE));
+			Assert.fail();
+		} catch (IssueException e) {
+			// Expected
+		} finally {
+			checkScheduler.shutdown();
+		}
+
+		Assert.assertEquals(1, checkMetrics.getInvocations());
+		Assert.assertEquals(1, checkMetrics.getExceptions());
+		Assert.assertEquals(Long.valueOf(1), checkMetrics.getIssues().get("SUCCESS"));
+		Assert.assertEquals(Long.valueOf(1), checkMetrics.getIssues().get("ERROR"));
+		Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(new ObjectName("org.bimserver.ifcvalidator:type=Check,name=\"METRICS___FAILING\"")));
+	}
+
+	@Test
+	public void testReplacesStaleRegistration() throws Exception {
+		// An MXBean left behind by an earlier load of the plugin
+		ObjectName objectName = new ObjectName("org.bimserver.ifcvalidator:type=Component,name=\"METRICS_STALE\"");
+		ComponentMetrics stale = new ComponentMetrics();
+		ManagementFactory.getPlatformMBeanServer().registerMBean(stale, objectName);
+
+		MetricsRegistry.get().getComponentMetrics("METRICS_STALE").increment("current");
+
+		TabularData counters = (TabularData) ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "Counters");
+		Assert.assertEquals(1, counters.size());
+		Assert.assertTrue(counters.containsKey(new Object[] { "current" }));
+	}
+}
@@ -0,0 +1,64 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.models.ifc2x3tc1.IfcRelConnectsPathElements;
+import org.bimserver.models.ifc2x3tc1.IfcSpace;
+import org.bimserver.models.ifc2x3tc1.IfcWallStandardCase;
+import org.bimserver.models.ifc2x3tc1.IfcWindow;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestModelGenerator {
+
+	@Test
+	public void testGrid() throws Exception {
+		IfcModelInterface model = new ModelGenerator().setStoreys(3).setGrid(2, 3).setWindowsPerExternalWall(2).setParkingSpacesPerStorey(4).generate();
+
+		Assert.assertEquals(3, model.getAll(IfcBuildingStorey.class).size());
+		Assert.assertEquals(3 * (3 * 3 + 2 * 4), model.getAll(IfcWallStandardCase.class).size());
+		Assert.assertEquals(3 * 22, model.getAll(IfcRelConnectsPathElements.class).size());
+		Assert.assertEquals(3 * (2 * 3 + 4), model.getAll(IfcSpace.class).size());
+		Assert.assertEquals(3 * 2 * (2 * 3 + 2 * 2), model.getAll(IfcWindow.class).size());
+	}
+
+	@Test
+	public void testSeededLayout() throws Exception {
+		ModelGenerator modelGenerator = new ModelGenerator().setStoreys(2).setGrid(10, 10).setSizeVariation(0.2).setSpaceGapRatio(0.3).setSeed(42);
+		int spaces = modelGenerator.generate().getAll(IfcSpace.class).size();
+
+		Assert.assertTrue(spaces < 2 * 100);
+		Assert.assertEquals(spaces, modelGenerator.generate().getAll(IfcSpace.class).size());
+	}
+
+	@Test
+	public void testStep() throws Exception {
+		IfcModelInterface model = new ModelGenerator().generate();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ModelGenerator.writeStep(model, outputStream);
+
+		String step = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+		Assert.assertTrue(step.startsWith("ISO-10303-21;"));
+		Assert.assertTrue(step.contains("IFCRELCONNECTSPATHELEMENTS"));
+	}
+}
@@ -0,0 +1,152 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bimserver.database.queries.om.Include;
+import org.bimserver.database.queries.om.Query;
+import org.bimserver.database.queries.om.QueryPart;
+import org.bimserver.database.queries.om.TypeDef;
+import org.bimserver.emf.PackageMetaData;
+import org.bimserver.emf.Schema;
+import org.bimserver.ifcvalidator.ModelQueryBuilder;
+import org.bimserver.ifcvalidator.checks.AllObjectsInBuildingStorey;
+import org.bimserver.ifcvalidator.checks.BuildingStoreyNamesAndZOrder;
+import org.bimserver.ifcvalidator.checks.CheckLengthUnit;
+import org.bimserver.ifcvalidator.checks.FireratingDoorsSameAsWalls;
+import org.bimserver.ifcvalidator.checks.HasTrueNorthSet;
+import org.bimserver.ifcvalidator.checks.IfcSiteLatitude;
+import org.bimserver.ifcvalidator.checks.ModelCheck;
+import org.bimserver.ifcvalidator.checks.UnclassifiedSpaces;
+import org.bimserver.ifcvalidator.checks.UnidentifiedSpaces;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Package;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EReference;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestModelQueryBuilder {
+
+	private static final Ifc2x3tc1Package PACKAGE = Ifc2x3tc1Package.eINSTANCE;
+
+	@Test
+	public void testPartialModel() throws Exception {
+		List<ModelCheck> modelChecks = Arrays.<ModelCheck>asList(new IfcSiteLatitude(), new CheckLengthUnit(), new HasTrueNorthSet());
+		PackageMetaData packageMetaData = new PackageMetaData(Ifc2x3tc1Package.eINSTANCE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+
+		Assert.assertFalse(ModelQueryBuilder.needsCompleteModel(modelChecks));
+		Assert.assertFalse(ModelQueryBuilder.needsGeometry(modelChecks));
+		Query query = ModelQueryBuilder.build(packageMetaData, modelChecks);
+		Assert.assertEquals(new HashSet<>(Arrays.asList(PACKAGE.getIfcProject(), PACKAGE.getIfcSite())), getRoots(query));
+		QueryPart project = getQueryPart(query, PACKAGE.getIfcProject());
+		assertIncludes(project.getIncludes(), PACKAGE.getIfcProject_UnitsInContext(), PACKAGE.getIfcUnitAssignment_Units());
+		assertIncludes(project.getIncludes(), PACKAGE.getIfcProject_RepresentationContexts(), PACKAGE.getIfcGeometricRepresentationContext_TrueNorth());
+	}
+
+	@Test
+	public void testVisitingChecks() throws Exception {
+		List<ModelCheck> modelChecks = Arrays.<ModelCheck>asList(new AllObjectsInBuildingStorey(), new BuildingStoreyNamesAndZOrder(), new FireratingDoorsSameAsWalls(), new UnclassifiedSpaces());
+		PackageMetaData packageMetaData = new PackageMetaData(Ifc2x3tc1Package.eINSTANCE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+
+		Assert.assertFalse(ModelQueryBuilder.needsCompleteModel(modelChecks));
+		Query query = ModelQueryBuilder.build(packageMetaData, modelChecks);
+		// The interests and the storeys are read completely, although they can also be reached through references
+		Assert.assertEquals(new HashSet<>(Arrays.asList(PACKAGE.getIfcProject(), PACKAGE.getIfcProduct(), PACKAGE.getIfcBuildingStorey(), PACKAGE.getIfcWall(), PACKAGE.getIfcSpace())), getRoots(query));
+
+		QueryPart product = getQueryPart(query, PACKAGE.getIfcProduct());
+		assertIncludes(product.getIncludes(), PACKAGE.getIfcElement_ContainedInStructure(), PACKAGE.getIfcRelContainedInSpatialStructure_RelatingStructure());
+		assertIncludes(product.getIncludes(), PACKAGE.getIfcObjectDefinition_Decomposes(), PACKAGE.getIfcRelDecomposes_RelatingObject());
+
+		QueryPart storey = getQueryPart(query, PACKAGE.getIfcBuildingStorey());
+		assertIncludes(storey.getIncludes(), PACKAGE.getIfcObjectDefinition_IsDecomposedBy(), PACKAGE.getIfcRelDecomposes_RelatedObjects());
+		assertIncludes(storey.getIncludes(), PACKAGE.getIfcSpatialStructureElement_ContainsElements(), PACKAGE.getIfcRelContainedInSpatialStructure_RelatedElements());
+
+		QueryPart wall = getQueryPart(query, PACKAGE.getIfcWall());
+		assertIncludes(wall.getIncludes(), PACKAGE.getIfcElement_HasOpenings(), PACKAGE.getIfcRelVoidsElement_RelatedOpeningElement(), PACKAGE.getIfcOpeningElement_HasFillings(), PACKAGE.getIfcRelFillsElement_RelatedBuildingElement(),
+				PACKAGE.getIfcObject_IsDefinedBy(), PACKAGE.getIfcRelDefinesByProperties_RelatingPropertyDefinition(), PACKAGE.getIfcPropertySet_HasProperties(), PACKAGE.getIfcPropertySingleValue_NominalValue());
+
+		QueryPart space = getQueryPart(query, PACKAGE.getIfcSpace());
+		assertIncludes(space.getIncludes(), PACKAGE.getIfcObjectDefinition_HasAssociations(), PACKAGE.getIfcRelAssociatesClassification_RelatingClassification());
+	}
+
+	@Test
+	public void testCompleteModel() throws Exception {
+		List<ModelCheck> modelChecks = Arrays.<ModelCheck>asList(new IfcSiteLatitude(), new UnidentifiedSpaces());
+		PackageMetaData packageMetaData = new PackageMetaData(Ifc2x3tc1Package.eINSTANCE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+
+		Assert.assertTrue(ModelQueryBuilder.needsCompleteModel(modelChecks));
+		Assert.assertTrue(ModelQueryBuilder.needsGeometry(modelChecks));
+		Assert.assertNull(ModelQueryBuilder.build(packageMetaData, modelChecks));
+	}
+
+	@Test
+	public void testGeometryQuery() throws Exception {
+		PackageMetaData packageMetaData = new PackageMetaData(Ifc2x3tc1Package.eINSTANCE, Schema.IFC2X3TC1, Paths.get(System.getProperty("java.io.tmpdir")));
+
+		Assert.assertNull(ModelQueryBuilder.buildGeometryQuery(packageMetaData, Arrays.<ModelCheck>asList(new IfcSiteLatitude(), new CheckLengthUnit())));
+		Assert.assertNotNull(ModelQueryBuilder.buildGeometryQuery(packageMetaData, Arrays.<ModelCheck>asList(new IfcSiteLatitude(), new UnidentifiedSpaces())));
+	}
+
+	private static Set<EClass> getRoots(Query query) {
+		Set<EClass> roots = new HashSet<>();
+		for (QueryPart queryPart : query.getQueryParts()) {
+			for (TypeDef typeDef : queryPart.getTypes()) {
+				roots.add(typeDef.getEClass());
+			}
+		}
+		return roots;
+	}
+
+	private static QueryPart getQueryPart(Query query, EClass eClass) {
+		for (QueryPart queryPart : query.getQueryParts()) {
+			for (TypeDef typeDef : queryPart.getTypes()) {
+				if (typeDef.getEClass() == eClass) {
+					return queryPart;
+				}
+			}
+		}
+		throw new AssertionError("No query part for " + eClass.getName());
+	}
+
+	/**
+	 * Asserts that the given references are followed one after the other, starting from one of the includes
+	 */
+	private static void assertIncludes(List<Include> includes, EReference... path) {
+		List<Include> current = includes;
+		for (EReference reference : path) {
+			Include next = null;
+			if (current != null) {
+				for (Include include : current) {
+					if (include.getFields().contains(reference)) {
+						next = include;
+						break;
+					}
+				}
+			}
+			if (next == null) {
+				throw new AssertionError("No include of " + reference.getEContainingClass().getName() + "." + reference.getName() + " in " + Arrays.toString(path));
+			}
+			current = next.getIncludes();
+		}
+	}
+}
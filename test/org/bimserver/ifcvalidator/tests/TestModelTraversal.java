@@ -0,0 +1,118 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.checks.ModelTraversal;
+import org.bimserver.ifcvalidator.checks.ModelVisitor;
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestModelTraversal {
+
+	private static class RecordingVisitor implements ModelVisitor {
+		private final List<IdEObject> visited = new ArrayList<>();
+
+		@Override
+		public void visit(IdEObject object) {
+			visited.add(object);
+		}
+
+		@Override
+		public void done() {
+		}
+	}
+
+	private EClass createEClass(String name, EClass superType) {
+		return (EClass) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { EClass.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "isSuperTypeOf":
+				EClass other = (EClass) args[0];
+				return other == proxy || (other != null && other.getName() != null && other.getName().startsWith(name + "/"));
+			case "getName":
+				return superType == null ? name : superType.getName() + "/" + name;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				return null;
+			}
+		});
+	}
+
+	private IdEObject createObject(EClass eClass) {
+		return (IdEObject) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IdEObject.class }, (proxy, method, args) -> {
+			switch (method.getName()) {
+			case "eClass":
+				return eClass;
+			case "hashCode":
+				return System.identityHashCode(proxy);
+			case "equals":
+				return proxy == args[0];
+			default:
+				return null;
+			}
+		});
+	}
+
+	private IfcModelInterface createModel(List<IdEObject> objects, int[] traversals) {
+		return (IfcModelInterface) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IfcModelInterface.class }, (proxy, method, args) -> {
+			if (method.getName().equals("getValues")) {
+				traversals[0]++;
+				return objects;
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void testDispatch() throws Exception {
+		EClass product = createEClass("Product", null);
+		EClass space = createEClass("Space", product);
+		EClass wall = createEClass("Wall", product);
+		EClass other = createEClass("Other", null);
+
+		IdEObject space1 = createObject(space);
+		IdEObject wall1 = createObject(wall);
+		IdEObject other1 = createObject(other);
+		int[] traversals = new int[1];
+		IfcModelInterface model = createModel(Arrays.asList(space1, wall1, other1), traversals);
+
+		RecordingVisitor productVisitor = new RecordingVisitor();
+		RecordingVisitor spaceVisitor = new RecordingVisitor();
+		ModelTraversal modelTraversal = new ModelTraversal();
+		modelTraversal.add(Collections.singleton(product), productVisitor, CancellationToken.NONE);
+		modelTraversal.add(Collections.singleton(space), spaceVisitor, CancellationToken.NONE);
+		modelTraversal.traverse(model);
+
+		Assert.assertEquals(1, traversals[0]);
+		Assert.assertEquals(Arrays.asList(space1, wall1), productVisitor.visited);
+		Assert.assertEquals(Collections.singletonList(space1), spaceVisitor.visited);
+		Assert.assertFalse(modelTraversal.isCancelled(productVisitor));
+	}
+}
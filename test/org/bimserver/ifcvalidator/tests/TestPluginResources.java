@@ -0,0 +1,57 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+
+import org.bimserver.ifcvalidator.PluginResources;
+import org.bimserver.ifcvalidator.Translations;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPluginResources {
+
+	@Test
+	public void testTranslationsAreCachedAndReloaded() throws IOException {
+		Path rootPath = Files.createTempDirectory("ifcvalidator");
+		Path propertiesFile = rootPath.resolve("en.properties");
+		Files.write(propertiesFile, "KEY=First".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(propertiesFile, FileTime.fromMillis(1000000));
+
+		PluginResources pluginResources = PluginResources.get(rootPath);
+		Translations first = pluginResources.getTranslations("EN");
+		Assert.assertEquals("First", first.translate("KEY"));
+		Assert.assertEquals("MISSING", first.translate("MISSING"));
+		Assert.assertSame(first, pluginResources.getTranslations("EN"));
+		Assert.assertSame(pluginResources, PluginResources.get(rootPath));
+
+		Files.write(propertiesFile, "KEY=Second".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(propertiesFile, FileTime.fromMillis(2000000));
+
+		Translations second = pluginResources.getTranslations("EN");
+		Assert.assertNotSame(first, second);
+		Assert.assertEquals("Second", second.translate("KEY"));
+		Assert.assertNotEquals(first.getFingerprint(), second.getFingerprint());
+		Assert.assertEquals(second.getFingerprint(), new Translations("other.properties", Collections.singletonMap("KEY", "Second")).getFingerprint());
+	}
+}
@@ -0,0 +1,235 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.WorkScheduler;
+import org.bimserver.ifcvalidator.geometry.PolygonGeometryEngine;
+import org.bimserver.ifcvalidator.geometry.Region;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestPolygonGeometryEngine {
+	private final PolygonGeometryEngine engine = new PolygonGeometryEngine(0.0001);
+
+	@Test
+	public void testOverlappingSquares() {
+		Region a = engine.create(new Rectangle2D.Double(0, 0, 2, 2));
+		Region b = engine.create(new Rectangle2D.Double(1, 1, 2, 2));
+
+		Assert.assertEquals(7, engine.union(a, b).getArea(), 1e-9);
+		Assert.assertEquals(1, engine.intersection(a, b).getArea(), 1e-9);
+		Assert.assertEquals(3, engine.difference(a, b).getArea(), 1e-9);
+		Assert.assertEquals(1, engine.union(a, b).getRings().size());
+		Assert.assertEquals(8, countVertices(engine.union(a, b).toArea()));
+		Assert.assertTrue(engine.intersection(a, engine.create(new Rectangle2D.Double(5, 5, 1, 1))).isEmpty());
+	}
+
+	@Test
+	public void testHole() {
+		Region outer = engine.create(new Rectangle2D.Double(0, 0, 4, 4));
+		Region hole = engine.create(new Rectangle2D.Double(1, 1, 2, 2));
+		Region ring = engine.difference(outer, hole);
+
+		Assert.assertEquals(12, ring.getArea(), 1e-9);
+		Assert.assertEquals(2, ring.getRings().size());
+		Assert.assertEquals(4, ring.getSmallestRing().getArea(), 1e-9);
+		Assert.assertFalse(ring.contains(2, 2));
+		Assert.assertTrue(ring.contains(0.5, 2));
+		Assert.assertTrue(ring.getSmallestRing().containsAllPoints(engine.create(new Rectangle2D.Double(1.5, 1.5, 0.5, 0.5))));
+		Assert.assertFalse(ring.getSmallestRing().containsAllPoints(engine.create(new Rectangle2D.Double(2.5, 2.5, 1, 1))));
+		Assert.assertEquals(16, engine.union(ring, hole).getArea(), 1e-9);
+		Assert.assertEquals(1, engine.union(ring, hole).getRings().size());
+	}
+
+	@Test
+	public void testAdjacentWallsMergeIntoOneRectangle() {
+		Region walls = engine.empty();
+		for (int i = 0; i < 10; i++) {
+			walls = engine.union(walls, engine.create(new Rectangle2D.Double(i, 0, 1, 0.2)));
+		}
+		Assert.assertEquals(2, walls.getArea(), 1e-9);
+		Assert.assertEquals(1, walls.getRings().size());
+		Assert.assertEquals(4, countVertices(walls.toArea()));
+	}
+
+	@Test
+	public void testCrossingTriangles() {
+		Path2D.Double first = new Path2D.Double();
+		first.moveTo(0, 0);
+		first.lineTo(3.3, 0.1);
+		first.lineTo(1.7, 2.9);
+		first.closePath();
+		Path2D.Double second = new Path2D.Double();
+		second.moveTo(0.2, 2.1);
+		second.lineTo(1.1, -0.7);
+		second.lineTo(3.1, 1.9);
+		second.closePath();
+		compare(first, second);
+	}
+
+	@Test
+	public void testRandomPolygonsMatchArea() {
+		Random random = new Random(11);
+		for (int round = 0; round < 20; round++) {
+			Path2D.Double first = randomPolygon(random, 7, 10);
+			Path2D.Double second = randomPolygon(random, 7, 10);
+			compare(first, second);
+		}
+	}
+
+	/**
+	 * On a coarse grid snapping makes many edges cross again, every operation must still resolve them
+	 */
+	@Test
+	public void testCoarseGrid() {
+		PolygonGeometryEngine coarse = new PolygonGeometryEngine(1);
+		Random random = new Random(2);
+		for (int round = 0; round < 3000; round++) {
+			Path2D.Double first = randomGridPolygon(random, 3 + random.nextInt(6), 40);
+			Path2D.Double second = randomGridPolygon(random, 3 + random.nextInt(6), 40);
+			Area union = new Area(first);
+			union.add(new Area(second));
+			double expected = getArea(union);
+			Assert.assertEquals(expected, coarse.union(coarse.create(first), coarse.create(second)).getArea(), 1 + expected / 4);
+		}
+	}
+
+	@Test
+	public void testTransform() {
+		Region region = engine.create(new Rectangle2D.Double(1, 1, 2, 1));
+		Region mirrored = region.transform(AffineTransform.getScaleInstance(-1, 1));
+		Assert.assertEquals(2, mirrored.getArea(), 1e-9);
+		Assert.assertEquals(-3, mirrored.getBounds2D().getMinX(), 1e-9);
+		Assert.assertEquals(8, region.transform(AffineTransform.getScaleInstance(2, 2)).getArea(), 1e-9);
+	}
+
+	@Test
+	public void testUnionAll() {
+		Random random = new Random(5);
+		List<Region> walls = new ArrayList<>();
+		Region sequential = engine.empty();
+		for (int i = 0; i < 200; i++) {
+			Region wall = engine.create(AffineTransform.getRotateInstance(random.nextDouble(), 5, 5).createTransformedShape(new Rectangle2D.Double(random.nextDouble() * 10, random.nextDouble() * 10, random.nextDouble() * 3, 0.2)));
+			walls.add(wall);
+			sequential = engine.union(sequential, wall);
+		}
+		walls.add(null);
+		Assert.assertEquals(sequential.getArea(), engine.unionAll(walls).getArea(), 1e-3);
+		Assert.assertEquals(sequential.getArea(), engine.unionAll(walls, WorkScheduler.get().createQueue(), CancellationToken.NONE).getArea(), 1e-3);
+		Assert.assertTrue(engine.unionAll(new ArrayList<>()).isEmpty());
+	}
+
+	@Test
+	public void testUnionAllRethrowsFailure() {
+		List<Region> regions = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			regions.add(engine.create(new Rectangle2D.Double(i, 0, 1, 1)));
+		}
+		// Too far apart for the grid of the clipper
+		regions.add(engine.create(new Rectangle2D.Double(1e6, 0, 1, 1)));
+		try {
+			engine.unionAll(regions, WorkScheduler.get().createQueue(), CancellationToken.NONE);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Polygons span more than"));
+		}
+	}
+
+	private void compare(Path2D.Double first, Path2D.Double second) {
+		Region a = engine.create(first);
+		Region b = engine.create(second);
+		Area union = new Area(first);
+		union.add(new Area(second));
+		Area difference = new Area(first);
+		difference.subtract(new Area(second));
+		Area intersection = new Area(first);
+		intersection.intersect(new Area(second));
+		Assert.assertEquals(getArea(new Area(first)), a.getArea(), 1e-3);
+		Assert.assertEquals(getArea(union), engine.union(a, b).getArea(), 1e-3);
+		Assert.assertEquals(getArea(difference), engine.difference(a, b).getArea(), 1e-3);
+		Assert.assertEquals(getArea(intersection), engine.intersection(a, b).getArea(), 1e-3);
+	}
+
+	private Path2D.Double randomPolygon(Random random, int vertices, double size) {
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(random.nextDouble() * size, random.nextDouble() * size);
+		for (int i = 1; i < vertices; i++) {
+			path.lineTo(random.nextDouble() * size, random.nextDouble() * size);
+		}
+		path.closePath();
+		return path;
+	}
+
+	/**
+	 * A polygon with its vertices on the grid, the intersections of its edges are not
+	 */
+	private Path2D.Double randomGridPolygon(Random random, int vertices, int size) {
+		Path2D.Double path = new Path2D.Double();
+		path.moveTo(random.nextInt(size), random.nextInt(size));
+		for (int i = 1; i < vertices; i++) {
+			path.lineTo(random.nextInt(size), random.nextInt(size));
+		}
+		path.closePath();
+		return path;
+	}
+
+	private double getArea(Area area) {
+		double sum = 0;
+		double startX = 0;
+		double startY = 0;
+		double lastX = 0;
+		double lastY = 0;
+		double[] coords = new double[6];
+		for (PathIterator pathIterator = area.getPathIterator(null); !pathIterator.isDone(); pathIterator.next()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO) {
+				startX = lastX = coords[0];
+				startY = lastY = coords[1];
+			} else if (type == PathIterator.SEG_LINETO) {
+				sum += lastX * coords[1] - coords[0] * lastY;
+				lastX = coords[0];
+				lastY = coords[1];
+			} else if (type == PathIterator.SEG_CLOSE) {
+				sum += lastX * startY - startX * lastY;
+			}
+		}
+		return Math.abs(sum / 2);
+	}
+
+	private int countVertices(Area area) {
+		int vertices = 0;
+		double[] coords = new double[6];
+		for (PathIterator pathIterator = area.getPathIterator(null); !pathIterator.isDone(); pathIterator.next()) {
+			int type = pathIterator.currentSegment(coords);
+			if (type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO) {
+				vertices++;
+			}
+		}
+		return vertices;
+	}
+}
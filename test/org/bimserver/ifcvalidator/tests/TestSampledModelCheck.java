@@ -0,0 +1,160 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.bimserver.emf.IdEObject;
+import org.bimserver.emf.IfcModelInterface;
+import org.bimserver.ifcvalidator.CheckerContext;
+import org.bimserver.ifcvalidator.Translations;
+import org.bimserver.ifcvalidator.checks.AllObjectsInBuildingStorey;
+import org.bimserver.ifcvalidator.checks.ModelVisitor;
+import org.bimserver.ifcvalidator.checks.SampledModelCheck;
+import org.bimserver.ifcvalidator.checks.VisitingModelCheck;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.Type;
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSampledModelCheck {
+
+	@Test
+	public void testSample() {
+		int[] sample = SampledModelCheck.sample(1000, 50, new Random(42));
+
+		Assert.assertEquals(50, sample.length);
+		for (int i = 1; i < sample.length; i++) {
+			Assert.assertTrue(sample[i - 1] < sample[i]);
+		}
+		Assert.assertTrue(sample[0] >= 0 && sample[sample.length - 1] < 1000);
+		Assert.assertTrue(Arrays.equals(sample, SampledModelCheck.sample(1000, 50, new Random(42))));
+		Assert.assertEquals(10, SampledModelCheck.sample(10, 50, new Random(42)).length);
+	}
+
+	@Test
+	public void testWilsonInterval() {
+		double[] none = SampledModelCheck.wilsonInterval(0, 10);
+		Assert.assertEquals(0.0, none[0], 1e-4);
+		Assert.assertEquals(0.2775, none[1], 1e-4);
+
+		double[] half = SampledModelCheck.wilsonInterval(5, 10);
+		Assert.assertEquals(0.2366, half[0], 1e-4);
+		Assert.assertEquals(0.7634, half[1], 1e-4);
+
+		double[] some = SampledModelCheck.wilsonInterval(37, 300);
+		Assert.assertEquals(0.0908, some[0], 1e-4);
+		Assert.assertEquals(0.1654, some[1], 1e-4);
+	}
+
+	/**
+	 * Reports an error for every object with an even oid and skips the objects with an odd oid
+	 */
+	private static class EvenOidCheck extends VisitingModelCheck {
+		private final EClass interest;
+
+		public EvenOidCheck(EClass interest) {
+			super("TEST", "EVEN_OID");
+			this.interest = interest;
+		}
+
+		@Override
+		public Set<EClass> getInterests() {
+			return Collections.singleton(interest);
+		}
+
+		@Override
+		public boolean supportsSampling() {
+			return true;
+		}
+
+		@Override
+		public boolean isSampleTarget(IdEObject object) {
+			return object.getOid() % 2 == 0;
+		}
+
+		@Override
+		public ModelVisitor createVisitor(IfcModelInterface model, IssueContainer issueContainer, CheckerContext checkerContext) {
+			return new ModelVisitor() {
+				@Override
+				public void visit(IdEObject object) {
+					if (isSampleTarget(object)) {
+						issueContainer.builder().type(Type.ERROR).object(object).message("Even").add();
+					}
+				}
+
+				@Override
+				public void done() {
+				}
+			};
+		}
+	}
+
+	@Test
+	public void testSkippedObjectsAreNotSampled() throws Exception {
+		EClass eClass = (EClass) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { EClass.class }, (proxy, method, args) -> null);
+		List<IdEObject> objects = new ArrayList<>();
+		for (long oid = 1; oid <= 10; oid++) {
+			long objectOid = oid;
+			objects.add((IdEObject) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IdEObject.class }, (proxy, method, args) -> {
+				switch (method.getName()) {
+				case "getOid":
+					return objectOid;
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				default:
+					return null;
+				}
+			}));
+		}
+		IfcModelInterface model = (IfcModelInterface) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { IfcModelInterface.class }, (proxy, method, args) -> method.getName().equals("getAllWithSubTypes") ? objects : null);
+		IssueContainer issueContainer = new IssueContainer();
+		CheckerContext checkerContext = new CheckerContext(new Translations("en.properties", Collections.<String, String>emptyMap()), null, null);
+		new SampledModelCheck(new EvenOidCheck(eClass), 20, 1).check(model, issueContainer, checkerContext);
+
+		List<Issue> issues = issueContainer.list();
+		Issue estimate = issues.get(issues.size() - 1);
+		Assert.assertEquals(Type.ERROR, estimate.getType());
+		Assert.assertEquals("100.0%", estimate.getIs());
+		Assert.assertTrue(estimate.getMessage().contains("5 of 5 sampled objects out of 5"));
+	}
+
+	@Test
+	public void testSampledCheck() throws Exception {
+		IfcModelInterface model = new ModelGenerator().setStoreys(2).setGrid(3, 3).generate();
+		IssueContainer issueContainer = new IssueContainer();
+		CheckerContext checkerContext = new CheckerContext(new Translations("en.properties", Collections.<String, String>emptyMap()), null, null);
+		new SampledModelCheck(new AllObjectsInBuildingStorey(), 20, 1).check(model, issueContainer, checkerContext);
+
+		List<Issue> issues = issueContainer.list();
+		Issue estimate = issues.get(issues.size() - 1);
+		Assert.assertTrue(estimate.getType() == Type.SUCCESS || estimate.getType() == Type.ERROR);
+		Assert.assertTrue(estimate.getMessage().contains(" of 20 sampled objects"));
+		Assert.assertTrue(estimate.getMessage().endsWith("(seed 1)"));
+	}
+}
@@ -0,0 +1,70 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.awt.geom.Rectangle2D;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.bimserver.ifcvalidator.geometry.SpatialIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSpatialIndex {
+
+	@Test
+	public void testQueryMatchesBruteForce() {
+		Random random = new Random(7);
+		Map<Integer, Rectangle2D> rectangles = new HashMap<>();
+		for (int i = 0; i < 2000; i++) {
+			rectangles.put(i, new Rectangle2D.Double(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 3, random.nextDouble() * 3));
+		}
+		for (int nodeCapacity : new int[] {2, 4, 10, 16}) {
+			SpatialIndex<Integer> spatialIndex = new SpatialIndex<>(rectangles, nodeCapacity);
+			Assert.assertEquals(rectangles.size(), spatialIndex.size());
+			for (int i = 0; i < 200; i++) {
+				Rectangle2D query = new Rectangle2D.Double(random.nextDouble() * 100, random.nextDouble() * 100, random.nextDouble() * 10, random.nextDouble() * 10);
+				Set<Integer> expected = new HashSet<>();
+				for (Map.Entry<Integer, Rectangle2D> entry : rectangles.entrySet()) {
+					Rectangle2D rectangle = entry.getValue();
+					if (rectangle.getMinX() <= query.getMaxX() && rectangle.getMaxX() >= query.getMinX() && rectangle.getMinY() <= query.getMaxY() && rectangle.getMaxY() >= query.getMinY()) {
+						expected.add(entry.getKey());
+					}
+				}
+				Assert.assertEquals(expected, new HashSet<>(spatialIndex.query(query)));
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyAndMissingShapes() {
+		Assert.assertTrue(new SpatialIndex<>(Collections.<String, Rectangle2D>emptyMap()).query(new Rectangle2D.Double(0, 0, 1, 1)).isEmpty());
+
+		Map<String, Rectangle2D> rectangles = new HashMap<>();
+		rectangles.put("wall", new Rectangle2D.Double(0, 0, 5, 0.2));
+		rectangles.put("missing", null);
+		SpatialIndex<String> spatialIndex = new SpatialIndex<>(rectangles);
+		Assert.assertEquals(1, spatialIndex.size());
+		Assert.assertEquals(Collections.singletonList("wall"), spatialIndex.query(new Rectangle2D.Double(5, 0.2, 1, 1)));
+		Assert.assertTrue(spatialIndex.query(new Rectangle2D.Double(6, 0, 1, 1)).isEmpty());
+	}
+}
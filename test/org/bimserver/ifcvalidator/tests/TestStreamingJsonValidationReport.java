@@ -0,0 +1,90 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.bimserver.ifcvalidator.CappedIssueContainer;
+import org.bimserver.ifcvalidator.IncrementalValidationMetaData;
+import org.bimserver.ifcvalidator.IncrementalValidationMetaData.CheckResultOrigin;
+import org.bimserver.ifcvalidator.StreamingJsonValidationReport;
+import org.bimserver.validationreport.IssueContainer;
+import org.bimserver.validationreport.JsonValidationReport;
+import org.bimserver.validationreport.RootIssueContainer;
+import org.bimserver.validationreport.Type;
+import org.bimserver.validationreport.ValidationMetaData;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class TestStreamingJsonValidationReport {
+
+	private RootIssueContainer createReport(ValidationMetaData validationMetaData) {
+		RootIssueContainer rootIssueContainer = new RootIssueContainer();
+		CappedIssueContainer first = new CappedIssueContainer(2, null);
+		for (int i = 0; i < 5; i++) {
+			first.builder().originatingCheck("First").author("admin").type(Type.ERROR).message("Error " + i).is(i).shouldBe("0").add();
+		}
+		first.builder().originatingCheck("First").author("admin").type(Type.SUCCESS).message("Success").add();
+		first.addSummaries("First", "admin");
+		IssueContainer nested = new IssueContainer();
+		nested.builder().originatingCheck("Nested").type(Type.CANNOT_CHECK).message("Not checked").add();
+		IssueContainer second = new IssueContainer();
+		second.add(nested);
+		second.builder().originatingCheck("Second").type(Type.SUCCESS).message("Done").is(true).add();
+		rootIssueContainer.add(first);
+		rootIssueContainer.add(new IssueContainer());
+		rootIssueContainer.add(second);
+		validationMetaData.setFileName("test.ifc");
+		rootIssueContainer.setValidationMetaData(validationMetaData);
+		return rootIssueContainer;
+	}
+
+	private String write(RootIssueContainer rootIssueContainer) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new StreamingJsonValidationReport().write(rootIssueContainer, outputStream);
+		return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testSameAsJsonValidationReport() throws Exception {
+		RootIssueContainer rootIssueContainer = createReport(new ValidationMetaData());
+		String expected = new String(new JsonValidationReport().getBytes(rootIssueContainer), StandardCharsets.UTF_8);
+
+		Assert.assertEquals(expected, write(rootIssueContainer));
+	}
+
+	@Test
+	public void testIncrementalValidation() throws Exception {
+		IncrementalValidationMetaData validationMetaData = new IncrementalValidationMetaData(12);
+		validationMetaData.setCheckResultOrigin("TEST___FIRST", CheckResultOrigin.REUSED);
+		RootIssueContainer rootIssueContainer = createReport(validationMetaData);
+		ObjectMapper objectMapper = new ObjectMapper();
+		JsonNode expected = objectMapper.readTree(new JsonValidationReport().getBytes(rootIssueContainer));
+		JsonNode actual = objectMapper.readTree(write(rootIssueContainer));
+
+		Assert.assertEquals(12, actual.get("incrementalValidation").get("baseRoid").asLong());
+		Assert.assertEquals("REUSED", actual.get("incrementalValidation").get("checks").get("TEST___FIRST").asText());
+		((ObjectNode) actual).remove("incrementalValidation");
+		Assert.assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,82 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.List;
+
+import org.bimserver.ifcvalidator.SummaryIssueContainer;
+import org.bimserver.models.ifc2x3tc1.Ifc2x3tc1Factory;
+import org.bimserver.models.ifc2x3tc1.IfcBuildingStorey;
+import org.bimserver.validationreport.Issue;
+import org.bimserver.validationreport.Type;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestSummaryIssueContainer {
+
+	@Test
+	public void testExamplesAndTotals() {
+		SummaryIssueContainer issueContainer = new SummaryIssueContainer(2, null);
+		for (int i = 0; i < 10; i++) {
+			issueContainer.builder().originatingCheck("Test").type(Type.ERROR).message("Error " + i).add();
+		}
+		issueContainer.builder().originatingCheck("Test").type(Type.SUCCESS).message("Success").add();
+		Assert.assertEquals(3, issueContainer.list().size());
+
+		issueContainer.addSummaries("Test", null);
+		List<Issue> issues = issueContainer.list();
+		Assert.assertEquals(5, issues.size());
+		Assert.assertEquals(10, find(issues, "10 issues of type ERROR in total, only the first 2 are listed").getIs());
+		Assert.assertEquals(1, find(issues, "1 issues of type SUCCESS in total").getIs());
+	}
+
+	@Test
+	public void testStoreyCounts() {
+		IfcBuildingStorey first = Ifc2x3tc1Factory.eINSTANCE.createIfcBuildingStorey();
+		first.setName("00");
+		IfcBuildingStorey second = Ifc2x3tc1Factory.eINSTANCE.createIfcBuildingStorey();
+		second.setName("01");
+
+		SummaryIssueContainer issueContainer = new SummaryIssueContainer(1, null);
+		for (int i = 0; i < 3; i++) {
+			issueContainer.builder().originatingCheck("Test").type(Type.ERROR).object(first).message("Error " + i).add();
+		}
+		issueContainer.builder().originatingCheck("Test").type(Type.SUCCESS).buildingStorey(second).message("Success").add();
+		issueContainer.builder().originatingCheck("Test").type(Type.ERROR).message("Error without storey").add();
+
+		Assert.assertEquals(3, issueContainer.getCount(first, Type.ERROR));
+		Assert.assertEquals(0, issueContainer.getCount(first, Type.SUCCESS));
+		Assert.assertEquals(1, issueContainer.getCount(second, Type.SUCCESS));
+		Assert.assertEquals(4, issueContainer.getCount(Type.ERROR));
+
+		issueContainer.addSummaries("Test", null);
+		Assert.assertEquals(3, issueContainer.getCount(first, Type.ERROR));
+		Assert.assertEquals(second, find(issueContainer.list(), "1 issues of type SUCCESS on building storey \"01\"").getBuildingStorey());
+		Assert.assertNotNull(find(issueContainer.list(), "3 issues of type ERROR on building storey \"00\""));
+	}
+
+	private Issue find(List<Issue> issues, String message) {
+		for (Issue issue : issues) {
+			if (message.equals(issue.getMessage())) {
+				return issue;
+			}
+		}
+		Assert.fail("No issue \"" + message + "\"");
+		return null;
+	}
+}
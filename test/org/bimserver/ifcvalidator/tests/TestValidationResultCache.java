@@ -0,0 +1,111 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.bimserver.ifcvalidator.ValidationResultCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestValidationResultCache {
+
+	@Test
+	public void testKey() {
+		String key = ValidationResultCache.createKey(new byte[] { 1, 2, 3 }, "EN");
+		Assert.assertEquals(64, key.length());
+		Assert.assertEquals(key, ValidationResultCache.createKey(new byte[] { 1, 2, 3 }, "EN"));
+		Assert.assertNotEquals(key, ValidationResultCache.createKey(new byte[] { 1, 2, 3 }, "NL"));
+		Assert.assertNotEquals(key, ValidationResultCache.createKey(new byte[] { 1, 2, 4 }, "EN"));
+	}
+
+	@Test
+	public void testMemoryEviction() {
+		ValidationResultCache validationResultCache = new ValidationResultCache(20, 0, null);
+		validationResultCache.put("a", new byte[10]);
+		validationResultCache.put("b", new byte[10]);
+		validationResultCache.get("a");
+		validationResultCache.put("c", new byte[10]);
+
+		Assert.assertNotNull(validationResultCache.get("a"));
+		Assert.assertNull(validationResultCache.get("b"));
+		Assert.assertNotNull(validationResultCache.get("c"));
+	}
+
+	@Test
+	public void testDiskSurvivesRestart() throws IOException {
+		Path directory = Files.createTempDirectory("ifcvalidator-cache");
+		try {
+			ValidationResultCache validationResultCache = new ValidationResultCache(0, 25, directory);
+			validationResultCache.put("a", new byte[10]);
+			validationResultCache.put("b", new byte[] { 1, 2, 3 });
+			validationResultCache.put("c", new byte[10]);
+			validationResultCache.get("a");
+			validationResultCache.put("d", new byte[10]);
+
+			ValidationResultCache restarted = new ValidationResultCache(0, 25, directory);
+			Assert.assertNotNull(restarted.get("a"));
+			Assert.assertNull(restarted.get("b"));
+			Assert.assertNull(restarted.get("c"));
+			Assert.assertArrayEquals(new byte[10], restarted.get("d"));
+		} finally {
+			for (Path file : Files.newDirectoryStream(directory)) {
+				Files.delete(file);
+			}
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testTempFilesAreRemoved() throws IOException {
+		Path directory = Files.createTempDirectory("ifcvalidator-cache");
+		try {
+			Path stale = Files.createFile(directory.resolve("stale.tmp"));
+			Files.setLastModifiedTime(stale, FileTime.fromMillis(System.currentTimeMillis() - 24 * 60 * 60 * 1000));
+			Path recent = Files.createFile(directory.resolve("recent.tmp"));
+			ValidationResultCache validationResultCache = new ValidationResultCache(0, 25, directory);
+			Assert.assertFalse(Files.exists(stale));
+			Assert.assertTrue(Files.exists(recent));
+			Files.delete(recent);
+
+			// The report cannot replace a directory that is not empty
+			Files.createFile(Files.createDirectory(directory.resolve("a.report")).resolve("file"));
+			validationResultCache.put("a", new byte[10]);
+			try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*.tmp")) {
+				Assert.assertFalse(directoryStream.iterator().hasNext());
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	private void delete(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(path)) {
+				for (Path child : directoryStream) {
+					delete(child);
+				}
+			}
+		}
+		Files.delete(path);
+	}
+}
@@ -0,0 +1,130 @@
+package org.bimserver.ifcvalidator.tests;
+
+/******************************************************************************
+ * Copyright (C) 2009-2018  BIMserver.org
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see {@literal<http://www.gnu.org/licenses/>}.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bimserver.ifcvalidator.CancellationToken;
+import org.bimserver.ifcvalidator.CheckCancelledException;
+import org.bimserver.ifcvalidator.WorkScheduler;
+import org.bimserver.ifcvalidator.WorkScheduler.WorkQueue;
+import org.bimserver.ifcvalidator.checks.Concurrent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestWorkScheduler {
+
+	@Test
+	public void testQueuesTakeTurns() throws Exception {
+		WorkScheduler workScheduler = new WorkScheduler("test", 1);
+		try {
+			CountDownLatch blocked = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(6);
+			List<String> log = new ArrayList<>();
+			workScheduler.createQueue().execute(() -> {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			});
+			WorkQueue first = workScheduler.createQueue();
+			WorkQueue second = workScheduler.createQueue();
+			for (int i = 0; i < 4; i++) {
+				first.execute(() -> {
+					log.add("first");
+					done.countDown();
+				});
+			}
+			for (int i = 0; i < 2; i++) {
+				second.execute(() -> {
+					log.add("second");
+					done.countDown();
+				});
+			}
+			Assert.assertEquals(6, workScheduler.getQueueDepth());
+			Assert.assertEquals(2, workScheduler.getActiveQueues());
+			blocked.countDown();
+			done.await();
+
+			Assert.assertEquals(Arrays.asList("first", "second", "first", "second", "first", "first"), log);
+			Assert.assertEquals(0, workScheduler.getQueueDepth());
+		} finally {
+			workScheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testAwait() throws Exception {
+		WorkScheduler workScheduler = new WorkScheduler("test", 2);
+		try {
+			AtomicInteger counter = new AtomicInteger();
+			Concurrent concurrent = new Concurrent(workScheduler.createQueue(), CancellationToken.NONE);
+			for (int i = 0; i < 100; i++) {
+				concurrent.run(() -> counter.incrementAndGet());
+			}
+			concurrent.await();
+
+			Assert.assertEquals(100, counter.get());
+			Assert.assertEquals(0, workScheduler.getQueueDepth());
+		} finally {
+			workScheduler.shutdown();
+		}
+	}
+
+	@Test(expected = CheckCancelledException.class)
+	public void testAwaitAfterCancellation() throws Exception {
+		WorkScheduler workScheduler = new WorkScheduler("test", 1);
+		try {
+			CancellationToken cancellationToken = CancellationToken.create(0);
+			Concurrent concurrent = new Concurrent(workScheduler.createQueue(), cancellationToken);
+			concurrent.run(() -> cancellationToken.cancel());
+			concurrent.await();
+		} finally {
+			workScheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testAwaitRethrowsFailure() throws Exception {
+		WorkScheduler workScheduler = new WorkScheduler("test", 2);
+		try {
+			Concurrent concurrent = new Concurrent(workScheduler.createQueue(), CancellationToken.NONE);
+			for (int i = 0; i < 10; i++) {
+				int task = i;
+				concurrent.run(() -> {
+					if (task == 5) {
+						throw new IllegalStateException("task " + task);
+					}
+				});
+			}
+			try {
+				concurrent.await();
+				Assert.fail();
+			} catch (IllegalStateException e) {
+				Assert.assertEquals("task 5", e.getMessage());
+			}
+		} finally {
+			workScheduler.shutdown();
+		}
+	}
+}